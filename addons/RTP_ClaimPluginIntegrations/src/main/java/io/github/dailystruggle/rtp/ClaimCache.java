@@ -0,0 +1,83 @@
+package io.github.dailystruggle.rtp;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * chunks in one world known to have no claims, as a bitset in 8x8 chunk blocks keyed by block position.
+ * each block expires ttl after its first bit was set, so a claim made without an event still shows up eventually
+ */
+public final class ClaimCache {
+    private static final int maxBlocks = 1 << 16;
+
+    private final Map<Long, long[]> blocks = new ConcurrentHashMap<>();
+
+    private static long key( int chunkX, int chunkZ ) {
+        return ( ( long ) ( chunkX >> 3 ) << 32 ) | ( ( chunkZ >> 3 ) & 0xFFFFFFFFL );
+    }
+
+    private static long bit( int chunkX, int chunkZ ) {
+        return 1L << ( ( ( chunkX & 7 ) << 3 ) | ( chunkZ & 7 ) );
+    }
+
+    /**
+     * @param cache - clear chunks for this world, or null to not cache
+     * @return true if any provider claims the location.
+     *         chunk providers are skipped in a chunk cached as clear, and a chunk is only cached once all of them miss.
+     *         point providers run every time and never clear a chunk
+     */
+    public static <L> boolean isClaimed( ClaimCache cache, int chunkX, int chunkZ, long now, long ttl,
+                                         List<? extends Predicate<L>> chunkProviders, List<? extends Predicate<L>> pointProviders, L location ) {
+        if( !chunkProviders.isEmpty() && ( cache == null || !cache.isClear( chunkX, chunkZ, now, ttl ) ) ) {
+            for( Predicate<L> provider : chunkProviders ) {
+                if( provider.test( location ) ) return true;
+            }
+            if( cache != null ) cache.setClear( chunkX, chunkZ, now, ttl );
+        }
+
+        for( Predicate<L> provider : pointProviders ) {
+            if( provider.test( location ) ) return true;
+        }
+        return false;
+    }
+
+    public boolean isClear( int chunkX, int chunkZ, long now, long ttl ) {
+        long[] block = blocks.get( key( chunkX, chunkZ ) );
+        if( block == null ) return false;
+        synchronized( block ) {
+            if( now - block[1] >= ttl ) return false;
+            return ( block[0] & bit( chunkX, chunkZ ) ) != 0;
+        }
+    }
+
+    public void setClear( int chunkX, int chunkZ, long now, long ttl ) {
+        if( blocks.size() >= maxBlocks ) purge( now, ttl );
+        long[] block = blocks.computeIfAbsent( key( chunkX, chunkZ ), k -> new long[]{0, now} );
+        synchronized( block ) {
+            if( now - block[1] >= ttl ) {
+                block[0] = 0;
+                block[1] = now;
+            }
+            block[0] |= bit( chunkX, chunkZ );
+        }
+    }
+
+    private void purge( long now, long ttl ) {
+        Iterator<long[]> iterator = blocks.values().iterator();
+        while( iterator.hasNext() ) {
+            long[] block = iterator.next();
+            synchronized( block ) {
+                if( now - block[1] >= ttl ) iterator.remove();
+            }
+        }
+        //all still fresh, start over rather than grow without bound
+        if( blocks.size() >= maxBlocks ) blocks.clear();
+    }
+
+    public void clear() {
+        blocks.clear();
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.dailystruggle.rtp;
+
+import io.github.dailystruggle.rtp.softdepends.*;
+import org.bukkit.Location;
+
+import java.util.function.Predicate;
+
+/**
+ * the claim checkers, with the config key that enables each and the events that change its claims.
+ * chunk providers only claim whole chunks, so a miss anywhere in a chunk clears the whole chunk.
+ * anything that claims arbitrary block areas has to be a point provider, checked every time
+ */
+public enum ClaimProvider implements Predicate<Location> {
+    factions( IntegrationsKeys.rerollFactions, true, FactionsChecker::isInClaim,
+            "com.massivecraft.factions.event.LandClaimEvent",
+            "com.massivecraft.factions.event.LandUnclaimEvent",
+            "com.massivecraft.factions.event.LandUnclaimAllEvent",
+            "com.massivecraft.factions.event.FactionDisbandEvent" ),
+    griefDefender( IntegrationsKeys.rerollGriefDefender, false, GriefDefenderChecker::isInClaim ),
+    //claims are block rectangles, not chunks
+    griefPrevention( IntegrationsKeys.rerollGriefPrevention, false, GriefPreventionChecker::isInClaim ),
+    lands( IntegrationsKeys.rerollLands, true, LandsChecker::isInClaim,
+            "me.angeschossen.lands.api.events.ChunkPostClaimEvent",
+            "me.angeschossen.lands.api.events.ChunkDeleteEvent",
+            "me.angeschossen.lands.api.events.LandDeleteEvent" ),
+    huskTowns( IntegrationsKeys.rerollHuskTowns, true, HuskTownsChecker::isInClaim,
+            "me.william278.husktowns.events.ClaimEvent",
+            "me.william278.husktowns.events.UnClaimEvent",
+            "me.william278.husktowns.events.UnClaimAllEvent",
+            "me.william278.husktowns.events.TownDisbandEvent" ),
+    redProtect( IntegrationsKeys.rerollRedProtect, false, RedProtectChecker::isInClaim ),
+    townyAdvanced( IntegrationsKeys.rerollTownyAdvanced, true, TownyAdvancedChecker::isInClaim,
+            "com.palmergames.bukkit.towny.event.TownClaimEvent",
+            "com.palmergames.bukkit.towny.event.TownUnclaimEvent",
+            "com.palmergames.bukkit.towny.event.town.TownUnclaimEvent",
+            "com.palmergames.bukkit.towny.event.DeleteTownEvent" ) {
+        @Override
+        public boolean chunkClaims() {
+            //town blocks can be configured to other sizes
+            return TownyAdvancedChecker.chunkSized();
+        }
+    },
+    worldGuard( IntegrationsKeys.rerollWorldGuard, false, WorldGuardChecker::isInClaim );
+
+    public final IntegrationsKeys key;
+    private final boolean chunkClaims;
+    private final Predicate<Location> inClaim;
+    public final String[] events;
+
+    ClaimProvider( IntegrationsKeys key, boolean chunkClaims, Predicate<Location> inClaim, String... events ) {
+        this.key = key;
+        this.chunkClaims = chunkClaims;
+        this.inClaim = inClaim;
+        this.events = events;
+    }
+
+    public boolean chunkClaims() {
+        return chunkClaims;
+    }
+
+    public boolean isInClaim( Location location ) {
+        return inClaim.test( location );
+    }
+
+    @Override
+    public boolean test( Location location ) {
+        return isInClaim( location );
+    }
+}
@@ -8,5 +8,9 @@ public enum IntegrationsKeys {
     rerollHuskTowns,
     rerollFactions,
     rerollLands,
-    rerollRedProtect
+    rerollRedProtect,
+    claimCacheTTL,
+    claimCacheTTLWithoutEvents,
+    worldGuardIndexPeriod,
+    reserveWorldGuardAreas
 }
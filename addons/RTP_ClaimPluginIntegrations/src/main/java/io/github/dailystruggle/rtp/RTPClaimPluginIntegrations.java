@@ -5,13 +5,50 @@ import io.github.dailystruggle.rtp.common.RTP;
 import io.github.dailystruggle.rtp.common.configuration.ConfigParser;
 import io.github.dailystruggle.rtp.common.configuration.Configs;
 import io.github.dailystruggle.rtp.common.selection.region.Region;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.LongIntervalSet;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes.MemoryShape;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.shapes.Shape;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPWorld;
-import io.github.dailystruggle.rtp.softdepends.*;
+import io.github.dailystruggle.rtp.softdepends.WorldGuardChecker;
+import io.github.dailystruggle.rtp.softdepends.WorldGuardIndex;
+import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
 import org.bukkit.plugin.java.JavaPlugin;
-
-public final class RTPClaimPluginIntegrations extends JavaPlugin {
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+public final class RTPClaimPluginIntegrations extends JavaPlugin implements Listener {
+    /**
+     * chunks with no claims from any enabled chunk provider, per world
+     */
+    private final Map<UUID, ClaimCache> claimCaches = new ConcurrentHashMap<>();
+    /**
+     * providers with at least one claim event we could listen to
+     */
+    private final Set<ClaimProvider> evented = EnumSet.noneOf( ClaimProvider.class );
+
+    private volatile List<ClaimProvider> chunkProviders = Collections.emptyList();
+    private volatile List<ClaimProvider> pointProviders = Collections.emptyList();
+    private volatile long cacheTTL = 0;
+
+    /**
+     * largest protected area, in chunks, to reserve in a region's shape
+     */
+    private static final long maxReservedChunks = 1 << 16;
+
+    private BukkitTask worldGuardIndexTask = null;
+    private volatile boolean reserveWorldGuardAreas = false;
+    /**
+     * index signature each shape was last reserved against, so unchanged shapes are skipped
+     */
+    private Map<MemoryShape<?>, Long> reservedShapes = new IdentityHashMap<>();
 
     @Override
     public void onEnable() {
@@ -20,59 +57,148 @@ public final class RTPClaimPluginIntegrations extends JavaPlugin {
         ConfigParser<IntegrationsKeys> integrations = new ConfigParser<>( IntegrationsKeys.class, "integrations", "1.0", RTP.serverAccessor.getPluginDirectory(), null, RTP.configs.fileDatabase, this.getClassLoader() );
         configs.putParser( integrations );
 
-        Configs.onReload( () -> RTP.configs.putParser( new ConfigParser<>( IntegrationsKeys.class, "integrations", "1.0", RTP.serverAccessor.getPluginDirectory(), null, RTP.configs.fileDatabase, this.getClassLoader())) );
+        Configs.onReload( () -> {
+            RTP.configs.putParser( new ConfigParser<>( IntegrationsKeys.class, "integrations", "1.0", RTP.serverAccessor.getPluginDirectory(), null, RTP.configs.fileDatabase, this.getClassLoader()) );
+            loadSettings();
+        } );
+
+        setupIntegrations();
     }
 
     @Override
     public void onDisable() {
         // Plugin shutdown logic
+        claimCaches.clear();
+        WorldGuardChecker.clearIndexes();
     }
 
-    public void setupIntegrations() {
+    /**
+     * read which providers are on and how long a clear chunk is trusted, once instead of on every check
+     */
+    private void loadSettings() {
         ConfigParser<IntegrationsKeys> configParser = ( ConfigParser<IntegrationsKeys> ) RTP.configs.getParser( IntegrationsKeys.class );
+        if( configParser == null ) return;
+
+        List<ClaimProvider> chunk = new ArrayList<>();
+        List<ClaimProvider> point = new ArrayList<>();
+        for( ClaimProvider provider : ClaimProvider.values() ) {
+            if( !Boolean.parseBoolean( configParser.getConfigValue( provider.key, false ).toString()) ) continue;
+            if( provider.chunkClaims() ) chunk.add( provider );
+            else point.add( provider );
+        }
+
+        long withEvents = configParser.getNumber( IntegrationsKeys.claimCacheTTL, 600 ).longValue();
+        long withoutEvents = configParser.getNumber( IntegrationsKeys.claimCacheTTLWithoutEvents, 30 ).longValue();
+        long ttl = Long.MAX_VALUE;
+        for( ClaimProvider provider : chunk ) {
+            ttl = Math.min( ttl, evented.contains( provider ) ? withEvents : withoutEvents );
+        }
+
+        chunkProviders = chunk;
+        pointProviders = point;
+        cacheTTL = TimeUnit.SECONDS.toNanos( Math.max( ttl == Long.MAX_VALUE ? 0 : ttl, 0 ) );
+        claimCaches.clear();
+
+        long period = configParser.getNumber( IntegrationsKeys.worldGuardIndexPeriod, 10 ).longValue();
+        reserveWorldGuardAreas = Boolean.parseBoolean( configParser.getConfigValue( IntegrationsKeys.reserveWorldGuardAreas, true ).toString() );
+        scheduleWorldGuardIndex( point.contains( ClaimProvider.worldGuard ) ? period : 0 );
+    }
 
-        Region.addGlobalRegionVerifier( rtpLocation -> {
-            RTPWorld rtpWorld = rtpLocation.world();
-            if( !(rtpWorld instanceof BukkitRTPWorld bukkitRTPWorld) ) return false;
-            if( !rtpWorld.isActive() ) return false;
-            World world = bukkitRTPWorld.world();
-            Location location = new Location( world, rtpLocation.x(), rtpLocation.y(), rtpLocation.z() );
-
-            boolean res = true;
-
-            if( Boolean.parseBoolean( configParser.getConfigValue( IntegrationsKeys.rerollFactions, false ).toString()) ) {
-                res = !FactionsChecker.isInClaim( location );
-            }
-
-            if( res && Boolean.parseBoolean( configParser.getConfigValue( IntegrationsKeys.rerollGriefDefender, false ).toString()) ) {
-                res = !GriefDefenderChecker.isInClaim( location );
-            }
-
-            if( res && Boolean.parseBoolean( configParser.getConfigValue( IntegrationsKeys.rerollGriefPrevention, false ).toString()) ) {
-                res = !GriefPreventionChecker.isInClaim( location );
-            }
+    /**
+     * keep WorldGuard region indexes current, since WorldGuard has no event for region changes
+     * @param period - seconds between refreshes, 0 to stop indexing
+     */
+    private synchronized void scheduleWorldGuardIndex( long period ) {
+        if( worldGuardIndexTask != null ) {
+            worldGuardIndexTask.cancel();
+            worldGuardIndexTask = null;
+        }
+        WorldGuardChecker.clearIndexes();
+        if( period <= 0 || !isEnabled() || Bukkit.getPluginManager().getPlugin( "WorldGuard" ) == null ) {
+            if( !reservedShapes.isEmpty() ) reserveProtectedAreas( Collections.emptyMap() );
+            return;
+        }
+
+        worldGuardIndexTask = Bukkit.getScheduler().runTaskTimerAsynchronously( this, () -> {
+            Map<UUID, WorldGuardIndex> indexes = WorldGuardChecker.refreshIndexes();
+            reserveProtectedAreas( reserveWorldGuardAreas ? indexes : Collections.emptyMap() );
+        }, 20, period * 20 );
+    }
 
-            if( res && Boolean.parseBoolean( configParser.getConfigValue( IntegrationsKeys.rerollLands, false ).toString()) ) {
-                res = !LandsChecker.isInClaim( location );
+    /**
+     * rule out chunks that WorldGuard always rejects in each region's shape, so selection never samples them
+     */
+    private synchronized void reserveProtectedAreas( Map<UUID, WorldGuardIndex> indexes ) {
+        Map<MemoryShape<?>, Long> reserved = new IdentityHashMap<>();
+        for( Region region : RTP.selectionAPI.permRegionLookup.values() ) {
+            Shape<?> shape;
+            RTPWorld rtpWorld;
+            try {
+                shape = region.getShape();
+                rtpWorld = region.getWorld();
+            } catch ( Throwable t ) {
+                continue;
             }
-
-            if( res && Boolean.parseBoolean( configParser.getConfigValue( IntegrationsKeys.rerollHuskTowns, false ).toString()) ) {
-                res = !HuskTownsChecker.isInClaim( location );
+            if( !(shape instanceof MemoryShape<?> memoryShape) ) continue;
+            if( !(rtpWorld instanceof BukkitRTPWorld bukkitRTPWorld) ) continue;
+
+            WorldGuardIndex index = indexes.get( bukkitRTPWorld.world().getUID() );
+            long signature = ( index == null ) ? 0 : index.signature;
+            reserved.put( memoryShape, signature );
+            Long previous = reservedShapes.get( memoryShape );
+            if( previous != null && previous == signature ) continue;
+            if( previous == null && index == null ) continue;
+
+            LongIntervalSet locations = new LongIntervalSet();
+            if( index != null ) {
+                for( int[] area : index.reservedChunks ) {
+                    if( ( long ) ( area[2] - area[0] + 1 ) * ( area[3] - area[1] + 1 ) > maxReservedChunks ) continue;
+                    memoryShape.locationsInArea( area[0], area[1], area[2], area[3] ).forEach( locations::add );
+                }
             }
+            memoryShape.setReservedLocations( locations );
+        }
+
+        //shapes dropped since the last pass, e.g. on reload
+        for( MemoryShape<?> shape : reservedShapes.keySet() ) {
+            if( !reserved.containsKey( shape ) ) shape.setReservedLocations( new LongIntervalSet() );
+        }
+        reservedShapes = reserved;
+    }
 
-            if( res && Boolean.parseBoolean( configParser.getConfigValue( IntegrationsKeys.rerollRedProtect, false ).toString()) ) {
-                res = !RedProtectChecker.isInClaim( location );
+    /**
+     * clear cached chunks whenever a provider reports a claim change, for providers that have such events
+     */
+    private void registerClaimEvents() {
+        for( ClaimProvider provider : ClaimProvider.values() ) {
+            for( String eventName : provider.events ) {
+                try {
+                    Class<? extends Event> eventClass = Class.forName( eventName ).asSubclass( Event.class );
+                    Bukkit.getPluginManager().registerEvent( eventClass, this, EventPriority.MONITOR,
+                            ( listener, event ) -> claimCaches.clear(), this, true );
+                    evented.add( provider );
+                } catch ( Throwable ignored ) {
+                    //not installed, or not this version. the cache ttl covers it
+                }
             }
+        }
+    }
 
-            if( res && Boolean.parseBoolean( configParser.getConfigValue( IntegrationsKeys.rerollTownyAdvanced, false ).toString()) ) {
-                res = !TownyAdvancedChecker.isInClaim( location );
-            }
+    public void setupIntegrations() {
+        registerClaimEvents();
+        loadSettings();
 
-            if( res && Boolean.parseBoolean( configParser.getConfigValue( IntegrationsKeys.rerollWorldGuard, false ).toString()) ) {
-                res = !WorldGuardChecker.isInClaim( location );
-            }
+        Region.addGlobalRegionVerifier( rtpLocation -> {
+            RTPWorld rtpWorld = rtpLocation.world();
+            if( !(rtpWorld instanceof BukkitRTPWorld bukkitRTPWorld) ) return false;
+            if( !rtpWorld.isActive() ) return false;
+            World world = bukkitRTPWorld.world();
+            Location location = new Location( world, rtpLocation.x(), rtpLocation.y(), rtpLocation.z() );
 
-            return res;
+            long ttl = cacheTTL;
+            ClaimCache cache = ( ttl > 0 ) ? claimCaches.computeIfAbsent( world.getUID(), uuid -> new ClaimCache() ) : null;
+            return !ClaimCache.isClaimed( cache, rtpLocation.x() >> 4, rtpLocation.z() >> 4, System.nanoTime(), ttl,
+                    chunkProviders, pointProviders, location );
         } );
     }
 }
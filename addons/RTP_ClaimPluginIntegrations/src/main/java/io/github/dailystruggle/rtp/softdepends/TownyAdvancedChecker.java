@@ -1,6 +1,7 @@
 package io.github.dailystruggle.rtp.softdepends;
 
 import com.palmergames.bukkit.towny.TownyAPI;
+import com.palmergames.bukkit.towny.TownySettings;
 import io.github.dailystruggle.rtp.common.RTP;
 import org.bukkit.Location;
 
@@ -19,4 +20,12 @@ public class TownyAdvancedChecker {
         }
         return false;
     }
+
+    public static boolean chunkSized() {
+        try {
+            return TownySettings.getTownBlockSize() == 16;
+        } catch ( Throwable t ) {
+            return false;
+        }
+    }
 }
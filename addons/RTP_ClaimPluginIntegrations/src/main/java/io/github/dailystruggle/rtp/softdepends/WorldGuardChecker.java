@@ -11,11 +11,13 @@ import com.sk89q.worldguard.protection.flags.StateFlag;
 import com.sk89q.worldguard.protection.flags.registry.FlagConflictException;
 import com.sk89q.worldguard.protection.flags.registry.FlagRegistry;
 import com.sk89q.worldguard.protection.managers.RegionManager;
+import com.sk89q.worldguard.protection.regions.ProtectedRegion;
 import io.github.dailystruggle.rtp.common.RTP;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.Plugin;
 
-import java.util.Objects;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 public class WorldGuardChecker {
@@ -53,6 +55,65 @@ public class WorldGuardChecker {
     }
 
     private static boolean exists = true;
+
+    /**
+     * per world, replaced by refreshIndexes. a world without one always asks WorldGuard
+     */
+    private static final Map<UUID, WorldGuardIndex> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * rebuild the index of any world whose regions changed. safe to run off the server thread
+     * @return the current index for each world
+     */
+    public static Map<UUID, WorldGuardIndex> refreshIndexes() {
+        if( exists ) {
+            try {
+                if( getWorldGuard() == null ) return Collections.emptyMap();
+                if( CAN_RTP_SELECT_HERE == null ) setupWGFlag();
+                if( CAN_RTP_SELECT_HERE == null ) return Collections.emptyMap();
+
+                Set<UUID> seen = new HashSet<>();
+                for( org.bukkit.World bukkitWorld : Bukkit.getWorlds() ) {
+                    RegionManager regionManager = WorldGuard.getInstance().getPlatform().getRegionContainer().get( BukkitAdapter.adapt( bukkitWorld ) );
+                    if( regionManager == null ) continue;
+                    UUID id = bukkitWorld.getUID();
+                    seen.add( id );
+                    updateIndex( id, regionManager.getRegions().values(), regionManager.getRegion( ProtectedRegion.GLOBAL_REGION ),
+                            CAN_RTP_SELECT_HERE, bukkitWorld.getMinHeight(), bukkitWorld.getMaxHeight() - 1 );
+                }
+                indexes.keySet().retainAll( seen );
+            } catch ( Throwable t ) {
+                exists = false;
+                indexes.clear();
+                RTP.log( Level.WARNING, t.getMessage(), t );
+            }
+        }
+        return Collections.unmodifiableMap( indexes );
+    }
+
+    public static void clearIndexes() {
+        indexes.clear();
+    }
+
+    /**
+     * rebuild one world's index, keeping the old one if its regions haven't changed
+     */
+    public static WorldGuardIndex updateIndex( UUID world, Collection<ProtectedRegion> regions, ProtectedRegion global, StateFlag flag, int minY, int maxY ) {
+        WorldGuardIndex index = WorldGuardIndex.build( indexes.get( world ), regions, global, flag, minY, maxY );
+        indexes.put( world, index );
+        return index;
+    }
+
+    /**
+     * @return isInClaim for a point no region can cover, or null if WorldGuard has to be asked
+     */
+    public static Boolean indexed( UUID world, int x, int y, int z ) {
+        WorldGuardIndex index = indexes.get( world );
+        if( index == null || index.outside == null ) return null;
+        if( index.mayCover( x, y, z ) ) return null;
+        return index.outside;
+    }
+
     public static Boolean isInClaim( org.bukkit.Location location ) {
         if( exists ) {
             try {
@@ -60,7 +121,11 @@ public class WorldGuardChecker {
                 if( CAN_RTP_SELECT_HERE == null ) setupWGFlag();
                 if( CAN_RTP_SELECT_HERE == null ) return false;
 
-                World world = BukkitAdapter.adapt( Objects.requireNonNull( location.getWorld()) );
+                org.bukkit.World bukkitWorld = Objects.requireNonNull( location.getWorld() );
+                Boolean indexed = indexed( bukkitWorld.getUID(), location.getBlockX(), location.getBlockY(), location.getBlockZ() );
+                if( indexed != null ) return indexed;
+
+                World world = BukkitAdapter.adapt( bukkitWorld );
                 BlockVector3 pt = BukkitAdapter.asBlockVector( location );
                 RegionManager regionManager = WorldGuard.getInstance().getPlatform().getRegionContainer().get( world );
                 ApplicableRegionSet set = Objects.requireNonNull( regionManager ).getApplicableRegions( pt );
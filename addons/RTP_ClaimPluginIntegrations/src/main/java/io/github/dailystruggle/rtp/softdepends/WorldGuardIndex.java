@@ -0,0 +1,180 @@
+package io.github.dailystruggle.rtp.softdepends;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldguard.protection.flags.StateFlag;
+import com.sk89q.worldguard.protection.regions.GlobalProtectedRegion;
+import com.sk89q.worldguard.protection.regions.ProtectedCuboidRegion;
+import com.sk89q.worldguard.protection.regions.ProtectedRegion;
+
+import java.util.*;
+
+/**
+ * bounding boxes of one world's WorldGuard regions in a uniform grid, for answering "any region here" without asking WorldGuard.
+ * a point outside every box only gets the global region, so its answer is known up front.
+ * built fresh from the region manager and never changed after, swap in a new one when regions change
+ */
+public final class WorldGuardIndex {
+    /**
+     * cells are 256 blocks on a side
+     */
+    private static final int cellShift = 8;
+    /**
+     * boxes covering more cells than this are checked everywhere instead of filed per cell
+     */
+    private static final int maxCellsPerBox = 1024;
+    private static final int[][] none = new int[0][];
+
+    private final Map<Long, int[][]> cells;
+    private final int[][] large;
+    /**
+     * isInClaim for a point outside every box, or null if that can't be known without asking
+     */
+    public final Boolean outside;
+    /**
+     * changes whenever anything the index or reservedChunks depends on changes
+     */
+    public final long signature;
+    /**
+     * {minChunkX, minChunkZ, maxChunkX, maxChunkZ}, inclusive, of chunks wholly inside a region that always rejects
+     */
+    public final List<int[]> reservedChunks;
+
+    private WorldGuardIndex( Map<Long, int[][]> cells, int[][] large, Boolean outside, long signature, List<int[]> reservedChunks ) {
+        this.cells = cells;
+        this.large = large;
+        this.outside = outside;
+        this.signature = signature;
+        this.reservedChunks = reservedChunks;
+    }
+
+    private static long key( int cellX, int cellZ ) {
+        return ( ( long ) cellX << 32 ) | ( cellZ & 0xFFFFFFFFL );
+    }
+
+    /**
+     * @return false only if no region's bounding box contains this point
+     */
+    public boolean mayCover( int x, int y, int z ) {
+        for( int[] box : large ) {
+            if( contains( box, x, y, z ) ) return true;
+        }
+        int[][] boxes = cells.getOrDefault( key( x >> cellShift, z >> cellShift ), none );
+        for( int[] box : boxes ) {
+            if( contains( box, x, y, z ) ) return true;
+        }
+        return false;
+    }
+
+    private static boolean contains( int[] box, int x, int y, int z ) {
+        return x >= box[0] && y >= box[1] && z >= box[2] && x <= box[3] && y <= box[4] && z <= box[5];
+    }
+
+    private static boolean intersects( int[] a, int[] b ) {
+        return a[0] <= b[3] && b[0] <= a[3] && a[1] <= b[4] && b[1] <= a[4] && a[2] <= b[5] && b[2] <= a[5];
+    }
+
+    /**
+     * @return the flag value a region gets from itself or its nearest parent that sets it
+     */
+    private static StateFlag.State effective( ProtectedRegion region, StateFlag flag ) {
+        for( ProtectedRegion r = region; r != null; r = r.getParent() ) {
+            StateFlag.State state = r.getFlag( flag );
+            if( state != null ) return state;
+        }
+        return null;
+    }
+
+    private static boolean grouped( ProtectedRegion region, StateFlag flag ) {
+        for( ProtectedRegion r = region; r != null; r = r.getParent() ) {
+            if( r.getFlag( flag.getRegionGroupFlag() ) != null ) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param previous - index to keep if nothing changed since it was built, or null
+     * @param all - every region in the world, the global one may be among them
+     * @param global - the world's global region, or null if it has none
+     * @param minY - lowest block y of the world
+     * @param maxY - highest block y of the world
+     */
+    public static WorldGuardIndex build( WorldGuardIndex previous, Collection<ProtectedRegion> all, ProtectedRegion global, StateFlag flag, int minY, int maxY ) {
+        List<ProtectedRegion> regions = new ArrayList<>();
+        List<int[]> boxes = new ArrayList<>();
+        long signature = 0;
+        for( ProtectedRegion region : all ) {
+            if( region instanceof GlobalProtectedRegion ) continue;
+            BlockVector3 min = region.getMinimumPoint();
+            BlockVector3 max = region.getMaximumPoint();
+            int[] box = {min.getBlockX(), min.getBlockY(), min.getBlockZ(), max.getBlockX(), max.getBlockY(), max.getBlockZ()};
+            regions.add( region );
+            boxes.add( box );
+
+            //order-free, so iteration order of the region map doesn't matter
+            ProtectedRegion parent = region.getParent();
+            long h = Objects.hash( region.getId(), Arrays.hashCode( box ), region.getPriority(), region.getFlag( flag ),
+                    region.getFlag( flag.getRegionGroupFlag() ), parent == null ? null : parent.getId(), region.getClass() );
+            signature += ( h ^ ( h >>> 29 ) ) * 0x9E3779B97F4A7C15L;
+        }
+
+        Boolean outside;
+        if( global == null ) outside = false;
+        else if( global.getFlag( flag.getRegionGroupFlag() ) != null ) outside = null;
+        else outside = global.getFlag( flag ) == StateFlag.State.ALLOW;
+        signature = signature * 31 + Objects.hash( global == null ? null : global.getFlag( flag ),
+                global == null ? null : global.getFlag( flag.getRegionGroupFlag() ), minY, maxY );
+        if( previous != null && previous.signature == signature ) return previous;
+
+        Map<Long, List<int[]>> grid = new HashMap<>();
+        List<int[]> large = new ArrayList<>();
+        for( int[] box : boxes ) {
+            int minCellX = box[0] >> cellShift;
+            int minCellZ = box[2] >> cellShift;
+            int maxCellX = box[3] >> cellShift;
+            int maxCellZ = box[5] >> cellShift;
+            if( ( long ) ( maxCellX - minCellX + 1 ) * ( maxCellZ - minCellZ + 1 ) > maxCellsPerBox ) {
+                large.add( box );
+                continue;
+            }
+            for( int cellX = minCellX; cellX <= maxCellX; cellX++ ) {
+                for( int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++ ) {
+                    grid.computeIfAbsent( key( cellX, cellZ ), k -> new ArrayList<>( 2 ) ).add( box );
+                }
+            }
+        }
+        Map<Long, int[][]> cells = new HashMap<>( grid.size() * 2 );
+        for( Map.Entry<Long, List<int[]>> entry : grid.entrySet() ) {
+            cells.put( entry.getKey(), entry.getValue().toArray( new int[0][] ) );
+        }
+
+        //only where the answer can't depend on height, shape, membership or an overlapping region
+        List<int[]> reservedChunks = new ArrayList<>();
+        for( int i = 0; i < regions.size(); i++ ) {
+            ProtectedRegion region = regions.get( i );
+            int[] box = boxes.get( i );
+            if( !( region instanceof ProtectedCuboidRegion ) ) continue;
+            if( box[1] > minY || box[4] < maxY ) continue;
+            if( effective( region, flag ) != StateFlag.State.ALLOW || grouped( region, flag ) ) continue;
+
+            boolean contested = false;
+            for( int j = 0; j < regions.size() && !contested; j++ ) {
+                if( i == j || !intersects( box, boxes.get( j ) ) ) continue;
+                ProtectedRegion other = regions.get( j );
+                StateFlag.State state = effective( other, flag );
+                contested = ( state != null && state != StateFlag.State.ALLOW ) || grouped( other, flag );
+            }
+            if( contested ) continue;
+
+            //chunks entirely inside the box
+            int minChunkX = ( box[0] + 15 ) >> 4;
+            int minChunkZ = ( box[2] + 15 ) >> 4;
+            int maxChunkX = ( ( box[3] + 1 ) >> 4 ) - 1;
+            int maxChunkZ = ( ( box[5] + 1 ) >> 4 ) - 1;
+            if( minChunkX > maxChunkX || minChunkZ > maxChunkZ ) continue;
+            reservedChunks.add( new int[]{minChunkX, minChunkZ, maxChunkX, maxChunkZ} );
+        }
+
+        return new WorldGuardIndex( cells, large.toArray( new int[0][] ), outside, signature,
+                Collections.unmodifiableList( reservedChunks ) );
+    }
+}
@@ -0,0 +1,64 @@
+import io.github.dailystruggle.rtp.ClaimCache;
+import io.github.dailystruggle.rtp.ClaimProvider;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+public class ClaimCacheTest {
+    private static final long ttl = 1000;
+
+    @Test
+    void TestPointMissKeepsChunk() {
+        ClaimCache cache = new ClaimCache();
+        //a claim covering x 4-7 of chunk 0, like a GriefPrevention rectangle cutting through it
+        List<Predicate<int[]>> point = Collections.singletonList( xz -> xz[0] >= 4 && xz[0] <= 7 && xz[1] >= 0 && xz[1] <= 15 );
+
+        Assertions.assertFalse( ClaimCache.isClaimed( cache, 0, 0, 0, ttl, Collections.emptyList(), point, new int[]{1, 1} ) );
+        Assertions.assertFalse( cache.isClear( 0, 0, 0, ttl ) );
+        Assertions.assertTrue( ClaimCache.isClaimed( cache, 0, 0, 1, ttl, Collections.emptyList(), point, new int[]{5, 5} ) );
+    }
+
+    @Test
+    void TestChunkMissClearsChunk() {
+        ClaimCache cache = new ClaimCache();
+        AtomicInteger calls = new AtomicInteger();
+        List<Predicate<int[]>> chunk = Collections.singletonList( xz -> {
+            calls.incrementAndGet();
+            return false;
+        } );
+        List<Predicate<int[]>> point = Collections.singletonList( xz -> xz[0] == 9 );
+
+        Assertions.assertFalse( ClaimCache.isClaimed( cache, 0, 0, 0, ttl, chunk, point, new int[]{1, 1} ) );
+        Assertions.assertTrue( cache.isClear( 0, 0, 0, ttl ) );
+        Assertions.assertEquals( 1, calls.get() );
+
+        //the chunk provider is skipped now, point providers still run
+        Assertions.assertTrue( ClaimCache.isClaimed( cache, 0, 0, 1, ttl, chunk, point, new int[]{9, 1} ) );
+        Assertions.assertEquals( 1, calls.get() );
+
+        //until the block expires
+        Assertions.assertFalse( ClaimCache.isClaimed( cache, 0, 0, ttl, ttl, chunk, point, new int[]{1, 1} ) );
+        Assertions.assertEquals( 2, calls.get() );
+    }
+
+    @Test
+    void TestChunkHitDoesNotClear() {
+        ClaimCache cache = new ClaimCache();
+        List<Predicate<int[]>> chunk = Collections.singletonList( xz -> true );
+        Assertions.assertTrue( ClaimCache.isClaimed( cache, -1, -1, 0, ttl, chunk, Collections.emptyList(), new int[]{-1, -1} ) );
+        Assertions.assertFalse( cache.isClear( -1, -1, 0, ttl ) );
+    }
+
+    @Test
+    void TestBlockAreaProviders() {
+        //these claim arbitrary rectangles, a miss can't speak for the rest of the chunk
+        Assertions.assertFalse( ClaimProvider.griefPrevention.chunkClaims() );
+        Assertions.assertFalse( ClaimProvider.griefDefender.chunkClaims() );
+        Assertions.assertFalse( ClaimProvider.redProtect.chunkClaims() );
+        Assertions.assertFalse( ClaimProvider.worldGuard.chunkClaims() );
+    }
+}
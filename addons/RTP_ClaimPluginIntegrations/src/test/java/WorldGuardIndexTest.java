@@ -0,0 +1,156 @@
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldguard.protection.flags.RegionGroup;
+import com.sk89q.worldguard.protection.flags.StateFlag;
+import com.sk89q.worldguard.protection.regions.GlobalProtectedRegion;
+import com.sk89q.worldguard.protection.regions.ProtectedCuboidRegion;
+import com.sk89q.worldguard.protection.regions.ProtectedRegion;
+import io.github.dailystruggle.rtp.softdepends.WorldGuardChecker;
+import io.github.dailystruggle.rtp.softdepends.WorldGuardIndex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class WorldGuardIndexTest {
+    private static final StateFlag flag = new StateFlag( "can-rtp-select-here", false );
+    private static final int minY = -64;
+    private static final int maxY = 319;
+
+    private static ProtectedCuboidRegion cuboid( String id, int minX, int minY, int minZ, int maxX, int maxY, int maxZ, StateFlag.State state ) {
+        ProtectedCuboidRegion region = new ProtectedCuboidRegion( id, BlockVector3.at( minX, minY, minZ ), BlockVector3.at( maxX, maxY, maxZ ) );
+        if( state != null ) region.setFlag( flag, state );
+        return region;
+    }
+
+    private static ProtectedCuboidRegion spawn() {
+        return cuboid( "spawn", -100, minY, -100, 100, maxY, 100, StateFlag.State.ALLOW );
+    }
+
+    private static WorldGuardIndex build( WorldGuardIndex previous, List<ProtectedRegion> regions, ProtectedRegion global ) {
+        return WorldGuardIndex.build( previous, regions, global, flag, minY, maxY );
+    }
+
+    @Test
+    void TestAddRemove() {
+        GlobalProtectedRegion global = new GlobalProtectedRegion( ProtectedRegion.GLOBAL_REGION );
+        List<ProtectedRegion> regions = new ArrayList<>();
+        WorldGuardIndex empty = build( null, regions, global );
+        Assertions.assertEquals( Boolean.FALSE, empty.outside );
+        Assertions.assertFalse( empty.mayCover( 0, 64, 0 ) );
+        Assertions.assertTrue( empty.reservedChunks.isEmpty() );
+        Assertions.assertSame( empty, build( empty, new ArrayList<>( regions ), global ) );
+
+        ProtectedCuboidRegion spawn = spawn();
+        regions.add( spawn );
+        WorldGuardIndex added = build( empty, regions, global );
+        Assertions.assertNotSame( empty, added );
+        Assertions.assertTrue( added.mayCover( 0, 64, 0 ) );
+        Assertions.assertTrue( added.mayCover( 100, maxY, -100 ) );
+        Assertions.assertFalse( added.mayCover( 101, 64, 0 ) );
+        Assertions.assertFalse( added.mayCover( 500, 64, 500 ) );
+        //chunks -6 to 5 are the ones wholly inside -100 to 100
+        Assertions.assertEquals( 1, added.reservedChunks.size() );
+        Assertions.assertArrayEquals( new int[]{-6, -6, 5, 5}, added.reservedChunks.get( 0 ) );
+
+        //the global region is left out even when listed, as a region manager lists it
+        regions.add( global );
+        Assertions.assertSame( added, build( added, regions, global ) );
+        regions.remove( global );
+
+        regions.remove( spawn );
+        WorldGuardIndex removed = build( added, regions, global );
+        Assertions.assertNotSame( added, removed );
+        Assertions.assertFalse( removed.mayCover( 0, 64, 0 ) );
+        Assertions.assertTrue( removed.reservedChunks.isEmpty() );
+    }
+
+    @Test
+    void TestRegionChanges() {
+        GlobalProtectedRegion global = new GlobalProtectedRegion( ProtectedRegion.GLOBAL_REGION );
+        ProtectedCuboidRegion spawn = spawn();
+        List<ProtectedRegion> regions = new ArrayList<>();
+        regions.add( spawn );
+        WorldGuardIndex index = build( null, regions, global );
+
+        //a flag changed in place
+        spawn.setFlag( flag, StateFlag.State.DENY );
+        WorldGuardIndex denied = build( index, regions, global );
+        Assertions.assertNotSame( index, denied );
+        Assertions.assertTrue( denied.mayCover( 0, 64, 0 ) );
+        Assertions.assertTrue( denied.reservedChunks.isEmpty() );
+
+        //redefined, which replaces the region under the same id
+        regions.set( 0, cuboid( "spawn", -200, minY, -200, 200, maxY, 200, StateFlag.State.DENY ) );
+        WorldGuardIndex redefined = build( denied, regions, global );
+        Assertions.assertNotSame( denied, redefined );
+        Assertions.assertTrue( redefined.mayCover( 150, 64, 0 ) );
+
+        //the global flag decides every point outside a region
+        global.setFlag( flag, StateFlag.State.ALLOW );
+        WorldGuardIndex allowed = build( redefined, regions, global );
+        Assertions.assertNotSame( redefined, allowed );
+        Assertions.assertEquals( Boolean.TRUE, allowed.outside );
+
+        //unless it depends on who's asking
+        global.setFlag( flag.getRegionGroupFlag(), RegionGroup.MEMBERS );
+        Assertions.assertNull( build( allowed, regions, global ).outside );
+    }
+
+    @Test
+    void TestReservedChunks() {
+        GlobalProtectedRegion global = new GlobalProtectedRegion( ProtectedRegion.GLOBAL_REGION );
+        List<ProtectedRegion> regions = new ArrayList<>();
+
+        //not full height, so some of the column may be allowed
+        regions.add( cuboid( "low", -100, 0, -100, 100, 100, 100, StateFlag.State.ALLOW ) );
+        Assertions.assertTrue( build( null, regions, global ).reservedChunks.isEmpty() );
+
+        //smaller than a chunk
+        regions.set( 0, cuboid( "small", 1, minY, 1, 14, maxY, 14, StateFlag.State.ALLOW ) );
+        Assertions.assertTrue( build( null, regions, global ).reservedChunks.isEmpty() );
+
+        //an overlapping region with no say doesn't stop it
+        ProtectedCuboidRegion spawn = spawn();
+        regions.set( 0, spawn );
+        regions.add( cuboid( "plot", 0, 60, 0, 10, 70, 10, null ) );
+        Assertions.assertEquals( 1, build( null, regions, global ).reservedChunks.size() );
+
+        //one that can override it does
+        regions.add( cuboid( "shop", 0, 60, 0, 10, 70, 10, StateFlag.State.DENY ) );
+        Assertions.assertTrue( build( null, regions, global ).reservedChunks.isEmpty() );
+        regions.remove( 2 );
+
+        //and so does a flag that depends on who's asking
+        spawn.setFlag( flag.getRegionGroupFlag(), RegionGroup.NON_MEMBERS );
+        Assertions.assertTrue( build( null, regions, global ).reservedChunks.isEmpty() );
+    }
+
+    @Test
+    void TestCheckerIndex() {
+        UUID world = UUID.randomUUID();
+        GlobalProtectedRegion global = new GlobalProtectedRegion( ProtectedRegion.GLOBAL_REGION );
+        List<ProtectedRegion> regions = new ArrayList<>();
+
+        //no index yet, so WorldGuard is asked
+        Assertions.assertNull( WorldGuardChecker.indexed( world, 0, 64, 0 ) );
+        WorldGuardChecker.updateIndex( world, regions, global, flag, minY, maxY );
+        Assertions.assertEquals( Boolean.FALSE, WorldGuardChecker.indexed( world, 0, 64, 0 ) );
+
+        //a new region is asked about on the next refresh, points outside it still aren't
+        ProtectedCuboidRegion spawn = spawn();
+        regions.add( spawn );
+        WorldGuardIndex added = WorldGuardChecker.updateIndex( world, regions, global, flag, minY, maxY );
+        Assertions.assertNull( WorldGuardChecker.indexed( world, 0, 64, 0 ) );
+        Assertions.assertEquals( Boolean.FALSE, WorldGuardChecker.indexed( world, 500, 64, 500 ) );
+        Assertions.assertSame( added, WorldGuardChecker.updateIndex( world, regions, global, flag, minY, maxY ) );
+
+        regions.remove( spawn );
+        WorldGuardChecker.updateIndex( world, regions, global, flag, minY, maxY );
+        Assertions.assertEquals( Boolean.FALSE, WorldGuardChecker.indexed( world, 0, 64, 0 ) );
+
+        WorldGuardChecker.clearIndexes();
+        Assertions.assertNull( WorldGuardChecker.indexed( world, 0, 64, 0 ) );
+    }
+}
@@ -0,0 +1,30 @@
+package io.github.dailystruggle.rtp.benchmarks;
+
+import commonTestImpl.TestRTPServerAccessor;
+import io.github.dailystruggle.rtp.common.RTP;
+
+/**
+ * one-time startup of the plugin core against the test stand-ins, shared by every benchmark in the fork
+ */
+public final class BenchmarkServer {
+    private static RTP rtp = null;
+
+    private BenchmarkServer() {
+
+    }
+
+    public static synchronized RTP start() {
+        if ( rtp != null ) return rtp;
+        RTP.serverAccessor = new TestRTPServerAccessor();
+        //initialize to create config files
+        rtp = new RTP();
+
+        int i = 0;
+        while ( rtp.startupTasks.size() > 0 ) {
+            rtp.startupTasks.execute( Long.MAX_VALUE );
+            i++;
+            if ( i > 50 ) throw new IllegalStateException( "startup tasks did not finish" );
+        }
+        return rtp;
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.dailystruggle.rtp.benchmarks;
+
+import io.github.dailystruggle.rtp.common.RTP;
+import io.github.dailystruggle.rtp.common.factory.Factory;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes.MemoryShape;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.shapes.Shape;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * cost of drawing and converting one location, per shape and per amount of learned bad locations
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class ShapeBenchmark {
+    @Param( {"CIRCLE", "SQUARE", "RECTANGLE", "CIRCLE_NORMAL", "SQUARE_NORMAL"} )
+    public String shapeName;
+
+    @Param( {"ACCUMULATE", "NEAREST", "REROLL"} )
+    public String mode;
+
+    /**
+     * number of single-location gaps to mark bad before measuring, to simulate a well-used region
+     */
+    @Param( {"0", "1000", "100000"} )
+    public int badLocations;
+
+    private MemoryShape<?> shape;
+    private long[] locations;
+    private int[][] coordinates;
+    private int idx = 0;
+
+    @Setup( Level.Trial )
+    public void setup() {
+        BenchmarkServer.start();
+        Factory<Shape<?>> factory = ( Factory<Shape<?>> ) RTP.factoryMap.get( RTP.factoryNames.shape );
+        shape = ( MemoryShape<?> ) factory.get( shapeName );
+        shape.setData( Collections.singletonMap( "mode", ( Object ) mode ) );
+
+        //every other location up to the requested count, so no intervals merge
+        long range = ( long ) shape.getRange();
+        long stride = Math.max( 2, range / Math.max( 1, badLocations ) );
+        for ( long i = 0; i < badLocations && i * stride < range; i++ ) {
+            shape.addBadLocation( i * stride );
+        }
+
+        locations = new long[1024];
+        coordinates = new int[1024][];
+        for ( int i = 0; i < locations.length; i++ ) {
+            locations[i] = ThreadLocalRandom.current().nextLong( Math.max( 1, range ) );
+            coordinates[i] = shape.locationToXZ( locations[i] );
+        }
+    }
+
+    @Benchmark
+    public long rand() {
+        return shape.rand();
+    }
+
+    @Benchmark
+    public int[] locationToXZ() {
+        idx = ( idx + 1 ) & 1023;
+        return shape.locationToXZ( locations[idx] );
+    }
+
+    @Benchmark
+    public double xzToLocation() {
+        idx = ( idx + 1 ) & 1023;
+        int[] xz = coordinates[idx];
+        return shape.xzToLocation( xz[0], xz[1] );
+    }
+
+    @Benchmark
+    public void select( Blackhole blackhole ) {
+        long location = shape.rand();
+        if ( location < 0 ) return;
+        blackhole.consume( shape.locationToXZ( location ) );
+    }
+}
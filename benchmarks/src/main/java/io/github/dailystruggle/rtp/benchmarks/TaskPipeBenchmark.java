@@ -0,0 +1,65 @@
+package io.github.dailystruggle.rtp.benchmarks;
+
+import io.github.dailystruggle.rtp.common.tasks.RTPTaskPipe;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * pipe throughput with several producers feeding one consumer, the way the listeners and commands feed the tick tasks
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Group )
+public class TaskPipeBenchmark {
+    /**
+     * time allotted to each execute call
+     */
+    @Param( {"50000", "1000000"} )
+    public long availableTime;
+
+    /**
+     * producers back off past this many queued tasks, so the queue can't outgrow the heap
+     */
+    private static final long maxPending = 1 << 16;
+
+    private final AtomicLong pending = new AtomicLong();
+    private RTPTaskPipe pipe;
+
+    @Setup( Level.Iteration )
+    public void setup() {
+        BenchmarkServer.start();
+        pipe = new RTPTaskPipe();
+        pending.set( 0 );
+    }
+
+    @TearDown( Level.Iteration )
+    public void tearDown() {
+        pipe.clear();
+    }
+
+    @Benchmark
+    @Group( "contended" )
+    @GroupThreads( 3 )
+    public void add() {
+        if ( pending.get() > maxPending ) return;
+        pending.incrementAndGet();
+        pipe.add( () -> {
+            Blackhole.consumeCPU( 64 );
+            pending.decrementAndGet();
+        } );
+    }
+
+    @Benchmark
+    @Group( "contended" )
+    @GroupThreads( 1 )
+    public long execute() {
+        pipe.execute( availableTime );
+        return pending.get();
+    }
+}
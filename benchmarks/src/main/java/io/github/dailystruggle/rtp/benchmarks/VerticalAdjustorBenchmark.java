@@ -0,0 +1,56 @@
+package io.github.dailystruggle.rtp.benchmarks;
+
+import commonTestImpl.substitutions.TestRTPChunk;
+import commonTestImpl.substitutions.TestRTPWorld;
+import io.github.dailystruggle.rtp.common.RTP;
+import io.github.dailystruggle.rtp.common.factory.Factory;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.verticalAdjustors.VerticalAdjustor;
+import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPLocation;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * cost of finding a standing location in one chunk, against the flat test chunk
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class VerticalAdjustorBenchmark {
+    @Param( {"linear", "jump"} )
+    public String vertName;
+
+    /**
+     * linear search direction, 0-3 or other for random. ignored by jump
+     */
+    @Param( {"0", "1", "2"} )
+    public String direction;
+
+    @Param( {"-64", "64", "200"} )
+    public int surfaceHeight;
+
+    private VerticalAdjustor<?> vert;
+    private TestRTPChunk chunk;
+
+    @Setup( Level.Trial )
+    public void setup() {
+        BenchmarkServer.start();
+        Factory<VerticalAdjustor<?>> factory = ( Factory<VerticalAdjustor<?>> ) RTP.factoryMap.get( RTP.factoryNames.vert );
+        vert = ( VerticalAdjustor<?> ) factory.get( vertName );
+        vert.setData( Collections.singletonMap( "direction", ( Object ) direction ) );
+        vert.setData( Collections.singletonMap( "minY", ( Object ) (-64) ) );
+        vert.setData( Collections.singletonMap( "maxY", ( Object ) 320 ) );
+        vert.setData( Collections.singletonMap( "step", ( Object ) 32 ) );
+        TestRTPChunk.surfaceHeight = surfaceHeight;
+        chunk = new TestRTPChunk( new TestRTPWorld(), 0, 0 );
+    }
+
+    @Benchmark
+    public RTPLocation adjust() {
+        return vert.adjust( chunk );
+    }
+}
@@ -105,12 +105,20 @@ public final class RTPBukkitPlugin extends JavaPlugin {
             rtp.databaseAccessor = new SQLiteDatabaseAccessor( 
                     "jdbc:sqlite:" + databaseDirectory.getAbsolutePath() + File.separator + "RTP.db" );
 
-            Bukkit.getScheduler().scheduleSyncDelayedTask( this, () -> RTP.getInstance().databaseAccessor.startup() );
+            Bukkit.getScheduler().scheduleSyncDelayedTask( this, () -> {
+                RTP.getInstance().databaseAccessor.startup();
+                //players already online, e.g. after a reload
+                for ( Player player : Bukkit.getOnlinePlayers() )
+                    RTP.getInstance().databaseAccessor.loadTeleportData( player.getUniqueId(), false );
+            } );
         }
 
         ChunkyBorderChecker.loadChunky();
         RTP.getInstance().startupTasks.execute( Long.MAX_VALUE );
 
+        RTP.getInstance().databaseAccessor.configure();
+        Configs.onReload( () -> RTP.getInstance().databaseAccessor.configure() );
+
         RTPCmdBukkit mainCommand = new RTPCmdBukkit( this );
         RTP.baseCommand = mainCommand;
 
@@ -203,7 +211,9 @@ public final class RTPBukkitPlugin extends JavaPlugin {
             referenceData.put( "time", System.currentTimeMillis() );
             referenceData.put( "UUID", new UUID( 0, 0 ).toString() );
             RTP.getInstance().databaseAccessor.setValue( "referenceData", referenceData );
+            RTP.getInstance().databaseAccessor.flushWrites();
             RTP.getInstance().databaseAccessor.processQueries( Long.MAX_VALUE );
+            RTP.getInstance().databaseAccessor.close();
         } catch ( NoClassDefFoundError ignored ) {
             //catch plugin replaced, no use for old logs
         }
@@ -225,6 +235,7 @@ public final class RTPBukkitPlugin extends JavaPlugin {
         Bukkit.getPluginManager().registerEvents( new OnPlayerDamage(), this );
         Bukkit.getPluginManager().registerEvents( new OnPlayerJoin(), this );
         Bukkit.getPluginManager().registerEvents( new OnPlayerMove(), this );
+        Bukkit.getPluginManager().registerEvents( new OnPlayerPreLogin(), this );
         Bukkit.getPluginManager().registerEvents( new OnPlayerQuit(), this );
         Bukkit.getPluginManager().registerEvents( new OnPlayerRespawn(), this );
         Bukkit.getPluginManager().registerEvents( new OnPlayerTeleport(), this );
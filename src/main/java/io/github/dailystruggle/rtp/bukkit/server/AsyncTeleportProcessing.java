@@ -2,7 +2,7 @@ package io.github.dailystruggle.rtp.bukkit.server;
 
 import io.github.dailystruggle.rtp.bukkit.RTPBukkitPlugin;
 import io.github.dailystruggle.rtp.common.RTP;
-import io.github.dailystruggle.rtp.common.tasks.TPS;
+import io.github.dailystruggle.rtp.common.tasks.TickBudget;
 import io.github.dailystruggle.rtp.common.tasks.tick.AsyncTaskProcessing;
 import org.bukkit.Bukkit;
 import org.bukkit.scheduler.BukkitRunnable;
@@ -11,7 +11,6 @@ import org.bukkit.scheduler.BukkitTask;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -23,13 +22,7 @@ public class AsyncTeleportProcessing extends BukkitRunnable {
     public AsyncTeleportProcessing() {
         if ( killed.get() ) return;
         if ( asyncTaskProcessing.get() != null ) return;
-        long avgTime = TPS.timeSinceTick( 20 ) / 20;
-        long currTime = TPS.timeSinceTick( 1 );
-
-        long availableTime = avgTime - currTime;
-        availableTime = TimeUnit.MILLISECONDS.toNanos( availableTime ) / 2;
-
-        asyncTaskProcessing.set( new AsyncTaskProcessing( availableTime) );
+        asyncTaskProcessing.set( new AsyncTaskProcessing( TickBudget.asyncBudget() ) );
     }
 
     public static void clear() {
@@ -56,7 +49,7 @@ public class AsyncTeleportProcessing extends BukkitRunnable {
         if ( asyncTasks.size() > 1 ) return;
 
         CompletableFuture<Boolean> future = new CompletableFuture<>();
-        RTP.futures.add( future );
+        RTP.track( future );
         BukkitTask task = Bukkit.getScheduler().runTaskAsynchronously( RTPBukkitPlugin.getInstance(), () -> {
             AsyncTaskProcessing asyncTaskProcessing2 = AsyncTeleportProcessing.asyncTaskProcessing.get();
             if ( asyncTaskProcessing2 == null ) {
@@ -16,12 +16,14 @@ import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shap
 import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes.enums.GenericMemoryShapeParams;
 import io.github.dailystruggle.rtp.common.selection.region.selectors.shapes.Shape;
 import io.github.dailystruggle.rtp.common.selection.worldborder.WorldBorder;
+import io.github.dailystruggle.rtp.common.serverSide.NameRegistry;
 import io.github.dailystruggle.rtp.common.serverSide.RTPServerAccessor;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPCommandSender;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPLocation;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPPlayer;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPWorld;
 import io.github.dailystruggle.rtp.common.tasks.TPS;
+import io.github.dailystruggle.rtp.common.tasks.TickBudget;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Material;
@@ -95,6 +97,9 @@ public class BukkitServerAccessor implements RTPServerAccessor {
             if ( !(o instanceof Shape<?>) ) throw new IllegalStateException();
             return ( Shape<?> ) o;
         };
+
+        //seed in enum order so material ids match Material ordinals, see BukkitRTPBlock.getMaterialId
+        NameRegistry.materials.seed( Arrays.stream( Material.values() ).map( Enum::name ).collect( Collectors.toList()) );
     }
 
     private static final Pattern versionPattern = Pattern.compile( "[-+^.a-zA-Z]*",Pattern.CASE_INSENSITIVE );
@@ -229,7 +234,7 @@ public class BukkitServerAccessor implements RTPServerAccessor {
 
     @Override
     public long overTime() {
-        return 0;
+        return TickBudget.overTime();
     }
 
     @Override
@@ -3,6 +3,7 @@ package io.github.dailystruggle.rtp.bukkit.server;
 import io.github.dailystruggle.rtp.bukkit.RTPBukkitPlugin;
 import io.github.dailystruggle.rtp.common.RTP;
 import io.github.dailystruggle.rtp.common.tasks.FillTask;
+import io.github.dailystruggle.rtp.common.tasks.TickBudget;
 import org.bukkit.Bukkit;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scheduler.BukkitTask;
@@ -31,9 +32,11 @@ public class FillTaskProcessing extends BukkitRunnable {
     public void run() {
         if ( killed.get() ) return;
         if ( asyncTask.get() != null ) return;
+        //skip turns while the server is struggling
+        if ( !TickBudget.backgroundTurn() ) return;
 
         CompletableFuture<Boolean> future = new CompletableFuture<>();
-        RTP.futures.add( future );
+        RTP.track( future );
         BukkitTask task = Bukkit.getScheduler().runTaskAsynchronously( RTPBukkitPlugin.getInstance(), () -> {
             for ( Map.Entry<String, FillTask> e : RTP.getInstance().fillTasks.entrySet() ) {
                 if ( e.getValue().isRunning() ) continue;
@@ -1,28 +1,17 @@
 package io.github.dailystruggle.rtp.bukkit.server.substitutions;
 
 import io.github.dailystruggle.rtp.common.RTP;
-import io.github.dailystruggle.rtp.common.configuration.ConfigParser;
-import io.github.dailystruggle.rtp.common.configuration.enums.SafetyKeys;
+import io.github.dailystruggle.rtp.common.serverSide.MaterialSets;
+import io.github.dailystruggle.rtp.common.serverSide.NameRegistry;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPBlock;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPLocation;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPWorld;
+import org.bukkit.Material;
 import org.bukkit.block.Block;
 
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Objects;
-import java.util.Set;
-import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.stream.Collectors;
 
 public final class BukkitRTPBlock implements RTPBlock {
-    private static Set<String> airBlocks = new ConcurrentSkipListSet<>();
-    private static long lastUpdate = 0;
-
-    static {
-        airBlocks.add( "AIR" );
-    }
-
     private final Block block;
 
     public BukkitRTPBlock( Block block ) {
@@ -36,20 +25,7 @@ public final class BukkitRTPBlock implements RTPBlock {
 
     @Override
     public boolean isAir() {
-        long t = System.currentTimeMillis();
-        long dt = t - lastUpdate;
-        if ( dt > 5000 || dt < 0 ) {
-            ConfigParser<SafetyKeys> safety = ( ConfigParser<SafetyKeys> ) RTP.configs.getParser( SafetyKeys.class );
-            Object o = safety.getConfigValue( SafetyKeys.airBlocks, new ArrayList<>() );
-            airBlocks = ( (o instanceof Collection ) ? ( Collection<?> ) o : new ArrayList<>() )
-                    .stream().map( o1 -> o1.toString().toUpperCase() ).collect( Collectors.toSet() );
-            if ( airBlocks.size() < 1 ) airBlocks.add( "AIR" );
-            lastUpdate = t;
-        }
-
-        String material = getMaterial();
-
-        return airBlocks.contains( material );
+        return MaterialSets.get().air.get( getMaterialId() );
     }
 
     @Override
@@ -82,6 +58,21 @@ public final class BukkitRTPBlock implements RTPBlock {
         return block.getType().name().toUpperCase();
     }
 
+    @Override
+    public int getMaterialId() {
+        return materialId( block.getType() );
+    }
+
+    /**
+     * @return id for type, as in NameRegistry.materials
+     */
+    public static int materialId( Material type ) {
+        int id = type.ordinal();
+        //registry is seeded in enum order, fall back to a lookup if something registered first
+        if ( type.name().equals( NameRegistry.materials.name( id ) ) ) return id;
+        return NameRegistry.materials.id( type.name() );
+    }
+
     public Block block() {
         return block;
     }
@@ -2,18 +2,29 @@ package io.github.dailystruggle.rtp.bukkit.server.substitutions;
 
 import io.github.dailystruggle.rtp.bukkit.RTPBukkitPlugin;
 import io.github.dailystruggle.rtp.common.RTP;
+import io.github.dailystruggle.rtp.common.serverSide.MaterialSets;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPBlock;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPChunk;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPLocation;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPWorld;
 import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
 
+import java.util.BitSet;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class BukkitRTPChunk implements RTPChunk {
     private final Chunk chunk;
 
+    //bulk reads come from one snapshot, taken on first use
+    private volatile ChunkSnapshot snapshot = null;
+    private volatile int[] heightmap = null;
+    private final Map<Integer, BitSet> palettes = new ConcurrentHashMap<>();
+
     public BukkitRTPChunk( Chunk chunk ) {
         this.chunk = chunk;
     }
@@ -64,6 +75,71 @@ public final class BukkitRTPChunk implements RTPChunk {
         else Bukkit.getScheduler().runTask( RTPBukkitPlugin.getInstance(), () -> chunk.unload( false) );
     }
 
+    @Override
+    public int[] heightmap() {
+        int[] res = heightmap;
+        if ( res != null ) return res;
+
+        ChunkSnapshot snapshot = snapshot();
+        BitSet air = MaterialSets.get().air;
+        int minY = getWorld().getMinHeight();
+        res = new int[256];
+        for ( int z = 0; z < 16; z++ ) {
+            for ( int x = 0; x < 16; x++ ) {
+                //older versions report the air block above the surface, walk down to the block itself
+                int y = snapshot.getHighestBlockYAt( x, z );
+                while ( y > minY && air.get( BukkitRTPBlock.materialId( snapshot.getBlockType( x, y, z ) ) ) ) y--;
+                res[x + z * 16] = y;
+            }
+        }
+        heightmap = res;
+        return res;
+    }
+
+    @Override
+    public BitSet palette( int section ) {
+        RTPWorld world = getWorld();
+        int minY = section * 16;
+        if ( minY < world.getMinHeight() || minY >= world.getMaxHeight() ) return null;
+        return palettes.computeIfAbsent( section, s -> {
+            ChunkSnapshot snapshot = snapshot();
+            BitSet res = new BitSet();
+            if ( snapshot.isSectionEmpty( s - ( world.getMinHeight() >> 4 ) ) ) {
+                res.set( BukkitRTPBlock.materialId( Material.AIR ) );
+                return res;
+            }
+            for ( int y = minY; y < minY + 16; y++ ) {
+                for ( int z = 0; z < 16; z++ ) {
+                    for ( int x = 0; x < 16; x++ ) {
+                        res.set( BukkitRTPBlock.materialId( snapshot.getBlockType( x, y, z ) ) );
+                    }
+                }
+            }
+            return res;
+        } );
+    }
+
+    @Override
+    public boolean hasPalette( int section ) {
+        if ( palettes.containsKey( section ) ) return true;
+        //an empty section is free to tell, but only if some other bulk read already paid for the snapshot
+        ChunkSnapshot snapshot = this.snapshot;
+        if ( snapshot == null ) return false;
+        RTPWorld world = getWorld();
+        int minY = section * 16;
+        if ( minY < world.getMinHeight() || minY >= world.getMaxHeight() ) return false;
+        return snapshot.isSectionEmpty( section - ( world.getMinHeight() >> 4 ) );
+    }
+
+    private ChunkSnapshot snapshot() {
+        ChunkSnapshot res = snapshot;
+        if ( res == null ) {
+            res = chunk.getChunkSnapshot( true, false, false );
+            snapshot = res;
+        }
+        return res;
+    }
+
     public Chunk chunk() {
         return chunk;
     }
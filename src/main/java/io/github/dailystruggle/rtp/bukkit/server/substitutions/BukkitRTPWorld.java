@@ -3,11 +3,16 @@ package io.github.dailystruggle.rtp.bukkit.server.substitutions;
 import io.github.dailystruggle.rtp.bukkit.RTPBukkitPlugin;
 import io.github.dailystruggle.rtp.common.RTP;
 import io.github.dailystruggle.rtp.common.configuration.ConfigParser;
+import io.github.dailystruggle.rtp.common.configuration.enums.PerformanceKeys;
 import io.github.dailystruggle.rtp.common.configuration.enums.SafetyKeys;
 import io.github.dailystruggle.rtp.common.selection.region.Region;
+import io.github.dailystruggle.rtp.common.serverSide.BiomeCache;
+import io.github.dailystruggle.rtp.common.serverSide.ChunkRefMap;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPChunk;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPLocation;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPWorld;
+import io.github.dailystruggle.rtp.common.tasks.FutureRegistry;
+import io.github.dailystruggle.rtp.common.tasks.TickBudget;
 import io.papermc.lib.PaperLib;
 import org.bukkit.*;
 import org.bukkit.block.Biome;
@@ -15,7 +20,10 @@ import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.block.data.Waterlogged;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.lang.reflect.Method;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
@@ -29,6 +37,19 @@ import java.util.stream.Collectors;
 public final class BukkitRTPWorld implements RTPWorld {
     private static final AtomicBoolean chunkBiomes = new AtomicBoolean( false );
     private static final AtomicBoolean biomeException = new AtomicBoolean( false );
+    /**
+     * set when another plugin replaces getBiome, whose answers might not be stable enough to remember
+     */
+    private static volatile boolean customBiomeGetter = false;
+    private static final AtomicBoolean biomeSampleException = new AtomicBoolean( false );
+    /**
+     * paper's biome from generator noise, without the chunk
+     */
+    private static final Method computedBiome = method( World.class, "getComputedBiome", int.class, int.class, int.class );
+    /**
+     * 1.17.1+, a world's custom biome provider
+     */
+    private static final Method biomeProvider = method( World.class, "getBiomeProvider" );
     private static Function<Location, String> getBiome = location -> {
         if( biomeException.get() ) return Biome.PLAINS.name();
 
@@ -98,11 +119,24 @@ public final class BukkitRTPWorld implements RTPWorld {
     private static @NotNull Function<RTPWorld, Set<String>> getBiomes
             = ( rtpWorld ) -> Arrays.stream( Biome.values() ).map( biome -> biome.name().toUpperCase() ).collect( Collectors.toSet() );
 
-    public final Map<List<Integer>, Map.Entry<Chunk, Long>> chunkMap = new ConcurrentHashMap<>();
-    public final Map<List<Integer>, List<CompletableFuture<Chunk>>> chunkLoads = new ConcurrentHashMap<>();
+    public final ChunkRefMap chunkMap = new ChunkRefMap();
+    /**
+     * async chunk loads in flight, by chunk key
+     */
+    public final FutureRegistry<Long, RTPChunk> chunkLoads = new FutureRegistry<>();
+    /**
+     * chunks whose force-loaded state needs to catch up with chunkMap, applied together on the main thread
+     */
+    private long[] forceLoadUpdates = new long[64];
+    private int forceLoadUpdateCount = 0;
     private final UUID id;
     private final String name;
     private final World world;
+    /**
+     * biome at each chunk's middle, loaded on first use. null if turned off
+     */
+    private volatile BiomeCache biomeCache = null;
+    private final AtomicBoolean biomeCacheLoaded = new AtomicBoolean( false );
 
     private static int i = 0;
     public BukkitRTPWorld( World world ) {
@@ -118,6 +152,7 @@ public final class BukkitRTPWorld implements RTPWorld {
 
     public static void setBiomeGetter( @NotNull Function<Location, String> getBiome ) {
         BukkitRTPWorld.getBiome = getBiome;
+        customBiomeGetter = true;
     }
 
     public static void setBiomesGetter( @NotNull Function<RTPWorld,Set<String>> getBiomes ) {
@@ -140,106 +175,144 @@ public final class BukkitRTPWorld implements RTPWorld {
 
     @Override
     public CompletableFuture<RTPChunk> getChunkAt( int cx, int cz ) {
-        List<Integer> xz = Arrays.asList( cx, cz );
-        CompletableFuture<RTPChunk> res = new CompletableFuture<>();
-        Map.Entry<Chunk, Long> chunkLongPair = chunkMap.get( xz );
-        if ( chunkLongPair != null && chunkLongPair.getKey() != null ) {
-            Chunk chunk = chunkLongPair.getKey();
-            if( chunk == null ) return null;
-            else res.complete( new BukkitRTPChunk( chunk) );
-            return res;
-        }
-
         if ( Bukkit.isPrimaryThread() || world.isChunkLoaded( cx, cz) ) {
             Chunk chunk = world.getChunkAt( cx, cz );
-            if( chunk == null ) res.complete( null );
-            else res.complete( new BukkitRTPChunk( chunk) );
-        } else if ( RTP.serverAccessor.getServerIntVersion() < 13 ) {
+            if( chunk == null ) return CompletableFuture.completedFuture( null );
+            return CompletableFuture.completedFuture( new BukkitRTPChunk( chunk) );
+        }
+        return chunkLoads.get( ChunkRefMap.key( cx, cz ), () -> loadChunkAt( cx, cz ) );
+    }
+
+    private CompletableFuture<RTPChunk> loadChunkAt( int cx, int cz ) {
+        CompletableFuture<RTPChunk> res = new CompletableFuture<>();
+        if ( RTP.serverAccessor.getServerIntVersion() < 13 ) {
             Bukkit.getScheduler().runTask( RTPBukkitPlugin.getInstance(), () -> {
                 Chunk chunkAt = world.getChunkAt( cx, cz );
                 if( chunkAt == null ) res.complete( null );
                 else res.complete( new BukkitRTPChunk( chunkAt) );
             } );
-        } else {
-            CompletableFuture<Chunk> chunkAtAsync;
-            try {
-                chunkAtAsync = PaperLib.getChunkAtAsyncUrgently( world, cx, cz, true );
-            } catch ( IllegalStateException exception ) {
-                chunkAtAsync = new CompletableFuture<>();
-                Bukkit.getScheduler().runTask( RTPBukkitPlugin.getInstance(),() -> {
-                    Chunk chunkAt = world.getChunkAt( cx, cz );
-                    if( chunkAt == null ) res.complete( null );
-                    else res.complete( new BukkitRTPChunk( chunkAt) );
-                } );
-            }
-            RTP.futures.add( chunkAtAsync );
-
-            List<CompletableFuture<Chunk>> list = chunkLoads.get( xz );
-            if ( list == null ) list = new ArrayList<>();
-            list.add( chunkAtAsync );
-            chunkLoads.put( xz, list );
-
-            chunkAtAsync.thenAccept( chunk -> {
-                if( chunk == null ) res.complete( null );
-                else res.complete( new BukkitRTPChunk( chunk) );
-                chunkLoads.remove( xz );
-                RTP.futures.forEach(completableFuture -> {
-                    if(completableFuture.isDone()) RTP.futures.remove(completableFuture);
-                });
-                if ( !RTPBukkitPlugin.getInstance().isEnabled() )
-                    throw new IllegalStateException( "completed chunk after plugin disabled" );
+            return res;
+        }
+
+        CompletableFuture<Chunk> chunkAtAsync;
+        try {
+            chunkAtAsync = PaperLib.getChunkAtAsyncUrgently( world, cx, cz, true );
+        } catch ( IllegalStateException exception ) {
+            Bukkit.getScheduler().runTask( RTPBukkitPlugin.getInstance(),() -> {
+                Chunk chunkAt = world.getChunkAt( cx, cz );
+                if( chunkAt == null ) res.complete( null );
+                else res.complete( new BukkitRTPChunk( chunkAt) );
             } );
+            return res;
         }
+
+        chunkAtAsync.whenComplete( ( chunk, throwable ) -> {
+            if ( throwable != null ) {
+                res.completeExceptionally( throwable );
+                return;
+            }
+            if( chunk == null ) res.complete( null );
+            else res.complete( new BukkitRTPChunk( chunk) );
+            if ( !RTPBukkitPlugin.getInstance().isEnabled() )
+                throw new IllegalStateException( "completed chunk after plugin disabled" );
+        } );
         return res;
     }
 
+    @Override
+    public void cancelChunkLoads() {
+        chunkLoads.cancelAll();
+    }
+
     @Override
     public void keepChunkAt( int cx, int cz ) {
-        List<Integer> xz = Arrays.asList( cx, cz );
-        if ( chunkMap.containsKey( xz) ) {
-            Map.Entry<Chunk, Long> chunkLongPair = chunkMap.get( xz );
-            if ( Bukkit.isPrimaryThread() ) setChunkForceLoaded( cx, cz, true );
-            else Bukkit.getScheduler().runTask( RTPBukkitPlugin.getInstance(), () -> setChunkForceLoaded( cx, cz, true) );
-            chunkLongPair.setValue( chunkLongPair.getValue() + 1 );
-            chunkMap.put( xz, chunkLongPair );
-        } else {
-            CompletableFuture<RTPChunk> chunkAt = getChunkAt( cx, cz );
-            chunkAt.thenAccept( rtpChunk -> {
-                if ( chunkMap.containsKey( xz) ) {
-                    Map.Entry<Chunk, Long> chunkLongPair = chunkMap.get( xz );
-                    if ( Bukkit.isPrimaryThread() ) setChunkForceLoaded( cx, cz, true );
-                    else Bukkit.getScheduler().runTask( RTPBukkitPlugin.getInstance(), () -> setChunkForceLoaded( cx, cz, true) );
-                    chunkLongPair.setValue( chunkLongPair.getValue() + 1 );
-                    chunkMap.put( xz, chunkLongPair );
-                } else if ( rtpChunk instanceof BukkitRTPChunk ) {
-                    BukkitRTPChunk bukkitRTPChunk = ( (BukkitRTPChunk ) rtpChunk );
-                    Map.Entry<Chunk, Long> pair = new AbstractMap.SimpleEntry<>( bukkitRTPChunk.chunk(), 1L );
-                    if ( Bukkit.isPrimaryThread() ) setChunkForceLoaded( cx, cz, true );
-                    else Bukkit.getScheduler().runTask( RTPBukkitPlugin.getInstance(), () -> setChunkForceLoaded( cx, cz, true) );
-                    chunkMap.put( xz, pair );
-                } else throw new IllegalStateException();
-            } );
-        }
+        keepChunks( new long[]{ChunkRefMap.key( cx, cz )} );
     }
 
     @Override
     public void forgetChunkAt( int cx, int cz ) {
-        List<Integer> xz = Arrays.asList( cx, cz );
-        Map.Entry<Chunk, Long> chunkLongPair = chunkMap.get( xz );
-        if ( chunkLongPair == null ) return;
+        forgetChunks( new long[]{ChunkRefMap.key( cx, cz )} );
+    }
+
+    @Override
+    public void keepChunks( long[] keys ) {
+        long[] loaded = new long[keys.length];
+        int n = 0;
+        for ( long key : keys ) {
+            if ( !chunkMap.keep( key ) ) continue;
+            int cx = ChunkRefMap.x( key );
+            int cz = ChunkRefMap.z( key );
+            //force loading an unloaded chunk would load it on the main thread, so wait for it
+            if ( world.isChunkLoaded( cx, cz ) ) loaded[n++] = key;
+            else getChunkAt( cx, cz ).thenAccept( rtpChunk -> updateForceLoaded( new long[]{key}, 1 ) );
+        }
+        updateForceLoaded( loaded, n );
+    }
 
-        long i = chunkLongPair.getValue() - 1;
-        if ( i <= 0 ) {
-            chunkMap.remove( xz );
-            if ( Bukkit.isPrimaryThread() ) setChunkForceLoaded( cx, cz, false );
-            else Bukkit.getScheduler().runTask( RTPBukkitPlugin.getInstance(), () -> setChunkForceLoaded( cx, cz, false) );
-        } else chunkLongPair.setValue( i );
+    @Override
+    public void forgetChunks( long[] keys ) {
+        long[] released = new long[keys.length];
+        int n = 0;
+        for ( long key : keys ) {
+            if ( chunkMap.forget( key ) ) released[n++] = key;
+        }
+        updateForceLoaded( released, n );
     }
 
     @Override
     public void forgetChunks() {
-        chunkMap.forEach( (integers, chunkLongPair ) -> setChunkForceLoaded( integers.get( 0 ), integers.get( 1 ), false) );
+        long[] keys = chunkMap.keys();
         chunkMap.clear();
+        updateForceLoaded( keys, keys.length );
+    }
+
+    /**
+     * queue chunks to have their force-loaded state match chunkMap, applied together on the main thread
+     */
+    private void updateForceLoaded( long[] keys, int n ) {
+        if ( n <= 0 || RTP.serverAccessor.getServerIntVersion() < 13 ) return;
+        boolean schedule;
+        synchronized ( chunkMap ) {
+            if ( forceLoadUpdateCount + n > forceLoadUpdates.length )
+                forceLoadUpdates = Arrays.copyOf( forceLoadUpdates, Math.max( forceLoadUpdates.length * 2, forceLoadUpdateCount + n ) );
+            System.arraycopy( keys, 0, forceLoadUpdates, forceLoadUpdateCount, n );
+            schedule = forceLoadUpdateCount == 0;
+            forceLoadUpdateCount += n;
+        }
+        if ( !schedule ) return;
+        if ( Bukkit.isPrimaryThread() ) applyForceLoaded();
+        else Bukkit.getScheduler().runTask( RTPBukkitPlugin.getInstance(), this::applyForceLoaded );
+    }
+
+    private void applyForceLoaded() {
+        long[] keys;
+        int n;
+        synchronized ( chunkMap ) {
+            keys = forceLoadUpdates;
+            n = forceLoadUpdateCount;
+            forceLoadUpdates = new long[64];
+            forceLoadUpdateCount = 0;
+        }
+
+        long start = System.nanoTime();
+        long budget = TickBudget.syncBudget();
+        for ( int i = 0; i < n; i++ ) {
+            //out of time this tick, pick up the rest next tick
+            if ( i > 0 && ( i & 15 ) == 0 && System.nanoTime() - start > budget ) {
+                boolean schedule;
+                synchronized ( chunkMap ) {
+                    long[] rest = new long[( n - i ) + forceLoadUpdateCount + 64];
+                    System.arraycopy( keys, i, rest, 0, n - i );
+                    System.arraycopy( forceLoadUpdates, 0, rest, n - i, forceLoadUpdateCount );
+                    schedule = forceLoadUpdateCount == 0;
+                    forceLoadUpdateCount += n - i;
+                    forceLoadUpdates = rest;
+                }
+                if ( schedule ) Bukkit.getScheduler().runTaskLater( RTPBukkitPlugin.getInstance(), this::applyForceLoaded, 1 );
+                return;
+            }
+            world.setChunkForceLoaded( ChunkRefMap.x( keys[i] ), ChunkRefMap.z( keys[i] ), chunkMap.contains( keys[i] ) );
+        }
     }
 
     @Override
@@ -247,6 +320,79 @@ public final class BukkitRTPWorld implements RTPWorld {
         return getBiome.apply( new Location( world, x, y, z) ).toUpperCase();
     }
 
+    @Override
+    public String getChunkBiome( int cx, int y, int cz ) {
+        int x = cx * 16 + 7;
+        int z = cz * 16 + 7;
+        if ( customBiomeGetter || biomeException.get() ) return getBiome( x, y, z );
+
+        BiomeCache cache = biomeCache();
+        if ( cache != null ) {
+            String biome = cache.getName( cx, y, cz );
+            if ( biome != null ) return biome;
+        }
+
+        String biome = null;
+        if ( !world.isChunkLoaded( cx, cz ) ) biome = sampleBiome( x, y, z );
+        if ( biome == null ) biome = getBiome( x, y, z );
+        if ( cache != null ) cache.put( cx, y, cz, biome );
+        return biome;
+    }
+
+    /**
+     * @return biome the generator would place here, without loading or generating the chunk, or null if the platform can't say
+     */
+    @Nullable
+    private String sampleBiome( int x, int y, int z ) {
+        //world.getBiome already disagreed with chunk data, expect noise to as well
+        if ( biomeSampleException.get() || chunkBiomes.get() ) return null;
+        try {
+            if ( computedBiome != null ) {
+                return ( (Biome ) computedBiome.invoke( world, x, y, z ) ).name().toUpperCase();
+            }
+            if ( biomeProvider != null ) {
+                Object provider = biomeProvider.invoke( world );
+                if ( provider == null ) return null;
+                Method providerBiome = provider.getClass().getMethod( "getBiome",
+                        Class.forName( "org.bukkit.generator.WorldInfo" ), int.class, int.class, int.class );
+                return ( (Biome ) providerBiome.invoke( provider, world, x, y, z ) ).name().toUpperCase();
+            }
+        } catch ( Throwable throwable ) {
+            RTP.log( Level.WARNING, "[RTP] unable to sample biomes without loading chunks, falling back to chunk loads" );
+            RTP.log( Level.WARNING, throwable.getMessage(), throwable );
+            biomeSampleException.set( true );
+        }
+        return null;
+    }
+
+    @Nullable
+    private BiomeCache biomeCache() {
+        if ( biomeCacheLoaded.compareAndSet( false, true ) ) {
+            ConfigParser<PerformanceKeys> perf = ( ConfigParser<PerformanceKeys> ) RTP.configs.getParser( PerformanceKeys.class );
+            int size = ( perf == null ) ? 65536 : perf.getNumber( PerformanceKeys.biomeCacheSize, 65536 ).intValue();
+            if ( size > 0 ) {
+                BiomeCache cache = new BiomeCache( size );
+                cache.load( biomeFile(), world.getSeed() );
+                biomeCache = cache;
+            }
+        }
+        return biomeCache;
+    }
+
+    private File biomeFile() {
+        File pluginDir = RTP.serverAccessor.getPluginDirectory();
+        return new File( pluginDir.getAbsolutePath() + File.separator + "database" + File.separator + "regionData", name + ".biomes" );
+    }
+
+    @Nullable
+    private static Method method( Class<?> c, String name, Class<?>... parameterTypes ) {
+        try {
+            return c.getMethod( name, parameterTypes );
+        } catch ( NoSuchMethodException | SecurityException e ) {
+            return null;
+        }
+    }
+
     @Override
     public void platform( RTPLocation rtpLocation ) {
         int version = RTP.serverAccessor.getServerIntVersion();
@@ -271,15 +417,12 @@ public final class BukkitRTPWorld implements RTPWorld {
         int cx = rtpLocation.x();
         int cz = rtpLocation.z();
 
-        cx = ( cx > 0 ) ? cx / 16 : cx / 16 - 1;
-        cz = ( cz > 0 ) ? cz / 16 : cz / 16 - 1;
+        cx = Math.floorDiv( cx, 16 );
+        cz = Math.floorDiv( cz, 16 );
 
-        List<Integer> xz = Arrays.asList( cx, cz );
-        Map.Entry<Chunk, Long> chunkLongPair = chunkMap.get( xz );
-        if ( chunkLongPair == null ) throw new IllegalStateException();
+        if ( !chunkMap.contains( ChunkRefMap.key( cx, cz ) ) ) throw new IllegalStateException();
 
-        Chunk chunk = chunkLongPair.getKey();
-        if ( chunk == null ) chunk = location.getChunk();
+        Chunk chunk = location.getChunk();
         if ( !chunk.isLoaded() ) chunk.load();
 
         Block airBlock = location.getBlock();
@@ -383,13 +526,15 @@ public final class BukkitRTPWorld implements RTPWorld {
 
     @Override
     public boolean isForceLoaded( int cx, int cz ) {
-        return chunkMap.containsKey( Arrays.asList( cx, cz) );
+        return chunkMap.contains( ChunkRefMap.key( cx, cz ) );
     }
 
     @Override
     public void save() {
 //        if ( Bukkit.isPrimaryThread() ) world.save();
 //        else Bukkit.getScheduler().runTask( RTPBukkitPlugin.getInstance(), world::save );
+        BiomeCache cache = biomeCache;
+        if ( cache != null ) cache.save( biomeFile(), world.getSeed() );
     }
 
     @Override
@@ -98,6 +98,9 @@ public class OnEventTeleports implements Listener {
                 return;
             }
         }
+        else if ( sender.cooldown() > 0 && RTP.getInstance().teleportDataPending( id ) ) {
+            return;
+        }
 
         //cancel previous teleport
         new RTPTeleportCancel( id ).run();
@@ -282,7 +285,8 @@ public class OnEventTeleports implements Listener {
         } else if ( hasJoin ) {
             TeleportData data = RTP.getInstance().latestTeleportData.get( player.getUniqueId() );
             long time = ( data == null ) ? 0 : data.time;
-            if ( !player.hasPermission( "rtp.nocooldown" ) && ( start - time ) < cooldownTime ) {
+            boolean pending = data == null && RTP.getInstance().teleportDataPending( player.getUniqueId() );
+            if ( !player.hasPermission( "rtp.nocooldown" ) && ( pending || ( start - time ) < cooldownTime ) ) {
                 RTP.serverAccessor.sendMessage( player.getUniqueId(), MessagesKeys.cooldownMessage );
                 return;
             }
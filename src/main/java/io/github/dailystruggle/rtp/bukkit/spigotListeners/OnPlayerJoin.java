@@ -13,6 +13,10 @@ public final class OnPlayerJoin implements Listener {
     @EventHandler( priority = EventPriority.HIGH )
     public void onPlayerJoin( PlayerJoinEvent event ) {
         Player player = event.getPlayer();
+        //usually already read during login
+        if ( RTP.getInstance().databaseAccessor != null )
+            RTP.getInstance().databaseAccessor.loadTeleportData( player.getUniqueId(), false );
+
         if ( player.hasPermission( "rtp.personalqueue") ) {
             Region region = RTP.selectionAPI.getRegion( new BukkitRTPPlayer( player) );
             if ( region == null ) return;
@@ -0,0 +1,18 @@
+package io.github.dailystruggle.rtp.bukkit.spigotListeners;
+
+import io.github.dailystruggle.rtp.common.RTP;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+
+public final class OnPlayerPreLogin implements Listener {
+    @EventHandler( priority = EventPriority.MONITOR )
+    public void onPlayerPreLogin( AsyncPlayerPreLoginEvent event ) {
+        if ( event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED ) return;
+        RTP rtp = RTP.getInstance();
+        if ( rtp == null || rtp.databaseAccessor == null ) return;
+        //already off the main thread, so read it now and have it ready on join
+        rtp.databaseAccessor.loadTeleportData( event.getUniqueId(), true );
+    }
+}
@@ -1,14 +1,32 @@
 package io.github.dailystruggle.rtp.bukkit.spigotListeners;
 
+import io.github.dailystruggle.rtp.bukkit.RTPBukkitPlugin;
+import io.github.dailystruggle.rtp.common.RTP;
+import io.github.dailystruggle.rtp.common.configuration.ConfigParser;
+import io.github.dailystruggle.rtp.common.configuration.enums.PerformanceKeys;
 import io.github.dailystruggle.rtp.common.tasks.teleport.RTPTeleportCancel;
+import org.bukkit.Bukkit;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerQuitEvent;
 
+import java.util.UUID;
+
 public final class OnPlayerQuit implements Listener {
     @EventHandler( priority = EventPriority.LOWEST )
     public void onPlayerQuit( PlayerQuitEvent event ) {
-        new RTPTeleportCancel( event.getPlayer().getUniqueId() ).run();
+        UUID id = event.getPlayer().getUniqueId();
+        new RTPTeleportCancel( id ).run();
+
+        long seconds = 300;
+        ConfigParser<PerformanceKeys> perf = ( ConfigParser<PerformanceKeys> ) RTP.configs.getParser( PerformanceKeys.class );
+        if ( perf != null ) seconds = perf.getNumber( PerformanceKeys.playerDataEviction, seconds ).longValue();
+
+        Bukkit.getScheduler().runTaskLater( RTPBukkitPlugin.getInstance(), () -> {
+            if ( Bukkit.getPlayer( id ) != null ) return;
+            RTP rtp = RTP.getInstance();
+            if ( rtp != null ) rtp.evictTeleportData( id );
+        }, Math.max( seconds, 0 ) * 20 );
     }
 }
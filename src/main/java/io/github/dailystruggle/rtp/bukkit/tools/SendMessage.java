@@ -152,7 +152,7 @@ public class SendMessage {
         } );
         placeholders.put( "queueLocation", uuid -> {
             if ( RTP.getInstance() == null ) return "0";
-            TeleportData teleportData = RTP.getInstance().latestTeleportData.get( uuid );
+            TeleportData teleportData = RTP.getInstance().getTeleportData( uuid );
             if ( teleportData == null ) return "0";
             return String.valueOf( teleportData.queueLocation );
         } );
@@ -167,13 +167,13 @@ public class SendMessage {
         } );
         placeholders.put( "attempts", uuid -> {
             if ( RTP.getInstance() == null ) return "A";
-            TeleportData teleportData = RTP.getInstance().latestTeleportData.get( uuid );
+            TeleportData teleportData = RTP.getInstance().getTeleportData( uuid );
             if ( teleportData == null ) return "B";
             return String.valueOf( teleportData.attempts );
         } );
         placeholders.put( "processingTime", uuid -> {
             if ( RTP.getInstance() == null ) return "0";
-            TeleportData teleportData = RTP.getInstance().latestTeleportData.get( uuid );
+            TeleportData teleportData = RTP.getInstance().getTeleportData( uuid );
 
             long time = ( teleportData != null )
                     ? teleportData.processingTime
@@ -203,7 +203,7 @@ public class SendMessage {
         } );
         placeholders.put( "spot", uuid -> {
             if ( RTP.getInstance() == null ) return "0";
-            TeleportData teleportData = RTP.getInstance().latestTeleportData.get( uuid );
+            TeleportData teleportData = RTP.getInstance().getTeleportData( uuid );
             if ( teleportData == null ) return "0";
 
             long spot = teleportData.queueLocation;
@@ -5,6 +5,7 @@ import io.github.dailystruggle.rtp.api.RTPAPI;
 import io.github.dailystruggle.rtp.common.configuration.ConfigParser;
 import io.github.dailystruggle.rtp.common.configuration.Configs;
 import io.github.dailystruggle.rtp.common.configuration.MultiConfigParser;
+import io.github.dailystruggle.rtp.common.configuration.enums.PerformanceKeys;
 import io.github.dailystruggle.rtp.common.configuration.enums.WorldKeys;
 import io.github.dailystruggle.rtp.common.database.DatabaseAccessor;
 import io.github.dailystruggle.rtp.common.factory.Factory;
@@ -16,14 +17,18 @@ import io.github.dailystruggle.rtp.common.selection.region.selectors.shapes.Shap
 import io.github.dailystruggle.rtp.common.selection.region.selectors.verticalAdjustors.VerticalAdjustor;
 import io.github.dailystruggle.rtp.common.selection.region.selectors.verticalAdjustors.jump.JumpAdjustor;
 import io.github.dailystruggle.rtp.common.selection.region.selectors.verticalAdjustors.linear.LinearAdjustor;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.verticalAdjustors.surface.SurfaceAdjustor;
 import io.github.dailystruggle.rtp.common.serverSide.RTPServerAccessor;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPEconomy;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPPlayer;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPWorld;
 import io.github.dailystruggle.rtp.common.tasks.FillTask;
+import io.github.dailystruggle.rtp.common.tasks.RegionWorkers;
 import io.github.dailystruggle.rtp.common.tasks.RTPTaskPipe;
+import io.github.dailystruggle.rtp.common.tasks.SelectionWorkers;
 import io.github.dailystruggle.rtp.common.tasks.teleport.RTPTeleportCancel;
 import io.github.dailystruggle.rtp.common.tools.ChunkyChecker;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.concurrent.*;
@@ -34,7 +39,10 @@ import java.util.logging.Level;
  * class to hold relevant API functions, outside of Bukkit functionality
  */
 public class RTP {
-    public static final ConcurrentLinkedQueue<CompletableFuture<?>> futures = new ConcurrentLinkedQueue<>();
+    /**
+     * outstanding futures to complete on shutdown. add through track(), so each one removes itself when done
+     */
+    public static final Set<CompletableFuture<?>> futures = ConcurrentHashMap.newKeySet();
 
     public static final SelectionAPI selectionAPI = new SelectionAPI();
 
@@ -69,6 +77,11 @@ public class RTP {
 
     public final ConcurrentHashMap<UUID, TeleportData> priorTeleportData = new ConcurrentHashMap<>();
     public final ConcurrentHashMap<UUID, TeleportData> latestTeleportData = new ConcurrentHashMap<>();
+    /**
+     * teleport data of players who left a while ago, least recently used dropped first.
+     * online players are loaded into latestTeleportData as they join
+     */
+    public final Map<UUID, TeleportData> offlineTeleportData = Collections.synchronizedMap( new LinkedHashMap<>( 16, 0.75f, true ) );
     public final ConcurrentSkipListSet<UUID> processingPlayers = new ConcurrentSkipListSet<>();
     public final RTPTaskPipe setupTeleportPipeline = new RTPTaskPipe();
     public final RTPTaskPipe getChunkPipeline = new RTPTaskPipe();
@@ -79,6 +92,8 @@ public class RTP {
     public final RTPTaskPipe miscAsyncTasks = new RTPTaskPipe();
     public final RTPTaskPipe startupTasks = new RTPTaskPipe();
     public final RTPTaskPipe cancelTasks = new RTPTaskPipe();
+    public final RegionWorkers regionWorkers = new RegionWorkers();
+    public final SelectionWorkers selectionWorkers = new SelectionWorkers();
     public final Map<String, FillTask> fillTasks = new ConcurrentHashMap<>();
     public final ConcurrentHashMap<UUID, Long> invulnerablePlayers = new ConcurrentHashMap<>();
     public DatabaseAccessor<?> databaseAccessor;
@@ -93,12 +108,25 @@ public class RTP {
         RTPAPI.addShape( new Square_Normal() );
         new LinearAdjustor( new ArrayList<>() ); //todo: make this work
         new JumpAdjustor( new ArrayList<>() );
+        new SurfaceAdjustor( new ArrayList<>() );
 
         configs = new Configs( serverAccessor.getPluginDirectory() );
 
         ChunkyChecker.loadChunky();
     }
 
+    /**
+     * hold onto a future until it completes, so stop() can complete it if it doesn't
+     *
+     * @return future
+     */
+    public static <T> CompletableFuture<T> track( CompletableFuture<T> future ) {
+        if ( future.isDone() ) return future;
+        futures.add( future );
+        future.whenComplete( ( t, throwable ) -> futures.remove( future ) );
+        return future;
+    }
+
     public static RTP getInstance() {
         return instance;
     }
@@ -133,6 +161,58 @@ public class RTP {
         return serverAccessor.getRTPWorld( worldName );
     }
 
+    /**
+     * @return latest teleport of an online or recently seen player, without going to the database
+     */
+    @Nullable
+    public TeleportData getTeleportData( UUID id ) {
+        TeleportData data = latestTeleportData.get( id );
+        if ( data == null ) data = offlineTeleportData.get( id );
+        return data;
+    }
+
+    /**
+     * @return true while a player's latest teleport is still being read, when their cooldown can't be judged yet
+     */
+    public boolean teleportDataPending( UUID id ) {
+        DatabaseAccessor<?> accessor = databaseAccessor;
+        return accessor != null && accessor.loadingTeleportData( id );
+    }
+
+    /**
+     * move a player who left out of latestTeleportData and into the bounded offline cache
+     */
+    public void evictTeleportData( UUID id ) {
+        DatabaseAccessor<?> accessor = databaseAccessor;
+        if ( accessor != null ) accessor.cancelTeleportDataLoad( id );
+
+        TeleportData data = latestTeleportData.get( id );
+        if ( data != null && !data.completed ) {
+            //left mid-teleport and never came back, drop it and keep the last one that finished
+            if ( data.nextTask != null ) data.nextTask.setCancelled( true );
+            RTPTeleportCancel.refund( id );
+            data = latestTeleportData.get( id );
+        }
+        processingPlayers.remove( id );
+        priorTeleportData.remove( id );
+        if ( data == null ) return;
+        if ( !latestTeleportData.remove( id, data ) ) return;
+        if ( !data.completed ) return;
+
+        long cap = 1000;
+        ConfigParser<PerformanceKeys> perf = ( ConfigParser<PerformanceKeys> ) configs.getParser( PerformanceKeys.class );
+        if ( perf != null ) cap = perf.getNumber( PerformanceKeys.offlinePlayerData, cap ).longValue();
+
+        synchronized ( offlineTeleportData ) {
+            offlineTeleportData.put( id, data );
+            Iterator<UUID> iterator = offlineTeleportData.keySet().iterator();
+            while ( offlineTeleportData.size() > cap && iterator.hasNext() ) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
     public static void stop() {
         List<CompletableFuture<?>> validFutures = new ArrayList<>( futures.size() );
         for( CompletableFuture<?> future : futures ) {
@@ -149,6 +229,10 @@ public class RTP {
             }
         }
 
+        if ( serverAccessor != null ) {
+            for ( RTPWorld world : serverAccessor.getRTPWorlds() ) world.cancelChunkLoads();
+        }
+
         if ( instance == null ) return;
 
         for ( Map.Entry<UUID, TeleportData> e : instance.latestTeleportData.entrySet() ) {
@@ -165,6 +249,8 @@ public class RTP {
         instance.setupTeleportPipeline.stop();
         instance.loadChunksPipeline.stop();
         instance.teleportPipeline.stop();
+        instance.regionWorkers.stop();
+        instance.selectionWorkers.stop();
 
         for ( Region r : selectionAPI.permRegionLookup.values() ) {
             r.shutDown();
@@ -176,6 +262,10 @@ public class RTP {
         }
         selectionAPI.tempRegions.clear();
 
+        for ( RTPWorld world : serverAccessor.getRTPWorlds() ) {
+            world.save();
+        }
+
         instance.latestTeleportData.forEach( (uuid, data ) -> {
             if ( !data.completed ) new RTPTeleportCancel( uuid ).run();
         } );
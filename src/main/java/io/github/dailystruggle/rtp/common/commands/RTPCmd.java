@@ -81,6 +81,11 @@ public interface RTPCmd extends BaseRTPCmd {
                 RTP.getInstance().processingPlayers.remove( senderId );
             }
         }
+        else if ( sender.cooldown() > 0 && RTP.getInstance().teleportDataPending( senderId ) ) {
+            //their last teleport is still being read, treat it as recent until it's known
+            RTP.serverAccessor.sendMessage( senderId, MessagesKeys.cooldownMessage );
+            return true;
+        }
         else { //resolve command bugs preemptively
             RTP.getInstance().processingPlayers.remove( senderId );
         }
@@ -227,6 +232,10 @@ public interface RTPCmd extends BaseRTPCmd {
 
                 RTP.getInstance().priorTeleportData.put( player.uuid(), data );
             }
+            else if ( toggleTargetPerms && player.cooldown() > 0 && RTP.getInstance().teleportDataPending( player.uuid() ) ) {
+                RTP.serverAccessor.sendMessage( senderId, player.uuid(), MessagesKeys.cooldownMessage );
+                continue;
+            }
 
             data = new TeleportData();
             data.sender = sender;
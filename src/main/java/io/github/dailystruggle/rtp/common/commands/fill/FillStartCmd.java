@@ -62,9 +62,7 @@ public class FillStartCmd extends FillSubCmd {
                 continue;
             }
 
-            shape.badLocations.clear();
-            shape.biomeLocations.clear();
-            shape.badLocationSum.set( 0 );
+            shape.clearLocations();
 
             RTP.getInstance().fillTasks.put( region.name, new FillTask( region, 0L) );
             if ( parser == null ) continue;
@@ -10,6 +10,7 @@ import io.github.dailystruggle.rtp.common.configuration.MultiConfigParser;
 import io.github.dailystruggle.rtp.common.configuration.enums.MessagesKeys;
 import io.github.dailystruggle.rtp.common.configuration.enums.RegionKeys;
 import io.github.dailystruggle.rtp.common.configuration.enums.WorldKeys;
+import io.github.dailystruggle.rtp.common.database.DatabaseAccessor;
 import io.github.dailystruggle.rtp.common.selection.region.Region;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPWorld;
 import io.github.dailystruggle.rtp.common.tools.ParseString;
@@ -17,6 +18,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -41,7 +43,7 @@ public class InfoCmd extends BaseRTPCmdImpl {
         regionDataLookup.put( "region", region -> region.name );
         regionDataLookup.put( "world", region -> region.getWorld().name() );
         regionDataLookup.put( "shape", region -> region.getShape().name );
-        regionDataLookup.put( "cacheCap", region -> region.getNumber( RegionKeys.cacheCap, 0 ).toString() );
+        regionDataLookup.put( "cacheCap", region -> String.valueOf( region.cacheCap() ) );
         regionDataLookup.put( "cached", region -> String.valueOf( region.getPublicQueueLength()) );
         regionDataLookup.put( "worldBorderOverride", region -> {
             boolean wbo = false;
@@ -96,6 +98,7 @@ public class InfoCmd extends BaseRTPCmdImpl {
         if ( parameterValues.isEmpty() ) {
             String title = lang.getConfigValue( MessagesKeys.infoTitle, "" ).toString();
             String chunks = lang.getConfigValue( MessagesKeys.infoChunks, "" ).toString();
+            String database = lang.getConfigValue( MessagesKeys.infoDatabase, "" ).toString();
             String worldHeader = lang.getConfigValue( MessagesKeys.infoWorldHeader, "" ).toString();
             String worlds = lang.getConfigValue( MessagesKeys.infoWorld, "" ).toString();
             String regionHeader = lang.getConfigValue( MessagesKeys.infoRegionHeader, "" ).toString();
@@ -103,6 +106,13 @@ public class InfoCmd extends BaseRTPCmdImpl {
 
             RTP.serverAccessor.sendMessage( callerId, title );
             RTP.serverAccessor.sendMessage( callerId, chunks );
+            if ( !database.isEmpty() && RTP.getInstance().databaseAccessor != null ) {
+                DatabaseAccessor accessor = RTP.getInstance().databaseAccessor;
+                database = database.replaceAll( "\\[pendingWrites]", String.valueOf( accessor.pendingWrites() ) )
+                        .replaceAll( "\\[writeLag]", String.valueOf( TimeUnit.NANOSECONDS.toMillis( accessor.writeLag() ) ) )
+                        .replaceAll( "\\[coalescedWrites]", String.valueOf( accessor.coalescedWrites.get() ) );
+                RTP.serverAccessor.sendMessage( callerId, database );
+            }
             RTP.serverAccessor.sendMessage( callerId, worldHeader );
             for ( RTPWorld world : RTP.serverAccessor.getRTPWorlds() ) {
                 String msg = worlds.replaceAll( "\\[world]", world.name() );
@@ -92,6 +92,8 @@ public class ReloadCmd extends BaseRTPCmdImpl {
             RTP.getInstance().teleportPipeline.start();
             RTP.getInstance().startupTasks.start();
             RTP.getInstance().getChunkPipeline.start();
+            RTP.getInstance().regionWorkers.start();
+            RTP.getInstance().selectionWorkers.start();
         }
 
         return true;
@@ -19,6 +19,12 @@ import java.util.logging.Level;
 import java.util.stream.Collectors;
 
 public class ConfigParser<E extends Enum<E>> extends FactoryValue<E> implements ConfigLoader {
+    /**
+     * by file name, the previous default of each key whose shipped default changed in the current version.
+     * on a version update, a value still at its previous default takes the new one
+     */
+    public static final Map<String, Map<String, Object>> changedDefaults = new ConcurrentHashMap<>();
+
     public final YamlFileDatabase fileDatabase;
     public String version;
     public File pluginDirectory;
@@ -175,9 +181,24 @@ public class ConfigParser<E extends Enum<E>> extends FactoryValue<E> implements
         }
 
         if ( update ) {
+            Map<String, Object> oldValues = yamlFile.getMapValues( false );
             update();
             f = new File( pluginDirectory, this.name );
 //            loadResource( f );
+
+            //carry the server's settings over to the new file
+            fileDatabase.refresh( name );
+            YamlFile updated = cachedLookup.get().get( name );
+            if ( updated != null ) {
+                Set<String> keys = updated.getKeys( false );
+                Map<String, Object> carried = carryOver( oldValues, keys, changedDefaults.getOrDefault( name, Collections.emptyMap() ) );
+                for ( Map.Entry<String, Object> entry : carried.entrySet() ) {
+                    updated.set( entry.getKey(), entry.getValue() );
+                    fileDatabase.markDirty( name, entry.getKey() );
+                }
+                fileDatabase.save( name );
+                yamlFile = updated;
+            }
         }
 
         data.clear();
@@ -189,6 +210,33 @@ public class ConfigParser<E extends Enum<E>> extends FactoryValue<E> implements
         }
     }
 
+    /**
+     * @param oldValues - top level values from the file before an update
+     * @param keys - top level keys in the new file
+     * @param changedDefaults - previous default by key, for keys whose default changed
+     * @return old values to set on the new file. version, keys the new file dropped,
+     *         and values left at a default that has since changed are not carried over
+     */
+    public static Map<String, Object> carryOver( Map<String, Object> oldValues, Set<String> keys, Map<String, Object> changedDefaults ) {
+        Map<String, Object> res = new LinkedHashMap<>();
+        for ( Map.Entry<String, Object> entry : oldValues.entrySet() ) {
+            String key = entry.getKey();
+            if ( key.equals( "version" ) || !keys.contains( key ) ) continue;
+            Object value = entry.getValue();
+            if ( value instanceof ConfigurationSection ) value = ( (ConfigurationSection ) value ).getMapValues( true );
+            if ( changedDefaults.containsKey( key ) && sameValue( value, changedDefaults.get( key ) ) ) continue;
+            res.put( key, value );
+        }
+        return res;
+    }
+
+    private static boolean sameValue( Object a, Object b ) {
+        if ( a == null || b == null ) return a == b;
+        if ( a instanceof Number && b instanceof Number )
+            return ( (Number ) a ).doubleValue() == ( (Number ) b ).doubleValue();
+        return a.toString().equalsIgnoreCase( b.toString() );
+    }
+
     public void renameFiles() {
         //load up a list of files to rename
         ArrayList<File> toRename = new ArrayList<>();
@@ -292,6 +340,7 @@ public class ConfigParser<E extends Enum<E>> extends FactoryValue<E> implements
         super.set( key, value );
 
         YamlFile yamlFile = cachedLookup.get().get( name );
+        fileDatabase.markDirty( name, key.name() );
         Object o = yamlFile.get( key.name() );
         if ( o instanceof ConfigurationSection ) {
             ConfigurationSection configurationSection = ( ConfigurationSection ) o;
@@ -334,8 +383,7 @@ public class ConfigParser<E extends Enum<E>> extends FactoryValue<E> implements
     }
 
     public void save() throws IOException {
-
-        cachedLookup.get().get( name ).save();
+        fileDatabase.save( name );
     }
 
     @Override
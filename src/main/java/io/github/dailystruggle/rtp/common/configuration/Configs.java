@@ -5,6 +5,8 @@ import io.github.dailystruggle.rtp.common.configuration.enums.*;
 import io.github.dailystruggle.rtp.common.database.options.YamlFileDatabase;
 import io.github.dailystruggle.rtp.common.factory.FactoryValue;
 import io.github.dailystruggle.rtp.common.selection.region.Region;
+import io.github.dailystruggle.rtp.common.serverSide.MaterialSets;
+import io.github.dailystruggle.rtp.common.serverSide.NameRegistry;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPWorld;
 import io.github.dailystruggle.rtp.common.tasks.RTPRunnable;
 import org.jetbrains.annotations.Nullable;
@@ -112,6 +114,7 @@ public class Configs {
     }
 
     public boolean reload() {
+        this.fileDatabase.flushWrites();
         this.fileDatabase.processQueries( Long.MAX_VALUE );
         this.fileDatabase.connect();
         configParserMap.clear();
@@ -134,11 +137,22 @@ public class Configs {
         ConfigParser<EconomyKeys> economy = new ConfigParser<>( EconomyKeys.class, "economy.yml", "1.0", pluginDirectory, fileDatabase );
         putParser( economy );
 
-        ConfigParser<PerformanceKeys> performance = new ConfigParser<>( PerformanceKeys.class, "performance.yml", "1.0", pluginDirectory, fileDatabase );
+        //1.1 cut the default tick allotments, so servers still on the old defaults move to the new ones
+        Map<String, Object> performanceDefaults = new HashMap<>();
+        performanceDefaults.put( PerformanceKeys.syncAllottedTime.name(), 50 );
+        performanceDefaults.put( PerformanceKeys.asyncAllottedTime.name(), 50 );
+        ConfigParser.changedDefaults.put( "performance.yml", performanceDefaults );
+        ConfigParser<PerformanceKeys> performance = new ConfigParser<>( PerformanceKeys.class, "performance.yml", "1.1", pluginDirectory, fileDatabase );
         putParser( performance );
 
         ConfigParser<SafetyKeys> safety = new ConfigParser<>( SafetyKeys.class, "safety", "1.0", pluginDirectory, fileDatabase );
         putParser( safety );
+        MaterialSets.reload();
+
+        //register every biome up front, so selection only ever reads the registry
+        for ( RTPWorld world : RTP.serverAccessor.getRTPWorlds() ) {
+            NameRegistry.biomes.seed( RTP.serverAccessor.getBiomes( world ) );
+        }
 
         MultiConfigParser<RegionKeys> regions = new MultiConfigParser<>( RegionKeys.class, "regions", "1.0", pluginDirectory );
         putParser( regions );
@@ -36,6 +36,7 @@ public enum MessagesKeys {
     fillStatus,
     infoTitle,
     infoChunks,
+    infoDatabase,
     infoWorldHeader,
     infoWorld,
     infoRegionHeader,
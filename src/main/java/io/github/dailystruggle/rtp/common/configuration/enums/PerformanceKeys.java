@@ -2,8 +2,20 @@ package io.github.dailystruggle.rtp.common.configuration.enums;
 
 public enum PerformanceKeys {
     maxAttempts,
+    maxConcurrentSelections,
     period,
+    regionWorkers,
+    selectionWorkers,
+    fillConcurrency,
+    fillOrder,
+    databaseWriteDelay,
+    databaseWriteBatch,
+    playerDataEviction,
+    offlinePlayerData,
     minTPS,
+    targetMSPT,
+    syncAllottedTime,
+    asyncAllottedTime,
     viewDistanceSelect,
     viewDistanceTeleport,
     postTeleportQueueing,
@@ -13,6 +25,7 @@ public enum PerformanceKeys {
     effectParsing,
     biomeRecall,
     biomeRecallForced,
+    biomeCacheSize,
     timeit,
     version
 }
@@ -7,6 +7,8 @@ public enum RegionKeys {
     vert,
     requirePermission,
     cacheCap,
+    adaptiveCache,
+    maxCacheCap,
     price,
     override,
     version
@@ -2,18 +2,24 @@ package io.github.dailystruggle.rtp.common.database;
 
 import io.github.dailystruggle.commandsapi.common.CommandsAPI;
 import io.github.dailystruggle.rtp.common.RTP;
+import io.github.dailystruggle.rtp.common.configuration.ConfigParser;
+import io.github.dailystruggle.rtp.common.configuration.enums.PerformanceKeys;
 import io.github.dailystruggle.rtp.common.playerData.TeleportData;
 import io.github.dailystruggle.rtp.common.selection.region.Region;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPCommandSender;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPLocation;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 
 /**
  *
@@ -28,6 +34,39 @@ public abstract class DatabaseAccessor<D> {
     protected long avgTimeWrite = 0;
     protected ConcurrentLinkedQueue<Map.Entry<String, Map.Entry<Map.Entry<TableObj, TableObj>, CompletableFuture<Optional<Map<String, Object>>>>>> readQueue = new ConcurrentLinkedQueue<>();
     protected ConcurrentLinkedQueue<Map.Entry<String, Map<TableObj, TableObj>>> writeQueue = new ConcurrentLinkedQueue<>();
+    /**
+     * player reads in flight, so a login and a join share one query
+     */
+    private final Map<UUID, CompletableFuture<Optional<TeleportData>>> teleportDataLoads = new ConcurrentHashMap<>();
+
+    /**
+     * write-behind buffer, one record per table and row key ( see rowKey ).
+     * updating a row again before it's flushed merges into its record, later values winning,
+     * so a player spamming /rtp costs one write per flush instead of one per teleport
+     */
+    private final Map<Map.Entry<String, TableObj>, Map<TableObj, TableObj>> dirty = new LinkedHashMap<>();
+    /**
+     * buffered writes to rows without a key, each its own row. guarded by dirty
+     */
+    private final List<Map.Entry<String, Map<TableObj, TableObj>>> unkeyed = new ArrayList<>();
+    private long dirtySince = 0;
+    private boolean flushRequested = false;
+    /**
+     * nanoseconds a write can wait for more updates to the same row. 0 writes on the next processQueries
+     */
+    public volatile long writeDelay = 0;
+    /**
+     * buffered records that trigger a flush before writeDelay is up
+     */
+    public volatile int writeBatch = 256;
+    /**
+     * updates merged into a record that was already waiting
+     */
+    public final AtomicLong coalescedWrites = new AtomicLong();
+    /**
+     * nanoseconds the last flushed batch waited, from its oldest update
+     */
+    public volatile long lastFlushLag = 0;
 
     public static Map<String, Object> toColumns( Object obj ) {
         Map<String, Object> res = new HashMap<>();
@@ -144,7 +183,7 @@ public abstract class DatabaseAccessor<D> {
         table.put( tableKey, tableValue );
         Map<TableObj, TableObj> write = new HashMap<>();
         write.put( tableKey, tableValue );
-        writeQueue.add( new AbstractMap.SimpleEntry<>( tableName, write) );
+        stage( tableName, write );
     }
 
     public void setValue( String tableName, Map<?, ?> keyValuePairs ) {
@@ -170,10 +209,195 @@ public abstract class DatabaseAccessor<D> {
             table.put( tableKey, tableValue );
             pairs.put( tableKey, tableValue );
         }
-        writeQueue.add( new AbstractMap.SimpleEntry<>( tableName, pairs) );
+        stage( tableName, pairs );
+    }
+
+    /**
+     * buffer a write, merging it into any pending write to the same row
+     */
+    protected void stage( String tableName, Map<TableObj, TableObj> pairs ) {
+        if ( pairs.isEmpty() ) return;
+        TableObj rowKey = rowKey( tableName, pairs );
+        synchronized ( dirty ) {
+            if ( dirty.isEmpty() && unkeyed.isEmpty() ) dirtySince = System.nanoTime();
+            if ( rowKey == null ) {
+                unkeyed.add( new AbstractMap.SimpleEntry<>( tableName, new HashMap<>( pairs ) ) );
+                return;
+            }
+            Map.Entry<String, TableObj> key = new AbstractMap.SimpleImmutableEntry<>( tableName, rowKey );
+            Map<TableObj, TableObj> record = dirty.get( key );
+            if ( record == null ) {
+                dirty.put( key, new HashMap<>( pairs ) );
+            } else {
+                record.putAll( pairs );
+                coalescedWrites.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return what identifies the row this write goes to, for merging it with other pending writes to that row.
+     * null if it has no key, so it's written as its own row
+     */
+    @Nullable
+    protected TableObj rowKey( String tableName, Map<TableObj, TableObj> pairs ) {
+        return pairs.get( new TableObj( "UUID" ) );
+    }
+
+    /**
+     * move buffered records to writeQueue once they're due - writeBatch of them, writeDelay since the oldest, or flushWrites
+     */
+    protected void drainDirty() {
+        synchronized ( dirty ) {
+            if ( dirty.isEmpty() && unkeyed.isEmpty() ) return;
+            long lag = System.nanoTime() - dirtySince;
+            if ( !flushRequested && dirty.size() + unkeyed.size() < writeBatch && lag < writeDelay ) return;
+            for ( Map.Entry<Map.Entry<String, TableObj>, Map<TableObj, TableObj>> e : dirty.entrySet() ) {
+                writeQueue.add( new AbstractMap.SimpleEntry<>( e.getKey().getKey(), e.getValue() ) );
+            }
+            writeQueue.addAll( unkeyed );
+            dirty.clear();
+            unkeyed.clear();
+            flushRequested = false;
+            lastFlushLag = lag;
+        }
+    }
+
+    /**
+     * write everything buffered on the next processQueries, e.g. before shutdown
+     */
+    public void flushWrites() {
+        synchronized ( dirty ) {
+            flushRequested = true;
+        }
+    }
+
+    /**
+     * @return rows waiting to be written, buffered or queued
+     */
+    public int pendingWrites() {
+        synchronized ( dirty ) {
+            return dirty.size() + unkeyed.size() + writeQueue.size();
+        }
+    }
+
+    /**
+     * @return nanoseconds the oldest buffered update has been waiting, 0 if none
+     */
+    public long writeLag() {
+        synchronized ( dirty ) {
+            if ( dirty.isEmpty() && unkeyed.isEmpty() ) return 0;
+            return System.nanoTime() - dirtySince;
+        }
+    }
+
+    /**
+     * read writeDelay and writeBatch from performance.yml
+     */
+    public void configure() {
+        if ( RTP.configs == null ) return;
+        ConfigParser<PerformanceKeys> perf = ( ConfigParser<PerformanceKeys> ) RTP.configs.getParser( PerformanceKeys.class );
+        if ( perf == null ) return;
+        writeDelay = TimeUnit.MILLISECONDS.toNanos( Math.max( perf.getNumber( PerformanceKeys.databaseWriteDelay, 5000L ).longValue(), 0 ) );
+        writeBatch = Math.max( perf.getNumber( PerformanceKeys.databaseWriteBatch, 256L ).intValue(), 1 );
+    }
+
+    /**
+     * @return true if this accessor reads players as they join, false if startup loads them all
+     */
+    protected boolean lazyTeleportData() {
+        return false;
+    }
+
+    /**
+     * @param row - one player's teleportData row, as read() returns it
+     * @return the teleport it describes, or null if it can't be used
+     */
+    @Nullable
+    protected TeleportData toTeleportData( Map<String, Object> row ) {
+        return null;
+    }
+
+    /**
+     * put a player's latest teleport in latestTeleportData, from the offline cache or the database
+     *
+     * @param now - read on this thread instead of waiting for processQueries, for async threads like login
+     * @return the player's data, or empty if they've never teleported. completed exceptionally if an immediate read failed
+     */
+    public CompletableFuture<Optional<TeleportData>> loadTeleportData( UUID id, boolean now ) {
+        RTP rtp = RTP.getInstance();
+        TeleportData data = rtp.latestTeleportData.get( id );
+        if ( data == null ) {
+            data = rtp.offlineTeleportData.remove( id );
+            if ( data != null ) {
+                TeleportData existing = rtp.latestTeleportData.putIfAbsent( id, data );
+                if ( existing != null ) data = existing;
+            }
+        }
+        if ( data != null || !lazyTeleportData() ) return CompletableFuture.completedFuture( Optional.ofNullable( data ) );
+
+        CompletableFuture<Optional<TeleportData>> created = new CompletableFuture<>();
+        CompletableFuture<Optional<TeleportData>> res = teleportDataLoads.putIfAbsent( id, created );
+        if ( res == null ) {
+            res = created;
+            if ( !now ) {
+                CompletableFuture<Optional<Map<String, Object>>> read = new CompletableFuture<>();
+                Map.Entry<TableObj, TableObj> lookup = new AbstractMap.SimpleEntry<>( new TableObj( "UUID" ), new TableObj( id.toString() ) );
+                read.thenAccept( row -> loaded( id, row, created ) );
+                readQueue.add( new AbstractMap.SimpleEntry<>( "teleportData", new AbstractMap.SimpleEntry<>( lookup, read ) ) );
+                return res;
+            }
+        }
+
+        if ( now && !res.isDone() ) {
+            Optional<Map<String, Object>> row = Optional.empty();
+            D database = connect();
+            if ( database != null ) {
+                try {
+                    row = read( database, "teleportData", new AbstractMap.SimpleEntry<>( "UUID", id.toString() ) );
+                } catch ( Exception e ) {
+                    //fail it so nothing waits on it forever, nothing's cached so the next load reads again
+                    RTP.log( Level.WARNING, e.getMessage(), e );
+                    teleportDataLoads.remove( id, res );
+                    res.completeExceptionally( e );
+                    return res;
+                } finally {
+                    disconnect( database );
+                }
+            }
+            loaded( id, row, res );
+        }
+        return res;
+    }
+
+    private void loaded( UUID id, Optional<Map<String, Object>> row, CompletableFuture<Optional<TeleportData>> future ) {
+        if ( future.isDone() ) return;
+        TeleportData data = row.map( this::toTeleportData ).orElse( null );
+        if ( data != null ) {
+            TeleportData existing = RTP.getInstance().latestTeleportData.putIfAbsent( id, data );
+            if ( existing != null ) data = existing;
+        }
+        teleportDataLoads.remove( id, future );
+        future.complete( Optional.ofNullable( data ) );
+    }
+
+    /**
+     * @return true if a player's teleport data was asked for and hasn't been read yet
+     */
+    public boolean loadingTeleportData( UUID id ) {
+        return teleportDataLoads.containsKey( id );
+    }
+
+    /**
+     * drop a pending read for a player who left, so it can't land in latestTeleportData after they're evicted
+     */
+    public void cancelTeleportDataLoad( UUID id ) {
+        CompletableFuture<Optional<TeleportData>> future = teleportDataLoads.remove( id );
+        if ( future != null ) future.cancel( false );
     }
 
     public void processQueries( long availableTime ) {
+        drainDirty();
         if ( readQueue.isEmpty() && writeQueue.isEmpty() ) return;
         D database = connect();
         if ( database == null ) return;
@@ -236,6 +460,13 @@ public abstract class DatabaseAccessor<D> {
 
     public abstract void disconnect( D d );
 
+    /**
+     * release anything held open between calls, on shutdown
+     */
+    public void close() {
+
+    }
+
     protected enum DataType {
         INT,  //INTEGER
         REAL, //FLOATING POINT
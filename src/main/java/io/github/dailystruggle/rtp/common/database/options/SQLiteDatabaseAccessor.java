@@ -11,11 +11,45 @@ import java.io.IOException;
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.logging.Level;
 
+/**
+ * one long-lived connection in WAL mode with synchronous=NORMAL, so a commit is an append to the log
+ * instead of an fsync of the database file.
+ * inserts are prepared once per table and column set, and each processQueries call
+ * writes everything it takes off the queue in a single transaction.
+ * writes from a transaction that failed are retried ahead of the queue, one per transaction, and dropped after MAX_ATTEMPTS.
+ * <br>
+ * connections from connect() are shared, disconnect leaves them open. close() ends the shared connection.
+ */
 public class SQLiteDatabaseAccessor extends DatabaseAccessor<Connection> {
+    /**
+     * failed attempts at a write on its own before it's logged and dropped
+     */
+    public static final int MAX_ATTEMPTS = 5;
+
     private final String url;
 
+    private Connection connection = null;
+    /**
+     * insert statements for the shared connection, by table and sorted column names
+     */
+    private final Map<String, PreparedStatement> inserts = new HashMap<>();
+    private final Map<String, PreparedStatement> selects = new HashMap<>();
+    /**
+     * known columns per table, so writes only ask sqlite about the schema when something is new
+     */
+    private final Map<String, Set<String>> tableColumns = new HashMap<>();
+    /**
+     * writes from failed transactions, oldest first. nothing newer is written until they are, so they can't overwrite it
+     */
+    private final Deque<Map.Entry<String, Map<TableObj, TableObj>>> retries = new ConcurrentLinkedDeque<>();
+    /**
+     * failed attempts by write, only counted when it's retried alone so a bad write can't take others down with it
+     */
+    private final Map<Map.Entry<String, Map<TableObj, TableObj>>, Integer> attempts = new IdentityHashMap<>();
+
     public SQLiteDatabaseAccessor( String url ) {
         this.url = url;
     }
@@ -26,72 +60,51 @@ public class SQLiteDatabaseAccessor extends DatabaseAccessor<Connection> {
     }
 
     @Override
-    public @NotNull Connection connect() {
-        Connection res;
+    public synchronized @NotNull Connection connect() {
+        try {
+            if ( connection != null && !connection.isClosed() ) return connection;
+        } catch ( SQLException e ) {
+            RTP.log( Level.WARNING, e.getMessage(), e );
+        }
+        reset();
 
         String filePath = url.substring( url.lastIndexOf( ":" ) + 1 );
         File databaseFile = new File( filePath );
+        Connection res;
         try {
             if ( !databaseFile.exists() ) {
                 databaseFile.getParentFile().mkdirs();
                 databaseFile.createNewFile();
             }
             res = DriverManager.getConnection( url );
+            try ( Statement statement = res.createStatement() ) {
+                statement.execute( "PRAGMA journal_mode=WAL;" );
+                statement.execute( "PRAGMA synchronous=NORMAL;" );
+            }
         } catch ( SQLException | IOException e ) {
            RTP.log( Level.WARNING, e.getMessage(), e );
             return null;
         }
+        connection = res;
         return res;
     }
 
     @Override
-    public void processQueries( long availableTime ) {
-        if ( readQueue.isEmpty() && writeQueue.isEmpty() ) return;
+    public synchronized void processQueries( long availableTime ) {
+        drainDirty();
+        if ( readQueue.isEmpty() && writeQueue.isEmpty() && retries.isEmpty() ) return;
         if ( stop.get() ) return;
         Connection database = connect();
         if ( database == null ) return;
-        if ( stop.get() ) {
-            disconnect( database );
-            return;
-        }
         long dt;
         long start = System.nanoTime();
 
-        while ( !writeQueue.isEmpty() ) {
-            if ( stop.get() ) {
-                disconnect( database );
-                return;
-            }
-            Map.Entry<String, Map<TableObj, TableObj>> writeRequest = writeQueue.poll();
-            if ( writeRequest == null ) throw new IllegalStateException( "invalid database write request" );
-            if ( writeRequest.getValue() == null ) throw new IllegalStateException( "invalid database write request" );
-            if ( writeRequest.getValue().isEmpty() ) throw new IllegalStateException( "invalid database write request" );
-
-            long localStart = System.nanoTime();
-            try {
-                write( database, writeRequest.getKey(), writeRequest.getValue() );
-            } catch ( Exception e ) {
-                writeQueue.add( writeRequest );
-                disconnect( database );
-                return;
-            }
-            long localStop = System.nanoTime();
-
-            if ( localStop < localStart ) localStart = -( Long.MAX_VALUE - localStart );
-            long diff = localStop - localStart;
-            if ( avgTimeWrite == 0 ) avgTimeWrite = diff;
-            else avgTimeWrite = ( (avgTimeWrite * 7 ) / 8 ) + ( diff / 8 );
-
-            if ( localStop < start ) start = -( Long.MAX_VALUE - start ); //overflow correction
-            dt = localStop - start;
-            if ( dt + avgTimeWrite > availableTime ) break;
+        if ( !writeQueue.isEmpty() || !retries.isEmpty() ) {
+            if ( !flush( database, availableTime ) ) return;
         }
 
         while ( !readQueue.isEmpty() ) {
-            if ( stop.get() ) {
-                disconnect( database );
-                return;
-            }
+            if ( stop.get() ) return;
             Map.Entry<String, Map.Entry<Map.Entry<TableObj, TableObj>, CompletableFuture<Optional<Map<String, Object>>>>> readRequest = readQueue.poll();
             if ( readRequest == null ) throw new IllegalStateException( "null database read request" );
 
@@ -104,7 +117,7 @@ public class SQLiteDatabaseAccessor extends DatabaseAccessor<Connection> {
                 read = read( database, readRequest.getKey(), lookup );
             } catch ( Exception e ) {
                 readQueue.add( readRequest );
-                disconnect( database );
+                reset();
                 return;
             }
 
@@ -120,199 +133,268 @@ public class SQLiteDatabaseAccessor extends DatabaseAccessor<Connection> {
             dt = localStop - start;
             if ( dt + avgTimeRead > availableTime ) break;
         }
-
-        disconnect( database );
     }
 
-    @Override
-    public void startup() {
-        DriverManager.setLoginTimeout( 30 );
-        Connection connection = connect();
-        @NotNull Optional<Map<String, Object>> read = read( connection, "referenceData", new AbstractMap.SimpleEntry<>( "UUID", new UUID( 0, 0)) );
-        if ( !read.isPresent() ) {
-            try {
-                connection.close();
-            } catch ( SQLException e ) {
-               RTP.log( Level.WARNING, e.getMessage(), e );
-            }
-            return;
+    /**
+     * retry failed writes, then take writes off the queue until the time runs out and commit them together
+     *
+     * @return false if a transaction failed, in which case its writes are waiting to be retried
+     */
+    private boolean flush( Connection database, long availableTime ) {
+        long start = System.nanoTime();
+        Map.Entry<String, Map<TableObj, TableObj>> retry;
+        while ( ( retry = retries.peekFirst() ) != null ) {
+            if ( !retry( database, retry ) ) return false;
+            if ( System.nanoTime() - start + avgTimeWrite > availableTime ) return true;
         }
 
-        //get full table
-        String tableName = "teleportData";
-        String sql = "SELECT * FROM " + tableName;
-        Statement statement;
-
+        List<Map.Entry<String, Map<TableObj, TableObj>>> batch = new ArrayList<>();
+        PreparedStatement pending = null;
         try {
-            statement = connection.createStatement();
-
-            try {
-                statement.execute( sql );
-            } catch ( SQLException e ) {
-                connection.close();
-                return;
+            database.setAutoCommit( false );
+            while ( !writeQueue.isEmpty() ) {
+                Map.Entry<String, Map<TableObj, TableObj>> writeRequest = writeQueue.poll();
+                //skipped rather than thrown, so one bad request can't fail every transaction it's retried in
+                if ( writeRequest == null || writeRequest.getValue() == null || writeRequest.getValue().isEmpty() )
+                    continue;
+                batch.add( writeRequest );
+
+                PreparedStatement insert = bind( database, writeRequest.getKey(), writeRequest.getValue() );
+                //run batches in queue order, a later write to the same key has to land last
+                if ( pending != null && pending != insert ) pending.executeBatch();
+                insert.addBatch();
+                pending = insert;
+
+                //most of the cost is in executing and committing, so budget by the average per write so far
+                long localStop = System.nanoTime();
+                if ( localStop < start ) start = -( Long.MAX_VALUE - start ); //overflow correction
+                long dt = localStop - start;
+                if ( Math.max( dt, avgTimeWrite * batch.size() ) + avgTimeWrite > availableTime ) break;
             }
 
-            ResultSet resultSet;
-
-            try {
-                resultSet = statement.getResultSet();
-            } catch ( SQLException e ) {
-                connection.close();
-                return;
-            }
+            if ( pending != null ) pending.executeBatch();
+            database.commit();
+            database.setAutoCommit( true );
+        } catch ( Exception e ) {
+            rollback( database, e );
+            //in their original order, ahead of anything queued since
+            retries.addAll( batch );
+            return false;
+        }
 
-            if ( resultSet == null ) {
-                connection.close();
-                return;
-            }
+        if ( batch.isEmpty() ) return true;
+        long diff = ( System.nanoTime() - start ) / batch.size();
+        if ( avgTimeWrite == 0 ) avgTimeWrite = diff;
+        else avgTimeWrite = ( (avgTimeWrite * 7 ) / 8 ) + ( diff / 8 );
+        return true;
+    }
 
-            //each data
-            while ( resultSet.next() ) {
-                String uuidStr = resultSet.getString( "UUID" );
-                if ( uuidStr == null ) continue;
-
-                UUID uuid = UUID.fromString( uuidStr );
-
-                TeleportData teleportData = new TeleportData();
-                teleportData.completed = true;
-                teleportData.time = Long.parseLong( resultSet.getString( "time") );
-                teleportData.selectedLocation = new RTPLocation( 
-                        RTP.serverAccessor.getRTPWorld( UUID.fromString( resultSet.getString( "selectedWorldId")) ),
-                        Integer.parseInt( resultSet.getString( "selectedX") ),
-                        Integer.parseInt( resultSet.getString( "selectedY") ),
-                        Integer.parseInt( resultSet.getString( "selectedZ") )
-                 );
-                if ( teleportData.selectedLocation.world() == null ) continue;
-                teleportData.originalLocation = new RTPLocation( 
-                        RTP.serverAccessor.getRTPWorld( UUID.fromString( resultSet.getString( "originalWorldId")) ),
-                        Integer.parseInt( resultSet.getString( "originalX") ),
-                        Integer.parseInt( resultSet.getString( "originalY") ),
-                        Integer.parseInt( resultSet.getString( "originalZ") )
-                 );
-                if ( teleportData.originalLocation.world() == null ) continue;
-                teleportData.cost = Double.parseDouble( resultSet.getString( "cost") );
-
-                RTP.getInstance().latestTeleportData.put( uuid, teleportData );
+    /**
+     * commit the oldest failed write on its own, dropping it once it's failed MAX_ATTEMPTS times
+     *
+     * @return false if it failed
+     */
+    private boolean retry( Connection database, Map.Entry<String, Map<TableObj, TableObj>> writeRequest ) {
+        try {
+            database.setAutoCommit( false );
+            bind( database, writeRequest.getKey(), writeRequest.getValue() ).executeUpdate();
+            database.commit();
+            database.setAutoCommit( true );
+        } catch ( Exception e ) {
+            rollback( database, e );
+            int attempt = attempts.merge( writeRequest, 1, Integer::sum );
+            if ( attempt >= MAX_ATTEMPTS ) {
+                TableObj row = rowKey( writeRequest.getKey(), writeRequest.getValue() );
+                RTP.log( Level.WARNING, "[RTP] dropping a write to " + writeRequest.getKey()
+                        + ( ( row == null ) ? "" : " for " + row.object ) + " after " + attempt + " failed attempts" );
+                retries.pollFirst();
+                attempts.remove( writeRequest );
             }
-        } catch ( SQLException throwables ) {
-            throwables.printStackTrace();
-        } catch ( IllegalArgumentException ignored ) {
-
+            return false;
         }
+        retries.pollFirst();
+        attempts.remove( writeRequest );
+        return true;
+    }
 
+    private void rollback( Connection database, Exception e ) {
+        RTP.log( Level.WARNING, e.getMessage(), e );
         try {
-            connection.close();
-        } catch ( SQLException e ) {
-           RTP.log( Level.WARNING, e.getMessage(), e );
+            database.rollback();
+        } catch ( SQLException ignored ) {
+
         }
+        reset();
     }
 
     @Override
-    public @NotNull Optional<Map<String, Object>> read( Connection connection, String tableName, Map.Entry<String, Object> lookup ) {
-        String sql = "PRAGMA table_info( " + tableName + " );";
-        Statement statement;
-        Map<String, String> column_info = new HashMap<>();
+    public int pendingWrites() {
+        return super.pendingWrites() + retries.size();
+    }
 
-        try {
-            statement = connection.createStatement();
-            statement.execute( sql );
-            ResultSet resultSet = statement.getResultSet();
+    /**
+     * only opens the database. players are read as they log in, see loadTeleportData
+     */
+    @Override
+    public synchronized void startup() {
+        DriverManager.setLoginTimeout( 30 );
+        connect();
+    }
 
-            if ( resultSet == null ) return Optional.empty();
+    @Override
+    protected boolean lazyTeleportData() {
+        return true;
+    }
 
-            while ( resultSet.next() ) {
-                column_info.put( resultSet.getString( "name" ), resultSet.getString( "type") );
-            }
-        } catch ( SQLException e ) {
-            return Optional.empty();
+    @Override
+    protected TeleportData toTeleportData( Map<String, Object> row ) {
+        try {
+            TeleportData teleportData = new TeleportData();
+            teleportData.completed = true;
+            teleportData.time = Long.parseLong( row.get( "time" ).toString() );
+            teleportData.selectedLocation = new RTPLocation(
+                    RTP.serverAccessor.getRTPWorld( UUID.fromString( row.get( "selectedWorldId" ).toString()) ),
+                    Integer.parseInt( row.get( "selectedX" ).toString() ),
+                    Integer.parseInt( row.get( "selectedY" ).toString() ),
+                    Integer.parseInt( row.get( "selectedZ" ).toString() )
+            );
+            if ( teleportData.selectedLocation.world() == null ) return null;
+            teleportData.originalLocation = new RTPLocation(
+                    RTP.serverAccessor.getRTPWorld( UUID.fromString( row.get( "originalWorldId" ).toString()) ),
+                    Integer.parseInt( row.get( "originalX" ).toString() ),
+                    Integer.parseInt( row.get( "originalY" ).toString() ),
+                    Integer.parseInt( row.get( "originalZ" ).toString() )
+            );
+            if ( teleportData.originalLocation.world() == null ) return null;
+            teleportData.cost = Double.parseDouble( row.get( "cost" ).toString() );
+            return teleportData;
+        } catch ( NullPointerException | IllegalArgumentException ignored ) {
+            return null;
         }
+    }
 
-        //validate and add necessary column_info
-        Map<String, Object> row = new HashMap<>();
-
-        sql = "SELECT * FROM " + tableName + " WHERE " + lookup.getKey() + " = " + "\"" + lookup.getValue().toString() + "\"";
-
+    @Override
+    public synchronized @NotNull Optional<Map<String, Object>> read( Connection connection, String tableName, Map.Entry<String, Object> lookup ) {
+        boolean shared = connection == this.connection;
+        String key = tableName + ":" + lookup.getKey();
+        PreparedStatement select = shared ? selects.get( key ) : null;
         try {
-            statement.execute( sql );
-            ResultSet resultSet = statement.getResultSet();
-            for ( String key : column_info.keySet() ) {
-                Object object = resultSet.getObject( key );
-                if ( object == null || object.equals( "NULL") ) continue;
-                row.put( key, object );
+            if ( select == null ) {
+                select = connection.prepareStatement( "SELECT * FROM " + tableName + " WHERE \"" + lookup.getKey() + "\" = ?;" );
+                if ( shared ) selects.put( key, select );
+            }
+            select.setString( 1, lookup.getValue().toString() );
+
+            try ( ResultSet resultSet = select.executeQuery() ) {
+                if ( !resultSet.next() ) return Optional.empty();
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                Map<String, Object> row = new HashMap<>();
+                for ( int i = 1; i <= metaData.getColumnCount(); i++ ) {
+                    Object object = resultSet.getObject( i );
+                    if ( object == null || object.equals( "NULL") ) continue;
+                    row.put( metaData.getColumnName( i ), object );
+                }
+                return Optional.of( row );
             }
-            return Optional.of( row );
         } catch ( SQLException ignored ) {
-
+            //no such table yet
+        } finally {
+            if ( !shared ) close( select );
         }
 
-
         return Optional.empty();
     }
 
     @Override
-    public void write( Connection connection, String tableName, Map<TableObj, TableObj> keyValuePairs ) {
+    public synchronized void write( Connection connection, String tableName, Map<TableObj, TableObj> keyValuePairs ) {
         if ( keyValuePairs == null ) throw new IllegalStateException();
         if ( keyValuePairs.isEmpty() ) throw new IllegalStateException();
 
-        //get table info for validation
-        String sql = "PRAGMA table_info( " + tableName + " );";
-        Statement statement;
-        Map<String, String> columns = new HashMap<>();
+        PreparedStatement insert = null;
         try {
-            statement = connection.createStatement();
+            insert = bind( connection, tableName, keyValuePairs );
+            insert.executeUpdate();
+        } catch ( SQLException e ) {
+            throw new IllegalStateException( e );
+        } finally {
+            if ( connection != this.connection ) close( insert );
+        }
+    }
 
-            statement.execute( sql );
-            ResultSet resultSet;
-            try {
-                resultSet = statement.getResultSet();
-            } catch ( SQLException e ) {
-                StringBuilder create = new StringBuilder( "CREATE TABLE IF NOT EXISTS " + tableName + " ( " );
-                for ( Map.Entry<TableObj, TableObj> entry : keyValuePairs.entrySet() ) {
-                    create = create.append( "\"" ).append( entry.getKey().object.toString() ).append( "\" " ).append( "TEXT" ).append( ", " );
-                }
-                create = create.replace( create.lastIndexOf( "," ), create.length(), "" );
-                create = create.append( " );" );
-                statement.execute( create.toString() );
+    private static void close( Statement statement ) {
+        if ( statement == null ) return;
+        try {
+            statement.close();
+        } catch ( SQLException e ) {
+           RTP.log( Level.WARNING, e.getMessage(), e );
+        }
+    }
 
-                if ( keyValuePairs.containsKey( new TableObj( "UUID")) ) {
-                    String unique = "CREATE UNIQUE INDEX IF NOT EXISTS " + "UID" + " ON " + tableName + " ( " + "UUID" + " );";
-                    statement.execute( unique );
-                }
+    /**
+     * @return insert for this table and column set, with values bound, ready to execute or batch
+     */
+    private PreparedStatement bind( Connection connection, String tableName, Map<TableObj, TableObj> keyValuePairs ) throws SQLException {
+        boolean shared = connection == this.connection;
+        Set<String> columns = shared ? tableColumns.get( tableName ) : null;
 
-                statement.execute( sql );
-                resultSet = statement.getResultSet();
+        List<String> keys = new ArrayList<>( keyValuePairs.size() );
+        Map<String, TableObj> values = new HashMap<>();
+        boolean known = columns != null;
+        for ( Map.Entry<TableObj, TableObj> entry : keyValuePairs.entrySet() ) {
+            String key = entry.getKey().object.toString();
+            keys.add( key );
+            values.put( key, entry.getValue() );
+            if ( known && !columns.contains( key ) ) known = false;
+        }
+        if ( !known ) {
+            columns = validate( connection, tableName, keyValuePairs );
+            if ( shared ) tableColumns.put( tableName, columns );
+        }
+        Collections.sort( keys );
+
+        String statementKey = tableName + ":" + String.join( ",", keys );
+        PreparedStatement insert = shared ? inserts.get( statementKey ) : null;
+        if ( insert == null ) {
+            StringBuilder builder = new StringBuilder( "INSERT OR REPLACE INTO " ).append( tableName ).append( " ( " );
+            for ( int i = 0; i < keys.size(); i++ ) {
+                builder = builder.append( "\"" ).append( keys.get( i ) ).append( "\"" );
+                if ( i < keys.size() - 1 ) builder = builder.append( ',' );
             }
-
-            if ( resultSet == null ) {
-                StringBuilder create = new StringBuilder( "CREATE TABLE IF NOT EXISTS " + tableName + " ( " );
-                for ( Map.Entry<TableObj, TableObj> entry : keyValuePairs.entrySet() ) {
-                    create = create.append( entry.getKey().object.toString() ).append( " " ).append( "TEXT" ).append( ", " );
-                }
-                create = create.replace( create.lastIndexOf( "," ), create.length(), "" );
-                create = create.append( " );" );
-                statement.execute( create.toString() );
-
-                if ( keyValuePairs.containsKey( new TableObj( "UUID")) ) {
-                    String unique = "CREATE UNIQUE INDEX IF NOT EXISTS " + "UID" + " ON " + tableName + " ( " + "UUID" + " );";
-                    statement.execute( unique );
-                }
-
-                statement.execute( sql );
-                resultSet = statement.getResultSet();
+            builder = builder.append( " ) VALUES( " );
+            for ( int i = 0; i < keys.size(); i++ ) {
+                builder = builder.append( '?' );
+                if ( i < keys.size() - 1 ) builder = builder.append( ',' );
             }
+            builder = builder.append( " );" );
+            insert = connection.prepareStatement( builder.toString() );
+            if ( shared ) inserts.put( statementKey, insert );
+        }
 
-            Objects.requireNonNull( resultSet );
-            int i = 0;
-            while ( resultSet.next() ) {
-                i++;
-                columns.put( resultSet.getString( "name" ), resultSet.getString( "type") );
+        //stored as text, same as the quoted literals this used to build
+        for ( int i = 0; i < keys.size(); i++ ) {
+            insert.setString( i + 1, values.get( keys.get( i ) ).object.toString() );
+        }
+        return insert;
+    }
+
+    /**
+     * make the table if it's missing and add any missing columns
+     *
+     * @return the table's columns
+     */
+    private Set<String> validate( Connection connection, String tableName, Map<TableObj, TableObj> keyValuePairs ) {
+        //get table info for validation
+        String sql = "PRAGMA table_info( " + tableName + " );";
+        Set<String> columns = new HashSet<>();
+        try ( Statement statement = connection.createStatement() ) {
+            try ( ResultSet resultSet = statement.executeQuery( sql ) ) {
+                while ( resultSet.next() ) columns.add( resultSet.getString( "name" ) );
             }
 
-            if ( i == 0 ) {
+            if ( columns.isEmpty() ) {
                 StringBuilder create = new StringBuilder( "CREATE TABLE IF NOT EXISTS " + tableName + " ( " );
                 for ( Map.Entry<TableObj, TableObj> entry : keyValuePairs.entrySet() ) {
-                    create = create.append( entry.getKey().object.toString() ).append( " " ).append( "TEXT" ).append( ", " );
+                    create = create.append( "\"" ).append( entry.getKey().object.toString() ).append( "\" " ).append( "TEXT" ).append( ", " );
                 }
                 create = create.replace( create.lastIndexOf( "," ), create.length(), "" );
                 create = create.append( " );" );
@@ -323,83 +405,86 @@ public class SQLiteDatabaseAccessor extends DatabaseAccessor<Connection> {
                     statement.execute( unique );
                 }
 
-                statement.execute( sql );
-                resultSet = statement.getResultSet();
-
-                while ( resultSet.next() ) {
-                    columns.put( resultSet.getString( "name" ), resultSet.getString( "type") );
+                try ( ResultSet resultSet = statement.executeQuery( sql ) ) {
+                    while ( resultSet.next() ) columns.add( resultSet.getString( "name" ) );
                 }
             }
 
-        } catch ( SQLException e ) {
-            throw new IllegalStateException();
-        }
-
-
-        //validate and add necessary columns
-        List<String> keys = new ArrayList<>();
-        List<String> values = new ArrayList<>();
-        for ( Map.Entry<TableObj, TableObj> entry : keyValuePairs.entrySet() ) {
-            String key = entry.getKey().object.toString();
-
-            keys.add( key );
-            values.add( "\"" + entry.getValue().object.toString() + "\"" );
-
-            if ( columns.containsKey( key) ) continue;
-
-            String typeStr;
-            switch ( entry.getValue().expectedType ) {
-                case INT:
-                    typeStr = "INTEGER";
-                    break;
-                case REAL:
-                    typeStr = "REAL";
-                    break;
-                case TEXT:
-                    typeStr = "TEXT";
-                    break;
-                case BLOB:
-                    typeStr = "BLOB";
-                    break;
-                default:
-                    throw new IllegalStateException( "Unexpected value: " + entry.getKey().expectedType );
-            }
+            //validate and add necessary columns
+            for ( Map.Entry<TableObj, TableObj> entry : keyValuePairs.entrySet() ) {
+                String key = entry.getKey().object.toString();
+                if ( columns.contains( key) ) continue;
+
+                String typeStr;
+                switch ( entry.getValue().expectedType ) {
+                    case INT:
+                        typeStr = "INTEGER";
+                        break;
+                    case REAL:
+                        typeStr = "REAL";
+                        break;
+                    case TEXT:
+                        typeStr = "TEXT";
+                        break;
+                    case BLOB:
+                        typeStr = "BLOB";
+                        break;
+                    default:
+                        throw new IllegalStateException( "Unexpected value: " + entry.getKey().expectedType );
+                }
 
-            sql = "ALTER TABLE " + tableName + " ADD " + key + " " + typeStr + ";";
-            try {
-                statement.execute( sql );
-            } catch ( SQLException e ) {
-               RTP.log( Level.WARNING, e.getMessage(), e );
+                sql = "ALTER TABLE " + tableName + " ADD " + key + " " + typeStr + ";";
+                try {
+                    statement.execute( sql );
+                    columns.add( key );
+                } catch ( SQLException e ) {
+                   RTP.log( Level.WARNING, e.getMessage(), e );
+                }
             }
+        } catch ( SQLException e ) {
+            throw new IllegalStateException( e );
         }
+        return columns;
+    }
 
-        StringBuilder builder = new StringBuilder( "INSERT OR REPLACE INTO " ).append( tableName ).append( " ( " );
-        for ( int i = 0; i < keys.size(); i++ ) {
-            String key = keys.get( i );
-            builder = builder.append( "\"" ).append( key ).append( "\"" );
-            if ( i < keys.size() - 1 ) builder = builder.append( ',' );
-        }
-        builder = builder.append( " ) VALUES( " );
-        for ( int i = 0; i < values.size(); i++ ) {
-            String value = values.get( i );
-            builder = builder.append( value );
-            if ( i < values.size() - 1 ) builder = builder.append( ',' );
-        }
-        builder = builder.append( " );" );
-
+    @Override
+    public synchronized void disconnect( Connection connection ) {
+        //the shared connection stays open for the next call
+        if ( connection == null || connection == this.connection ) return;
         try {
-            statement.execute( builder.toString() );
+            connection.close();
         } catch ( SQLException e ) {
-            throw new IllegalStateException();
+           RTP.log( Level.WARNING, e.getMessage(), e );
         }
     }
 
+    /**
+     * write out whatever is still queued, then close the shared connection
+     */
     @Override
-    public void disconnect( Connection connection ) {
+    public synchronized void close() {
+        flushWrites();
+        drainDirty();
+        if ( !writeQueue.isEmpty() ) {
+            Connection database = connect();
+            if ( database != null ) flush( database, Long.MAX_VALUE );
+        }
+        reset();
+    }
+
+    /**
+     * drop the shared connection and everything prepared on it
+     */
+    private void reset() {
+        inserts.clear();
+        selects.clear();
+        tableColumns.clear();
+        if ( connection == null ) return;
         try {
             connection.close();
         } catch ( SQLException e ) {
            RTP.log( Level.WARNING, e.getMessage(), e );
         }
+        connection = null;
     }
 }
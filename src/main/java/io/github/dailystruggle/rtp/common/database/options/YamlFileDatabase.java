@@ -12,14 +12,21 @@ import org.simpleyaml.configuration.file.YamlFile;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 
 /**
  * a "database" that's just reading and writing yaml files,
  * using SimpleYaml ( a server independent yaml library that can preserve comments )
+ * <br>
+ * only files with changed keys are saved, at most once per saveDelay, through a temp file and a rename.
+ * if a file was edited by hand since it was read, the save reads it again and puts only the changed keys on top.
+ * a WatchService picks up those edits, instead of checking every file on each connect.
  */
 public class YamlFileDatabase extends DatabaseAccessor<Map<String, YamlFile>> {
     /**
@@ -29,6 +36,19 @@ public class YamlFileDatabase extends DatabaseAccessor<Map<String, YamlFile>> {
     public final AtomicReference<Map<String, Long>> cachedLookupLastModified = new AtomicReference<>();
     private final File directory;
 
+    /**
+     * keys set since the last save, per file
+     */
+    private final Map<String, Set<String>> dirtyKeys = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastSaved = new ConcurrentHashMap<>();
+    /**
+     * shortest time between saves of one file, in nanoseconds. changes in between wait for the next save
+     */
+    public volatile long saveDelay = TimeUnit.SECONDS.toNanos( 1 );
+    private volatile boolean saveAll = false;
+    private WatchService watchService = null;
+    private boolean scanned = false;
+
     {
         cachedLookup.set( new ConcurrentHashMap<>() );
         cachedLookupLastModified.set( new ConcurrentHashMap<>() );
@@ -73,56 +93,212 @@ public class YamlFileDatabase extends DatabaseAccessor<Map<String, YamlFile>> {
 
     @Override
     @NotNull
-    public Map<String, YamlFile> connect() {
+    public synchronized Map<String, YamlFile> connect() {
         if ( !directory.exists() ) {
             if ( !directory.mkdirs() )
                 throw new IllegalStateException( "unable to create directory " + directory.getAbsolutePath() );
         }
 
+        if ( !scanned || watchService == null ) scan();
+        else poll();
+
+        return new HashMap<>( cachedLookup.get() );
+    }
+
+    /**
+     * read every file that changed, and start watching the directory if that's possible here
+     */
+    private void scan() {
+        if ( watchService == null ) {
+            try {
+                watchService = FileSystems.getDefault().newWatchService();
+                directory.toPath().register( watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE );
+            } catch ( IOException | UnsupportedOperationException e ) {
+                stopWatching();
+            }
+        }
+
         File[] files = directory.listFiles();
-        Map<String, YamlFile> res = new HashMap<>();
-        if ( files == null ) return res;
+        if ( files == null ) return;
         for ( File file : files ) {
-            if ( !file.isFile() ) continue;
+            if ( file.isFile() ) load( file );
+        }
+        scanned = true;
+    }
 
-            long lastModified = file.lastModified();
-            long dt = lastModified - cachedLookupLastModified.get().getOrDefault( file.getName(),-1L );
-            if( dt == 0 ) {
-                res.put( file.getName(), cachedLookup.get().get( file.getName()) );
-                continue;
+    private void poll() {
+        boolean rescan = false;
+        WatchKey key;
+        while ( ( key = watchService.poll() ) != null ) {
+            for ( WatchEvent<?> event : key.pollEvents() ) {
+                if ( event.kind() == StandardWatchEventKinds.OVERFLOW ) {
+                    rescan = true;
+                    continue;
+                }
+                File file = new File( directory, event.context().toString() );
+                if ( file.isFile() ) load( file );
+                else cachedLookupLastModified.get().remove( file.getName() );
             }
-
-            YamlFile yamlFile;
-            try {
-                yamlFile = new YamlFile( file );
-                yamlFile.loadWithComments();
-                cachedLookupLastModified.get().put( file.getName(), lastModified );
-                cachedLookup.get().put( file.getName(),yamlFile );
-            } catch ( Exception exception ) { //not a yaml file
-                continue;
+            if ( !key.reset() ) {
+                stopWatching();
+                rescan = true;
+                break;
             }
-            res.put( file.getName(), yamlFile );
-            localTables.putIfAbsent( file.getName(), new ConcurrentHashMap<>() );
-            Map<TableObj, TableObj> map = localTables.get( file.getName() );
-            Map<String, Object> values = yamlFile.getMapValues( true );
-            for ( Map.Entry<String, Object> entry : values.entrySet() ) {
-                map.put( new TableObj( entry.getKey() ), new TableObj( entry.getValue()) );
+        }
+        if ( rescan ) scan();
+    }
+
+    private void stopWatching() {
+        if ( watchService == null ) return;
+        try {
+            watchService.close();
+        } catch ( IOException ignored ) {
+
+        }
+        watchService = null;
+    }
+
+    /**
+     * read a file if it's changed since we last read or saved it, keeping any unsaved keys
+     */
+    private void load( File file ) {
+        String name = file.getName();
+        if ( name.endsWith( ".tmp" ) ) return;
+        long lastModified = file.lastModified();
+        if ( lastModified == cachedLookupLastModified.get().getOrDefault( name, -1L ) ) return;
+
+        YamlFile yamlFile;
+        try {
+            yamlFile = new YamlFile( file );
+            yamlFile.loadWithComments();
+        } catch ( Exception exception ) { //not a yaml file
+            return;
+        }
+
+        YamlFile old = cachedLookup.get().get( name );
+        Set<String> dirty = dirtyKeys.get( name );
+        if ( old != null && dirty != null ) {
+            for ( String key : dirty ) {
+                Object value = old.get( key );
+                if ( value instanceof ConfigurationSection )
+                    value = ( (ConfigurationSection ) value ).getMapValues( true );
+                yamlFile.set( key, value );
             }
         }
 
-        return res;
+        cachedLookupLastModified.get().put( name, lastModified );
+        cachedLookup.get().put( name, yamlFile );
+        localTables.putIfAbsent( name, new ConcurrentHashMap<>() );
+        Map<TableObj, TableObj> map = localTables.get( name );
+        Map<String, Object> values = yamlFile.getMapValues( true );
+        for ( Map.Entry<String, Object> entry : values.entrySet() ) {
+            map.put( new TableObj( entry.getKey() ), new TableObj( entry.getValue()) );
+        }
     }
 
-    @Override
-    public void disconnect( Map<String, YamlFile> database ) {
-        for ( YamlFile file : database.values() ) {
+    /**
+     * read a file again now, e.g. after replacing it on disk, without waiting for the watcher
+     */
+    public synchronized void refresh( String name ) {
+        cachedLookupLastModified.get().remove( name );
+        File file = new File( directory, name );
+        if ( file.isFile() ) load( file );
+    }
+
+    /**
+     * note a key set directly on a cached file, so the next save includes it
+     */
+    public void markDirty( String name, String key ) {
+        dirtyKeys.computeIfAbsent( name, s -> ConcurrentHashMap.newKeySet() ).add( key );
+    }
+
+    /**
+     * save a file now if it has unsaved changes, regardless of saveDelay
+     */
+    public synchronized void save( String name ) {
+        save( name, true );
+    }
+
+    private void save( String name, boolean force ) {
+        Set<String> dirty = dirtyKeys.get( name );
+        if ( dirty == null ) return;
+        long now = System.nanoTime();
+        Long saved = lastSaved.get( name );
+        if ( !force && saved != null && now - saved < saveDelay ) return;
+
+        File target = new File( directory, name );
+        //edited since we read it, so take that and put our keys on top
+        if ( target.exists() && target.lastModified() != cachedLookupLastModified.get().getOrDefault( name, -1L ) ) {
+            load( target );
+            if ( target.lastModified() != cachedLookupLastModified.get().getOrDefault( name, -1L ) ) {
+                RTP.log( Level.WARNING, "[RTP] unable to read " + name + " before saving it, will try again" );
+                return;
+            }
+        }
+
+        YamlFile file = cachedLookup.get().get( name );
+        if ( file == null ) {
+            dirtyKeys.remove( name );
+            return;
+        }
+
+        File tmp = new File( directory, name + ".tmp" );
+        try {
+            Files.write( tmp.toPath(), file.saveToString().getBytes( StandardCharsets.UTF_8 ) );
+        } catch ( IOException e ) {
+            RTP.log( Level.WARNING, e.getMessage(), e );
+            return;
+        }
+
+        try {
+            Files.move( tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        } catch ( IOException e ) {
             try {
-                if ( !file.exists() ) file.createNewFile( true );
-                file.save();
-            } catch ( IOException e ) {
-                RTP.log( Level.WARNING, e.getMessage(), e );
+                Files.move( tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            } catch ( IOException ex ) {
+                RTP.log( Level.WARNING, ex.getMessage(), ex );
+                return;
             }
         }
+
+        dirtyKeys.remove( name );
+        lastSaved.put( name, now );
+        cachedLookupLastModified.get().put( name, target.lastModified() );
+    }
+
+    private void saveDirty( boolean force ) {
+        for ( String name : new ArrayList<>( dirtyKeys.keySet() ) ) save( name, force );
+    }
+
+    @Override
+    public synchronized void disconnect( Map<String, YamlFile> database ) {
+        saveDirty( false );
+    }
+
+    @Override
+    public void flushWrites() {
+        super.flushWrites();
+        saveAll = true;
+    }
+
+    @Override
+    public void processQueries( long availableTime ) {
+        super.processQueries( availableTime );
+        //saves that were waiting out saveDelay
+        synchronized ( this ) {
+            boolean force = saveAll;
+            saveAll = false;
+            saveDirty( force );
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        flushWrites();
+        processQueries( Long.MAX_VALUE );
+        stopWatching();
+        scanned = false;
     }
 
     @Override
@@ -141,10 +317,19 @@ public class YamlFileDatabase extends DatabaseAccessor<Map<String, YamlFile>> {
         return Optional.of( res );
     }
 
+    /**
+     * every pair is set at its own path in the table's file, so writes to one file merge by path
+     */
+    @Override
+    protected TableObj rowKey( String tableName, Map<TableObj, TableObj> pairs ) {
+        return new TableObj( tableName );
+    }
+
     @Override
-    public void write( Map<String, YamlFile> database, String tableName, Map<TableObj, TableObj> keyValuePairs ) {
+    public synchronized void write( Map<String, YamlFile> database, String tableName, Map<TableObj, TableObj> keyValuePairs ) {
         if ( !tableName.endsWith( ".yml") ) tableName = tableName + ".yml";
-        YamlFile file = database.get( tableName );
+        YamlFile file = cachedLookup.get().get( tableName );
+        if ( file == null ) file = database.get( tableName );
         if ( file == null ) file = new YamlFile( directory.getAbsolutePath() + File.separator + tableName );
         if ( !file.exists() ) {
             String filePath = file.getFilePath();
@@ -166,15 +351,21 @@ public class YamlFileDatabase extends DatabaseAccessor<Map<String, YamlFile>> {
             String substring = filePath.substring( filePath.lastIndexOf( File.separator ) + 1 );
             database.put( substring, file );
         }
-        try {
-            file.loadWithComments();
-        } catch ( IOException e ) {
-            RTP.log( Level.WARNING, e.getMessage(), e );
-            return;
+        if ( !cachedLookup.get().containsKey( tableName ) ) {
+            //new to us, read it once. after this the cached copy is kept current
+            try {
+                file.loadWithComments();
+            } catch ( IOException e ) {
+                RTP.log( Level.WARNING, e.getMessage(), e );
+                return;
+            }
+            cachedLookup.get().put( tableName, file );
+            cachedLookupLastModified.get().put( tableName, new File( directory, tableName ).lastModified() );
         }
 
         for ( Map.Entry<TableObj, TableObj> entry : keyValuePairs.entrySet() ) {
             String keyStr = entry.getKey().object.toString();
+            markDirty( tableName, keyStr );
             Object o = file.get( keyStr );
             Object value = entry.getValue().object;
 
@@ -209,16 +400,6 @@ public class YamlFileDatabase extends DatabaseAccessor<Map<String, YamlFile>> {
         }
     }
 
-    @Override
-    public void setValue( String tableName, Map<?, ?> keyValuePairs ) {
-        super.setValue( tableName, keyValuePairs );
-        Map<TableObj, TableObj> writeValues = new HashMap<>();
-        keyValuePairs.forEach( (o, o2 ) -> writeValues.put( new TableObj( o ), new TableObj( o2)) );
-        Map.Entry<String, Map<TableObj, TableObj>> writeRequest
-                = new AbstractMap.SimpleEntry<>( tableName, writeValues );
-        writeQueue.add( writeRequest );
-    }
-
     @Override
     public void startup() {
         Map<String, YamlFile> lookup = connect();
@@ -0,0 +1,165 @@
+package io.github.dailystruggle.rtp.common.selection.region;
+
+import io.github.dailystruggle.rtp.common.RTP;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * demand forecast for one region's location cache, used when adaptiveCache is on.
+ * <br>
+ * requests are counted in fixed windows and folded into an average rate and a slowly decaying peak window.
+ * fills are timed from the cache asking for a location to that location's chunks being ready.
+ * by little's law, holding rate * fillTime locations covers requests that arrive while replacements are made.
+ * on top of that, a peak window gets whatever part of its burst the refills can't make in that window,
+ * e.g. the rush after a restart.
+ * <br>
+ * the averages are saved with the region, so a restart doesn't start from nothing.
+ */
+public final class CacheDemand {
+    private static final int MAGIC = 0x52545044; //RTPD
+    private static final byte VERSION = 1;
+
+    public static final long window = TimeUnit.SECONDS.toNanos( 10 );
+    private static final double windowSeconds = window / 1e9;
+    //weight of the latest window in the average rate, about 100s to settle
+    private static final double rateAlpha = 0.1;
+    //per-window decay of the peak, about 10 minutes to halve
+    private static final double peakDecay = 0.99;
+    private static final double fillAlpha = 0.2;
+
+    private long windowStart;
+    private long windowRequests = 0;
+
+    /**
+     * requests per second, or -1 before the first window
+     */
+    private double rate = -1;
+    /**
+     * largest request count in a window, decaying
+     */
+    private double peak = 0;
+    /**
+     * seconds from asking for a location to having it, or -1 before the first fill
+     */
+    private double fillSeconds = -1;
+
+    public CacheDemand() {
+        this( System.nanoTime() );
+    }
+
+    public CacheDemand( long now ) {
+        windowStart = now;
+    }
+
+    public void request() {
+        request( System.nanoTime() );
+    }
+
+    public synchronized void request( long now ) {
+        roll( now );
+        windowRequests++;
+    }
+
+    /**
+     * @param nanos - time from asking for a location to having it
+     */
+    public synchronized void filled( long nanos ) {
+        double seconds = nanos / 1e9;
+        fillSeconds = ( fillSeconds < 0 ) ? seconds : fillSeconds + fillAlpha * ( seconds - fillSeconds );
+    }
+
+    public long target( long fallback, long max, long concurrency ) {
+        return target( System.nanoTime(), fallback, max, concurrency );
+    }
+
+    /**
+     * @param fallback - size to use until there's been a full window and a fill to go on
+     * @param max - largest size to ask for
+     * @param concurrency - selections that can run at once
+     * @return cache size for the forecast demand, 1 to max
+     */
+    public synchronized long target( long now, long fallback, long max, long concurrency ) {
+        roll( now );
+        max = Math.max( max, 1 );
+        if ( rate < 0 || fillSeconds < 0 ) return Math.max( 1, Math.min( fallback, max ) );
+
+        double steady = rate * fillSeconds;
+        double refillsPerWindow = Math.max( concurrency, 1 ) * windowSeconds / Math.max( fillSeconds, 1e-3 );
+        double burst = Math.max( 0, peak - refillsPerWindow );
+
+        long res = ( long ) Math.ceil( steady + burst );
+        return Math.max( 1, Math.min( res, max ) );
+    }
+
+    public synchronized double rate() {
+        return Math.max( rate, 0 );
+    }
+
+    public synchronized double peak() {
+        return peak;
+    }
+
+    public synchronized double fillSeconds() {
+        return Math.max( fillSeconds, 0 );
+    }
+
+    private void roll( long now ) {
+        long elapsed = now - windowStart;
+        if ( elapsed < window ) return;
+        long windows = elapsed / window;
+        windowStart += windows * window;
+
+        //the window that just closed, then any empty ones after it
+        double count = windowRequests;
+        windowRequests = 0;
+        for ( long i = 0; i < Math.min( windows, 1000 ); i++ ) {
+            double windowRate = count / windowSeconds;
+            rate = ( rate < 0 ) ? windowRate : rate + rateAlpha * ( windowRate - rate );
+            peak = Math.max( count, peak * peakDecay );
+            count = 0;
+        }
+    }
+
+    public synchronized void save( File file ) {
+        File dir = file.getParentFile();
+        if ( dir != null && !dir.exists() && !dir.mkdirs() ) return;
+
+        File tmp = new File( dir, file.getName() + ".tmp" );
+        try ( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmp ) ) ) ) {
+            out.writeInt( MAGIC );
+            out.writeByte( VERSION );
+            out.writeDouble( rate );
+            out.writeDouble( peak );
+            out.writeDouble( fillSeconds );
+        } catch ( IOException e ) {
+            RTP.log( Level.WARNING, e.getMessage(), e );
+            return;
+        }
+
+        try {
+            Files.move( tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        } catch ( IOException e ) {
+            try {
+                Files.move( tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            } catch ( IOException ex ) {
+                RTP.log( Level.WARNING, ex.getMessage(), ex );
+            }
+        }
+    }
+
+    public synchronized void load( File file ) {
+        if ( !file.exists() ) return;
+        try ( DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) ) ) {
+            if ( in.readInt() != MAGIC || in.readByte() != VERSION ) return;
+            rate = in.readDouble();
+            peak = in.readDouble();
+            fillSeconds = in.readDouble();
+        } catch ( IOException e ) {
+            RTP.log( Level.WARNING, e.getMessage(), e );
+        }
+    }
+}
@@ -2,6 +2,7 @@ package io.github.dailystruggle.rtp.common.selection.region;
 
 import io.github.dailystruggle.rtp.common.RTP;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPChunk;
+import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPWorld;
 
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -12,10 +13,17 @@ import java.util.function.Consumer;
 import java.util.logging.Level;
 
 public final class ChunkSet {
+    public final RTPWorld world;
+    /**
+     * chunk keys, ChunkRefMap.key( cx, cz ), in the same order as chunks
+     */
+    public final long[] keys;
     public final List<CompletableFuture<RTPChunk>> chunks;
     public final CompletableFuture<Boolean> complete;
 
-    public ChunkSet( List<CompletableFuture<RTPChunk>> chunks, CompletableFuture<Boolean> complete ) {
+    public ChunkSet( RTPWorld world, long[] keys, List<CompletableFuture<RTPChunk>> chunks, CompletableFuture<Boolean> complete ) {
+        this.world = world;
+        this.keys = keys;
         this.chunks = chunks;
         this.complete = complete;
 
@@ -37,18 +45,8 @@ public final class ChunkSet {
     }
 
     public void keep( boolean keep ) {
-        chunks.forEach( chunk -> {
-            if ( chunk.isDone() ) {
-                try {
-                    RTPChunk rtpChunk = chunk.get();
-                    rtpChunk.keep( keep );
-                } catch ( InterruptedException | ExecutionException e ) {
-                    RTP.log( Level.WARNING, e.getMessage(), e );
-                }
-            } else {
-                chunk.thenAccept( chunk1 -> chunk1.keep( keep) );
-            }
-        } );
+        if ( keep ) world.keepChunks( keys );
+        else world.forgetChunks( keys );
     }
 
     public void whenComplete( Consumer<Boolean> consumer ) {
@@ -3,6 +3,7 @@ package io.github.dailystruggle.rtp.common.selection.region;
 import io.github.dailystruggle.commandsapi.common.CommandsAPI;
 import io.github.dailystruggle.rtp.common.RTP;
 import io.github.dailystruggle.rtp.common.configuration.ConfigParser;
+import io.github.dailystruggle.rtp.common.configuration.Configs;
 import io.github.dailystruggle.rtp.common.configuration.enums.*;
 import io.github.dailystruggle.rtp.common.factory.Factory;
 import io.github.dailystruggle.rtp.common.factory.FactoryValue;
@@ -10,34 +11,30 @@ import io.github.dailystruggle.rtp.common.playerData.TeleportData;
 import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes.MemoryShape;
 import io.github.dailystruggle.rtp.common.selection.region.selectors.shapes.Shape;
 import io.github.dailystruggle.rtp.common.selection.region.selectors.verticalAdjustors.VerticalAdjustor;
-import io.github.dailystruggle.rtp.common.selection.worldborder.WorldBorder;
+import io.github.dailystruggle.rtp.common.serverSide.ChunkRefMap;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.*;
+import io.github.dailystruggle.rtp.common.tasks.FillOrder;
 import io.github.dailystruggle.rtp.common.tasks.FillTask;
 import io.github.dailystruggle.rtp.common.tasks.RTPRunnable;
 import io.github.dailystruggle.rtp.common.tasks.RTPTaskPipe;
 import io.github.dailystruggle.rtp.common.tasks.teleport.LoadChunks;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.simpleyaml.configuration.MemorySection;
 
+import java.io.File;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
 import java.util.function.Predicate;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
 
 public class Region extends FactoryValue<RegionKeys> {
     public static final List<BiConsumer<Region, UUID>> onPlayerQueuePush = new ArrayList<>();
     public static final List<BiConsumer<Region, UUID>> onPlayerQueuePop = new ArrayList<>();
-    //semaphore needed in case of async usage
     //storage for region verifiers to use for ALL regions
-    private static final Semaphore regionVerifiersLock = new Semaphore( 1 );
-    private static final List<Predicate<RTPLocation>> regionVerifiers = new ArrayList<>();
-    private static final Set<String> unsafeBlocks = new ConcurrentSkipListSet<>();
-    private static final AtomicLong lastUpdate = new AtomicLong( 0 );
-    private static final AtomicInteger safetyRadius = new AtomicInteger( 0 );
+    private static final VerifierChain regionVerifiers = new VerifierChain();
     public static int maxBiomeChecksPerGen = 100;
     private final Semaphore cacheGuard = new Semaphore( 1 );
     /**
@@ -56,6 +53,21 @@ public class Region extends FactoryValue<RegionKeys> {
     public ConcurrentHashMap<UUID, CompletableFuture<Map.Entry<RTPLocation, Long>>> fastLocations = new ConcurrentHashMap<>();
     public RTPTaskPipe cachePipeline = new RTPTaskPipe();
     public RTPTaskPipe miscPipeline = new RTPTaskPipe();
+    /**
+     * cache selections started and not yet finished, bounded by maxConcurrentSelections
+     */
+    public AtomicInteger selectionsInFlight = new AtomicInteger( 0 );
+    public Set<CompletableFuture<Map.Entry<RTPLocation, Long>>> pendingSelections = ConcurrentHashMap.newKeySet();
+    /**
+     * where this region's selection and fill stages run after a chunk load completes, so the server thread doesn't do the block scans.
+     * the plugin's selection workers unless replaced, e.g. by a simulation
+     */
+    public volatile Executor selectionExecutor = RTP.getInstance().selectionWorkers;
+    protected volatile RegionSettings settings = null;
+    /**
+     * request rate and fill time, for adaptiveCache
+     */
+    public CacheDemand demand = new CacheDemand();
     protected ConcurrentLinkedQueue<UUID> playerQueue = new ConcurrentLinkedQueue<>();
     public Region( String name, EnumMap<RegionKeys, Object> params ) {
         super( RegionKeys.class, name );
@@ -88,16 +100,76 @@ public class Region extends FactoryValue<RegionKeys> {
 
             ( (MemoryShape<?> ) shape ).load( name + ".yml", worldName );
             long iter = ( (MemoryShape<?> ) shape ).fillIter.get();
-            if ( iter > 0 && iter < Double.valueOf( ((MemoryShape<?> ) shape ).getRange() ).longValue() )
+            if ( FillOrder.inProgress( (MemoryShape<?> ) shape, iter ) )
                 RTP.getInstance().fillTasks.put( name, new FillTask( this, iter) );
         }
 
-        long cacheCap = getNumber( RegionKeys.cacheCap, 10L ).longValue();
+        demand.load( demandFile() );
+
+        long cacheCap = cacheCap();
         for ( long i = cachePipeline.size(); i < cacheCap; i++ ) {
             cachePipeline.add( new Cache() );
         }
     }
 
+    static {
+        //regions made by a reload compile on construction, this catches the rest, e.g. temp regions
+        Configs.onReload( () -> {
+            if ( RTP.selectionAPI == null ) return;
+            RTP.selectionAPI.permRegionLookup.values().forEach( Region::reloadSettings );
+            RTP.selectionAPI.tempRegions.values().forEach( Region::reloadSettings );
+        } );
+    }
+
+    /**
+     * @return config snapshot for this region, compiled on first use after a load, reload, or data change
+     */
+    public RegionSettings settings() {
+        RegionSettings res = settings;
+        if ( res == null ) {
+            res = RegionSettings.compile( this );
+            settings = res;
+        }
+        return res;
+    }
+
+    /**
+     * @return locations to keep cached - cacheCap, or the forecast from demand if adaptiveCache is on
+     */
+    public long cacheCap() {
+        RegionSettings settings = settings();
+        //0 still turns the cache off
+        if ( !settings.adaptiveCache || settings.cacheCap <= 0 ) return settings.cacheCap;
+        return demand.target( settings.cacheCap, settings.maxCacheCap, settings.maxConcurrentSelections );
+    }
+
+    private File demandFile() {
+        File pluginDir = RTP.serverAccessor.getPluginDirectory();
+        return new File( pluginDir.getAbsolutePath() + File.separator + "database" + File.separator + "regionData", name + ".demand" );
+    }
+
+    public void reloadSettings() {
+        settings = RegionSettings.compile( this );
+    }
+
+    @Override
+    public void setData( final EnumMap<? extends Enum<?>, ?> data ) throws IllegalArgumentException {
+        super.setData( data );
+        settings = null;
+    }
+
+    @Override
+    public void setData( final Map<String, Object> data ) throws IllegalArgumentException {
+        super.setData( data );
+        settings = null;
+    }
+
+    @Override
+    public void set( @NotNull RegionKeys key, @NotNull Object value ) throws IllegalArgumentException {
+        super.set( key, value );
+        settings = null;
+    }
+
     /**
      * addGlobalRegionVerifier - add a region verifier to use for ALL regions
      *
@@ -106,49 +178,46 @@ public class Region extends FactoryValue<RegionKeys> {
      *                      return: boolean - true on good location, false on bad location
      */
     public static void addGlobalRegionVerifier( Predicate<RTPLocation> locationCheck ) {
-        try {
-            regionVerifiersLock.acquire();
-        } catch ( InterruptedException e ) {
-            regionVerifiersLock.release();
-            return;
-        }
-        regionVerifiers.add( locationCheck );
-        regionVerifiersLock.release();
+        addGlobalRegionVerifier( locationCheck, 10000, false );
+    }
+
+    /**
+     * addGlobalRegionVerifier - add a region verifier to use for ALL regions
+     *
+     * @param locationCheck - true on good location, false on bad location
+     * @param estimatedCost - guess at nanoseconds per call, used for ordering until it's been measured
+     * @param threadSafe    - whether it can run on several selection threads at once.
+     *                      if not, it shares a lock with other verifiers that aren't
+     */
+    public static void addGlobalRegionVerifier( Predicate<RTPLocation> locationCheck, double estimatedCost, boolean threadSafe ) {
+        regionVerifiers.add( locationCheck, estimatedCost, threadSafe );
     }
 
     public static void clearGlobalRegionVerifiers() {
-        try {
-            regionVerifiersLock.acquire();
-        } catch ( InterruptedException e ) {
-            regionVerifiersLock.release();
-            return;
-        }
         regionVerifiers.clear();
-        regionVerifiersLock.release();
     }
 
     public static boolean checkGlobalRegionVerifiers( RTPLocation location ) {
-        try {
-            regionVerifiersLock.acquire();
-        } catch ( InterruptedException e ) {
-            regionVerifiersLock.release();
-            return false;
-        }
+        return regionVerifiers.test( location );
+    }
 
-        for ( Predicate<RTPLocation> verifier : regionVerifiers ) {
-            try {
-                //if invalid placement, stop and return invalid
-                //clone location to prevent methods from messing with the data
-                if ( !verifier.test( location) ) {
-                    regionVerifiersLock.release();
-                    return false;
-                }
-            } catch ( Throwable throwable ) {
-                RTP.log( Level.WARNING,throwable.getMessage(),throwable );
-            }
-        }
-        regionVerifiersLock.release();
-        return true;
+    /**
+     * how badly this region needs a turn, for worker scheduling
+     *
+     * @return 0 if there's nothing to do, otherwise the empty fraction of the cache, 0-1
+     */
+    public double depletion() {
+        RegionSettings settings = settings();
+        long target = Math.max( cacheCap(), 1 ) + playerQueue.size();
+        long inFlight = selectionsInFlight.get();
+        long deficit = target - locationQueue.size() - inFlight;
+        if ( deficit > 0 && inFlight < settings.maxConcurrentSelections )
+            return Math.min( 1.0, ( double ) deficit / target );
+
+        //tasks to run or players to hand locations to, but the cache itself is fine
+        if ( miscPipeline.size() > 0 || ( !playerQueue.isEmpty() && !locationQueue.isEmpty() ) )
+            return 1.0 / target;
+        return 0;
     }
 
     public void execute( long availableTime ) {
@@ -156,12 +225,13 @@ public class Region extends FactoryValue<RegionKeys> {
 
         miscPipeline.execute( availableTime );
 
-        long cacheCap = getNumber( RegionKeys.cacheCap, 10L ).longValue();
+        long cacheCap = cacheCap();
+        if ( settings().adaptiveCache && playerQueue.isEmpty() ) trim( cacheCap );
         cacheCap = Math.max( cacheCap, playerQueue.size() );
         try {
             cacheGuard.acquire();
             if ( locationQueue.size() >= cacheCap ) return;
-            while ( cachePipeline.size() + locationQueue.size() < cacheCap + playerQueue.size() )
+            while ( cachePipeline.size() + selectionsInFlight.get() + locationQueue.size() < cacheCap + playerQueue.size() )
                 cachePipeline.add( new Cache() );
             cachePipeline.execute( availableTime - ( System.nanoTime() - start) ); //todo: too fast for server
 //            cachePipeline.execute( 0 );
@@ -221,6 +291,19 @@ public class Region extends FactoryValue<RegionKeys> {
         }
     }
 
+    /**
+     * drop cached locations and their kept chunks past cap, once demand has fallen enough to be worth it
+     */
+    private void trim( long cap ) {
+        long slack = Math.max( 1, cap / 4 );
+        if ( locationQueue.size() <= cap + slack ) return;
+        while ( locationQueue.size() > cap ) {
+            Map.Entry<RTPLocation, Long> pair = locationQueue.poll();
+            if ( pair == null ) break;
+            if ( pair.getKey() != null ) removeChunks( pair.getKey() );
+        }
+    }
+
     public boolean hasLocation( @Nullable UUID uuid ) {
         boolean res = !locationQueue.isEmpty();
         res |= ( uuid != null ) && ( perPlayerLocationQueue.containsKey( uuid) );
@@ -235,129 +318,43 @@ public class Region extends FactoryValue<RegionKeys> {
         UUID playerId = player.uuid();
 
         boolean custom = biomeNames != null && !biomeNames.isEmpty();
+        if ( !custom ) demand.request();
 
         if ( !custom && perPlayerLocationQueue.containsKey( playerId) ) {
             ConcurrentLinkedQueue<Map.Entry<RTPLocation, Long>> playerLocationQueue = perPlayerLocationQueue.get( playerId );
-            RTPChunk chunk = null;
-            while ( !playerLocationQueue.isEmpty() ) {
-                if ( chunk != null ) chunk.unload();
+            RegionSettings settings = settings();
+            int safe = settings.safetyRadius;
+
+            //one pass over what's queued, without waiting on any chunk
+            for ( int n = playerLocationQueue.size(); n > 0; n-- ) {
                 pair = playerLocationQueue.poll();
                 if ( pair == null || pair.getKey() == null ) continue;
                 RTPLocation left = pair.getKey();
-                boolean pass = true;
 
-                int cx = ( left.x() > 0 ) ? left.x() / 16 : left.x() / 16 - 1;
-                int cz = ( left.z() > 0 ) ? left.z() / 16 : left.z() / 16 - 1;
-                CompletableFuture<RTPChunk> chunkAt = left.world().getChunkAt( cx, cz );
-                try {
-                    chunk = chunkAt.get();
-                } catch ( InterruptedException | ExecutionException e ) {
-                   RTP.log( Level.WARNING, e.getMessage(), e );
+                Map<Long, CompletableFuture<RTPChunk>> chunkFutures = Selection.safetyChunks( left.world(), left, safe, null );
+                if ( !chunkFutures.values().stream().allMatch( CompletableFuture::isDone ) ) {
+                    //still loading, check it again next time
+                    playerLocationQueue.add( pair );
                     continue;
                 }
-                if( chunk == null ) return null;
-
-                long t = System.currentTimeMillis();
-                long dt = t - lastUpdate.get();
-                if ( dt > 5000 || dt < 0 ) {
-                    ConfigParser<SafetyKeys> safety = ( ConfigParser<SafetyKeys> ) RTP.configs.getParser( SafetyKeys.class );
-                    Object value = safety.getConfigValue( SafetyKeys.unsafeBlocks, new ArrayList<>() );
-                    if ( value instanceof Collection ) {
-                        Collection<?> collection = (Collection<?>) value;
-                        if(((Collection<?>) value).isEmpty()) unsafeBlocks.clear();
-                        else if(((Collection<?>) value).size() == unsafeBlocks.size()) {
-                            if(value instanceof List<?>) {
-                                List<?> list = (List<?>) value;
-                                if(list.get(0) instanceof String) {
-                                    List<String> stringList = (List<String>) list;
-                                    boolean same = true;
-                                    for(String s : stringList) {
-                                        if( !unsafeBlocks.contains(s)) {
-                                            same = false;
-                                            break;
-                                        }
-                                    }
-                                    if(!same) {
-                                        unsafeBlocks.clear();
-                                        unsafeBlocks.addAll(list.stream().map(Object::toString).collect(Collectors.toSet()));
-                                    }
-                                }
-                                else {
-                                    unsafeBlocks.clear();
-                                    unsafeBlocks.addAll(list.stream().map(Object::toString).collect(Collectors.toSet()));
-                                }
-                            }
-                        }
-
-
-                        unsafeBlocks.addAll( collection.stream().filter( Objects::nonNull ).map( Object::toString ).collect( Collectors.toSet()) );
-                    }
-                    lastUpdate.set( t );
-                    safetyRadius.set( safety.getNumber( SafetyKeys.safetyRadius, 0 ).intValue() );
-                }
-
-
-                //todo: waterlogged check
-                int safe = safetyRadius.get();
-                RTPBlock block;
-                RTPChunk chunk1;
-                Map<List<Integer>,RTPChunk> chunks = new HashMap<>();
-                chunks.put( Arrays.asList( chunk.x(), chunk.z() ), chunk );
-                chunk.keep( true );
-                for ( int x = left.x() - safe; x < left.x() + safe && pass; x++ ) {
-                    int xx = x;
-                    int dx = Math.abs( xx/16 );
-                    int chunkX = chunk.x();
-
-                    if( xx < 0 ) {
-                        chunkX-=dx+1;
-                        if( xx%16==0 ) xx+=16*dx;
-                        else xx+=16*( dx+1 );
-                    } else if( xx >= 16 ) {
-                        chunkX+=dx;
-                        xx-=16*dx;
-                    }
 
-                    for ( int z = left.z() - safe; z < left.z() + safe && pass; z++ ) {
-                        int zz = z;
-
-                        int dz = Math.abs( zz/16 );
-
-                        int chunkZ = chunk.z();
-
-                        if( zz < 0 ) {
-                            chunkZ-=dz+1;
-                            if( zz%16==0 ) zz+=16*dz;
-                            else zz+=16*( dz+1 );
-                        } else if( zz >= 16 ) {
-                            chunkZ+=dz;
-                            zz-=16*dz;
-                        }
-
-                        List<Integer> xz = Arrays.asList( chunkX, chunkZ );
-                        if( chunks.containsKey( xz) ) chunk1 = chunks.get( xz );
-                        else {
-                            try {
-                                chunk1 = getWorld().getChunkAt( chunkX, chunkZ ).get();
-                                chunks.put( xz,chunk1 );
-                                chunk1.keep( true );
-                            } catch ( InterruptedException | ExecutionException e ) {
-                                return null;
-                            }
-                        }
-
-                        for ( int y = left.y() - safe; y < left.y() + safe && pass; y++ ) {
-                            if( y>getWorld().getMaxHeight() || y<getWorld().getMinHeight() ) continue;
-                            block = chunk1.getBlockAt( xx, y, zz );
-                            if ( unsafeBlocks.contains( block.getMaterial()) ) pass = false;
-                        }
-                    }
+                Map<Long, RTPChunk> chunks = new HashMap<>( chunkFutures.size() );
+                boolean pass = true;
+                for ( Map.Entry<Long, CompletableFuture<RTPChunk>> entry : chunkFutures.entrySet() ) {
+                    RTPChunk chunk = entry.getValue().isCompletedExceptionally() ? null : entry.getValue().getNow( null );
+                    if ( chunk == null ) pass = false;
+                    chunks.put( entry.getKey(), chunk );
                 }
-                for( RTPChunk usedChunk : chunks.values() ) usedChunk.keep( false );
 
+                //todo: waterlogged check
+                if ( pass ) pass = Selection.isSafe( left.world(), left, safe, chunks, settings.unsafeBlockIds, null );
                 if ( pass ) pass = checkGlobalRegionVerifiers( left );
                 if ( pass ) return pair;
+
+                RTPChunk chunk = chunks.get( Selection.chunkKey( Math.floorDiv( left.x(), 16 ), Math.floorDiv( left.z(), 16 ) ) );
+                if ( chunk != null ) chunk.unload();
             }
+            pair = null;
         }
 
         while ( !custom && !locationQueue.isEmpty() ) {
@@ -406,365 +403,36 @@ public class Region extends FactoryValue<RegionKeys> {
         safetyExternal,
         misc
     }
+
+    /**
+     * blocking form of getLocationAsync, for API callers.
+     * region tasks should use getLocationAsync so they don't hold a thread on chunk loads
+     */
     @Nullable
     public Map.Entry<RTPLocation, Long> getLocation( @Nullable Set<String> biomeNames ) {
-
-        boolean defaultBiomes = false;
-        ConfigParser<PerformanceKeys> performance = ( ConfigParser<PerformanceKeys> ) RTP.configs.getParser( PerformanceKeys.class );
-        ConfigParser<SafetyKeys> safety = ( ConfigParser<SafetyKeys> ) RTP.configs.getParser( SafetyKeys.class );
-        ConfigParser<LoggingKeys> logging = ( ConfigParser<LoggingKeys> ) RTP.configs.getParser( LoggingKeys.class );
-        Object o;
-        if ( biomeNames == null || biomeNames.isEmpty() ) {
-            defaultBiomes = true;
-            o = safety.getConfigValue( SafetyKeys.biomeWhitelist, false );
-            boolean whitelist = ( o instanceof Boolean ) ? ( Boolean ) o : Boolean.parseBoolean( o.toString() );
-
-            o = safety.getConfigValue( SafetyKeys.biomes, null );
-            List<String> biomeList = ( o instanceof List ) ? ( (List<?> ) o ).stream().map( Object::toString ).collect( Collectors.toList() ) : null;
-            Set<String> biomeSet = ( biomeList == null )
-                    ? new HashSet<>()
-                    : biomeList.stream().map( String::toUpperCase ).collect( Collectors.toSet() );
-            if ( whitelist ) {
-                biomeNames = biomeSet;
-            } else {
-                Set<String> biomes = RTP.serverAccessor.getBiomes( getWorld() );
-                Set<String> set = new HashSet<>();
-                for ( String s : biomes ) {
-                    if ( !biomeSet.contains( s.toUpperCase()) ) {
-                        set.add( s );
-                    }
-                }
-                biomeNames = set;
-            }
-        }
-
-        boolean verbose = false;
-        if ( logging != null ) {
-            o = logging.getConfigValue( LoggingKeys.selection_failure, false );
-            if ( o instanceof Boolean ) {
-                verbose = ( Boolean ) o;
-            } else {
-                verbose = Boolean.parseBoolean( o.toString() );
-            }
-        }
-
-        Shape<?> shape = getShape();
-        if ( shape == null ) {
-            new IllegalStateException( "[RTP] invalid state, null shape" ).printStackTrace();
-            return null;
-        }
-
-        VerticalAdjustor<?> vert = getVert();
-        if ( vert == null ) {
-            new IllegalStateException( "[RTP] invalid state, null vert" ).printStackTrace();
+        try {
+            return getLocationAsync( biomeNames ).get();
+        } catch ( InterruptedException | ExecutionException | CancellationException e ) {
+            RTP.log( Level.WARNING, e.getMessage(), e );
             return null;
         }
+    }
 
-        o = safety.getConfigValue( SafetyKeys.unsafeBlocks, new ArrayList<>() );
-        Set<String> unsafeBlocks = ( o instanceof Collection ) ? ( (Collection<?> ) o )
-                .stream().map( o1 -> o1.toString().toUpperCase() ).collect( Collectors.toSet() )
-                : new HashSet<>();
-
-        int safetyRadius = safety.getNumber( SafetyKeys.safetyRadius, 0 ).intValue();
-
-        long maxAttemptsBase = performance.getNumber( PerformanceKeys.maxAttempts, 20 ).longValue();
-        maxAttemptsBase = Math.max( maxAttemptsBase, 1 );
-        long maxAttempts = maxAttemptsBase;
-        long maxBiomeChecks = maxBiomeChecksPerGen * maxAttempts;
-        if( !defaultBiomes ) maxBiomeChecks *= 10;
-        long biomeChecks = 0L;
-
-        RTPWorld world = getWorld();
-
-        Map<FailTypes,Map<String,Long>> failMap = new EnumMap<>( FailTypes.class );
-        for( FailTypes f : FailTypes.values() ) failMap.put( f,new HashMap<>() );
-        List<Map.Entry<Long, Long>> selections = new ArrayList<>();
-
-        RTPLocation location = null;
-        long i = 1;
-
-        boolean biomeRecall = Boolean.parseBoolean( performance.getConfigValue( PerformanceKeys.biomeRecall, false ).toString() );
-        boolean biomeRecallForced = Boolean.parseBoolean( performance.getConfigValue( PerformanceKeys.biomeRecallForced, false ).toString() );
-
-        for ( ; i <= maxAttempts; i++ ) {
-            long l = -1;
-            int[] select;
-            if ( shape instanceof MemoryShape ) {
-                MemoryShape<?> memoryShape = ( MemoryShape<?> ) shape;
-                if ( biomeRecall && !defaultBiomes ) {
-                    List<Map.Entry<Long, Long>> biomes = new ArrayList<>();
-                    for ( String biomeName : biomeNames ) {
-                        ConcurrentSkipListMap<Long, Long> map = memoryShape.biomeLocations.get( biomeName );
-                        if ( map != null ) {
-                            biomes.addAll( map.entrySet() );
-                        }
-                    }
-                    Map.Entry<Long, Long> entry;
-                    if( biomes.size()>0 ) {
-                        int nextInt = ThreadLocalRandom.current().nextInt( biomes.size() );
-                        entry = biomes.get( nextInt );
-                        l = entry.getKey() + ThreadLocalRandom.current().nextLong( entry.getValue() );
-                    }
-                    else if( biomeRecallForced ) {
-                        new IllegalStateException( "[RTP] invalid state, biome recall enabled but biomes are not in memory - " + Arrays.toString( biomeNames.toArray()) ).printStackTrace();
-                        return new AbstractMap.SimpleEntry<>( null, i );
-                    }
-                    else l = memoryShape.rand();
-                } else {
-                    l = memoryShape.rand();
-                }
-
-                select = memoryShape.locationToXZ( l );
-
-            } else {
-                select = shape.select();
-            }
-            if ( verbose ) {
-//                if( shape instanceof MemoryShape ) selections.add( new AbstractMap.SimpleEntry<>( (long ) selections.size(), l) );
-//                else selections.add( new AbstractMap.SimpleEntry<>( (long ) select[0], ( long ) select[1]) );
-                selections.add( new AbstractMap.SimpleEntry<>( (long ) select[0], ( long ) select[1]) );
-            }
-
-            String currBiome = world.getBiome( select[0] * 16 + 7, ( vert.minY() + vert.maxY() ) / 2, select[1] * 16 + 7 );
-
-            for ( ; biomeChecks < maxBiomeChecks && !biomeNames.contains( currBiome ); biomeChecks++, maxAttempts++, i++ )
-            {
-                if ( shape instanceof MemoryShape ) {
-                    MemoryShape<?> memoryShape = ( MemoryShape<?> ) shape;
-                    if ( defaultBiomes && biomeRecall ) {
-                        memoryShape.addBadLocation( l );
-                    }
-                    if ( biomeRecall && !defaultBiomes ) {
-                        List<Map.Entry<Long, Long>> biomes = new ArrayList<>();
-                        for ( String biomeName : biomeNames ) {
-                            ConcurrentSkipListMap<Long, Long> map = memoryShape.biomeLocations.get( biomeName );
-                            if ( map != null ) {
-                                biomes.addAll( map.entrySet() );
-                            }
-                        }
-                        Map.Entry<Long, Long> entry;
-                        if( biomes.size()>0 ) {
-                            int nextInt = ThreadLocalRandom.current().nextInt( biomes.size() );
-                            entry = biomes.get( nextInt );
-                            l = entry.getKey() + ThreadLocalRandom.current().nextLong( entry.getValue() );
-                        }
-                        else if( biomeRecallForced ) {
-                            new IllegalStateException( "[RTP] invalid state, biome recall enabled but biomes are not in memory - " + Arrays.toString( biomeNames.toArray()) ).printStackTrace();
-                            return new AbstractMap.SimpleEntry<>( null, i );
-                        }
-                        else l = memoryShape.rand();
-                    } else {
-                        l = memoryShape.rand();
-                    }
-
-                    select = memoryShape.locationToXZ( l );
-                } else {
-                    select = shape.select();
-                }
-
-                if ( verbose ) {
-//                if( shape instanceof MemoryShape ) selections.add( new AbstractMap.SimpleEntry<>( (long ) selections.size(), l) );
-//                else selections.add( new AbstractMap.SimpleEntry<>( (long ) select[0], ( long ) select[1]) );
-                    selections.add( new AbstractMap.SimpleEntry<>( (long ) select[0], ( long ) select[1]) );
-                }
-
-                String key = "biome="+currBiome;
-                if( verbose ) {
-                    failMap.get( FailTypes.biome ).compute( key, ( s, aLong ) -> {
-                        if ( aLong == null ) return 1L;
-                        return ++aLong;
-                    } );
-                }
-                currBiome = world.getBiome( select[0] * 16 + 7, ( vert.minY() + vert.maxY() ) / 2, select[1] * 16 + 7 );
-            }
-            if( biomeChecks>=maxBiomeChecks ) break;
-
-            WorldBorder border = RTP.serverAccessor.getWorldBorder( world.name() );
-            if ( !border.isInside().apply( new RTPLocation( world, select[0] * 16, ( vert.maxY() + vert.minY() ) / 2, select[1] * 16)) ) {
-                new IllegalStateException( "worldborder check failed. region/selection is likely outside the worldborder" ).printStackTrace();
-                maxAttempts++;
-                Long worldBorderFails = failMap.get( FailTypes.worldBorder ).getOrDefault( "OUTSIDE_BORDER", 0L );
-                worldBorderFails++;
-                if ( worldBorderFails > 1000 ) {
-                    new IllegalStateException( "1000 worldborder checks failed. region/selection is likely outside the worldborder" ).printStackTrace();
-                    return new AbstractMap.SimpleEntry<>( null, i );
-                }
-                failMap.get( FailTypes.worldBorder ).put( "OUTSIDE_BORDER",worldBorderFails );
-                continue;
-            }
-
-            CompletableFuture<RTPChunk> cfChunk = world.getChunkAt( select[0], select[1] );
-            RTP.futures.add( cfChunk );
-
-            RTPChunk chunk;
-
-            try {
-                chunk = cfChunk.get();
-            } catch ( InterruptedException | ExecutionException e ) {
-               RTP.log( Level.WARNING, e.getMessage(), e );
-                return new AbstractMap.SimpleEntry<>( null, i );
-            }
-            if( chunk == null ) {
-                new IllegalStateException( "[RTP] null chunk" ).printStackTrace();
-                return null;
-            }
-
-            location = vert.adjust( chunk );
-            if ( location == null ) {
-                if ( defaultBiomes && shape instanceof MemoryShape && biomeRecall ) {
-                    ( (MemoryShape<?> ) shape ).addBadLocation( l );
-                }
-                if( verbose ) {
-                    failMap.get( FailTypes.vert ).compute( "biome=" + currBiome,
-                            ( s, aLong ) -> ( aLong==null ) ? ( 1L ) : ( ++aLong) );
-                }
-                chunk.unload();
-                continue;
-            }
-
-            currBiome = world.getBiome( location.x(), location.y(), location.z() );
-
-            if ( !biomeNames.contains( currBiome) ) {
-                biomeChecks++;
-                maxAttempts++;
-                if( defaultBiomes && shape instanceof MemoryShape && biomeRecall ) {
-                    ( (MemoryShape<?> ) shape ).addBadLocation( l );
-                }
-
-                if( verbose ) {
-                    failMap.get( FailTypes.biome ).compute( "biome=" + currBiome,
-                            ( s, aLong ) -> ( aLong == null ) ? 1L : ++aLong );
-                }
-                chunk.unload();
-                continue;
-            }
-
-            boolean pass = true;
-
-            //todo: waterlogged check
-            RTPBlock block;
-            RTPChunk chunk1;
-            Map<List<Integer>,RTPChunk> chunks = new HashMap<>();
-            chunks.put( Arrays.asList( chunk.x(),chunk.z() ),chunk );
-            chunk.keep( true );
-            for ( int x = location.x() - safetyRadius; x < location.x() + safetyRadius && pass; x++ ) {
-                int xx = x;
-                int dx = Math.abs( xx/16 );
-                int chunkX = chunk.x();
-
-                if( xx < 0 ) {
-                    chunkX-=dx+1;
-                    if( xx%16==0 ) xx+=16*dx;
-                    else xx+=16*( dx+1 );
-                } else if( xx >= 16 ) {
-                    chunkX+=dx;
-                    xx-=16*dx;
-                }
-
-                for ( int z = location.z() - safetyRadius; z < location.z() + safetyRadius && pass; z++ ) {
-                    int zz = z;
-
-                    int dz = Math.abs( zz/16 );
-
-                    int chunkZ = chunk.z();
-
-                    if( zz < 0 ) {
-                        chunkZ-=dz+1;
-                        if( zz%16==0 ) zz+=16*dz;
-                        else zz+=16*( dz+1 );
-                    } else if( zz >= 16 ) {
-                        chunkZ+=dz;
-                        zz-=16*dz;
-                    }
-
-                    List<Integer> xz = Arrays.asList( chunkX, chunkZ );
-                    if( chunks.containsKey( xz) ) chunk1 = chunks.get( xz );
-                    else {
-                        try {
-                            chunk1 = getWorld().getChunkAt( chunkX, chunkZ ).get();
-                            chunks.put( xz,chunk1 );
-                            chunk1.keep( true );
-                        } catch ( InterruptedException | ExecutionException e ) {
-                           RTP.log( Level.WARNING, e.getMessage(), e );
-                            return null;
-                        }
-                    }
-
-                    for ( int y = location.y() - safetyRadius; y < location.y() + safetyRadius && pass; y++ ) {
-                        if( y>getWorld().getMaxHeight() || y<getWorld().getMinHeight() ) continue;
-                        block = chunk1.getBlockAt( xx, y, zz );
-                        String material = block.getMaterial();
-                        if ( unsafeBlocks.contains( block.getMaterial()) ) {
-                            pass = false;
-                            if( verbose ) {
-                                String key = "material=" + material;
-                                failMap.get( FailTypes.safety ).compute( key, ( s, aLong ) -> {
-                                    if ( aLong == null ) return 1L;
-                                    return ++aLong;
-                                } );
-                            }
-                        }
-                    }
-                }
-            }
-            for( RTPChunk usedChunk : chunks.values() ) usedChunk.keep( false );
-
-            pass &= checkGlobalRegionVerifiers( location );
-
-            if ( pass ) {
-                if ( shape instanceof MemoryShape ) {
-                    if( l>0 ) ( (MemoryShape<?> ) shape ).addBiomeLocation( l, currBiome );
-                }
-                break;
-            } else {
-                if ( verbose ) failMap.get( FailTypes.misc ).compute( "location="+"("+location.x()+","+location.y()+","+location.z(),
-                        ( s, aLong ) -> ( aLong==null ) ? 1L : ++aLong );
-                if ( shape instanceof MemoryShape ) {
-                    ( (MemoryShape<?> ) shape ).addBadLocation( l );
-                }
-                location = null;
-            }
-            chunk.unload();
-        }
-
-//        if ( verbose ) {
-        if ( verbose && i >= maxAttempts || i > maxAttemptsBase*maxBiomeChecksPerGen ) {
-            RTP.log( Level.INFO, "#00ff80[RTP] [" + name + "] failed to generate a location within " + maxAttempts + " tries. Adjust your configuration." );
-            for( Map.Entry<FailTypes,Map<String,Long>> mapEntry : failMap.entrySet() ) {
-                Map<String, Long> map = mapEntry.getValue();
-                String[] output = new String[map.size()];
-                int pos = 0;
-                long count = 0;
-                for( Map.Entry<String,Long> entry : map.entrySet() ) {
-                    output[pos] = "#00ff80[RTP] [" + name + "] " + " cause=" + mapEntry.getKey() + " " + entry.getKey() + " fails=" + entry.getValue();
-                    count+=entry.getValue();
-                    pos++;
-                }
-                RTP.log( Level.INFO,"#00ff80[RTP] [" + name + "] " + " cause=" + mapEntry.getKey() + " fails=" + count );
-                for( String out : output ) {
-                    RTP.log( Level.INFO,out );
-                }
-            }
-
-            StringBuilder selectionsStr = new StringBuilder();
-            boolean first = true;
-            selectionsStr = selectionsStr.append( "{" );
-            for( Map.Entry<Long, Long> entry : selections ) {
-                if( !first ) {
-                    selectionsStr = selectionsStr.append( "," );
-                }
-                selectionsStr = selectionsStr.append( "(" ).append( entry.getKey() ).append( "," ).append( entry.getValue() ).append( ")" );
-            }
-            selectionsStr = selectionsStr.append( "}" );
-            RTP.log( Level.INFO, "#0f0080[RTP] [" + name + "] selections: " + selectionsStr );
-        }
-
-        i = Math.min( i, maxAttempts );
-
-        return new AbstractMap.SimpleEntry<>( location, i );
+    /**
+     * start a selection without waiting on it
+     * @return future of (location, attempts). location is null if no valid location was found,
+     *         and the entry itself is null on an invalid region state
+     */
+    public CompletableFuture<Map.Entry<RTPLocation, Long>> getLocationAsync( @Nullable Set<String> biomeNames ) {
+        CompletableFuture<Map.Entry<RTPLocation, Long>> res = new Selection( this, biomeNames ).start();
+        pendingSelections.add( res );
+        res.whenComplete( ( pair, throwable ) -> pendingSelections.remove( res ) );
+        return res;
     }
 
     public void shutDown() {
+        demand.save( demandFile() );
+
         Shape<?> shape = getShape();
         if ( shape == null ) return;
 
@@ -777,6 +445,8 @@ public class Region extends FactoryValue<RegionKeys> {
 
         cachePipeline.stop();
         cachePipeline.clear();
+        pendingSelections.forEach( future -> future.cancel( false ) );
+        pendingSelections.clear();
 
         playerQueue.clear();
         perPlayerLocationQueue.clear();
@@ -795,6 +465,10 @@ public class Region extends FactoryValue<RegionKeys> {
         clone.playerQueue = new ConcurrentLinkedQueue<>();
         clone.perPlayerLocationQueue = new ConcurrentHashMap<>();
         clone.fastLocations = new ConcurrentHashMap<>();
+        clone.selectionsInFlight = new AtomicInteger( 0 );
+        clone.pendingSelections = ConcurrentHashMap.newKeySet();
+        clone.settings = null;
+        clone.demand = new CacheDemand();
         return clone;
     }
 
@@ -836,10 +510,11 @@ public class Region extends FactoryValue<RegionKeys> {
 
         int cx = location.x();
         int cz = location.z();
-        cx = ( cx > 0 ) ? cx / 16 : cx / 16 - 1;
-        cz = ( cz > 0 ) ? cz / 16 : cz / 16 - 1;
+        cx = Math.floorDiv( cx, 16 );
+        cz = Math.floorDiv( cz, 16 );
 
-        List<CompletableFuture<RTPChunk>> chunks = new ArrayList<>();
+        List<CompletableFuture<RTPChunk>> chunks = new ArrayList<>( (int ) sz );
+        long[] keys = new long[(int ) sz];
 
         Shape<?> shape = getShape();
         if ( shape == null ) return null;
@@ -853,11 +528,12 @@ public class Region extends FactoryValue<RegionKeys> {
         for ( long i = -radius; i <= radius; i++ ) {
             for ( long j = -radius; j <= radius; j++ ) {
                 CompletableFuture<RTPChunk> cfChunk = location.world().getChunkAt( (int ) ( cx + i ), ( int ) ( cz + j) );
+                keys[chunks.size()] = ChunkRefMap.key( (int ) ( cx + i ), ( int ) ( cz + j ) );
                 chunks.add( cfChunk );
             }
         }
 
-        ChunkSet chunkSet = new ChunkSet( chunks, new CompletableFuture<>() );
+        ChunkSet chunkSet = new ChunkSet( location.world(), keys, chunks, new CompletableFuture<>() );
         chunkSet.keep( true );
         locAssChunks.put( location, chunkSet );
         return chunkSet;
@@ -1014,6 +690,8 @@ public class Region extends FactoryValue<RegionKeys> {
     //localized generic task for
     protected class Cache extends RTPRunnable {
         private final UUID playerId;
+        //fill time counts from here, including the wait for a turn
+        private final long created = System.nanoTime();
 
         public Cache() {
             playerId = null;
@@ -1023,42 +701,73 @@ public class Region extends FactoryValue<RegionKeys> {
             this.playerId = playerId;
         }
 
+        @Override
+        public RTPTaskPipe.Priority priority() {
+            //someone is waiting on this one
+            return ( playerId == null ) ? RTPTaskPipe.Priority.normal : RTPTaskPipe.Priority.urgent;
+        }
+
         @Override
         public void run() {
-            long cacheCap = getNumber( RegionKeys.cacheCap, 10L ).longValue();
-            cacheCap = Math.max( cacheCap, playerQueue.size() );
-            Map.Entry<RTPLocation, Long> pair = getLocation( null );
-            if ( pair != null ) {
-                RTPLocation location = pair.getKey();
-                if ( location == null ) {
-                    if ( cachePipeline.size() + locationQueue.size() < cacheCap + playerQueue.size() )
-                        cachePipeline.add( new Cache() );
+            if ( selectionsInFlight.get() >= settings().maxConcurrentSelections ) {
+                //wait for a running selection to finish
+                setDelay( 1 );
+                if ( playerId == null ) cachePipeline.add( this );
+                else miscPipeline.add( this );
+                return;
+            }
+
+            selectionsInFlight.incrementAndGet();
+            CompletableFuture<Map.Entry<RTPLocation, Long>> future;
+            try {
+                future = getLocationAsync( null );
+            } catch ( Throwable throwable ) {
+                selectionsInFlight.decrementAndGet();
+                throw throwable;
+            }
+
+            future.whenComplete( ( pair, throwable ) -> {
+                selectionsInFlight.decrementAndGet();
+                if ( throwable != null ) {
+                    if ( !( throwable instanceof CancellationException ) ) RTP.log( Level.WARNING, throwable.getMessage(), throwable );
                     return;
                 }
+                if ( pair != null && pair.getKey() != null ) accept( pair );
+                refill();
+            } );
+            refill();
+        }
+
+        private void accept( Map.Entry<RTPLocation, Long> pair ) {
+            RTPLocation location = pair.getKey();
+
+            long radius = settings().viewDistanceSelect;
 
-                ConfigParser<PerformanceKeys> perf = ( ConfigParser<PerformanceKeys> ) RTP.configs.getParser( PerformanceKeys.class );
-                long radius = perf.getNumber( PerformanceKeys.viewDistanceSelect, 0L ).longValue();
-
-                ChunkSet chunkSet = chunks( location, radius );
-
-                chunkSet.whenComplete( aBoolean -> {
-                    if ( aBoolean ) {
-                        if ( playerId == null ) {
-                            locationQueue.add( pair );
-                            locAssChunks.put( location, chunkSet );
-                        } else if ( fastLocations.containsKey( playerId ) && !fastLocations.get( playerId ).isDone() ) {
-                            fastLocations.get( playerId ).complete( pair );
-                        } else {
-                            perPlayerLocationQueue.putIfAbsent( playerId, new ConcurrentLinkedQueue<>() );
-                            perPlayerLocationQueue.get( playerId ).add( pair );
-                        }
+            ChunkSet chunkSet = chunks( location, radius );
+            if ( chunkSet == null ) return;
+
+            chunkSet.whenComplete( aBoolean -> {
+                if ( aBoolean ) {
+                    demand.filled( System.nanoTime() - created );
+                    if ( playerId == null ) {
+                        locationQueue.add( pair );
+                        locAssChunks.put( location, chunkSet );
+                    } else if ( fastLocations.containsKey( playerId ) && !fastLocations.get( playerId ).isDone() ) {
+                        fastLocations.get( playerId ).complete( pair );
                     } else {
-                        chunkSet.keep( false );
-                        locAssChunks.remove( location );
+                        perPlayerLocationQueue.putIfAbsent( playerId, new ConcurrentLinkedQueue<>() );
+                        perPlayerLocationQueue.get( playerId ).add( pair );
                     }
-                } );
-            }
-            if ( cachePipeline.size() + locationQueue.size() < cacheCap + playerQueue.size() )
+                } else {
+                    chunkSet.keep( false );
+                    locAssChunks.remove( location );
+                }
+            } );
+        }
+
+        private void refill() {
+            long cacheCap = Math.max( cacheCap(), playerQueue.size() );
+            if ( cachePipeline.size() + selectionsInFlight.get() + locationQueue.size() < cacheCap + playerQueue.size() )
                 cachePipeline.add( new Cache() );
         }
     }
@@ -0,0 +1,141 @@
+package io.github.dailystruggle.rtp.common.selection.region;
+
+import io.github.dailystruggle.rtp.common.RTP;
+import io.github.dailystruggle.rtp.common.configuration.ConfigParser;
+import io.github.dailystruggle.rtp.common.configuration.enums.LoggingKeys;
+import io.github.dailystruggle.rtp.common.configuration.enums.PerformanceKeys;
+import io.github.dailystruggle.rtp.common.configuration.enums.RegionKeys;
+import io.github.dailystruggle.rtp.common.configuration.enums.SafetyKeys;
+import io.github.dailystruggle.rtp.common.serverSide.MaterialSets;
+import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPWorld;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * typed, immutable copy of everything selection reads from config for one region.
+ * compiled on load and reload, then swapped into the region as a whole,
+ * so a selection sees one consistent version no matter when /rtp reload runs.
+ */
+public final class RegionSettings {
+    /**
+     * biomes to accept when a command doesn't name any, after applying the whitelist/blacklist
+     */
+    public final Set<String> defaultBiomes;
+    /**
+     * defaultBiomes as biome ids, read-only
+     */
+    public final BitSet defaultBiomeIds;
+    /**
+     * unsafe material ids, read-only
+     */
+    public final BitSet unsafeBlockIds;
+    public final int safetyRadius;
+    public final long maxAttempts;
+    public final long maxConcurrentSelections;
+    public final long viewDistanceSelect;
+    public final long cacheCap;
+    /**
+     * size the cache from forecast demand, up to maxCacheCap, see CacheDemand
+     */
+    public final boolean adaptiveCache;
+    public final long maxCacheCap;
+    public final boolean biomeRecall;
+    public final boolean biomeRecallForced;
+    public final boolean verbose;
+
+    private RegionSettings( Set<String> defaultBiomes, BitSet unsafeBlockIds, int safetyRadius,
+                            long maxAttempts, long maxConcurrentSelections, long viewDistanceSelect, long cacheCap,
+                            boolean adaptiveCache, long maxCacheCap, boolean biomeRecall, boolean biomeRecallForced, boolean verbose ) {
+        this.defaultBiomes = Collections.unmodifiableSet( defaultBiomes );
+        this.defaultBiomeIds = biomeIds( defaultBiomes );
+        this.unsafeBlockIds = unsafeBlockIds;
+        this.safetyRadius = safetyRadius;
+        this.maxAttempts = maxAttempts;
+        this.maxConcurrentSelections = maxConcurrentSelections;
+        this.viewDistanceSelect = viewDistanceSelect;
+        this.cacheCap = cacheCap;
+        this.adaptiveCache = adaptiveCache;
+        this.maxCacheCap = maxCacheCap;
+        this.biomeRecall = biomeRecall;
+        this.biomeRecallForced = biomeRecallForced;
+        this.verbose = verbose;
+    }
+
+    public static RegionSettings compile( Region region ) {
+        ConfigParser<PerformanceKeys> performance = ( ConfigParser<PerformanceKeys> ) RTP.configs.getParser( PerformanceKeys.class );
+        ConfigParser<SafetyKeys> safety = ( ConfigParser<SafetyKeys> ) RTP.configs.getParser( SafetyKeys.class );
+        ConfigParser<LoggingKeys> logging = ( ConfigParser<LoggingKeys> ) RTP.configs.getParser( LoggingKeys.class );
+
+        Set<String> biomeSet = new HashSet<>();
+        boolean whitelist = false;
+        int safetyRadius = 0;
+        if ( safety != null ) {
+            whitelist = toBoolean( safety.getConfigValue( SafetyKeys.biomeWhitelist, false ) );
+
+            Object o = safety.getConfigValue( SafetyKeys.biomes, null );
+            if ( o instanceof Collection ) {
+                biomeSet = ( (Collection<?> ) o ).stream().filter( Objects::nonNull )
+                        .map( o1 -> o1.toString().toUpperCase() ).collect( Collectors.toSet() );
+            }
+
+            safetyRadius = safety.getNumber( SafetyKeys.safetyRadius, 0 ).intValue();
+        }
+
+        Set<String> defaultBiomes;
+        if ( whitelist ) {
+            defaultBiomes = biomeSet;
+        } else {
+            RTPWorld world = region.getWorld();
+            defaultBiomes = new HashSet<>();
+            for ( String s : RTP.serverAccessor.getBiomes( world ) ) {
+                if ( !biomeSet.contains( s.toUpperCase()) ) {
+                    defaultBiomes.add( s );
+                }
+            }
+        }
+
+        long maxAttempts = 20;
+        long maxConcurrentSelections = 8;
+        long viewDistanceSelect = 0;
+        boolean biomeRecall = false;
+        boolean biomeRecallForced = false;
+        if ( performance != null ) {
+            maxAttempts = performance.getNumber( PerformanceKeys.maxAttempts, 20 ).longValue();
+            maxConcurrentSelections = performance.getNumber( PerformanceKeys.maxConcurrentSelections, 8L ).longValue();
+            viewDistanceSelect = performance.getNumber( PerformanceKeys.viewDistanceSelect, 0L ).longValue();
+            biomeRecall = toBoolean( performance.getConfigValue( PerformanceKeys.biomeRecall, false ) );
+            biomeRecallForced = toBoolean( performance.getConfigValue( PerformanceKeys.biomeRecallForced, false ) );
+        }
+
+        boolean verbose = false;
+        if ( logging != null ) {
+            verbose = toBoolean( logging.getConfigValue( LoggingKeys.selection_failure, false ) );
+        }
+
+        long cacheCap = region.getNumber( RegionKeys.cacheCap, 10L ).longValue();
+        boolean adaptiveCache = toBoolean( region.getData().getOrDefault( RegionKeys.adaptiveCache, false ) );
+        long maxCacheCap = region.getNumber( RegionKeys.maxCacheCap, 64L ).longValue();
+
+        return new RegionSettings( defaultBiomes, MaterialSets.get().unsafe, safetyRadius,
+                Math.max( maxAttempts, 1 ), Math.max( maxConcurrentSelections, 1 ), viewDistanceSelect, cacheCap,
+                adaptiveCache, Math.max( maxCacheCap, 1 ), biomeRecall, biomeRecallForced, verbose );
+    }
+
+    /**
+     * @return bitset of RTPServerAccessor.biomeId for each name
+     */
+    public static BitSet biomeIds( Collection<String> biomeNames ) {
+        BitSet res = new BitSet();
+        for ( String biome : biomeNames ) {
+            int id = RTP.serverAccessor.biomeId( biome );
+            if ( id >= 0 ) res.set( id );
+        }
+        return res;
+    }
+
+    private static boolean toBoolean( Object o ) {
+        if ( o instanceof Boolean ) return ( Boolean ) o;
+        return Boolean.parseBoolean( String.valueOf( o ) );
+    }
+}
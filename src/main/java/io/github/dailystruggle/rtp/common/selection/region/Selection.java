@@ -0,0 +1,423 @@
+package io.github.dailystruggle.rtp.common.selection.region;
+
+import io.github.dailystruggle.rtp.common.RTP;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes.MemoryShape;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.shapes.Shape;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.verticalAdjustors.VerticalAdjustor;
+import io.github.dailystruggle.rtp.common.selection.worldborder.WorldBorder;
+import io.github.dailystruggle.rtp.common.serverSide.ChunkRefMap;
+import io.github.dailystruggle.rtp.common.serverSide.NameRegistry;
+import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPBlock;
+import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPChunk;
+import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPLocation;
+import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPWorld;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+
+/**
+ * one location search for a region, run as a chain of stages per attempt:
+ * shape sample -> biome -> border -> chunk load -> vert adjust -> safety -> verifiers.
+ * nothing here waits on a chunk load, each attempt continues on the executor once its chunks arrive
+ * and a failed attempt schedules the next one, so many searches can be in flight at once.
+ */
+public class Selection {
+    /**
+     * blocks in a 16x16x16 section, what it costs to build its palette
+     */
+    private static final int sectionVolume = 16 * 16 * 16;
+
+    private final Region region;
+    /**
+     * where stages run after a chunk load completes
+     */
+    private final Executor executor;
+    private final CompletableFuture<Map.Entry<RTPLocation, Long>> result = new CompletableFuture<>();
+
+    private final Shape<?> shape;
+    private final VerticalAdjustor<?> vert;
+    private final RTPWorld world;
+    private final Set<String> biomeNames;
+    private final BitSet biomeIds;
+    private final boolean defaultBiomes;
+    private final boolean verbose;
+    private final boolean biomeRecall;
+    private final boolean biomeRecallForced;
+    private final BitSet unsafeBlockIds;
+    private final int safetyRadius;
+    private final long maxAttemptsBase;
+    private final long maxBiomeChecks;
+
+    private final Map<Region.FailTypes, Map<String, Long>> failMap = new EnumMap<>( Region.FailTypes.class );
+    private final List<Map.Entry<Long, Long>> selections = new ArrayList<>();
+
+    //attempt state, only touched by whichever stage currently owns this selection
+    private long maxAttempts;
+    private long biomeChecks = 0L;
+    private long i = 1;
+    private long l = -1;
+    private int[] select;
+
+    public Selection( Region region, @Nullable Set<String> biomeNames ) {
+        this( region, biomeNames, region.selectionExecutor );
+    }
+
+    public Selection( Region region, @Nullable Set<String> biomeNames, Executor executor ) {
+        this.region = region;
+        this.executor = executor;
+        RegionSettings settings = region.settings();
+
+        this.shape = region.getShape();
+        this.vert = region.getVert();
+        this.world = region.getWorld();
+
+        defaultBiomes = biomeNames == null || biomeNames.isEmpty();
+        this.biomeNames = defaultBiomes ? settings.defaultBiomes : biomeNames;
+        this.biomeIds = defaultBiomes ? settings.defaultBiomeIds : RegionSettings.biomeIds( biomeNames );
+        verbose = settings.verbose;
+        unsafeBlockIds = settings.unsafeBlockIds;
+        safetyRadius = settings.safetyRadius;
+        biomeRecall = settings.biomeRecall;
+        biomeRecallForced = settings.biomeRecallForced;
+
+        maxAttemptsBase = settings.maxAttempts;
+        maxAttempts = maxAttemptsBase;
+        long maxBiomeChecks = Region.maxBiomeChecksPerGen * maxAttempts;
+        if ( !defaultBiomes ) maxBiomeChecks *= 10;
+        this.maxBiomeChecks = maxBiomeChecks;
+
+        for ( Region.FailTypes f : Region.FailTypes.values() ) failMap.put( f, new HashMap<>() );
+    }
+
+    /**
+     * @return future completing with (location, attempts), location being null on failure.
+     *         completes with null on an invalid region state, same as the blocking getLocation.
+     */
+    public CompletableFuture<Map.Entry<RTPLocation, Long>> start() {
+        if ( shape == null ) {
+            new IllegalStateException( "[RTP] invalid state, null shape" ).printStackTrace();
+            result.complete( null );
+        } else if ( vert == null ) {
+            new IllegalStateException( "[RTP] invalid state, null vert" ).printStackTrace();
+            result.complete( null );
+        } else executor.execute( this::attempt );
+        return result;
+    }
+
+    public CompletableFuture<Map.Entry<RTPLocation, Long>> result() {
+        return result;
+    }
+
+    /**
+     * @return fails so far by cause. only counted while selection failure logging is on
+     */
+    public Map<String, Long> failures() {
+        Map<String, Long> res = new LinkedHashMap<>();
+        for ( Map.Entry<Region.FailTypes, Map<String, Long>> entry : failMap.entrySet() ) {
+            long sum = 0;
+            for ( Long count : entry.getValue().values() ) sum += count;
+            if ( sum > 0 ) res.put( entry.getKey().name(), sum );
+        }
+        return res;
+    }
+
+    /**
+     * stages up to the chunk request. these don't touch chunk data, so they run straight through.
+     */
+    private void attempt() {
+        if ( result.isDone() ) return;
+        try {
+            if ( i > maxAttempts ) {
+                finish( null );
+                return;
+            }
+
+            if ( !sample() ) return;
+
+            String currBiome = world.getChunkBiome( select[0], ( vert.minY() + vert.maxY() ) / 2, select[1] );
+            for ( ; biomeChecks < maxBiomeChecks && !NameRegistry.has( biomeIds, RTP.serverAccessor.biomeId( currBiome ) ); biomeChecks++, maxAttempts++, i++ ) {
+                if ( defaultBiomes && biomeRecall && shape instanceof MemoryShape ) {
+                    ( (MemoryShape<?> ) shape ).addBadLocation( l );
+                }
+                if ( !sample() ) return;
+                if ( verbose ) count( Region.FailTypes.biome, "biome=" + currBiome );
+                currBiome = world.getChunkBiome( select[0], ( vert.minY() + vert.maxY() ) / 2, select[1] );
+            }
+            if ( biomeChecks >= maxBiomeChecks ) {
+                finish( null );
+                return;
+            }
+
+            WorldBorder border = RTP.serverAccessor.getWorldBorder( world.name() );
+            if ( !border.isInside().apply( new RTPLocation( world, select[0] * 16, ( vert.maxY() + vert.minY() ) / 2, select[1] * 16)) ) {
+                new IllegalStateException( "worldborder check failed. region/selection is likely outside the worldborder" ).printStackTrace();
+                maxAttempts++;
+                Long worldBorderFails = failMap.get( Region.FailTypes.worldBorder ).getOrDefault( "OUTSIDE_BORDER", 0L );
+                worldBorderFails++;
+                if ( worldBorderFails > 1000 ) {
+                    new IllegalStateException( "1000 worldborder checks failed. region/selection is likely outside the worldborder" ).printStackTrace();
+                    result.complete( new AbstractMap.SimpleEntry<>( null, i ) );
+                    return;
+                }
+                failMap.get( Region.FailTypes.worldBorder ).put( "OUTSIDE_BORDER", worldBorderFails );
+                next();
+                return;
+            }
+
+            final long location = l;
+            final String sampleBiome = currBiome;
+            CompletableFuture<RTPChunk> cfChunk = world.getChunkAt( select[0], select[1] );
+            RTP.track( cfChunk );
+            cfChunk.thenAcceptAsync( chunk -> adjust( chunk, location, sampleBiome ), executor ).exceptionally( this::fail );
+        } catch ( Throwable throwable ) {
+            fail( throwable );
+        }
+    }
+
+    /**
+     * vert adjust and biome stages, then request whatever chunks the safety radius covers
+     */
+    private void adjust( RTPChunk chunk, long l, String sampleBiome ) {
+        if ( result.isDone() ) return;
+        if ( chunk == null ) {
+            new IllegalStateException( "[RTP] null chunk" ).printStackTrace();
+            result.complete( null );
+            return;
+        }
+
+        RTPLocation location = vert.adjust( chunk );
+        if ( location == null ) {
+            if ( defaultBiomes && shape instanceof MemoryShape && biomeRecall ) {
+                ( (MemoryShape<?> ) shape ).addBadLocation( l );
+            }
+            if ( verbose ) count( Region.FailTypes.vert, "biome=" + sampleBiome );
+            chunk.unload();
+            next();
+            return;
+        }
+
+        String currBiome = world.getBiome( location.x(), location.y(), location.z() );
+        if ( !NameRegistry.has( biomeIds, RTP.serverAccessor.biomeId( currBiome ) ) ) {
+            biomeChecks++;
+            maxAttempts++;
+            if ( defaultBiomes && shape instanceof MemoryShape && biomeRecall ) {
+                ( (MemoryShape<?> ) shape ).addBadLocation( l );
+            }
+            if ( verbose ) count( Region.FailTypes.biome, "biome=" + currBiome );
+            chunk.unload();
+            next();
+            return;
+        }
+
+        Map<Long, CompletableFuture<RTPChunk>> chunks = safetyChunks( world, location, safetyRadius, chunk );
+        CompletableFuture.allOf( chunks.values().toArray( new CompletableFuture[0] ) )
+                .thenRunAsync( () -> verify( chunk, location, l, currBiome, chunks ), executor )
+                .exceptionally( this::fail );
+    }
+
+    /**
+     * safety and verifier stages, with every chunk in range already loaded
+     */
+    private void verify( RTPChunk chunk, RTPLocation location, long l, String currBiome, Map<Long, CompletableFuture<RTPChunk>> chunkFutures ) {
+        if ( result.isDone() ) return;
+
+        Map<Long, RTPChunk> chunks = new HashMap<>( chunkFutures.size() );
+        chunkFutures.forEach( ( key, future ) -> chunks.put( key, future.join() ) );
+
+        boolean pass = isSafe( world, location, safetyRadius, chunks, unsafeBlockIds,
+                verbose ? failMap.get( Region.FailTypes.safety ) : null );
+
+        if ( pass ) pass = Region.checkGlobalRegionVerifiers( location );
+
+        if ( pass ) {
+            if ( shape instanceof MemoryShape ) {
+                if ( l > 0 ) ( (MemoryShape<?> ) shape ).addBiomeLocation( l, currBiome );
+            }
+            finish( location );
+            return;
+        }
+
+        if ( verbose ) count( Region.FailTypes.misc, "location=" + "(" + location.x() + "," + location.y() + "," + location.z() );
+        if ( shape instanceof MemoryShape ) {
+            ( (MemoryShape<?> ) shape ).addBadLocation( l );
+        }
+        chunk.unload();
+        next();
+    }
+
+    /**
+     * @return false if the selection ended while sampling
+     */
+    private boolean sample() {
+        if ( shape instanceof MemoryShape ) {
+            MemoryShape<?> memoryShape = ( MemoryShape<?> ) shape;
+            if ( biomeRecall && !defaultBiomes ) {
+                l = memoryShape.randBiomeLocation( biomeNames );
+                if ( l < 0 ) {
+                    if ( biomeRecallForced ) {
+                        new IllegalStateException( "[RTP] invalid state, biome recall enabled but biomes are not in memory - " + Arrays.toString( biomeNames.toArray()) ).printStackTrace();
+                        result.complete( new AbstractMap.SimpleEntry<>( null, i ) );
+                        return false;
+                    }
+                    l = memoryShape.rand();
+                }
+            } else {
+                l = memoryShape.rand();
+            }
+            select = memoryShape.locationToXZ( l );
+        } else {
+            select = shape.select();
+        }
+        if ( verbose ) selections.add( new AbstractMap.SimpleEntry<>( (long ) select[0], ( long ) select[1]) );
+        return true;
+    }
+
+    private void next() {
+        i++;
+        executor.execute( this::attempt );
+    }
+
+    private Void fail( Throwable throwable ) {
+        Throwable cause = ( throwable instanceof CompletionException && throwable.getCause() != null ) ? throwable.getCause() : throwable;
+        //chunk loads get cancelled on shutdown
+        if ( !( cause instanceof CancellationException ) ) RTP.log( Level.WARNING, throwable.getMessage(), throwable );
+        result.complete( new AbstractMap.SimpleEntry<>( null, i ) );
+        return null;
+    }
+
+    private void count( Region.FailTypes type, String key ) {
+        failMap.get( type ).compute( key, ( s, aLong ) -> ( aLong == null ) ? 1L : ++aLong );
+    }
+
+    private void finish( @Nullable RTPLocation location ) {
+        if ( verbose && i >= maxAttempts || i > maxAttemptsBase * Region.maxBiomeChecksPerGen ) {
+            String name = region.name;
+            RTP.log( Level.INFO, "#00ff80[RTP] [" + name + "] failed to generate a location within " + maxAttempts + " tries. Adjust your configuration." );
+            for ( Map.Entry<Region.FailTypes, Map<String, Long>> mapEntry : failMap.entrySet() ) {
+                Map<String, Long> map = mapEntry.getValue();
+                String[] output = new String[map.size()];
+                int pos = 0;
+                long count = 0;
+                for ( Map.Entry<String, Long> entry : map.entrySet() ) {
+                    output[pos] = "#00ff80[RTP] [" + name + "] " + " cause=" + mapEntry.getKey() + " " + entry.getKey() + " fails=" + entry.getValue();
+                    count += entry.getValue();
+                    pos++;
+                }
+                RTP.log( Level.INFO, "#00ff80[RTP] [" + name + "] " + " cause=" + mapEntry.getKey() + " fails=" + count );
+                for ( String out : output ) {
+                    RTP.log( Level.INFO, out );
+                }
+            }
+
+            StringBuilder selectionsStr = new StringBuilder();
+            boolean first = true;
+            selectionsStr.append( "{" );
+            for ( Map.Entry<Long, Long> entry : selections ) {
+                if ( !first ) {
+                    selectionsStr.append( "," );
+                }
+                first = false;
+                selectionsStr.append( "(" ).append( entry.getKey() ).append( "," ).append( entry.getValue() ).append( ")" );
+            }
+            selectionsStr.append( "}" );
+            RTP.log( Level.INFO, "#0f0080[RTP] [" + name + "] selections: " + selectionsStr );
+        }
+
+        result.complete( new AbstractMap.SimpleEntry<>( location, Math.min( i, maxAttempts ) ) );
+    }
+
+    public static long chunkKey( int cx, int cz ) {
+        return ChunkRefMap.key( cx, cz );
+    }
+
+    /**
+     * request every chunk touched by the safety check around location
+     * @param center - already loaded chunk containing location, or null to request it too
+     * @return futures keyed by chunkKey
+     */
+    public static Map<Long, CompletableFuture<RTPChunk>> safetyChunks( RTPWorld world, RTPLocation location, int radius, @Nullable RTPChunk center ) {
+        Map<Long, CompletableFuture<RTPChunk>> res = new HashMap<>();
+        int cx = Math.floorDiv( location.x(), 16 );
+        int cz = Math.floorDiv( location.z(), 16 );
+        res.put( chunkKey( cx, cz ), ( center != null ) ? CompletableFuture.completedFuture( center ) : world.getChunkAt( cx, cz ) );
+        if ( radius <= 0 ) return res;
+
+        int minX = Math.floorDiv( location.x() - radius, 16 );
+        int maxX = Math.floorDiv( location.x() + radius - 1, 16 );
+        int minZ = Math.floorDiv( location.z() - radius, 16 );
+        int maxZ = Math.floorDiv( location.z() + radius - 1, 16 );
+        for ( int x = minX; x <= maxX; x++ ) {
+            for ( int z = minZ; z <= maxZ; z++ ) {
+                long key = chunkKey( x, z );
+                if ( !res.containsKey( key ) ) res.put( key, world.getChunkAt( x, z ) );
+            }
+        }
+        return res;
+    }
+
+    /**
+     * scan the blocks within radius of location, chunk by chunk and section by section.
+     * a section whose palette has nothing unsafe in it is skipped without reading its blocks,
+     * if the palette is already known or the scan covers the whole section anyway.
+     * @param chunks - loaded chunks, keyed by chunkKey, as requested by safetyChunks
+     * @param unsafeBlockIds - material ids, as in MaterialSets
+     * @param fails - if not null, counts the failing material
+     * @return true if no unsafe block was found
+     */
+    public static boolean isSafe( RTPWorld world, RTPLocation location, int radius, Map<Long, RTPChunk> chunks, BitSet unsafeBlockIds, @Nullable Map<String, Long> fails ) {
+        if ( radius <= 0 ) return true;
+        if ( chunks.containsValue( null ) ) return false;
+
+        int minX = location.x() - radius;
+        int maxX = location.x() + radius - 1;
+        int minZ = location.z() - radius;
+        int maxZ = location.z() + radius - 1;
+        int minY = Math.max( location.y() - radius, world.getMinHeight() );
+        int maxY = Math.min( location.y() + radius - 1, world.getMaxHeight() );
+
+        chunks.values().forEach( chunk -> chunk.keep( true ) );
+        try {
+            for ( int cx = Math.floorDiv( minX, 16 ); cx <= Math.floorDiv( maxX, 16 ); cx++ ) {
+                int x0 = Math.max( minX, cx * 16 ) - cx * 16;
+                int x1 = Math.min( maxX, cx * 16 + 15 ) - cx * 16;
+                for ( int cz = Math.floorDiv( minZ, 16 ); cz <= Math.floorDiv( maxZ, 16 ); cz++ ) {
+                    RTPChunk chunk = chunks.get( chunkKey( cx, cz ) );
+                    if ( chunk == null ) return false;
+                    int z0 = Math.max( minZ, cz * 16 ) - cz * 16;
+                    int z1 = Math.min( maxZ, cz * 16 + 15 ) - cz * 16;
+                    for ( int section = Math.floorDiv( minY, 16 ); section <= Math.floorDiv( maxY, 16 ); section++ ) {
+                        int y0 = Math.max( minY, section * 16 );
+                        int y1 = Math.min( maxY, section * 16 + 15 );
+
+                        //building a palette reads the whole section, only worth it if the scan would read as much
+                        int volume = ( x1 - x0 + 1 ) * ( z1 - z0 + 1 ) * ( y1 - y0 + 1 );
+                        if ( volume >= sectionVolume || chunk.hasPalette( section ) ) {
+                            BitSet palette = chunk.palette( section );
+                            if ( palette != null && !palette.intersects( unsafeBlockIds ) ) continue;
+                        }
+
+                        for ( int bx = x0; bx <= x1; bx++ ) {
+                            for ( int bz = z0; bz <= z1; bz++ ) {
+                                for ( int y = y0; y <= y1; y++ ) {
+                                    RTPBlock block = chunk.getBlockAt( bx, y, bz );
+                                    if ( unsafeBlockIds.get( block.getMaterialId() ) ) {
+                                        if ( fails != null ) fails.compute( "material=" + block.getMaterial(), ( s, aLong ) -> ( aLong == null ) ? 1L : ++aLong );
+                                        return false;
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            return true;
+        } finally {
+            chunks.values().forEach( chunk -> chunk.keep( false ) );
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package io.github.dailystruggle.rtp.common.selection.region;
+
+import io.github.dailystruggle.rtp.common.RTP;
+import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPLocation;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+
+/**
+ * location checks shared by all regions, run in order until one rejects.
+ * <br>
+ * the chain is copy-on-write, so checking never waits on registration.
+ * verifiers registered as thread-safe run without any lock, the rest share one lock as before.
+ * every so often the chain re-sorts itself by expected cost per rejection - measured time over rejection rate -
+ * so a cheap check that rejects a lot runs before an expensive one that rarely does.
+ */
+public final class VerifierChain {
+    /**
+     * checks between re-sorts
+     */
+    private static final long reorderPeriod = 1024;
+    /**
+     * calls before measured time replaces the estimate
+     */
+    private static final long minSamples = 32;
+
+    public static final class Verifier {
+        public final Predicate<RTPLocation> check;
+        /**
+         * nanoseconds per call, as guessed at registration
+         */
+        public final double estimatedCost;
+        public final boolean threadSafe;
+
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong rejections = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+
+        private Verifier( Predicate<RTPLocation> check, double estimatedCost, boolean threadSafe ) {
+            this.check = check;
+            this.estimatedCost = Math.max( estimatedCost, 1 );
+            this.threadSafe = threadSafe;
+        }
+
+        public double cost() {
+            long c = calls.get();
+            if ( c < minSamples ) return estimatedCost;
+            return Math.max( ( double ) nanos.get() / c, 1 );
+        }
+
+        public double rejectionRate() {
+            long c = calls.get();
+            //unknown until measured, assume a coin flip
+            if ( c < minSamples ) return 0.5;
+            return ( double ) rejections.get() / c;
+        }
+
+        /**
+         * expected time spent per rejection, lower runs first
+         */
+        double score() {
+            return cost() / Math.max( rejectionRate(), 1e-6 );
+        }
+
+        /**
+         * halve the counts, so the order follows recent behavior
+         */
+        private void decay() {
+            if ( calls.get() < minSamples * 2 ) return;
+            calls.set( calls.get() / 2 );
+            rejections.set( rejections.get() / 2 );
+            nanos.set( nanos.get() / 2 );
+        }
+    }
+
+    private volatile Verifier[] chain = new Verifier[0];
+    private final Semaphore unsafeLock = new Semaphore( 1 );
+    private final AtomicLong checks = new AtomicLong();
+
+    public synchronized void add( Predicate<RTPLocation> check, double estimatedCost, boolean threadSafe ) {
+        Verifier[] next = Arrays.copyOf( chain, chain.length + 1 );
+        next[chain.length] = new Verifier( check, estimatedCost, threadSafe );
+        chain = next;
+    }
+
+    public synchronized void clear() {
+        chain = new Verifier[0];
+    }
+
+    /**
+     * @return verifiers in the order they currently run
+     */
+    public Verifier[] verifiers() {
+        return chain.clone();
+    }
+
+    public boolean test( RTPLocation location ) {
+        Verifier[] verifiers = chain;
+        if ( verifiers.length == 0 ) return true;
+        if ( verifiers.length > 1 && checks.incrementAndGet() % reorderPeriod == 0 ) reorder();
+
+        for ( Verifier verifier : verifiers ) {
+            if ( !run( verifier, location ) ) return false;
+        }
+        return true;
+    }
+
+    private boolean run( Verifier verifier, RTPLocation location ) {
+        if ( !verifier.threadSafe ) {
+            try {
+                unsafeLock.acquire();
+            } catch ( InterruptedException e ) {
+                return false;
+            }
+        }
+
+        long start = System.nanoTime();
+        boolean pass;
+        try {
+            pass = verifier.check.test( location );
+        } catch ( Throwable throwable ) {
+            RTP.log( Level.WARNING, throwable.getMessage(), throwable );
+            pass = true;
+        } finally {
+            if ( !verifier.threadSafe ) unsafeLock.release();
+        }
+
+        verifier.nanos.addAndGet( System.nanoTime() - start );
+        verifier.calls.incrementAndGet();
+        if ( !pass ) verifier.rejections.incrementAndGet();
+        return pass;
+    }
+
+    private synchronized void reorder() {
+        Verifier[] next = chain.clone();
+        //scores first, so the sort doesn't see counts change under it
+        double[] scores = new double[next.length];
+        Integer[] order = new Integer[next.length];
+        for ( int i = 0; i < next.length; i++ ) {
+            scores[i] = next[i].score();
+            order[i] = i;
+            next[i].decay();
+        }
+        Arrays.sort( order, Comparator.comparingDouble( i -> scores[i] ) );
+
+        Verifier[] sorted = new Verifier[next.length];
+        for ( int i = 0; i < next.length; i++ ) sorted[i] = next[order[i]];
+        chain = sorted;
+    }
+}
@@ -0,0 +1,123 @@
+package io.github.dailystruggle.rtp.common.selection.region.selectors.memory;
+
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes.MemoryShape;
+
+import java.util.Arrays;
+
+/**
+ * a shape's locations grouped by the 32x32 chunk region file they select into.
+ * built from the shape's own locationToXZ, so it's exact even where xzToLocation rounds differently, as in polar shapes.
+ * each tile holds ascending runs of consecutive locations, which stay few since shapes sweep their locations around rings.
+ * immutable once built.
+ */
+public final class LocationTiles {
+    public static final int TILE_SHIFT = 5;
+
+    public final long range;
+    public final int minTileX;
+    public final int minTileZ;
+    public final int tilesX;
+    public final int tilesZ;
+
+    private final int[] bounds;
+    private final Object key;
+    //per tile, {start, length} pairs. the slot after the last tile holds anything that lands outside bounds
+    private final long[][] runs;
+    private final int[] used;
+    private final long[] counts;
+
+    /**
+     * @param bounds - shape bounds, in chunks
+     * @param key - whatever else the mapping depends on, to tell when this is stale
+     */
+    public LocationTiles( MemoryShape<?> shape, long range, int[] bounds, Object key ) {
+        this.range = range;
+        this.bounds = bounds.clone();
+        this.key = key;
+        minTileX = bounds[0] >> TILE_SHIFT;
+        minTileZ = bounds[1] >> TILE_SHIFT;
+        tilesX = ( bounds[2] >> TILE_SHIFT ) - minTileX + 1;
+        tilesZ = ( bounds[3] >> TILE_SHIFT ) - minTileZ + 1;
+
+        int slots = tilesX * tilesZ + 1;
+        runs = new long[slots][];
+        used = new int[slots];
+        counts = new long[slots];
+
+        int last = -1;
+        for ( long location = 0; location < range; location++ ) {
+            int[] xz = shape.locationToXZ( location );
+            int tile = tile( xz[0] >> TILE_SHIFT, xz[1] >> TILE_SHIFT );
+            if ( tile < 0 ) tile = outside();
+            counts[tile]++;
+
+            //consecutive locations in the same tile extend its last run
+            if ( tile == last ) {
+                runs[tile][used[tile] - 1]++;
+                continue;
+            }
+            long[] tileRuns = runs[tile];
+            if ( tileRuns == null ) tileRuns = runs[tile] = new long[8];
+            else if ( used[tile] == tileRuns.length ) tileRuns = runs[tile] = Arrays.copyOf( tileRuns, tileRuns.length * 2 );
+            tileRuns[used[tile]++] = location;
+            tileRuns[used[tile]++] = 1;
+            last = tile;
+        }
+    }
+
+    /**
+     * @return true if this was built for the same mapping
+     */
+    public boolean matches( long range, int[] bounds, Object key ) {
+        return this.range == range && Arrays.equals( this.bounds, bounds ) && this.key.equals( key );
+    }
+
+    /**
+     * @param tileX - region file x, i.e. chunk x >> TILE_SHIFT
+     * @param tileZ - region file z
+     * @return tile index, or -1 if it's outside the shape's bounds
+     */
+    public int tile( int tileX, int tileZ ) {
+        tileX -= minTileX;
+        tileZ -= minTileZ;
+        if ( tileX < 0 || tileX >= tilesX || tileZ < 0 || tileZ >= tilesZ ) return -1;
+        return tileX * tilesZ + tileZ;
+    }
+
+    /**
+     * @return index holding locations that landed outside bounds, empty for shapes whose bounds are right
+     */
+    public int outside() {
+        return tilesX * tilesZ;
+    }
+
+    /**
+     * @return number of locations in tile
+     */
+    public long count( int tile ) {
+        return counts[tile];
+    }
+
+    /**
+     * @return number of runs in tile
+     */
+    public int runs( int tile ) {
+        return used[tile] / 2;
+    }
+
+    public long runStart( int tile, int run ) {
+        return runs[tile][run * 2];
+    }
+
+    public long runLength( int tile, int run ) {
+        return runs[tile][run * 2 + 1];
+    }
+
+    /**
+     * visit each run in tile, in ascending order
+     */
+    public void forEach( int tile, LongIntervalSet.IntervalConsumer consumer ) {
+        long[] tileRuns = runs[tile];
+        for ( int i = 0; i < used[tile]; i += 2 ) consumer.accept( tileRuns[i], tileRuns[i + 1] );
+    }
+}
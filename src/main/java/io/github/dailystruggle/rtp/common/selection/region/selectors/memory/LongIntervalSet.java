@@ -0,0 +1,543 @@
+package io.github.dailystruggle.rtp.common.selection.region.selectors.memory;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * set of disjoint, non-adjacent [start, start+length) intervals over longs.
+ * stored as a treap in parallel primitive arrays, so lookups and merges are O(log n) without boxing.
+ * each node also tracks subtree length sums and counts, for rank queries.
+ * writes are atomic with respect to each other and to reads.
+ */
+public class LongIntervalSet implements Cloneable {
+    private static final int NONE = -1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] start;
+    private long[] length;
+    private long[] sum;
+    private int[] count;
+    private int[] left;
+    private int[] right;
+    private int[] priority;
+
+    private int root = NONE;
+    private int freeHead = NONE;
+    private int used = 0;
+
+    //split results, only touched while holding the write lock
+    private int splitLeft = NONE;
+    private int splitRight = NONE;
+
+    public LongIntervalSet() {
+        this( 16 );
+    }
+
+    public LongIntervalSet( int initialCapacity ) {
+        allocate( Math.max( initialCapacity, 1 ) );
+    }
+
+    public interface IntervalConsumer {
+        void accept( long start, long length );
+    }
+
+    /**
+     * @return true if location is within a stored interval
+     */
+    public boolean contains( long location ) {
+        lock.readLock().lock();
+        try {
+            int n = floorNode( location );
+            return n != NONE && location < start[n] + length[n];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * add a single location, merging with adjacent intervals
+     * @return true if the location was not already in the set
+     */
+    public boolean add( long location ) {
+        return add( location, 1 ) > 0;
+    }
+
+    /**
+     * add an interval, merging with any overlapping or adjacent intervals
+     * @return number of newly covered locations
+     */
+    public long add( long location, long len ) {
+        if ( len <= 0 ) return 0;
+        lock.writeLock().lock();
+        try {
+            long before = total();
+            long lo = location;
+            long hi = location + len;
+
+            int f = floorNode( lo );
+            if ( f != NONE ) {
+                long fEnd = start[f] + length[f];
+                if ( fEnd >= hi ) return 0;
+                if ( fEnd >= lo ) {
+                    lo = start[f];
+                    removeNode( start[f] );
+                }
+            }
+
+            int c = ceilingNode( lo );
+            while ( c != NONE && start[c] <= hi ) {
+                hi = Math.max( hi, start[c] + length[c] );
+                removeNode( start[c] );
+                c = ceilingNode( lo );
+            }
+
+            insertNode( lo, hi - lo );
+            return total() - before;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * remove a single location, splitting its interval if necessary
+     * @return true if the location was in the set
+     */
+    public boolean remove( long location ) {
+        lock.writeLock().lock();
+        try {
+            int n = floorNode( location );
+            if ( n == NONE || location >= start[n] + length[n] ) return false;
+            long s = start[n];
+            long e = s + length[n];
+            removeNode( s );
+            if ( location > s ) insertNode( s, location - s );
+            if ( location + 1 < e ) insertNode( location + 1, e - ( location + 1 ) );
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * remove an interval, trimming or splitting any stored intervals it overlaps
+     * @return number of locations removed
+     */
+    public long remove( long location, long len ) {
+        if ( len <= 0 ) return 0;
+        lock.writeLock().lock();
+        try {
+            long before = total();
+            long lo = location;
+            long hi = location + len;
+
+            int f = floorNode( lo );
+            if ( f != NONE && start[f] + length[f] > lo ) {
+                long s = start[f];
+                long e = s + length[f];
+                removeNode( s );
+                if ( s < lo ) insertNode( s, lo - s );
+                if ( e > hi ) {
+                    insertNode( hi, e - hi );
+                    return before - total();
+                }
+            }
+
+            int c = ceilingNode( lo );
+            while ( c != NONE && start[c] < hi ) {
+                long e = start[c] + length[c];
+                removeNode( start[c] );
+                if ( e > hi ) {
+                    insertNode( hi, e - hi );
+                    break;
+                }
+                c = ceilingNode( lo );
+            }
+            return before - total();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return {start, length} of the interval with the greatest start at or below location, or null
+     */
+    public long[] floorEntry( long location ) {
+        lock.readLock().lock();
+        try {
+            return entry( floorNode( location ) );
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return {start, length} of the interval with the least start at or above location, or null
+     */
+    public long[] ceilingEntry( long location ) {
+        lock.readLock().lock();
+        try {
+            return entry( ceilingNode( location ) );
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long[] firstEntry() {
+        return ceilingEntry( Long.MIN_VALUE );
+    }
+
+    /**
+     * @param index - position in sorted order, 0 to size()-1
+     * @return {start, length} of the interval at index, or null
+     */
+    public long[] get( int index ) {
+        lock.readLock().lock();
+        try {
+            if ( index < 0 || index >= cnt( root ) ) return null;
+            int n = root;
+            while ( n != NONE ) {
+                int l = cnt( left[n] );
+                if ( index < l ) n = left[n];
+                else if ( index == l ) return entry( n );
+                else {
+                    index -= l + 1;
+                    n = right[n];
+                }
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of stored locations strictly below location
+     */
+    public long rank( long location ) {
+        lock.readLock().lock();
+        try {
+            long res = 0;
+            int n = root;
+            while ( n != NONE ) {
+                if ( start[n] < location ) {
+                    res += sum( left[n] ) + Math.min( length[n], location - start[n] );
+                    n = right[n];
+                } else n = left[n];
+            }
+            return res;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * inverse of rank
+     * @param index - 0 to sum()-1
+     * @return the index-th stored location in ascending order, or -1 if out of range
+     */
+    public long select( long index ) {
+        lock.readLock().lock();
+        try {
+            if ( index < 0 || index >= total() ) return -1;
+            int n = root;
+            while ( n != NONE ) {
+                long l = sum( left[n] );
+                if ( index < l ) n = left[n];
+                else if ( index < l + length[n] ) return start[n] + ( index - l );
+                else {
+                    index -= l + length[n];
+                    n = right[n];
+                }
+            }
+            return -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * select over the complement, e.g. to map a draw over the remaining good range straight to a location
+     * @param index - 0 or greater
+     * @return the index-th non-negative location NOT in the set, in ascending order
+     */
+    public long selectUnset( long index ) {
+        if ( index < 0 ) return -1;
+        lock.readLock().lock();
+        try {
+            //stored length of every interval known to be below the answer
+            long skipped = 0;
+            int n = root;
+            while ( n != NONE ) {
+                long unsetBelow = start[n] - skipped - sum( left[n] );
+                if ( index < unsetBelow ) n = left[n];
+                else {
+                    skipped += sum( left[n] ) + length[n];
+                    n = right[n];
+                }
+            }
+            return index + skipped;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return total number of stored locations
+     */
+    public long sum() {
+        lock.readLock().lock();
+        try {
+            return total();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of stored intervals
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return cnt( root );
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            allocate( 16 );
+            root = NONE;
+            freeHead = NONE;
+            used = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * visit each interval in ascending order. the set is read-locked for the duration, so don't write to it from the consumer.
+     */
+    public void forEach( IntervalConsumer consumer ) {
+        lock.readLock().lock();
+        try {
+            int[] stack = new int[64];
+            int depth = 0;
+            int n = root;
+            while ( n != NONE || depth > 0 ) {
+                while ( n != NONE ) {
+                    if ( depth == stack.length ) stack = Arrays.copyOf( stack, depth * 2 );
+                    stack[depth++] = n;
+                    n = left[n];
+                }
+                n = stack[--depth];
+                consumer.accept( start[n], length[n] );
+                n = right[n];
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * visit the stored parts of [location, location+len) in ascending order, clipped to it.
+     * the set is read-locked for the duration, so don't write to it from the consumer.
+     */
+    public void forEach( long location, long len, IntervalConsumer consumer ) {
+        if ( len <= 0 ) return;
+        lock.readLock().lock();
+        try {
+            long hi = location + len;
+            long from = location;
+            int n = floorNode( from );
+            if ( n != NONE && start[n] + length[n] > from ) {
+                long e = Math.min( start[n] + length[n], hi );
+                consumer.accept( from, e - from );
+                from = e;
+            }
+            while ( from < hi && ( n = ceilingNode( from ) ) != NONE && start[n] < hi ) {
+                long e = Math.min( start[n] + length[n], hi );
+                consumer.accept( start[n], e - start[n] );
+                from = e;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * visit each part of this set that isn't in other, in ascending order, without building the difference.
+     * both sets are read-locked for the duration, so don't write to either from the consumer.
+     */
+    public void forEachExcept( LongIntervalSet other, IntervalConsumer consumer ) {
+        if ( other == this ) return;
+        forEach( ( start, length ) -> {
+            long[] from = new long[]{start};
+            other.forEach( start, length, ( s, len ) -> {
+                if ( s > from[0] ) consumer.accept( from[0], s - from[0] );
+                from[0] = s + len;
+            } );
+            long end = start + length;
+            if ( end > from[0] ) consumer.accept( from[0], end - from[0] );
+        } );
+    }
+
+    @Override
+    public LongIntervalSet clone() {
+        LongIntervalSet res = new LongIntervalSet( Math.max( size(), 1 ) );
+        forEach( res::add );
+        return res;
+    }
+
+    private long[] entry( int n ) {
+        if ( n == NONE ) return null;
+        return new long[]{start[n], length[n]};
+    }
+
+    private long total() {
+        return sum( root );
+    }
+
+    private long sum( int n ) {
+        return ( n == NONE ) ? 0 : sum[n];
+    }
+
+    private int cnt( int n ) {
+        return ( n == NONE ) ? 0 : count[n];
+    }
+
+    private int floorNode( long location ) {
+        int res = NONE;
+        int n = root;
+        while ( n != NONE ) {
+            if ( start[n] <= location ) {
+                res = n;
+                n = right[n];
+            } else n = left[n];
+        }
+        return res;
+    }
+
+    private int ceilingNode( long location ) {
+        int res = NONE;
+        int n = root;
+        while ( n != NONE ) {
+            if ( start[n] >= location ) {
+                res = n;
+                n = left[n];
+            } else n = right[n];
+        }
+        return res;
+    }
+
+    private void insertNode( long s, long len ) {
+        int node = newNode( s, len );
+        split( root, s );
+        int l = splitLeft;
+        int r = splitRight;
+        root = merge( merge( l, node ), r );
+    }
+
+    private void removeNode( long s ) {
+        split( root, s );
+        int l = splitLeft;
+        split( splitRight, s + 1 );
+        int m = splitLeft;
+        int r = splitRight;
+        if ( m != NONE ) freeNode( m );
+        root = merge( l, r );
+    }
+
+    /**
+     * split subtree n into keys below key (splitLeft) and keys at or above key (splitRight)
+     */
+    private void split( int n, long key ) {
+        if ( n == NONE ) {
+            splitLeft = NONE;
+            splitRight = NONE;
+            return;
+        }
+        if ( start[n] < key ) {
+            split( right[n], key );
+            right[n] = splitLeft;
+            update( n );
+            splitLeft = n;
+        } else {
+            split( left[n], key );
+            left[n] = splitRight;
+            update( n );
+            splitRight = n;
+        }
+    }
+
+    private int merge( int a, int b ) {
+        if ( a == NONE ) return b;
+        if ( b == NONE ) return a;
+        if ( priority[a] > priority[b] ) {
+            right[a] = merge( right[a], b );
+            update( a );
+            return a;
+        }
+        left[b] = merge( a, left[b] );
+        update( b );
+        return b;
+    }
+
+    private void update( int n ) {
+        sum[n] = length[n] + sum( left[n] ) + sum( right[n] );
+        count[n] = 1 + cnt( left[n] ) + cnt( right[n] );
+    }
+
+    private int newNode( long s, long len ) {
+        int n;
+        if ( freeHead != NONE ) {
+            n = freeHead;
+            freeHead = left[n];
+        } else {
+            if ( used == start.length ) grow();
+            n = used++;
+        }
+        start[n] = s;
+        length[n] = len;
+        sum[n] = len;
+        count[n] = 1;
+        left[n] = NONE;
+        right[n] = NONE;
+        priority[n] = ThreadLocalRandom.current().nextInt();
+        return n;
+    }
+
+    private void freeNode( int n ) {
+        left[n] = freeHead;
+        freeHead = n;
+    }
+
+    private void allocate( int capacity ) {
+        start = new long[capacity];
+        length = new long[capacity];
+        sum = new long[capacity];
+        count = new int[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        priority = new int[capacity];
+    }
+
+    private void grow() {
+        int capacity = start.length * 2;
+        start = Arrays.copyOf( start, capacity );
+        length = Arrays.copyOf( length, capacity );
+        sum = Arrays.copyOf( sum, capacity );
+        count = Arrays.copyOf( count, capacity );
+        left = Arrays.copyOf( left, capacity );
+        right = Arrays.copyOf( right, capacity );
+        priority = Arrays.copyOf( priority, capacity );
+    }
+}
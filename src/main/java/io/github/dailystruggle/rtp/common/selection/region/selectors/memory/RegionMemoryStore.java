@@ -0,0 +1,391 @@
+package io.github.dailystruggle.rtp.common.selection.region.selectors.memory;
+
+import io.github.dailystruggle.rtp.common.RTP;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes.MemoryShape;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * binary persistence for one region's location memory.
+ * <br>
+ * [name].dat is a compacted snapshot - params, fillIter, then each interval set as delta-encoded varints.
+ * [name].journal is an append-only log of changes since that snapshot.
+ * loading reads the snapshot into memory and replays the journal over it.
+ * saving appends only what changed, and rewrites the snapshot once the journal outgrows it.
+ */
+public class RegionMemoryStore {
+    private static final int MAGIC = 0x5254504D; //RTPM
+    private static final byte VERSION = 1;
+
+    private static final byte OP_BAD = 0;
+    private static final byte OP_BIOME_ADD = 1;
+    private static final byte OP_BIOME_REMOVE = 2;
+    private static final byte OP_CLEAR = 3;
+    private static final byte OP_FILL_ITER = 4;
+
+    /**
+     * don't bother compacting below this journal size
+     */
+    private static final long minCompactionSize = 1 << 20;
+
+    public final File snapshotFile;
+    public final File journalFile;
+    public final File oldJournalFile;
+
+    /**
+     * true once the files on disk plus the pending buffer describe the shape, so changes can be journaled
+     */
+    private volatile boolean synced = false;
+    public final AtomicBoolean compacting = new AtomicBoolean( false );
+
+    private final Object journalLock = new Object();
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private DataOutputStream pendingOut = new DataOutputStream( pending );
+
+    public RegionMemoryStore( File dir, String name ) {
+        if ( name.endsWith( ".yml" ) ) name = name.substring( 0, name.length() - 4 );
+        snapshotFile = new File( dir, name + ".dat" );
+        journalFile = new File( dir, name + ".journal" );
+        oldJournalFile = new File( dir, name + ".journal.old" );
+    }
+
+    public boolean isSynced() {
+        return synced;
+    }
+
+    public boolean exists() {
+        return snapshotFile.exists();
+    }
+
+    public void logBad( long location ) {
+        if ( !synced ) return;
+        synchronized ( journalLock ) {
+            try {
+                pendingOut.writeByte( OP_BAD );
+                writeVarLong( pendingOut, location );
+            } catch ( IOException e ) {
+                RTP.log( Level.WARNING, e.getMessage(), e );
+            }
+        }
+    }
+
+    public void logBiome( String biome, long location, boolean add ) {
+        if ( !synced ) return;
+        synchronized ( journalLock ) {
+            try {
+                pendingOut.writeByte( add ? OP_BIOME_ADD : OP_BIOME_REMOVE );
+                writeString( pendingOut, biome );
+                writeVarLong( pendingOut, location );
+            } catch ( IOException e ) {
+                RTP.log( Level.WARNING, e.getMessage(), e );
+            }
+        }
+    }
+
+    public void logClear() {
+        if ( !synced ) return;
+        synchronized ( journalLock ) {
+            try {
+                pendingOut.writeByte( OP_CLEAR );
+            } catch ( IOException e ) {
+                RTP.log( Level.WARNING, e.getMessage(), e );
+            }
+        }
+    }
+
+    /**
+     * append pending changes to the journal
+     */
+    public void flush( long fillIter ) {
+        synchronized ( journalLock ) {
+            try {
+                pendingOut.writeByte( OP_FILL_ITER );
+                writeVarLong( pendingOut, fillIter );
+                try ( FileOutputStream out = new FileOutputStream( journalFile, true ) ) {
+                    pending.writeTo( out );
+                }
+                pending.reset();
+            } catch ( IOException e ) {
+                RTP.log( Level.WARNING, e.getMessage(), e );
+            }
+        }
+    }
+
+    public boolean needsCompaction() {
+        long journalLength = journalFile.length();
+        return journalLength > minCompactionSize && journalLength > snapshotFile.length() / 2;
+    }
+
+    /**
+     * @return params stored with the snapshot, or null if there is no readable snapshot
+     */
+    public Map<String, String> readParams() {
+        if ( !snapshotFile.exists() ) return null;
+        try {
+            ByteBuffer buffer = read( snapshotFile );
+            if ( buffer == null ) return null;
+            return readHeader( buffer );
+        } catch ( IOException | BufferUnderflowException | IllegalStateException e ) {
+            RTP.log( Level.WARNING, "[RTP] unreadable region memory - " + snapshotFile.getName(), e );
+            return null;
+        }
+    }
+
+    /**
+     * replace the shape's memory with the snapshot and any journaled changes
+     */
+    public void read( MemoryShape<?> shape ) {
+        shape.learnedBadLocations.clear();
+        shape.badLocations.clear();
+        shape.biomeLocations.clear();
+        shape.biomeMapped.clear();
+        try {
+            ByteBuffer buffer = read( snapshotFile );
+            if ( buffer != null ) {
+                readHeader( buffer );
+                shape.fillIter.set( readVarLong( buffer ) );
+                readIntervals( buffer, shape.learnedBadLocations );
+                int biomes = ( int ) readVarLong( buffer );
+                for ( int i = 0; i < biomes; i++ ) {
+                    String biome = readString( buffer );
+                    LongIntervalSet locations = new LongIntervalSet();
+                    readIntervals( buffer, locations );
+                    shape.biomeLocations.put( biome, locations );
+                    locations.forEach( shape.biomeMapped::add );
+                }
+            }
+            replay( oldJournalFile, shape );
+            replay( journalFile, shape );
+            synced = true;
+        } catch ( IOException | BufferUnderflowException | IllegalStateException e ) {
+            RTP.log( Level.WARNING, "[RTP] unreadable region memory - " + snapshotFile.getName(), e );
+            synced = false;
+        }
+        shape.learnedBadLocations.forEach( shape.badLocations::add );
+    }
+
+    /**
+     * rewrite the snapshot from the shape's current memory and truncate the journal.
+     * changes made while this runs go to the new journal, replaying them over the snapshot is harmless.
+     */
+    public synchronized void writeSnapshot( MemoryShape<?> shape, Map<String, Object> params ) {
+        File dir = snapshotFile.getParentFile();
+        if ( !dir.exists() ) {
+            boolean mkdirs = dir.mkdirs();
+            if ( !mkdirs ) throw new IllegalStateException( "failed to make directory" );
+        }
+
+        synchronized ( journalLock ) {
+            try {
+                if ( synced ) {
+                    try ( FileOutputStream out = new FileOutputStream( journalFile, true ) ) {
+                        pending.writeTo( out );
+                    }
+                    if ( journalFile.exists() ) {
+                        if ( oldJournalFile.exists() ) {
+                            //a prior compaction didn't finish, keep its changes too
+                            try ( FileOutputStream out = new FileOutputStream( oldJournalFile, true ) ) {
+                                Files.copy( journalFile.toPath(), out );
+                            }
+                            Files.delete( journalFile.toPath() );
+                        } else Files.move( journalFile.toPath(), oldJournalFile.toPath() );
+                    }
+                } else {
+                    Files.deleteIfExists( journalFile.toPath() );
+                    Files.deleteIfExists( oldJournalFile.toPath() );
+                }
+                pending = new ByteArrayOutputStream();
+                pendingOut = new DataOutputStream( pending );
+                synced = true;
+            } catch ( IOException e ) {
+                RTP.log( Level.WARNING, e.getMessage(), e );
+                return;
+            }
+        }
+
+        File tmp = new File( dir, snapshotFile.getName() + ".tmp" );
+        try ( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmp ), 1 << 16 ) ) ) {
+            out.writeInt( MAGIC );
+            out.writeByte( VERSION );
+            writeVarLong( out, params.size() );
+            for ( Map.Entry<String, Object> e : params.entrySet() ) {
+                writeString( out, e.getKey() );
+                writeString( out, String.valueOf( e.getValue() ) );
+            }
+            writeVarLong( out, shape.fillIter.get() );
+            writeIntervals( out, shape.learnedBadLocations );
+            Map<String, LongIntervalSet> biomes = new HashMap<>( shape.biomeLocations );
+            writeVarLong( out, biomes.size() );
+            for ( Map.Entry<String, LongIntervalSet> e : biomes.entrySet() ) {
+                writeString( out, e.getKey() );
+                writeIntervals( out, e.getValue() );
+            }
+        } catch ( IOException e ) {
+            RTP.log( Level.WARNING, e.getMessage(), e );
+            return;
+        }
+
+        try {
+            Files.move( tmp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        } catch ( IOException e ) {
+            try {
+                Files.move( tmp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            } catch ( IOException ex ) {
+                RTP.log( Level.WARNING, ex.getMessage(), ex );
+                return;
+            }
+        }
+
+        try {
+            Files.deleteIfExists( oldJournalFile.toPath() );
+        } catch ( IOException e ) {
+            RTP.log( Level.WARNING, e.getMessage(), e );
+        }
+    }
+
+    /**
+     * read the whole file onto the heap rather than mapping it.
+     * a mapping holds the file open until it's garbage collected, and windows won't replace a file that's mapped
+     */
+    private static ByteBuffer read( File file ) throws IOException {
+        if ( !file.exists() || file.length() == 0 ) return null;
+        return ByteBuffer.wrap( Files.readAllBytes( file.toPath() ) );
+    }
+
+    private static Map<String, String> readHeader( ByteBuffer buffer ) {
+        if ( buffer.getInt() != MAGIC ) throw new IllegalStateException( "not a region memory file" );
+        byte version = buffer.get();
+        if ( version != VERSION ) throw new IllegalStateException( "unknown region memory version - " + version );
+        int size = ( int ) readVarLong( buffer );
+        Map<String, String> params = new HashMap<>();
+        for ( int i = 0; i < size; i++ ) {
+            params.put( readString( buffer ), readString( buffer ) );
+        }
+        return params;
+    }
+
+    private static void replay( File journal, MemoryShape<?> shape ) throws IOException {
+        ByteBuffer buffer = read( journal );
+        if ( buffer == null ) return;
+        try {
+            while ( buffer.hasRemaining() ) {
+                byte op = buffer.get();
+                switch ( op ) {
+                    case OP_BAD: {
+                        long location = readVarLong( buffer );
+                        shape.learnedBadLocations.add( location );
+                        for ( LongIntervalSet locations : shape.biomeLocations.values() ) locations.remove( location );
+                        shape.biomeMapped.remove( location );
+                        break;
+                    }
+                    case OP_BIOME_ADD: {
+                        String biome = readString( buffer );
+                        long location = readVarLong( buffer );
+                        shape.biomeLocations.computeIfAbsent( biome, s -> new LongIntervalSet() ).add( location );
+                        shape.biomeMapped.add( location );
+                        break;
+                    }
+                    case OP_BIOME_REMOVE: {
+                        String biome = readString( buffer );
+                        long location = readVarLong( buffer );
+                        LongIntervalSet locations = shape.biomeLocations.get( biome );
+                        if ( locations != null ) locations.remove( location );
+                        shape.biomeMapped.remove( location );
+                        break;
+                    }
+                    case OP_CLEAR: {
+                        shape.learnedBadLocations.clear();
+                        shape.biomeLocations.clear();
+                        shape.biomeMapped.clear();
+                        break;
+                    }
+                    case OP_FILL_ITER: {
+                        shape.fillIter.set( readVarLong( buffer ) );
+                        break;
+                    }
+                    default: throw new IllegalStateException( "corrupt journal - " + journal.getName() );
+                }
+            }
+        } catch ( BufferUnderflowException ignored ) {
+            //torn final record from an interrupted write, everything before it was applied
+        }
+    }
+
+    private static void writeIntervals( DataOutputStream out, LongIntervalSet set ) throws IOException {
+        //terminated rather than counted, the set may change while it's being written
+        long[] prevEnd = new long[1];
+        IOException[] error = new IOException[1];
+        set.forEach( ( start, length ) -> {
+            if ( error[0] != null ) return;
+            try {
+                writeVarLong( out, start - prevEnd[0] );
+                writeVarLong( out, length );
+            } catch ( IOException e ) {
+                error[0] = e;
+            }
+            prevEnd[0] = start + length;
+        } );
+        if ( error[0] != null ) throw error[0];
+        writeVarLong( out, 0 );
+        writeVarLong( out, 0 );
+    }
+
+    private static void readIntervals( ByteBuffer buffer, LongIntervalSet set ) {
+        long prevEnd = 0;
+        while ( true ) {
+            long start = prevEnd + readVarLong( buffer );
+            long length = readVarLong( buffer );
+            if ( length <= 0 ) return;
+            set.add( start, length );
+            prevEnd = start + length;
+        }
+    }
+
+    /**
+     * zigzag varint, so small negative deltas stay small
+     */
+    private static void writeVarLong( DataOutput out, long value ) throws IOException {
+        long v = ( value << 1 ) ^ ( value >> 63 );
+        while ( ( v & ~0x7FL ) != 0 ) {
+            out.writeByte( ( int ) ( ( v & 0x7F ) | 0x80 ) );
+            v >>>= 7;
+        }
+        out.writeByte( ( int ) v );
+    }
+
+    private static long readVarLong( ByteBuffer buffer ) {
+        long v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if ( shift > 63 ) throw new IllegalStateException( "malformed varint" );
+            b = buffer.get();
+            v |= ( long ) ( b & 0x7F ) << shift;
+            shift += 7;
+        } while ( ( b & 0x80 ) != 0 );
+        return ( v >>> 1 ) ^ -( v & 1 );
+    }
+
+    private static void writeString( DataOutput out, String s ) throws IOException {
+        byte[] bytes = s.getBytes( StandardCharsets.UTF_8 );
+        writeVarLong( out, bytes.length );
+        out.write( bytes );
+    }
+
+    private static String readString( ByteBuffer buffer ) {
+        int length = ( int ) readVarLong( buffer );
+        if ( length < 0 || length > buffer.remaining() ) throw new BufferUnderflowException();
+        byte[] bytes = new byte[length];
+        buffer.get( bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+}
@@ -3,12 +3,12 @@ package io.github.dailystruggle.rtp.common.selection.region.selectors.memory.sha
 import io.github.dailystruggle.commandsapi.bukkit.LocalParameters.*;
 import io.github.dailystruggle.commandsapi.common.CommandParameter;
 import io.github.dailystruggle.rtp.common.RTP;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.LongIntervalSet;
 import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.Mode;
 import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes.enums.GenericMemoryShapeParams;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
@@ -50,6 +50,14 @@ public class Circle extends MemoryShape<GenericMemoryShapeParams> {
         super( GenericMemoryShapeParams.class, newName, defaults );
     }
 
+    @Override
+    public int[] bounds() {
+        long radius = getNumber( GenericMemoryShapeParams.radius, 256L ).longValue() + 1;
+        long cx = getNumber( GenericMemoryShapeParams.centerX, 0L ).longValue();
+        long cz = getNumber( GenericMemoryShapeParams.centerZ, 0L ).longValue();
+        return new int[]{( int ) ( cx - radius ), ( int ) ( cz - radius ), ( int ) ( cx + radius ), ( int ) ( cz + radius )};
+    }
+
     @Override
     public double getRange() {
         long radius = getNumber( GenericMemoryShapeParams.radius, 256L ).longValue();
@@ -128,8 +136,8 @@ public class Circle extends MemoryShape<GenericMemoryShapeParams> {
         boolean expand = ( boolean ) data.getOrDefault( GenericMemoryShapeParams.expand, false );
         String mode = data.getOrDefault( GenericMemoryShapeParams.mode, "ACCUMULATE" ).toString().toUpperCase();
 
-        if ( (!expand ) && mode.equalsIgnoreCase( "ACCUMULATE") ) range -= badLocationSum.get();
-        else if ( expand && !mode.equalsIgnoreCase( "ACCUMULATE") ) range += badLocationSum.get();
+        if ( (!expand ) && mode.equalsIgnoreCase( "ACCUMULATE") ) range -= badLocations.sum();
+        else if ( expand && !mode.equalsIgnoreCase( "ACCUMULATE") ) range += badLocations.sum();
 
         double weight = getNumber( GenericMemoryShapeParams.weight, 1.0 ).doubleValue();
         double res = ( range ) * Math.pow( ThreadLocalRandom.current().nextDouble(), weight );
@@ -137,56 +145,53 @@ public class Circle extends MemoryShape<GenericMemoryShapeParams> {
         long location = ( long ) res;
         switch ( mode ) {
             case "ACCUMULATE": {
-                Map.Entry<Long, Long> idx = badLocations.firstEntry();
-                while ( (idx != null ) && ( location >= idx.getKey() || isKnownBad( location)) ) {
-                    location += idx.getValue();
-                    idx = badLocations.ceilingEntry( idx.getKey() + idx.getValue() );
-                }
+                //location is an index into the remaining good range, skip over every bad interval below it
+                location = badLocations.selectUnset( location );
             }
             case "NEAREST": {
-                ConcurrentSkipListMap<Long, Long> map = badLocations;
-                Map.Entry<Long, Long> check = map.floorEntry( location );
+                LongIntervalSet map = badLocations;
+                long[] check = map.floorEntry( location );
 
                 if ( (check != null )
-                        && ( location >= check.getKey() )
-                        && ( location < ( check.getKey() + check.getValue())) ) {
-                    Map.Entry<Long, Long> lower = map.floorEntry( check.getKey() - 1 );
-                    Map.Entry<Long, Long> upper = map.ceilingEntry( check.getKey() + check.getValue() );
+                        && ( location >= check[0] )
+                        && ( location < ( check[0] + check[1])) ) {
+                    long[] lower = map.floorEntry( check[0] - 1 );
+                    long[] upper = map.ceilingEntry( check[0] + check[1] );
 
                     if ( upper == null ) {
                         if ( lower == null ) {
-                            long cutout = check.getValue();
+                            long cutout = check[1];
                             location = ThreadLocalRandom.current().nextLong( (long ) ( range - cutout) );
-                            if ( location >= check.getKey() ) location += check.getValue();
+                            if ( location >= check[0] ) location += check[1];
                         } else {
-                            long len = check.getKey() - ( lower.getKey() + lower.getValue() );
+                            long len = check[0] - ( lower[0] + lower[1] );
                             location = ( len <= 0 ) ? 0 : ThreadLocalRandom.current().nextLong( len );
-                            location += lower.getKey() + lower.getValue();
+                            location += lower[0] + lower[1];
                         }
                     } else if ( lower == null ) {
-                        long len = upper.getKey() - ( check.getKey() + check.getValue() );
+                        long len = upper[0] - ( check[0] + check[1] );
                         location = ( len <= 0 ) ? 0 : ThreadLocalRandom.current().nextLong( len );
-                        location += check.getKey() + check.getValue();
+                        location += check[0] + check[1];
                     } else {
-                        long d1 = ( upper.getKey() - location );
-                        long d2 = location - ( lower.getKey() + lower.getValue() );
+                        long d1 = ( upper[0] - location );
+                        long d2 = location - ( lower[0] + lower[1] );
                         if ( d2 > d1 ) {
-                            long len = check.getKey() - ( lower.getKey() + lower.getValue() );
+                            long len = check[0] - ( lower[0] + lower[1] );
                             location = ( len <= 0 ) ? 0 : ThreadLocalRandom.current().nextLong( len );
-                            location += lower.getKey() + lower.getValue();
+                            location += lower[0] + lower[1];
                         } else {
-                            long len = upper.getKey() - ( check.getKey() + check.getValue() );
+                            long len = upper[0] - ( check[0] + check[1] );
                             location = ( len <= 0 ) ? 0 : ThreadLocalRandom.current().nextLong( len );
-                            location += check.getKey() + check.getValue();
+                            location += check[0] + check[1];
                         }
                     }
                 }
             }
             case "REROLL": {
-                Map.Entry<Long, Long> check = badLocations.floorEntry( location );
+                long[] check = badLocations.floorEntry( location );
                 if ( (check != null )
-                        && ( location > check.getKey() )
-                        && ( location < check.getKey() + check.getValue()) ) {
+                        && ( location > check[0] )
+                        && ( location < check[0] + check[1]) ) {
                     return -1;
                 }
             }
@@ -2,12 +2,12 @@ package io.github.dailystruggle.rtp.common.selection.region.selectors.memory.sha
 
 import io.github.dailystruggle.commandsapi.bukkit.LocalParameters.*;
 import io.github.dailystruggle.commandsapi.common.CommandParameter;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.LongIntervalSet;
 import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.Mode;
 import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes.enums.NormalDistributionParams;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
@@ -47,6 +47,14 @@ public class Circle_Normal extends MemoryShape<NormalDistributionParams> {
     }
 
 
+    @Override
+    public int[] bounds() {
+        long radius = getNumber( NormalDistributionParams.radius, 256L ).longValue() + 1;
+        long cx = getNumber( NormalDistributionParams.centerX, 0L ).longValue();
+        long cz = getNumber( NormalDistributionParams.centerZ, 0L ).longValue();
+        return new int[]{( int ) ( cx - radius ), ( int ) ( cz - radius ), ( int ) ( cx + radius ), ( int ) ( cz + radius )};
+    }
+
     @Override
     public double getRange() {
         long radius = getNumber( NormalDistributionParams.radius, 256L ).longValue();
@@ -127,7 +135,7 @@ public class Circle_Normal extends MemoryShape<NormalDistributionParams> {
         double range = ( radius - cr ) * ( radius + cr ) * Math.PI;
 
         boolean expand = Boolean.parseBoolean( data.getOrDefault( NormalDistributionParams.expand, false ).toString() );
-        if ( !expand ) range -= badLocationSum.get();
+        if ( !expand ) range -= badLocations.sum();
 
         mean = Math.abs( mean ) % 1.0; //ensure mean 0.0-1.0
         deviation = Math.abs( deviation ); //ensure deviation>0
@@ -167,56 +175,53 @@ public class Circle_Normal extends MemoryShape<NormalDistributionParams> {
         String mode = data.getOrDefault( NormalDistributionParams.mode, "ACCUMULATE" ).toString().toUpperCase();
         switch ( mode ) {
             case "ACCUMULATE": {
-                Map.Entry<Long, Long> idx = badLocations.firstEntry();
-                while ( (idx != null ) && ( location >= idx.getKey() || isKnownBad( location)) ) {
-                    location += idx.getValue();
-                    idx = badLocations.ceilingEntry( idx.getKey() + idx.getValue() );
-                }
+                //location is an index into the remaining good range, skip over every bad interval below it
+                location = badLocations.selectUnset( location );
             }
             case "NEAREST": {
-                ConcurrentSkipListMap<Long, Long> map = badLocations;
-                Map.Entry<Long, Long> check = map.floorEntry( location );
+                LongIntervalSet map = badLocations;
+                long[] check = map.floorEntry( location );
 
                 if ( (check != null )
-                        && ( location >= check.getKey() )
-                        && ( location < ( check.getKey() + check.getValue())) ) {
-                    Map.Entry<Long, Long> lower = map.floorEntry( check.getKey() - 1 );
-                    Map.Entry<Long, Long> upper = map.ceilingEntry( check.getKey() + check.getValue() );
+                        && ( location >= check[0] )
+                        && ( location < ( check[0] + check[1])) ) {
+                    long[] lower = map.floorEntry( check[0] - 1 );
+                    long[] upper = map.ceilingEntry( check[0] + check[1] );
 
                     if ( upper == null ) {
                         if ( lower == null ) {
-                            long cutout = check.getValue();
+                            long cutout = check[1];
                             location = ThreadLocalRandom.current().nextLong( (long ) ( range - cutout) );
-                            if ( location >= check.getKey() ) location += check.getValue();
+                            if ( location >= check[0] ) location += check[1];
                         } else {
-                            long len = check.getKey() - ( lower.getKey() + lower.getValue() );
+                            long len = check[0] - ( lower[0] + lower[1] );
                             location = ( len <= 0 ) ? 0 : ThreadLocalRandom.current().nextLong( len );
-                            location += lower.getKey() + lower.getValue();
+                            location += lower[0] + lower[1];
                         }
                     } else if ( lower == null ) {
-                        long len = upper.getKey() - ( check.getKey() + check.getValue() );
+                        long len = upper[0] - ( check[0] + check[1] );
                         location = ( len <= 0 ) ? 0 : ThreadLocalRandom.current().nextLong( len );
-                        location += check.getKey() + check.getValue();
+                        location += check[0] + check[1];
                     } else {
-                        long d1 = ( upper.getKey() - location );
-                        long d2 = location - ( lower.getKey() + lower.getValue() );
+                        long d1 = ( upper[0] - location );
+                        long d2 = location - ( lower[0] + lower[1] );
                         if ( d2 > d1 ) {
-                            long len = check.getKey() - ( lower.getKey() + lower.getValue() );
+                            long len = check[0] - ( lower[0] + lower[1] );
                             location = ( len <= 0 ) ? 0 : ThreadLocalRandom.current().nextLong( len );
-                            location += lower.getKey() + lower.getValue();
+                            location += lower[0] + lower[1];
                         } else {
-                            long len = upper.getKey() - ( check.getKey() + check.getValue() );
+                            long len = upper[0] - ( check[0] + check[1] );
                             location = ( len <= 0 ) ? 0 : ThreadLocalRandom.current().nextLong( len );
-                            location += check.getKey() + check.getValue();
+                            location += check[0] + check[1];
                         }
                     }
                 }
             }
             case "REROLL": {
-                Map.Entry<Long, Long> check = badLocations.floorEntry( location );
+                long[] check = badLocations.floorEntry( location );
                 if ( (check != null )
-                        && ( location > check.getKey() )
-                        && ( location < check.getKey() + check.getValue()) ) {
+                        && ( location > check[0] )
+                        && ( location < check[0] + check[1]) ) {
                     return -1;
                 }
             }
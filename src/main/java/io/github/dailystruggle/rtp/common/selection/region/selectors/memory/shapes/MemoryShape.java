@@ -1,6 +1,9 @@
 package io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes;
 
 import io.github.dailystruggle.rtp.common.RTP;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.LocationTiles;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.LongIntervalSet;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.RegionMemoryStore;
 import io.github.dailystruggle.rtp.common.selection.region.selectors.shapes.Shape;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPWorld;
 import io.github.dailystruggle.rtp.common.tools.ParseString;
@@ -9,7 +12,7 @@ import org.yaml.snakeyaml.Yaml;
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
@@ -17,11 +20,24 @@ import java.util.logging.Level;
  * @param <E> enum for configuration values
  */
 public abstract class MemoryShape<E extends Enum<E>> extends Shape<E> {
-    public ConcurrentSkipListMap<Long, Long> badLocations = new ConcurrentSkipListMap<>();
-    public AtomicLong badLocationSum = new AtomicLong( 0L );
-    public ConcurrentHashMap<String, ConcurrentSkipListMap<Long, Long>> biomeLocations = new ConcurrentHashMap<>();
-    public ConcurrentSkipListMap<Long,Long> biomeMapped = new ConcurrentSkipListMap<>();
+    /**
+     * every location selection should skip, i.e. learned and reserved together
+     */
+    public LongIntervalSet badLocations = new LongIntervalSet();
+    /**
+     * bad locations found by selection and fills. this is what's journaled and saved
+     */
+    public LongIntervalSet learnedBadLocations = new LongIntervalSet();
+    public ConcurrentHashMap<String, LongIntervalSet> biomeLocations = new ConcurrentHashMap<>();
+    public LongIntervalSet biomeMapped = new LongIntervalSet();
+    /**
+     * locations ruled out from outside the shape, such as protected areas.
+     * these are also in badLocations, but not in learnedBadLocations, so they're never journaled or saved, since what's protected can change while offline
+     */
+    public LongIntervalSet reservedLocations = new LongIntervalSet();
     public AtomicLong fillIter = new AtomicLong( 0L );
+    protected volatile RegionMemoryStore memoryStore = null;
+    private volatile LocationTiles locationTiles = null;
 
     /**
      * @param eClass - enum class to use
@@ -39,86 +55,173 @@ public abstract class MemoryShape<E extends Enum<E>> extends Shape<E> {
 
     public abstract int[] locationToXZ( long location );
 
+    /**
+     * @return {minX, minZ, maxX, maxZ}, inclusive, covering every locationToXZ result,
+     *         or null if the shape can't say
+     */
+    public int[] bounds() {
+        return null;
+    }
+
+    /**
+     * @return locations grouped by region file, or null if the shape has no bounds.
+     *         built on first use and again whenever the shape changes, which takes one locationToXZ per location
+     */
+    public LocationTiles locationTiles() {
+        int[] bounds = bounds();
+        if ( bounds == null ) return null;
+        long range = ( long ) getRange();
+        EnumMap<E, Object> key = getData();
+
+        //two threads may both build it, either result is the same
+        LocationTiles tiles = locationTiles;
+        if ( tiles == null || !tiles.matches( range, bounds, key ) ) {
+            tiles = new LocationTiles( this, range, bounds, key );
+            locationTiles = tiles;
+        }
+        return tiles;
+    }
+
     public boolean isKnownBad( int x, int z ) {
         return isKnownBad( (long ) xzToLocation( x, z) );
     }
 
     public boolean isKnownBad( long location ) {
-        Map.Entry<Long, Long> lower = badLocations.floorEntry( location );
-        if ( lower != null ) {
-            return ( location < ( lower.getKey() + lower.getValue()) );
-        }
-        return false;
+        return badLocations.contains( location );
     }
 
-    public void save( String fileName, String worldName ) {
-        if ( !fileName.endsWith( ".yml") ) fileName = fileName + ".yml";
+    /**
+     * @return identifying values stored alongside location memory, so memory from a different configuration isn't reused
+     */
+    public Map<String, Object> params( String worldName ) {
         Map<String, Object> params = new HashMap<>();
         params.put( "world", worldName );
         for ( Map.Entry<E, ?> e : data.entrySet() )
             params.put( e.getKey().name(), e.getValue().toString() );
+        return params;
+    }
 
-
-        Yaml fileYAML = new Yaml();
-
-        File pluginDir = RTP.serverAccessor.getPluginDirectory();
-        String dirPath = pluginDir.getAbsolutePath() + File.separator + "database" + File.separator + "regionData";
-        String filePath = dirPath + File.separator + fileName;
-        File dir = new File( dirPath );
-        File file = new File( filePath );
-
-        if ( !dir.exists() ) {
-            boolean mkdirs = dir.mkdirs();
-            if ( !mkdirs ) throw new IllegalStateException( "failed to make directory" );
+    public boolean paramsMatch( Map<String, ?> stored, Map<String, Object> params ) {
+        if ( stored == null ) return false;
+        List<RTPWorld> rtpWorlds = RTP.serverAccessor.getRTPWorlds();
+        Map<String, String> worldNames = new HashMap<>();
+        for ( int i = 0; i < rtpWorlds.size(); i++ ) {
+            RTPWorld world = rtpWorlds.get( i );
+            worldNames.put( String.valueOf( i ), world.name() );
         }
+        for ( Map.Entry<String, Object> e : params.entrySet() ) {
+            if ( !stored.containsKey( e.getKey()) ) {
+                return false;
+            }
+            Object value = e.getValue();
+            if ( e.getKey().equalsIgnoreCase( "world") ) {
+                String s = value.toString();
+                Set<String> keywords = ParseString.keywords( 
+                        s,
+                        worldNames.keySet(),
+                        new HashSet<>( Collections.singletonList( '[') ),
+                        new HashSet<>( Collections.singletonList( ']') )
+                 );
+                for ( String keyword : keywords ) {
+                    int v;
+                    try {
+                        v = Integer.parseInt( keyword );
+                        s = s.replace( "[" + keyword + "]", worldNames.get( keyword) );
+                    } catch ( IllegalArgumentException ignored ) {
 
-        if ( !file.exists() ) {
+                    }
+                }
+                value = s;
+            }
+            Object o = stored.get( e.getKey() );
             try {
-                boolean newFile = file.createNewFile();
-                if ( !newFile ) throw new IllegalStateException( "failed to make file" );
-            } catch ( IOException e ) {
-                RTP.log( Level.WARNING, e.getMessage(), e );
+                value = Double.parseDouble( value.toString() );
+                o = Double.parseDouble( o.toString() );
+            } catch ( IllegalArgumentException ignored ) {
+
+            }
+            if ( !o.equals( value) ) {
+                return false;
             }
         }
+        return true;
+    }
 
-        PrintWriter writer;
-        try {
-            writer = new PrintWriter( file );
-        } catch ( FileNotFoundException e ) {
-            RTP.log( Level.WARNING, e.getMessage(), e );
+    public void save( String fileName, String worldName ) {
+        Map<String, Object> params = params( worldName );
+        RegionMemoryStore store = memoryStore( fileName );
+
+        //first save after a mismatch or a fresh start needs the whole snapshot, after that only changes
+        if ( !store.isSynced() ) {
+            store.writeSnapshot( this, params );
             return;
         }
 
-        params.put( "badLocations", badLocations );
-        params.put( "biomeLocations", biomeLocations );
-        params.put( "fillIter", fillIter.get() );
-
-        fileYAML.dump( params, writer );
+        store.flush( fillIter.get() );
+        if ( store.needsCompaction() && store.compacting.compareAndSet( false, true ) ) {
+            Runnable compact = () -> {
+                try {
+                    store.writeSnapshot( this, params );
+                } finally {
+                    store.compacting.set( false );
+                }
+            };
+            //on the plugin's own async pipeline, not the jvm-wide common pool
+            RTP rtp = RTP.getInstance();
+            if ( rtp != null ) rtp.miscAsyncTasks.add( compact );
+            else compact.run();
+        }
     }
 
     public void load( String fileName, String worldName ) {
+        Map<String, Object> params = params( worldName );
+        RegionMemoryStore store = memoryStore( fileName );
+
+        if ( store.exists() ) {
+            if ( paramsMatch( store.readParams(), params ) ) {
+                store.read( this );
+                reservedLocations.forEach( badLocations::add );
+            }
+            return;
+        }
+
+        //one-time migration from the old yml format
         if ( !fileName.endsWith( ".yml") ) fileName = fileName + ".yml";
+        File file = new File( regionDataDirectory(), fileName );
+        if ( !file.exists() ) return;
+        if ( !loadYaml( file, params ) ) return;
+
+        store.writeSnapshot( this, params );
+        if ( store.exists() ) {
+            File migrated = new File( file.getAbsolutePath() + ".migrated" );
+            if ( !file.renameTo( migrated ) )
+                RTP.log( Level.WARNING, "[RTP] unable to rename " + file.getName() + " after migration" );
+            RTP.log( Level.INFO, "&00FFFF[RTP] migrated region memory " + file.getName() + " to " + store.snapshotFile.getName() );
+        }
+    }
 
-        Map<String, ?> resultMap;
-        Map<String, Object> params = new HashMap<>();
-        params.put( "world", worldName );
-        for ( Map.Entry<E, ?> e : data.entrySet() )
-            params.put( e.getKey().name(), e.getValue().toString() );
+    private RegionMemoryStore memoryStore( String fileName ) {
+        if ( fileName.endsWith( ".yml") ) fileName = fileName.substring( 0, fileName.length() - 4 );
+        if ( memoryStore == null || !memoryStore.snapshotFile.getName().equals( fileName + ".dat" ) )
+            memoryStore = new RegionMemoryStore( regionDataDirectory(), fileName );
+        return memoryStore;
+    }
 
-        Yaml fileYAML = new Yaml();
+    private static File regionDataDirectory() {
         File pluginDir = RTP.serverAccessor.getPluginDirectory();
-        String filePath = pluginDir.getAbsolutePath() + File.separator + "database" + File.separator + "regionData" + File.separator + fileName;
-        File file = new File( filePath );
-        if ( !file.exists() ) {
-            return;
-        }
+        return new File( pluginDir.getAbsolutePath() + File.separator + "database" + File.separator + "regionData" );
+    }
+
+    private boolean loadYaml( File file, Map<String, Object> params ) {
+        Map<String, ?> resultMap;
+        Yaml fileYAML = new Yaml();
 
         InputStream inputStream;
         try {
             inputStream = new FileInputStream( file );
         } catch ( FileNotFoundException e ) {
             RTP.log( Level.WARNING, e.getMessage(), e );
-            return;
+            return false;
         }
 
         resultMap = fileYAML.load( inputStream );
@@ -129,101 +232,54 @@ public abstract class MemoryShape<E extends Enum<E>> extends Shape<E> {
             RTP.log( Level.WARNING, e.getMessage(), e );
         }
 
-        boolean eq = resultMap != null;
-        if ( eq ) {
-            List<RTPWorld> rtpWorlds = RTP.serverAccessor.getRTPWorlds();
-            Map<String, String> worldNames = new HashMap<>();
-            for ( int i = 0; i < rtpWorlds.size(); i++ ) {
-                RTPWorld world = rtpWorlds.get( i );
-                worldNames.put( String.valueOf( i ), world.name() );
-            }
-            for ( Map.Entry<String, Object> e : params.entrySet() ) {
-                if ( !resultMap.containsKey( e.getKey()) ) {
-                    eq = false;
-                    break;
-                }
-                Object value = e.getValue();
-                if ( e.getKey().equalsIgnoreCase( "world") ) {
-                    String s = value.toString();
-                    Set<String> keywords = ParseString.keywords( 
-                            s,
-                            worldNames.keySet(),
-                            new HashSet<>( Collections.singletonList( '[') ),
-                            new HashSet<>( Collections.singletonList( ']') )
-                     );
-                    for ( String keyword : keywords ) {
-                        int v;
-                        try {
-                            v = Integer.parseInt( keyword );
-                            s = s.replace( "[" + keyword + "]", worldNames.get( keyword) );
-                        } catch ( IllegalArgumentException ignored ) {
-
-                        }
-                    }
-                    value = s;
-                }
-                Object o = resultMap.get( e.getKey() );
-                try {
-                    value = Double.parseDouble( value.toString() );
-                    o = Double.parseDouble( o.toString() );
-                } catch ( IllegalArgumentException ignored ) {
-
-                }
-                if ( !o.equals( value) ) {
-                    eq = false;
-                    break;
-                }
-            }
-        }
-
-        if ( !eq ) {
-            return;
+        if ( !paramsMatch( resultMap, params ) ) {
+            return false;
         }
 
         Map<?, ?> badLocations = ( Map<?, ?> ) resultMap.get( "badLocations" );
         if ( badLocations == null ) {
-            return;
+            return false;
         }
-        this.badLocationSum.set( 0 );
         for ( Map.Entry<?, ?> e : badLocations.entrySet() ) {
             String key = String.valueOf( e.getKey() );
             String val = String.valueOf( e.getValue() );
 
             try {
-                Long k = Long.parseLong( key );
+                long k = Long.parseLong( key );
                 long v = Long.parseLong( val );
 
-                this.badLocations.put( k, v );
-                this.badLocationSum.addAndGet( v );
+                this.learnedBadLocations.add( k, v );
+                this.badLocations.add( k, v );
             } catch ( NumberFormatException exception ) {
                 exception.printStackTrace();
-                return;
+                return true;
             }
         }
 
         Map<?, ?> biomeLocations = ( Map<?, ?> ) resultMap.get( "biomeLocations" );
         if ( biomeLocations == null ) {
-            return;
+            return true;
         }
         for ( Map.Entry<?, ?> b : biomeLocations.entrySet() ) {
             String biome = String.valueOf( b.getKey() );
             Map<?, ?> biomeMap = ( Map<?, ?> ) b.getValue();
             if ( biomeMap == null ) continue;
 
-            ConcurrentSkipListMap<Long, Long> locations = new ConcurrentSkipListMap<>();
+            LongIntervalSet locations = new LongIntervalSet();
 
             for ( Map.Entry<?, ?> e : biomeMap.entrySet() ) {
                 String key = String.valueOf( e.getKey() );
                 String val = String.valueOf( e.getValue() );
 
                 try {
-                    Long k = Long.parseLong( key );
-                    Long v = Long.parseLong( val );
+                    long k = Long.parseLong( key );
+                    long v = Long.parseLong( val );
 
-                    locations.put( k, v );
+                    locations.add( k, v );
+                    biomeMapped.add( k, v );
                 } catch ( NumberFormatException exception ) {
                     exception.printStackTrace();
-                    return;
+                    return true;
                 }
             }
             this.biomeLocations.put( biome, locations );
@@ -238,120 +294,147 @@ public abstract class MemoryShape<E extends Enum<E>> extends Shape<E> {
                 fillIter.set( 0L );
             }
         }
+        return true;
     }
 
-    public void addBadLocation( Long location ) {
+    public void addBadLocation( long location ) {
         if ( location < 0 ) return;
-        if ( isKnownBad( location) ) return;
+        //learned first, so a reservation lifted meanwhile puts it back
+        if ( !learnedBadLocations.add( location ) ) return;
+        badLocations.add( location );
 
-        Map.Entry<Long, Long> lower = badLocations.floorEntry( location );
-        Map.Entry<Long, Long> upper = badLocations.ceilingEntry( location );
-
-        //goal: merge adjacent values
-        // if within bounds of lower entry, do nothing
-        // if lower start+length meets position, add 1 to its length and use that
-        if ( (lower != null ) && ( location < lower.getKey() + lower.getValue()) ) {
-            return;
-        } else if ( (lower != null ) && ( location == lower.getKey() + lower.getValue()) ) {
-            badLocations.put( lower.getKey(), lower.getValue() + 1 );
-        } else {
-            badLocations.put( location, 1L );
+        //replaying a bad location drops it from the biome sets too, so only the add is journaled
+        for( LongIntervalSet locations : biomeLocations.values() ) {
+            locations.remove( location );
         }
+        biomeMapped.remove( location );
 
-        lower = badLocations.floorEntry( location );
+        RegionMemoryStore store = memoryStore;
+        if ( store != null ) store.logBad( location );
+    }
 
-        // if upper start meets position + length, merge its length and delete upper entry
-        if ( (upper != null ) && ( lower.getKey() + lower.getValue() >= upper.getKey()) ) {
-            badLocations.put( lower.getKey(), lower.getValue() + upper.getValue() );
-            badLocations.remove( upper.getKey() );
+    /**
+     * @return locations that select into chunks within the given chunk area, inclusive
+     */
+    public LongIntervalSet locationsInArea( int minX, int minZ, int maxX, int maxZ ) {
+        LongIntervalSet res = new LongIntervalSet();
+        LocationTiles tiles = locationTiles();
+        if ( tiles == null ) {
+            //no bounds to group by, so go through xzToLocation and keep the locations that actually land here
+            double range = getRange();
+            for ( long x = minX; x <= maxX; x++ ) {
+                for ( long z = minZ; z <= maxZ; z++ ) {
+                    long location = ( long ) xzToLocation( x, z );
+                    if ( location < 0 || location >= range ) continue;
+                    int[] xz = locationToXZ( location );
+                    if ( xz[0] == x && xz[1] == z ) res.add( location );
+                }
+            }
+            return res;
         }
 
-        for( String biome : biomeLocations.keySet() ) {
-            removeBiomeLocation( location,biome );
+        //only the region files the area overlaps, and only those the shape has
+        int[] area = new int[]{minX, minZ, maxX, maxZ};
+        int minTileX = Math.max( minX >> LocationTiles.TILE_SHIFT, tiles.minTileX );
+        int minTileZ = Math.max( minZ >> LocationTiles.TILE_SHIFT, tiles.minTileZ );
+        int maxTileX = Math.min( maxX >> LocationTiles.TILE_SHIFT, tiles.minTileX + tiles.tilesX - 1 );
+        int maxTileZ = Math.min( maxZ >> LocationTiles.TILE_SHIFT, tiles.minTileZ + tiles.tilesZ - 1 );
+        for ( int tileX = minTileX; tileX <= maxTileX; tileX++ ) {
+            for ( int tileZ = minTileZ; tileZ <= maxTileZ; tileZ++ ) {
+                addInArea( tiles, tiles.tile( tileX, tileZ ), area, res );
+            }
         }
-
-        badLocationSum.incrementAndGet();
+        addInArea( tiles, tiles.outside(), area, res );
+        return res;
     }
 
-    public void addBiomeLocation( Long location, String biome ) {
-        biomeLocations.putIfAbsent( biome, new ConcurrentSkipListMap<>() );
-        ConcurrentSkipListMap<Long, Long> map = biomeLocations.get( biome );
-
-        Map.Entry<Long, Long> lower = map.floorEntry( location );
-        Map.Entry<Long, Long> upper = map.ceilingEntry( location );
+    private void addInArea( LocationTiles tiles, int tile, int[] area, LongIntervalSet res ) {
+        tiles.forEach( tile, ( start, length ) -> {
+            for ( long location = start; location < start + length; location++ ) {
+                int[] xz = locationToXZ( location );
+                if ( xz[0] >= area[0] && xz[0] <= area[2] && xz[1] >= area[1] && xz[1] <= area[3] ) res.add( location );
+            }
+        } );
+    }
 
-        //goal: merge adjacent values
-        // if within bounds of lower entry, do nothing
-        // if lower start+length meets position, add 1 to its length and use that
-        if ( (lower != null ) && ( location < lower.getKey() + lower.getValue()) ) {
-            return;
-        } else if ( (lower != null ) && ( location == lower.getKey() + lower.getValue()) ) {
-            map.put( lower.getKey(), lower.getValue() + 1 );
-        } else {
-            map.put( location, 1L );
-        }
+    /**
+     * replace the reserved locations. only the parts that changed are touched, a whole interval at a time,
+     * and locations freed from reservation stay bad if they were learned as bad
+     */
+    public synchronized void setReservedLocations( LongIntervalSet reserved ) {
+        LongIntervalSet previous = reservedLocations;
+        previous.forEachExcept( reserved, ( start, length ) -> {
+            badLocations.remove( start, length );
+            learnedBadLocations.forEach( start, length, badLocations::add );
+        } );
+
+        reserved.forEachExcept( previous, ( start, length ) -> {
+            badLocations.add( start, length );
+            for ( LongIntervalSet locations : biomeLocations.values() ) locations.remove( start, length );
+            biomeMapped.remove( start, length );
+        } );
+        reservedLocations = reserved;
+    }
 
-        lower = map.floorEntry( location );
+    public void addBiomeLocation( long location, String biome ) {
+        boolean added = biomeLocations.computeIfAbsent( biome, s -> new LongIntervalSet() ).add( location );
+        biomeMapped.add( location );
 
-        // if upper start meets position + length, merge its length and delete upper entry
-        if ( (upper != null ) && ( lower.getKey() + lower.getValue() >= upper.getKey()) ) {
-            map.put( lower.getKey(), lower.getValue() + upper.getValue() );
-            map.remove( upper.getKey() );
-        }
+        RegionMemoryStore store = memoryStore;
+        if ( added && store != null ) store.logBiome( biome, location, true );
+    }
 
-        map = biomeMapped;
+    public void removeBiomeLocation( long location, String biome ) {
+        LongIntervalSet locations = biomeLocations.get( biome );
+        boolean removed = locations != null && locations.remove( location );
+        biomeMapped.remove( location );
 
-        if ( (lower != null ) && ( location < lower.getKey() + lower.getValue()) ) {
-            return;
-        } else if ( (lower != null ) && ( location == lower.getKey() + lower.getValue()) ) {
-            map.put( lower.getKey(), lower.getValue() + 1 );
-        } else {
-            map.put( location, 1L );
-        }
-
-        lower = map.floorEntry( location );
+        RegionMemoryStore store = memoryStore;
+        if ( removed && store != null ) store.logBiome( biome, location, false );
+    }
 
-        // if upper start meets position + length, merge its length and delete upper entry
-        if ( (upper != null ) && ( lower.getKey() + lower.getValue() >= upper.getKey()) ) {
-            map.put( lower.getKey(), lower.getValue() + upper.getValue() );
-            map.remove( upper.getKey() );
-        }
+    /**
+     * forget all learned locations
+     */
+    public void clearLocations() {
+        learnedBadLocations.clear();
+        badLocations.clear();
+        biomeLocations.clear();
+        biomeMapped.clear();
+        reservedLocations.forEach( badLocations::add );
+
+        RegionMemoryStore store = memoryStore;
+        if ( store != null ) store.logClear();
     }
 
-    public void removeBiomeLocation( Long location, String biome ) {
-        biomeLocations.putIfAbsent( biome, new ConcurrentSkipListMap<>() );
-        ConcurrentSkipListMap<Long, Long> map = biomeLocations.get( biome );
-
-        Map.Entry<Long, Long> lower = map.floorEntry( location );
-        if ( (lower != null ) && ( location < lower.getKey() + lower.getValue()) ) {
-            long key = lower.getKey();
-            long val = lower.getValue();
-            if ( location < key + val ) { //if within bounds, slice the bounds to remove the location
-                map.remove( lower.getKey() );
-                if ( location > key ) {
-                    map.put( key, location - key );
-                }
-                if ( location + 1 < key + val ) {
-                    map.put( location + 1, ( key + val ) - ( location + 1) );
-                }
-            }
+    /**
+     * @param biomeNames - biomes to select from
+     * @return a uniformly chosen known location in any of the given biomes, or -1 if none are known
+     */
+    public long randBiomeLocation( Collection<String> biomeNames ) {
+        List<LongIntervalSet> sets = new ArrayList<>( biomeNames.size() );
+        long total = 0;
+        for ( String biomeName : biomeNames ) {
+            LongIntervalSet locations = biomeLocations.get( biomeName );
+            if ( locations == null ) continue;
+            long sum = locations.sum();
+            if ( sum <= 0 ) continue;
+            sets.add( locations );
+            total += sum;
         }
-
-        map = biomeMapped;
-        lower = map.floorEntry( location );
-        if ( (lower != null ) && ( location < lower.getKey() + lower.getValue()) ) {
-            long key = lower.getKey();
-            long val = lower.getValue();
-            if ( location < key + val ) { //if within bounds, slice the bounds to remove the location
-                map.remove( lower.getKey() );
-                if ( location > key ) {
-                    map.put( key, location - key );
-                }
-                if ( location + 1 < key + val ) {
-                    map.put( location + 1, ( key + val ) - ( location + 1) );
-                }
+        if ( total <= 0 ) return -1;
+
+        long r = ThreadLocalRandom.current().nextLong( total );
+        for ( LongIntervalSet locations : sets ) {
+            long sum = locations.sum();
+            if ( r < sum ) {
+                long location = locations.select( r );
+                if ( location >= 0 ) return location;
+                break;
             }
+            r -= sum;
         }
+        return -1;
     }
 
     public abstract long rand();
@@ -359,10 +442,13 @@ public abstract class MemoryShape<E extends Enum<E>> extends Shape<E> {
     @Override
     public MemoryShape<E> clone() {
         MemoryShape<E> shape = ( MemoryShape<E> ) super.clone();
-        shape.badLocationSum = new AtomicLong( 0 );
-        shape.badLocations = new ConcurrentSkipListMap<>();
+        shape.badLocations = new LongIntervalSet();
+        shape.learnedBadLocations = new LongIntervalSet();
         shape.biomeLocations = new ConcurrentHashMap<>();
+        shape.biomeMapped = new LongIntervalSet();
+        shape.reservedLocations = new LongIntervalSet();
         shape.fillIter = new AtomicLong( 0 );
+        shape.memoryStore = null;
         return shape;
     }
 }
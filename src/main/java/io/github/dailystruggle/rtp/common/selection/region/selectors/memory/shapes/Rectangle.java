@@ -5,12 +5,12 @@ import io.github.dailystruggle.commandsapi.bukkit.LocalParameters.CoordinatePara
 import io.github.dailystruggle.commandsapi.bukkit.LocalParameters.EnumParameter;
 import io.github.dailystruggle.commandsapi.bukkit.LocalParameters.IntegerParameter;
 import io.github.dailystruggle.commandsapi.common.CommandParameter;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.LongIntervalSet;
 import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.Mode;
 import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes.enums.RectangleParams;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
@@ -58,6 +58,7 @@ public class Rectangle extends MemoryShape<RectangleParams> {
         long cx = getNumber( RectangleParams.centerX, 0L ).longValue();
         long cz = getNumber( RectangleParams.centerZ, 0L ).longValue();
         long width = getNumber( RectangleParams.width, 256L ).longValue();
+        long height = getNumber( RectangleParams.height, 256L ).longValue();
 
         // shift point back to origin:
         x -= cx;
@@ -67,8 +68,32 @@ public class Rectangle extends MemoryShape<RectangleParams> {
 
         input = rotate( input, -degrees );
 
+        //uncenter, same as locationToXZ in reverse
+        long px = input[0] + ( width / 2 );
+        long pz = input[1] + ( height / 2 );
+        if ( px < 0 || px >= width || pz < 0 || pz >= height ) return -1;
+
         //translate to position
-        return input[1] * width + input[0];
+        return pz * width + px;
+    }
+
+    @Override
+    public int[] bounds() {
+        long width = getNumber( RectangleParams.width, 256L ).longValue();
+        long height = getNumber( RectangleParams.height, 256L ).longValue();
+        if ( width <= 0 || height <= 0 ) return null;
+
+        //rotation keeps the corners on the outside
+        long[] corners = {0, width - 1, width * ( height - 1 ), width * height - 1};
+        int[] res = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+        for ( long corner : corners ) {
+            int[] xz = locationToXZ( corner );
+            res[0] = Math.min( res[0], xz[0] - 1 );
+            res[1] = Math.min( res[1], xz[1] - 1 );
+            res[2] = Math.max( res[2], xz[0] + 1 );
+            res[3] = Math.max( res[3], xz[1] + 1 );
+        }
+        return res;
     }
 
     @Override
@@ -118,56 +143,53 @@ public class Rectangle extends MemoryShape<RectangleParams> {
 
         switch ( mode ) {
             case "ACCUMULATE": {
-                Map.Entry<Long, Long> idx = badLocations.firstEntry();
-                while ( (idx != null ) && ( location >= idx.getKey() || isKnownBad( location)) ) {
-                    location += idx.getValue();
-                    idx = badLocations.ceilingEntry( idx.getKey() + idx.getValue() );
-                }
+                //location is an index into the remaining good range, skip over every bad interval below it
+                location = badLocations.selectUnset( location );
             }
             case "NEAREST": {
-                ConcurrentSkipListMap<Long, Long> map = badLocations;
-                Map.Entry<Long, Long> check = map.floorEntry( location );
+                LongIntervalSet map = badLocations;
+                long[] check = map.floorEntry( location );
 
                 if ( (check != null )
-                        && ( location >= check.getKey() )
-                        && ( location < ( check.getKey() + check.getValue())) ) {
-                    Map.Entry<Long, Long> lower = map.floorEntry( check.getKey() - 1 );
-                    Map.Entry<Long, Long> upper = map.ceilingEntry( check.getKey() + check.getValue() );
+                        && ( location >= check[0] )
+                        && ( location < ( check[0] + check[1])) ) {
+                    long[] lower = map.floorEntry( check[0] - 1 );
+                    long[] upper = map.ceilingEntry( check[0] + check[1] );
 
                     if ( upper == null ) {
                         if ( lower == null ) {
-                            long cutout = check.getValue();
+                            long cutout = check[1];
                             location = ThreadLocalRandom.current().nextLong( (long ) ( range - cutout) );
-                            if ( location >= check.getKey() ) location += check.getValue();
+                            if ( location >= check[0] ) location += check[1];
                         } else {
-                            long len = check.getKey() - ( lower.getKey() + lower.getValue() );
+                            long len = check[0] - ( lower[0] + lower[1] );
                             location = ( len <= 0 ) ? 0 : ThreadLocalRandom.current().nextLong( len );
-                            location += lower.getKey() + lower.getValue();
+                            location += lower[0] + lower[1];
                         }
                     } else if ( lower == null ) {
-                        long len = upper.getKey() - ( check.getKey() + check.getValue() );
+                        long len = upper[0] - ( check[0] + check[1] );
                         location = ( len <= 0 ) ? 0 : ThreadLocalRandom.current().nextLong( len );
-                        location += check.getKey() + check.getValue();
+                        location += check[0] + check[1];
                     } else {
-                        long d1 = ( upper.getKey() - location );
-                        long d2 = location - ( lower.getKey() + lower.getValue() );
+                        long d1 = ( upper[0] - location );
+                        long d2 = location - ( lower[0] + lower[1] );
                         if ( d2 > d1 ) {
-                            long len = check.getKey() - ( lower.getKey() + lower.getValue() );
+                            long len = check[0] - ( lower[0] + lower[1] );
                             location = ( len <= 0 ) ? 0 : ThreadLocalRandom.current().nextLong( len );
-                            location += lower.getKey() + lower.getValue();
+                            location += lower[0] + lower[1];
                         } else {
-                            long len = upper.getKey() - ( check.getKey() + check.getValue() );
+                            long len = upper[0] - ( check[0] + check[1] );
                             location = ( len <= 0 ) ? 0 : ThreadLocalRandom.current().nextLong( len );
-                            location += check.getKey() + check.getValue();
+                            location += check[0] + check[1];
                         }
                     }
                 }
             }
             case "REROLL": {
-                Map.Entry<Long, Long> check = badLocations.floorEntry( location );
+                long[] check = badLocations.floorEntry( location );
                 if ( (check != null )
-                        && ( location > check.getKey() )
-                        && ( location < check.getKey() + check.getValue()) ) {
+                        && ( location > check[0] )
+                        && ( location < check[0] + check[1]) ) {
                     return -1;
                 }
             }
@@ -3,13 +3,13 @@ package io.github.dailystruggle.rtp.common.selection.region.selectors.memory.sha
 import io.github.dailystruggle.commandsapi.bukkit.LocalParameters.*;
 import io.github.dailystruggle.commandsapi.common.CommandParameter;
 import io.github.dailystruggle.rtp.bukkit.RTPBukkitPlugin;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.LongIntervalSet;
 import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.Mode;
 import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes.enums.GenericMemoryShapeParams;
 import org.bukkit.Bukkit;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
@@ -92,6 +92,14 @@ public class Square extends MemoryShape<GenericMemoryShapeParams> {
         return new int[]{( int ) res[0], ( int ) res[1]};
     }
 
+    @Override
+    public int[] bounds() {
+        long radius = getNumber( GenericMemoryShapeParams.radius, 256L ).longValue() + 1;
+        long cx = getNumber( GenericMemoryShapeParams.centerX, 0L ).longValue();
+        long cz = getNumber( GenericMemoryShapeParams.centerZ, 0L ).longValue();
+        return new int[]{( int ) ( cx - radius ), ( int ) ( cz - radius ), ( int ) ( cx + radius ), ( int ) ( cz + radius )};
+    }
+
     @Override
     public double getRange() {
         long radius = getNumber( GenericMemoryShapeParams.radius, 256L ).longValue();
@@ -199,8 +207,8 @@ public class Square extends MemoryShape<GenericMemoryShapeParams> {
         String mode = data.getOrDefault( GenericMemoryShapeParams.mode, "ACCUMULATE" ).toString();
 
         double range = getRange();
-        if ( (!expand ) && mode.equalsIgnoreCase( "ACCUMULATE") ) range -= badLocationSum.get();
-        else if ( expand && !mode.equalsIgnoreCase( "ACCUMULATE") ) range += badLocationSum.get();
+        if ( (!expand ) && mode.equalsIgnoreCase( "ACCUMULATE") ) range -= badLocations.sum();
+        else if ( expand && !mode.equalsIgnoreCase( "ACCUMULATE") ) range += badLocations.sum();
 
         double weight = getNumber( GenericMemoryShapeParams.weight, 1.0 ).doubleValue();
         double res = ( range ) * Math.pow( ThreadLocalRandom.current().nextDouble(), weight );
@@ -209,56 +217,53 @@ public class Square extends MemoryShape<GenericMemoryShapeParams> {
 
         switch ( mode ) {
             case "ACCUMULATE": {
-                Map.Entry<Long, Long> idx = badLocations.firstEntry();
-                while ( (idx != null ) && ( location >= idx.getKey() || isKnownBad( location)) ) {
-                    location += idx.getValue();
-                    idx = badLocations.ceilingEntry( idx.getKey() + idx.getValue() );
-                }
+                //location is an index into the remaining good range, skip over every bad interval below it
+                location = badLocations.selectUnset( location );
             }
             case "NEAREST": {
-                ConcurrentSkipListMap<Long, Long> map = badLocations;
-                Map.Entry<Long, Long> check = map.floorEntry( location );
+                LongIntervalSet map = badLocations;
+                long[] check = map.floorEntry( location );
 
                 if ( (check != null )
-                        && ( location >= check.getKey() )
-                        && ( location < ( check.getKey() + check.getValue())) ) {
-                    Map.Entry<Long, Long> lower = map.floorEntry( check.getKey() - 1 );
-                    Map.Entry<Long, Long> upper = map.ceilingEntry( check.getKey() + check.getValue() );
+                        && ( location >= check[0] )
+                        && ( location < ( check[0] + check[1])) ) {
+                    long[] lower = map.floorEntry( check[0] - 1 );
+                    long[] upper = map.ceilingEntry( check[0] + check[1] );
 
                     if ( upper == null ) {
                         if ( lower == null ) {
-                            long cutout = check.getValue();
+                            long cutout = check[1];
                             location = ThreadLocalRandom.current().nextLong( (long ) ( range - cutout) );
-                            if ( location >= check.getKey() ) location += check.getValue();
+                            if ( location >= check[0] ) location += check[1];
                         } else {
-                            long len = check.getKey() - ( lower.getKey() + lower.getValue() );
+                            long len = check[0] - ( lower[0] + lower[1] );
                             location = ( len <= 0 ) ? 0 : ThreadLocalRandom.current().nextLong( len );
-                            location += lower.getKey() + lower.getValue();
+                            location += lower[0] + lower[1];
                         }
                     } else if ( lower == null ) {
-                        long len = upper.getKey() - ( check.getKey() + check.getValue() );
+                        long len = upper[0] - ( check[0] + check[1] );
                         location = ( len <= 0 ) ? 0 : ThreadLocalRandom.current().nextLong( len );
-                        location += check.getKey() + check.getValue();
+                        location += check[0] + check[1];
                     } else {
-                        long d1 = ( upper.getKey() - location );
-                        long d2 = location - ( lower.getKey() + lower.getValue() );
+                        long d1 = ( upper[0] - location );
+                        long d2 = location - ( lower[0] + lower[1] );
                         if ( d2 > d1 ) {
-                            long len = check.getKey() - ( lower.getKey() + lower.getValue() );
+                            long len = check[0] - ( lower[0] + lower[1] );
                             location = ( len <= 0 ) ? 0 : ThreadLocalRandom.current().nextLong( len );
-                            location += lower.getKey() + lower.getValue();
+                            location += lower[0] + lower[1];
                         } else {
-                            long len = upper.getKey() - ( check.getKey() + check.getValue() );
+                            long len = upper[0] - ( check[0] + check[1] );
                             location = ( len <= 0 ) ? 0 : ThreadLocalRandom.current().nextLong( len );
-                            location += check.getKey() + check.getValue();
+                            location += check[0] + check[1];
                         }
                     }
                 }
             }
             case "REROLL": {
-                Map.Entry<Long, Long> check = badLocations.floorEntry( location );
+                long[] check = badLocations.floorEntry( location );
                 if ( (check != null )
-                        && ( location > check.getKey() )
-                        && ( location < check.getKey() + check.getValue()) ) {
+                        && ( location > check[0] )
+                        && ( location < check[0] + check[1]) ) {
                     return -1;
                 }
             }
@@ -3,11 +3,9 @@ package io.github.dailystruggle.rtp.common.selection.region.selectors.verticalAd
 import io.github.dailystruggle.commandsapi.bukkit.LocalParameters.BooleanParameter;
 import io.github.dailystruggle.commandsapi.bukkit.LocalParameters.IntegerParameter;
 import io.github.dailystruggle.commandsapi.common.CommandParameter;
-import io.github.dailystruggle.rtp.common.RTP;
-import io.github.dailystruggle.rtp.common.configuration.ConfigParser;
-import io.github.dailystruggle.rtp.common.configuration.enums.SafetyKeys;
 import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes.enums.GenericMemoryShapeParams;
 import io.github.dailystruggle.rtp.common.selection.region.selectors.verticalAdjustors.VerticalAdjustor;
+import io.github.dailystruggle.rtp.common.serverSide.MaterialSets;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPBlock;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPChunk;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPLocation;
@@ -16,8 +14,6 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -25,8 +21,6 @@ public class JumpAdjustor extends VerticalAdjustor<JumpAdjustorKeys> {
     protected static final Map<String, CommandParameter> subParameters = new ConcurrentHashMap<>();
     protected static final List<String> keys = Arrays.stream( GenericMemoryShapeParams.values() ).map( Enum::name ).collect( Collectors.toList() );
     private static final EnumMap<JumpAdjustorKeys, Object> defaults = new EnumMap<>( JumpAdjustorKeys.class );
-    private static final Set<String> unsafeBlocks = new ConcurrentSkipListSet<>();
-    private static final AtomicLong lastUpdate = new AtomicLong();
 
     private static final List<List<Integer>> testCoords = Arrays.asList(
             Arrays.asList( 7,7 ),
@@ -80,17 +74,7 @@ public class JumpAdjustor extends VerticalAdjustor<JumpAdjustorKeys> {
         step = Math.max( step, 1 );
         step = Math.min( step, ( maxY - minY ) / 8 );
 
-        long t = System.currentTimeMillis();
-        long dt = t - lastUpdate.get();
-        if ( dt > 5000 || dt < 0 ) {
-            ConfigParser<SafetyKeys> safety = ( ConfigParser<SafetyKeys> ) RTP.configs.getParser( SafetyKeys.class );
-            Object value = safety.getConfigValue( SafetyKeys.unsafeBlocks, new ArrayList<>() );
-            unsafeBlocks.clear();
-            if ( value instanceof Collection ) {
-                unsafeBlocks.addAll( ((Collection<?> ) value ).stream().filter( Objects::nonNull ).map( Object::toString ).collect( Collectors.toSet()) );
-            }
-            lastUpdate.set( t );
-        }
+        BitSet unsafe = MaterialSets.get().unsafe;
 
         for ( List<Integer> xz : testCoords ) {
             int x = xz.get( 0 );
@@ -98,7 +82,7 @@ public class JumpAdjustor extends VerticalAdjustor<JumpAdjustorKeys> {
 
             for ( int i = minY; i < maxY; i++ ) {
                 RTPBlock blockAt = chunk.getBlockAt( x, i, z );
-                if ( !blockAt.isAir() && !unsafeBlocks.contains( blockAt.getMaterial()) ) {
+                if ( !blockAt.isAir() && !unsafe.get( blockAt.getMaterialId() ) ) {
                     minY = i;
                     break;
                 }
@@ -117,7 +101,7 @@ public class JumpAdjustor extends VerticalAdjustor<JumpAdjustorKeys> {
                     int skylight = 15;
                     if ( requireSkyLight ) skylight = block2.skyLight();
                     if ( block1.isAir() && block2.isAir() && skylight > 7
-                            && !unsafeBlocks.contains( block2.getMaterial()) ) {
+                            && !unsafe.get( block2.getMaterialId() ) ) {
                         minY = oldY;
                         maxY = i;
                         break;
@@ -134,9 +118,9 @@ public class JumpAdjustor extends VerticalAdjustor<JumpAdjustorKeys> {
                 int skylight = 15;
                 if ( requireSkyLight ) skylight = block2.skyLight();
                 if ( !block0.isAir() && block1.isAir() && block2.isAir() && skylight > 7
-                        && !unsafeBlocks.contains( block2.getMaterial() )
-                        && !unsafeBlocks.contains( block1.getMaterial() )
-                        && !unsafeBlocks.contains( block0.getMaterial()) ) {
+                        && !unsafe.get( block2.getMaterialId() )
+                        && !unsafe.get( block1.getMaterialId() )
+                        && !unsafe.get( block0.getMaterialId() ) ) {
                     return block1.getLocation();
                 }
             }
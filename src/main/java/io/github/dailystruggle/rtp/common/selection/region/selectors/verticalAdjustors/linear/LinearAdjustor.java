@@ -3,12 +3,10 @@ package io.github.dailystruggle.rtp.common.selection.region.selectors.verticalAd
 import io.github.dailystruggle.commandsapi.bukkit.LocalParameters.BooleanParameter;
 import io.github.dailystruggle.commandsapi.bukkit.LocalParameters.IntegerParameter;
 import io.github.dailystruggle.commandsapi.common.CommandParameter;
-import io.github.dailystruggle.rtp.common.RTP;
-import io.github.dailystruggle.rtp.common.configuration.ConfigParser;
-import io.github.dailystruggle.rtp.common.configuration.enums.SafetyKeys;
 import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes.enums.GenericMemoryShapeParams;
 import io.github.dailystruggle.rtp.common.selection.region.selectors.verticalAdjustors.GenericVerticalAdjustorKeys;
 import io.github.dailystruggle.rtp.common.selection.region.selectors.verticalAdjustors.VerticalAdjustor;
+import io.github.dailystruggle.rtp.common.serverSide.MaterialSets;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPBlock;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPChunk;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPLocation;
@@ -17,8 +15,6 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -26,8 +22,6 @@ public class LinearAdjustor extends VerticalAdjustor<GenericVerticalAdjustorKeys
     protected static final Map<String, CommandParameter> subParameters = new ConcurrentHashMap<>();
     protected static final List<String> keys = Arrays.stream( GenericMemoryShapeParams.values() ).map( Enum::name ).collect( Collectors.toList() );
     private static final EnumMap<GenericVerticalAdjustorKeys, Object> defaults = new EnumMap<>( GenericVerticalAdjustorKeys.class );
-    private static final Set<String> unsafeBlocks = new ConcurrentSkipListSet<>();
-    private static final AtomicLong lastUpdate = new AtomicLong();
 
     private static final List<List<Integer>> testCoords = Arrays.asList( 
             Arrays.asList( 7,7 ),
@@ -75,17 +69,7 @@ public class LinearAdjustor extends VerticalAdjustor<GenericVerticalAdjustorKeys
             requireSkyLight = ( Boolean ) o;
         } else requireSkyLight = Boolean.parseBoolean( o.toString() );
 
-        long t = System.currentTimeMillis();
-        long dt = t - lastUpdate.get();
-        if ( dt > 5000 || dt < 0 ) {
-            ConfigParser<SafetyKeys> safety = ( ConfigParser<SafetyKeys> ) RTP.configs.getParser( SafetyKeys.class );
-            Object value = safety.getConfigValue( SafetyKeys.unsafeBlocks, new ArrayList<>() );
-            unsafeBlocks.clear();
-            if ( value instanceof Collection ) {
-                unsafeBlocks.addAll( ((Collection<?> ) value ).stream().filter( Objects::nonNull ).map( Object::toString ).collect( Collectors.toSet()) );
-            }
-            lastUpdate.set( t );
-        }
+        BitSet unsafe = MaterialSets.get().unsafe;
 
         for ( List<Integer> xz : testCoords ) {
             int x = xz.get( 0 );
@@ -98,9 +82,9 @@ public class LinearAdjustor extends VerticalAdjustor<GenericVerticalAdjustorKeys
                         int skylight = 15;
                         if ( requireSkyLight ) skylight = block2.skyLight();
                         if ( block1.isAir() && block2.isAir() && skylight > 7
-                                && !unsafeBlocks.contains( block2.getMaterial() )
-                                && !unsafeBlocks.contains( block1.getMaterial() )
-                                && !unsafeBlocks.contains( chunk.getBlockAt( x, i - 1, z ).getMaterial()) ) {
+                                && !unsafe.get( block2.getMaterialId() )
+                                && !unsafe.get( block1.getMaterialId() )
+                                && !unsafe.get( chunk.getBlockAt( x, i - 1, z ).getMaterialId() ) ) {
                             return block1.getLocation();
                         }
                     }
@@ -113,9 +97,9 @@ public class LinearAdjustor extends VerticalAdjustor<GenericVerticalAdjustorKeys
                         int skylight = 15;
                         if ( requireSkyLight ) skylight = block2.skyLight();
                         if ( block1.isAir() && block2.isAir() && skylight > 7
-                                && !unsafeBlocks.contains( block2.getMaterial() )
-                                && !unsafeBlocks.contains( block1.getMaterial() )
-                                && !unsafeBlocks.contains( chunk.getBlockAt( x, i - 1, z ).getMaterial()) ) {
+                                && !unsafe.get( block2.getMaterialId() )
+                                && !unsafe.get( block1.getMaterialId() )
+                                && !unsafe.get( chunk.getBlockAt( x, i - 1, z ).getMaterialId() ) ) {
                             return block1.getLocation();
                         }
                     }
@@ -131,9 +115,9 @@ public class LinearAdjustor extends VerticalAdjustor<GenericVerticalAdjustorKeys
                         int skylight = 15;
                         if ( requireSkyLight ) skylight = block2.skyLight();
                         if ( block1.isAir() && block2.isAir() && skylight > 7
-                                && !unsafeBlocks.contains( block2.getMaterial() )
-                                && !unsafeBlocks.contains( block1.getMaterial() )
-                                && !unsafeBlocks.contains( chunk.getBlockAt( x, middle + i - 1, z ).getMaterial()) ) {
+                                && !unsafe.get( block2.getMaterialId() )
+                                && !unsafe.get( block1.getMaterialId() )
+                                && !unsafe.get( chunk.getBlockAt( x, middle + i - 1, z ).getMaterialId() ) ) {
                             return block1.getLocation();
                         }
 
@@ -143,9 +127,9 @@ public class LinearAdjustor extends VerticalAdjustor<GenericVerticalAdjustorKeys
                         skylight = 15;
                         if ( requireSkyLight ) skylight = block2.skyLight();
                         if ( block1.isAir() && block2.isAir() && skylight > 7
-                                && !unsafeBlocks.contains( block2.getMaterial() )
-                                && !unsafeBlocks.contains( block1.getMaterial() )
-                                && !unsafeBlocks.contains( chunk.getBlockAt( x, middle - i - 1, z ).getMaterial()) ) {
+                                && !unsafe.get( block2.getMaterialId() )
+                                && !unsafe.get( block1.getMaterialId() )
+                                && !unsafe.get( chunk.getBlockAt( x, middle - i - 1, z ).getMaterialId() ) ) {
                             return block1.getLocation();
                         }
                     }
@@ -161,9 +145,9 @@ public class LinearAdjustor extends VerticalAdjustor<GenericVerticalAdjustorKeys
                         int skylight = 15;
                         if ( requireSkyLight ) skylight = block2.skyLight();
                         if ( block1.isAir() && block2.isAir() && skylight > 7
-                                && !unsafeBlocks.contains( block2.getMaterial() )
-                                && !unsafeBlocks.contains( block1.getMaterial() )
-                                && !unsafeBlocks.contains( chunk.getBlockAt( x, middle + i - 1, z ).getMaterial()) ) {
+                                && !unsafe.get( block2.getMaterialId() )
+                                && !unsafe.get( block1.getMaterialId() )
+                                && !unsafe.get( chunk.getBlockAt( x, middle + i - 1, z ).getMaterialId() ) ) {
                             return block1.getLocation();
                         }
 
@@ -173,9 +157,9 @@ public class LinearAdjustor extends VerticalAdjustor<GenericVerticalAdjustorKeys
                         skylight = 15;
                         if ( requireSkyLight ) skylight = block2.skyLight();
                         if ( block1.isAir() && block2.isAir() && skylight > 7
-                                && !unsafeBlocks.contains( block2.getMaterial() )
-                                && !unsafeBlocks.contains( block1.getMaterial() )
-                                && !unsafeBlocks.contains( chunk.getBlockAt( x, middle - i - 1, z ).getMaterial()) ) {
+                                && !unsafe.get( block2.getMaterialId() )
+                                && !unsafe.get( block1.getMaterialId() )
+                                && !unsafe.get( chunk.getBlockAt( x, middle - i - 1, z ).getMaterialId() ) ) {
                             return block1.getLocation();
                         }
                     }
@@ -198,9 +182,9 @@ public class LinearAdjustor extends VerticalAdjustor<GenericVerticalAdjustorKeys
                         int skylight = 15;
                         if ( requireSkyLight ) skylight = block2.skyLight();
                         if ( block1.isAir() && block2.isAir() && skylight > 7
-                                && !unsafeBlocks.contains( block2.getMaterial() )
-                                && !unsafeBlocks.contains( block1.getMaterial() )
-                                && !unsafeBlocks.contains( chunk.getBlockAt( x, i - 1, z ).getMaterial()) ) {
+                                && !unsafe.get( block2.getMaterialId() )
+                                && !unsafe.get( block1.getMaterialId() )
+                                && !unsafe.get( chunk.getBlockAt( x, i - 1, z ).getMaterialId() ) ) {
                             return block1.getLocation();
                         }
                     }
@@ -0,0 +1,143 @@
+package io.github.dailystruggle.rtp.common.selection.region.selectors.verticalAdjustors.surface;
+
+import io.github.dailystruggle.commandsapi.bukkit.LocalParameters.BooleanParameter;
+import io.github.dailystruggle.commandsapi.bukkit.LocalParameters.IntegerParameter;
+import io.github.dailystruggle.commandsapi.common.CommandParameter;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.verticalAdjustors.VerticalAdjustor;
+import io.github.dailystruggle.rtp.common.serverSide.MaterialSets;
+import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPBlock;
+import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPChunk;
+import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPLocation;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * place on top of the highest block in a column.
+ * reads the chunk's heightmap where it has one, so each column costs a few block reads instead of a vertical search,
+ * and every column in the chunk can be tried.
+ */
+public class SurfaceAdjustor extends VerticalAdjustor<SurfaceAdjustorKeys> {
+    protected static final Map<String, CommandParameter> subParameters = new ConcurrentHashMap<>();
+    private static final EnumMap<SurfaceAdjustorKeys, Object> defaults = new EnumMap<>( SurfaceAdjustorKeys.class );
+
+    //same first picks as the other adjustors, then the rest of the chunk
+    private static final int[] columns = new int[256];
+
+    static {
+        defaults.put( SurfaceAdjustorKeys.maxY, 255 );
+        defaults.put( SurfaceAdjustorKeys.minY, 32 );
+        defaults.put( SurfaceAdjustorKeys.requireSkyLight, false );
+
+        subParameters.put( "maxy", new IntegerParameter( "rtp.params", "highest possible location", ( sender, s ) -> true, 64, 92, 127, 256, 320) );
+        subParameters.put( "miny", new IntegerParameter( "rtp.params", "lowest possible location", ( sender, s ) -> true, -64, 0, 64, 128) );
+        subParameters.put( "requireskylight", new BooleanParameter( "rtp.params", "require sky light for placement", ( sender, s ) -> true) );
+
+        int[] first = {7 + 7 * 16, 2 + 2 * 16, 12 + 12 * 16, 2 + 12 * 16, 12 + 2 * 16};
+        boolean[] used = new boolean[256];
+        int i = 0;
+        for ( int column : first ) {
+            columns[i++] = column;
+            used[column] = true;
+        }
+        for ( int column = 0; column < 256; column++ ) {
+            if ( !used[column] ) columns[i++] = column;
+        }
+    }
+
+    public SurfaceAdjustor( List<Predicate<RTPBlock>> verifiers ) {
+        super( SurfaceAdjustorKeys.class, "surface", verifiers, defaults );
+    }
+
+    @Override
+    public Collection<String> keys() {
+        return Arrays.stream( SurfaceAdjustorKeys.values() ).map( Enum::name ).collect( Collectors.toList() );
+    }
+
+    @Override
+    public @Nullable
+    RTPLocation adjust( @NotNull RTPChunk chunk ) {
+        if ( chunk == null ) return null;
+
+        int maxY = getNumber( SurfaceAdjustorKeys.maxY, 256L ).intValue();
+        int minY = getNumber( SurfaceAdjustorKeys.minY, 0L ).intValue();
+
+        maxY = Math.min( maxY, chunk.getWorld().getMaxHeight() );
+        minY = Math.max( minY, chunk.getWorld().getMinHeight() + 1 );
+
+        boolean requireSkyLight;
+        Object o = getData().getOrDefault( SurfaceAdjustorKeys.requireSkyLight, false );
+        if ( o instanceof Boolean ) {
+            requireSkyLight = ( Boolean ) o;
+        } else requireSkyLight = Boolean.parseBoolean( o.toString() );
+
+        int[] heightmap = chunk.heightmap();
+
+        //without a heightmap, search down from the top of the first few columns
+        int count = ( heightmap == null ) ? 5 : columns.length;
+        for ( int c = 0; c < count; c++ ) {
+            int x = columns[c] & 15;
+            int z = columns[c] >> 4;
+
+            int ground;
+            if ( heightmap != null ) {
+                ground = heightmap[columns[c]];
+            } else {
+                ground = maxY - 1;
+                while ( ground >= minY - 1 && chunk.getBlockAt( x, ground, z ).isAir() ) ground--;
+            }
+
+            //placement is the block above the surface
+            if ( ground + 1 < minY || ground + 1 >= maxY ) continue;
+
+            RTPLocation res = test( chunk, x, ground, z, requireSkyLight );
+            if ( res != null ) return res;
+        }
+        return null;
+    }
+
+    @Nullable
+    private static RTPLocation test( RTPChunk chunk, int x, int ground, int z, boolean requireSkyLight ) {
+        BitSet unsafe = MaterialSets.get().unsafe;
+
+        RTPBlock block0 = chunk.getBlockAt( x, ground, z );
+        if ( block0.isAir() || unsafe.get( block0.getMaterialId() ) ) return null;
+
+        RTPBlock block1 = chunk.getBlockAt( x, ground + 1, z );
+        if ( !block1.isAir() || unsafe.get( block1.getMaterialId() ) ) return null;
+
+        RTPBlock block2 = chunk.getBlockAt( x, ground + 2, z );
+        if ( !block2.isAir() || unsafe.get( block2.getMaterialId() ) ) return null;
+
+        if ( requireSkyLight && block2.skyLight() <= 7 ) return null;
+        return block1.getLocation();
+    }
+
+    @Override
+    public boolean testPlacement( @NotNull RTPBlock block ) {
+        for ( Predicate<RTPBlock> rtpLocationPredicate : verifiers ) {
+            if ( !rtpLocationPredicate.test( block) )
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Map<String, CommandParameter> getParameters() {
+        return subParameters;
+    }
+
+    @Override
+    public int minY() {
+        return getNumber( SurfaceAdjustorKeys.minY, 0 ).intValue();
+    }
+
+    @Override
+    public int maxY() {
+        return getNumber( SurfaceAdjustorKeys.maxY, 256 ).intValue();
+    }
+}
@@ -0,0 +1,7 @@
+package io.github.dailystruggle.rtp.common.selection.region.selectors.verticalAdjustors.surface;
+
+public enum SurfaceAdjustorKeys {
+    minY,
+    maxY,
+    requireSkyLight
+}
@@ -0,0 +1,202 @@
+package io.github.dailystruggle.rtp.common.serverSide;
+
+import io.github.dailystruggle.rtp.common.RTP;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * biome at the middle of a chunk, for one world, keyed by chunk key ( cx << 32 | cz ).
+ * a fixed size table over primitive arrays where a new entry replaces whatever shared its slot, so it never grows.
+ * each value packs the 16-block section the biome was sampled in above its id in NameRegistry.biomes, plus one.
+ * a lookup in a different section misses, since biomes can change with height.
+ * <br>
+ * saved with region memory by biome name, since ids are handed out fresh each start.
+ */
+public final class BiomeCache {
+    private static final int MAGIC = 0x52545042; //RTPB
+    private static final byte VERSION = 1;
+
+    private final long[] keys;
+    /**
+     * 0 for an empty slot
+     */
+    private final int[] values;
+    private final int shift;
+    private int size = 0;
+    private long changes = 0;
+    private long savedChanges = 0;
+
+    public BiomeCache( int capacity ) {
+        int n = Integer.highestOneBit( Math.max( capacity, 16 ) - 1 ) << 1;
+        keys = new long[n];
+        values = new int[n];
+        shift = 64 - Integer.numberOfTrailingZeros( n );
+    }
+
+    private int slot( long key ) {
+        return ( int ) ( ( key * 0x9E3779B97F4A7C15L ) >>> shift );
+    }
+
+    private static int pack( int section, int biomeId ) {
+        return ( section << 16 ) | ( ( biomeId + 1 ) & 0xFFFF );
+    }
+
+    /**
+     * @return biome id, or -1 if not known for this section
+     */
+    public synchronized int get( int cx, int y, int cz ) {
+        long key = ChunkRefMap.key( cx, cz );
+        int slot = slot( key );
+        int value = values[slot];
+        if ( value == 0 || keys[slot] != key || ( value >> 16 ) != ( y >> 4 ) ) return -1;
+        return ( value & 0xFFFF ) - 1;
+    }
+
+    /**
+     * @return biome name, or null if not known for this section
+     */
+    @Nullable
+    public String getName( int cx, int y, int cz ) {
+        int id = get( cx, y, cz );
+        return ( id < 0 ) ? null : NameRegistry.biomes.name( id );
+    }
+
+    public synchronized void put( int cx, int y, int cz, int biomeId ) {
+        if ( biomeId < 0 || biomeId >= 0xFFFF ) return;
+        long key = ChunkRefMap.key( cx, cz );
+        int slot = slot( key );
+        int value = pack( y >> 4, biomeId );
+        if ( values[slot] == value && keys[slot] == key ) return;
+        if ( values[slot] == 0 ) size++;
+        keys[slot] = key;
+        values[slot] = value;
+        changes++;
+    }
+
+    public void put( int cx, int y, int cz, String biome ) {
+        put( cx, y, cz, NameRegistry.biomes.id( biome ) );
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill( values, 0 );
+        size = 0;
+        changes++;
+    }
+
+    /**
+     * write the table, unless nothing changed since the last save or load
+     * @param stamp - identifies the world generation, e.g. the seed, so a load can tell the biomes still apply
+     */
+    public void save( File file, long stamp ) {
+        long[] keys;
+        int[] values;
+        long changes;
+        synchronized ( this ) {
+            if ( this.changes == savedChanges ) return;
+            keys = this.keys.clone();
+            values = this.values.clone();
+            changes = this.changes;
+        }
+
+        File dir = file.getParentFile();
+        if ( dir != null && !dir.exists() && !dir.mkdirs() ) return;
+
+        //names by id, written once and referenced by index
+        Map<Integer, Integer> nameIndex = new HashMap<>();
+        ByteArrayOutputStream names = new ByteArrayOutputStream();
+        DataOutputStream namesOut = new DataOutputStream( names );
+
+        File tmp = new File( dir, file.getName() + ".tmp" );
+        try ( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmp ), 1 << 16 ) ) ) {
+            ByteArrayOutputStream entries = new ByteArrayOutputStream();
+            DataOutputStream entriesOut = new DataOutputStream( entries );
+            int count = 0;
+            for ( int i = 0; i < keys.length; i++ ) {
+                int value = values[i];
+                if ( value == 0 ) continue;
+                int id = ( value & 0xFFFF ) - 1;
+                Integer index = nameIndex.get( id );
+                if ( index == null ) {
+                    String name = NameRegistry.biomes.name( id );
+                    if ( name == null ) continue;
+                    index = nameIndex.size();
+                    nameIndex.put( id, index );
+                    namesOut.writeUTF( name );
+                }
+                entriesOut.writeLong( keys[i] );
+                entriesOut.writeShort( value >> 16 );
+                entriesOut.writeShort( index );
+                count++;
+            }
+
+            out.writeInt( MAGIC );
+            out.writeByte( VERSION );
+            out.writeLong( stamp );
+            out.writeInt( nameIndex.size() );
+            names.writeTo( out );
+            out.writeInt( count );
+            entries.writeTo( out );
+        } catch ( IOException e ) {
+            RTP.log( Level.WARNING, e.getMessage(), e );
+            return;
+        }
+
+        try {
+            Files.move( tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        } catch ( IOException e ) {
+            try {
+                Files.move( tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            } catch ( IOException ex ) {
+                RTP.log( Level.WARNING, ex.getMessage(), ex );
+                return;
+            }
+        }
+
+        synchronized ( this ) {
+            savedChanges = Math.max( savedChanges, changes );
+        }
+    }
+
+    /**
+     * add saved entries, unless they were saved for a different stamp
+     */
+    public void load( File file, long stamp ) {
+        if ( !file.exists() ) return;
+        try ( DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ), 1 << 16 ) ) ) {
+            if ( in.readInt() != MAGIC || in.readByte() != VERSION ) return;
+            if ( in.readLong() != stamp ) return;
+
+            int[] ids = new int[in.readInt()];
+            for ( int i = 0; i < ids.length; i++ ) ids[i] = NameRegistry.biomes.id( in.readUTF() );
+
+            int count = in.readInt();
+            for ( int i = 0; i < count; i++ ) {
+                long key = in.readLong();
+                short section = in.readShort();
+                int index = in.readUnsignedShort();
+                if ( index >= ids.length ) continue;
+                put( ChunkRefMap.x( key ), section << 4, ChunkRefMap.z( key ), ids[index] );
+            }
+            synchronized ( this ) {
+                savedChanges = this.changes;
+            }
+        } catch ( IOException e ) {
+            RTP.log( Level.WARNING, e.getMessage(), e );
+        }
+    }
+}
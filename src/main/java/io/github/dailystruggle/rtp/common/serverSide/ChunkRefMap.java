@@ -0,0 +1,165 @@
+package io.github.dailystruggle.rtp.common.serverSide;
+
+import java.util.Arrays;
+
+/**
+ * reference counts for kept chunks, keyed by chunk key ( cx << 32 | cz ).
+ * open addressing over primitive arrays, so keeping a chunk doesn't allocate.
+ * each value packs the time the chunk was first kept, in milliseconds, above a 20 bit reference count.
+ */
+public final class ChunkRefMap {
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = ( 1L << COUNT_BITS ) - 1;
+
+    private long[] keys;
+    /**
+     * 0 for an empty slot, a kept chunk always has a count of at least 1
+     */
+    private long[] values;
+    private int size = 0;
+
+    public ChunkRefMap() {
+        this( 64 );
+    }
+
+    public ChunkRefMap( int capacity ) {
+        int n = Integer.highestOneBit( Math.max( capacity, 8 ) - 1 ) << 1;
+        keys = new long[n];
+        values = new long[n];
+    }
+
+    public static long key( int cx, int cz ) {
+        return ( (long ) cx << 32 ) | ( cz & 0xFFFFFFFFL );
+    }
+
+    public static int x( long key ) {
+        return ( int ) ( key >> 32 );
+    }
+
+    public static int z( long key ) {
+        return ( int ) key;
+    }
+
+    /**
+     * add a reference
+     *
+     * @return true if the chunk wasn't kept before
+     */
+    public synchronized boolean keep( long key ) {
+        int slot = find( key );
+        if ( values[slot] != 0 ) {
+            if ( ( values[slot] & COUNT_MASK ) < COUNT_MASK ) values[slot]++;
+            return false;
+        }
+
+        keys[slot] = key;
+        values[slot] = ( System.currentTimeMillis() << COUNT_BITS ) | 1;
+        if ( ++size * 4 > keys.length * 3 ) resize( keys.length * 2 );
+        return true;
+    }
+
+    /**
+     * drop a reference
+     *
+     * @return true if that was the last one and the chunk is no longer kept
+     */
+    public synchronized boolean forget( long key ) {
+        int slot = find( key );
+        if ( values[slot] == 0 ) return false;
+        if ( ( values[slot] & COUNT_MASK ) > 1 ) {
+            values[slot]--;
+            return false;
+        }
+        delete( slot );
+        return true;
+    }
+
+    public synchronized boolean contains( long key ) {
+        return values[find( key )] != 0;
+    }
+
+    /**
+     * @return number of references to this chunk, 0 if it isn't kept
+     */
+    public synchronized int count( long key ) {
+        return ( int ) ( values[find( key )] & COUNT_MASK );
+    }
+
+    /**
+     * @return System.currentTimeMillis() when the chunk was first kept, or 0 if it isn't kept
+     */
+    public synchronized long keptSince( long key ) {
+        return values[find( key )] >>> COUNT_BITS;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return every kept chunk key, in no particular order
+     */
+    public synchronized long[] keys() {
+        long[] res = new long[size];
+        int j = 0;
+        for ( int i = 0; i < keys.length; i++ ) {
+            if ( values[i] != 0 ) res[j++] = keys[i];
+        }
+        return res;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill( keys, 0 );
+        Arrays.fill( values, 0 );
+        size = 0;
+    }
+
+    /**
+     * @return slot holding key, or the empty slot where it belongs
+     */
+    private int find( long key ) {
+        int mask = keys.length - 1;
+        int slot = hash( key ) & mask;
+        while ( values[slot] != 0 && keys[slot] != key ) slot = ( slot + 1 ) & mask;
+        return slot;
+    }
+
+    /**
+     * backward shift deletion, keeps probe chains intact without tombstones
+     */
+    private void delete( int slot ) {
+        int mask = keys.length - 1;
+        int next = ( slot + 1 ) & mask;
+        while ( values[next] != 0 ) {
+            int home = hash( keys[next] ) & mask;
+            //move next back if its home isn't between the hole and next
+            if ( ( ( next - home ) & mask ) >= ( ( next - slot ) & mask ) ) {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                slot = next;
+            }
+            next = ( next + 1 ) & mask;
+        }
+        keys[slot] = 0;
+        values[slot] = 0;
+        size--;
+    }
+
+    private void resize( int capacity ) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[capacity];
+        values = new long[capacity];
+        for ( int i = 0; i < oldKeys.length; i++ ) {
+            if ( oldValues[i] == 0 ) continue;
+            int slot = find( oldKeys[i] );
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private static int hash( long key ) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return ( int ) ( h ^ ( h >>> 32 ) );
+    }
+}
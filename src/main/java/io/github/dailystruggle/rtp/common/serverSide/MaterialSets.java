@@ -0,0 +1,63 @@
+package io.github.dailystruggle.rtp.common.serverSide;
+
+import io.github.dailystruggle.rtp.common.RTP;
+import io.github.dailystruggle.rtp.common.configuration.ConfigParser;
+import io.github.dailystruggle.rtp.common.configuration.enums.SafetyKeys;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * air and unsafe materials from safety config, as material id bitsets.
+ * compiled on reload and swapped in whole, block checks read whichever version is current.
+ */
+public final class MaterialSets {
+    private static volatile MaterialSets current = null;
+
+    /**
+     * read-only
+     */
+    public final BitSet air;
+    /**
+     * read-only
+     */
+    public final BitSet unsafe;
+
+    private MaterialSets( BitSet air, BitSet unsafe ) {
+        this.air = air;
+        this.unsafe = unsafe;
+    }
+
+    public static MaterialSets get() {
+        MaterialSets res = current;
+        if ( res == null ) {
+            res = compile();
+            current = res;
+        }
+        return res;
+    }
+
+    public static void reload() {
+        current = compile();
+    }
+
+    private static MaterialSets compile() {
+        if ( RTP.serverAccessor != null ) NameRegistry.materials.seed( RTP.serverAccessor.materials() );
+
+        Collection<?> airBlocks = new ArrayList<>();
+        Collection<?> unsafeBlocks = new ArrayList<>();
+        ConfigParser<SafetyKeys> safety = ( RTP.configs == null ) ? null : ( ConfigParser<SafetyKeys> ) RTP.configs.getParser( SafetyKeys.class );
+        if ( safety != null ) {
+            Object o = safety.getConfigValue( SafetyKeys.airBlocks, new ArrayList<>() );
+            if ( o instanceof Collection ) airBlocks = ( Collection<?> ) o;
+            o = safety.getConfigValue( SafetyKeys.unsafeBlocks, new ArrayList<>() );
+            if ( o instanceof Collection ) unsafeBlocks = ( Collection<?> ) o;
+        }
+
+        BitSet air = NameRegistry.materials.bits( airBlocks );
+        if ( air.isEmpty() ) air = NameRegistry.materials.bits( Collections.singleton( "AIR" ) );
+        return new MaterialSets( air, NameRegistry.materials.bits( unsafeBlocks ) );
+    }
+}
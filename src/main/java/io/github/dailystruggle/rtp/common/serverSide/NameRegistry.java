@@ -0,0 +1,86 @@
+package io.github.dailystruggle.rtp.common.serverSide;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * interns names, e.g. materials or biomes, to dense int ids so hot checks can test a BitSet instead of hashing strings.
+ * ids are handed out in first-seen order and never change until shutdown.
+ * names are matched case-insensitively.
+ */
+public final class NameRegistry {
+    public static final NameRegistry materials = new NameRegistry();
+    public static final NameRegistry biomes = new NameRegistry();
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[64];
+    private int size = 0;
+
+    /**
+     * register everything up front, so ids stay dense and lookups after startup never write
+     */
+    public void seed( @Nullable Collection<String> names ) {
+        if ( names == null ) return;
+        names.forEach( this::id );
+    }
+
+    /**
+     * @return id for name, registering it if new, or -1 for null
+     */
+    public int id( @Nullable String name ) {
+        if ( name == null ) return -1;
+        String key = name.toUpperCase();
+        Integer res = ids.get( key );
+        if ( res != null ) return res;
+        synchronized ( this ) {
+            res = ids.get( key );
+            if ( res != null ) return res;
+            String[] arr = names;
+            if ( size == arr.length ) arr = Arrays.copyOf( arr, size * 2 );
+            arr[size] = key;
+            names = arr;
+            res = size++;
+            ids.put( key, res );
+            return res;
+        }
+    }
+
+    /**
+     * @return name for id, or null if it was never assigned
+     */
+    @Nullable
+    public String name( int id ) {
+        String[] arr = names;
+        if ( id < 0 || id >= arr.length ) return null;
+        return arr[id];
+    }
+
+    /**
+     * @return true if id is set in ids, false for -1
+     */
+    public static boolean has( BitSet ids, int id ) {
+        return id >= 0 && ids.get( id );
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * @return bitset with the id of each name set. treat it as read-only once shared.
+     */
+    public BitSet bits( @Nullable Collection<?> names ) {
+        BitSet res = new BitSet();
+        if ( names == null ) return res;
+        for ( Object o : names ) {
+            if ( o == null ) continue;
+            res.set( id( o.toString() ) );
+        }
+        return res;
+    }
+}
@@ -182,6 +182,22 @@ public interface RTPServerAccessor {
      */
     Set<String> materials();
 
+    /**
+     * @param material - material name
+     * @return dense id for block checks, see RTPBlock.getMaterialId
+     */
+    default int materialId( String material ) {
+        return NameRegistry.materials.id( material );
+    }
+
+    /**
+     * @param biome - biome name
+     * @return dense id for biome checks
+     */
+    default int biomeId( String biome ) {
+        return NameRegistry.biomes.id( biome );
+    }
+
     /**
      * using server scheduling methods,
      * cancel command/teleport tasks and clear all chunk loads
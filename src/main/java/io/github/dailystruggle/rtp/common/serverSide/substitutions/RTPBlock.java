@@ -1,5 +1,7 @@
 package io.github.dailystruggle.rtp.common.serverSide.substitutions;
 
+import io.github.dailystruggle.rtp.common.RTP;
+
 public interface RTPBlock {
     //todo: relevant block checks
     RTPLocation getLocation();
@@ -17,4 +19,11 @@ public interface RTPBlock {
     int skyLight();
 
     String getMaterial();
+
+    /**
+     * @return id as given by RTPServerAccessor.materialId, for testing against MaterialSets
+     */
+    default int getMaterialId() {
+        return RTP.serverAccessor.materialId( getMaterial() );
+    }
 }
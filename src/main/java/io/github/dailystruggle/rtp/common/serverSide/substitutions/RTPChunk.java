@@ -1,5 +1,9 @@
 package io.github.dailystruggle.rtp.common.serverSide.substitutions;
 
+import org.jetbrains.annotations.Nullable;
+
+import java.util.BitSet;
+
 public interface RTPChunk {
     int x();
 
@@ -14,4 +18,34 @@ public interface RTPChunk {
     void keep( boolean keep );
 
     void unload();
+
+    /**
+     * bulk column heights, for adjustors that can go straight to the surface
+     *
+     * @return y of the highest non-air block in each column, indexed x + z*16, or null if this chunk can't tell cheaply
+     */
+    @Nullable
+    default int[] heightmap() {
+        return null;
+    }
+
+    /**
+     * bulk section contents, so a safety scan can skip sections with nothing unsafe in them
+     *
+     * @param section - block y / 16
+     * @return material ids, as in NameRegistry.materials, of every block in that 16x16x16 section,
+     * or null if this chunk can't tell cheaply
+     */
+    @Nullable
+    default BitSet palette( int section ) {
+        return null;
+    }
+
+    /**
+     * @param section - block y / 16
+     * @return true if palette( section ) is already known, or can be had without reading the section's blocks
+     */
+    default boolean hasPalette( int section ) {
+        return false;
+    }
 }
@@ -1,5 +1,7 @@
 package io.github.dailystruggle.rtp.common.serverSide.substitutions;
 
+import io.github.dailystruggle.rtp.common.serverSide.ChunkRefMap;
+
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -16,8 +18,41 @@ public interface RTPWorld {
 
     void forgetChunks();
 
+    /**
+     * keep many chunks at once
+     *
+     * @param keys chunk keys, ChunkRefMap.key( cx, cz )
+     */
+    default void keepChunks( long[] keys ) {
+        for ( long key : keys ) keepChunkAt( ChunkRefMap.x( key ), ChunkRefMap.z( key ) );
+    }
+
+    /**
+     * forget many chunks at once
+     *
+     * @param keys chunk keys, ChunkRefMap.key( cx, cz )
+     */
+    default void forgetChunks( long[] keys ) {
+        for ( long key : keys ) forgetChunkAt( ChunkRefMap.x( key ), ChunkRefMap.z( key ) );
+    }
+
+    /**
+     * cancel chunk loads still in flight, e.g. on shutdown
+     */
+    default void cancelChunkLoads() {
+
+    }
+
     String getBiome( int x, int y, int z );
 
+    /**
+     * biome at the middle of a chunk, for checks made before loading it.
+     * platforms may remember these or sample the generator, so the chunk doesn't have to load
+     */
+    default String getChunkBiome( int chunkX, int y, int chunkZ ) {
+        return getBiome( chunkX * 16 + 7, y, chunkZ * 16 + 7 );
+    }
+
     void platform( RTPLocation location );
 
     boolean isInactive();
@@ -0,0 +1,73 @@
+package io.github.dailystruggle.rtp.common.tasks;
+
+/**
+ * progress through a fill when checks finish out of order.
+ * low() is the first index not finished yet, everything below it is done, so it's all a checkpoint needs.
+ * finished indices past low are kept as bits in a ring, which caps how far ahead of low dispatch can get.
+ * not thread safe, the fill task owns it.
+ */
+public final class FillCursor {
+    public static final int SPAN = 1 << 14;
+
+    private final long[] finished = new long[SPAN >>> 6];
+    private long low;
+    private long next;
+
+    public FillCursor( long start ) {
+        low = start;
+        next = start;
+    }
+
+    /**
+     * @return first index not finished yet
+     */
+    public long low() {
+        return low;
+    }
+
+    /**
+     * @return next index to hand out
+     */
+    public long next() {
+        return next;
+    }
+
+    /**
+     * @return indices handed out but not finished, counting the ones finished ahead of low
+     */
+    public long outstanding() {
+        return next - low;
+    }
+
+    /**
+     * @return false if the ring is full, i.e. the check at low is holding everything up
+     */
+    public boolean canAdvance() {
+        return next - low < SPAN;
+    }
+
+    /**
+     * @return the next index, now outstanding
+     */
+    public long advance() {
+        if ( !canAdvance() ) throw new IllegalStateException( "fill cursor is " + SPAN + " ahead of " + low );
+        return next++;
+    }
+
+    /**
+     * record index as finished and move low past every finished index
+     */
+    public void finish( long index ) {
+        if ( index < low || index >= next ) return;
+        int bit = ( int ) ( index & ( SPAN - 1 ) );
+        finished[bit >>> 6] |= 1L << bit;
+
+        while ( low < next ) {
+            bit = ( int ) ( low & ( SPAN - 1 ) );
+            long mask = 1L << bit;
+            if ( ( finished[bit >>> 6] & mask ) == 0 ) break;
+            finished[bit >>> 6] &= ~mask;
+            low++;
+        }
+    }
+}
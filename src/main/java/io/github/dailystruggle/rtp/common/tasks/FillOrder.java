@@ -0,0 +1,210 @@
+package io.github.dailystruggle.rtp.common.tasks;
+
+import io.github.dailystruggle.rtp.common.RTP;
+import io.github.dailystruggle.rtp.common.configuration.ConfigParser;
+import io.github.dailystruggle.rtp.common.configuration.enums.PerformanceKeys;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.LocationTiles;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes.MemoryShape;
+
+import java.util.Arrays;
+
+/**
+ * the order a fill visits a shape's locations in.
+ * a fill's progress is a single index into its order, saved as fillIter,
+ * so an order has to come out the same when it's rebuilt on resume.
+ */
+public abstract class FillOrder {
+    /**
+     * set in fillIter when the index is into a hilbert order
+     */
+    public static final long HILBERT_FLAG = 1L << 62;
+
+    /**
+     * @return number of indices, one per location
+     */
+    public abstract long size();
+
+    /**
+     * @return location at index, or -1 if there's nothing to check there
+     */
+    public abstract long location( long index );
+
+    /**
+     * @return fillIter value to resume from index
+     */
+    public abstract long checkpoint( long index );
+
+    /**
+     * @param checkpoint - fillIter, or 0 for a new fill in the configured order
+     */
+    public static FillOrder of( MemoryShape<?> shape, long checkpoint ) {
+        boolean hilbert;
+        if ( checkpoint == 0 ) {
+            ConfigParser<PerformanceKeys> perf = ( RTP.configs == null ) ? null : ( ConfigParser<PerformanceKeys> ) RTP.configs.getParser( PerformanceKeys.class );
+            hilbert = perf != null && perf.getConfigValue( PerformanceKeys.fillOrder, "LINEAR" ).toString().equalsIgnoreCase( "HILBERT" );
+        } else {
+            hilbert = ( checkpoint & HILBERT_FLAG ) != 0;
+        }
+
+        if ( !hilbert || shape.bounds() == null ) return new Linear( shape );
+        return new Hilbert( shape );
+    }
+
+    /**
+     * @return index to resume from
+     */
+    public static long index( long checkpoint ) {
+        return checkpoint & ~HILBERT_FLAG;
+    }
+
+    /**
+     * @return true if checkpoint is partway through shape
+     */
+    public static boolean inProgress( MemoryShape<?> shape, long checkpoint ) {
+        if ( checkpoint <= 0 ) return false;
+        return index( checkpoint ) < of( shape, checkpoint ).size();
+    }
+
+    /**
+     * shape's own location order, e.g. polar for circles
+     */
+    static final class Linear extends FillOrder {
+        private final long range;
+
+        Linear( MemoryShape<?> shape ) {
+            this.range = Double.valueOf( shape.getRange() ).longValue();
+        }
+
+        @Override
+        public long size() {
+            return range;
+        }
+
+        @Override
+        public long location( long index ) {
+            return ( index < range ) ? index : -1;
+        }
+
+        @Override
+        public long checkpoint( long index ) {
+            return index;
+        }
+    }
+
+    /**
+     * region file by region file along a hilbert curve, each file's locations in ascending order,
+     * so consecutive checks read the same file and mostly neighboring chunks.
+     * files come from the shape's location tiles, so every location is visited exactly once and empty files are skipped.
+     * the walk is laid out on first use rather than up front, since building the tiles goes through every location.
+     */
+    static final class Hilbert extends FillOrder {
+        private final MemoryShape<?> shape;
+        private final long range;
+        private volatile Walk walk = null;
+
+        Hilbert( MemoryShape<?> shape ) {
+            this.shape = shape;
+            this.range = Double.valueOf( shape.getRange() ).longValue();
+        }
+
+        @Override
+        public long size() {
+            return range;
+        }
+
+        @Override
+        public long location( long index ) {
+            if ( index < 0 || index >= range ) return -1;
+            Walk walk = walk();
+            int i = Arrays.binarySearch( walk.offsets, index );
+            if ( i < 0 ) i = -i - 2;
+            if ( i < 0 ) return -1;
+
+            int tile = walk.order[i];
+            long rest = index - walk.offsets[i];
+            for ( int run = 0; run < walk.tiles.runs( tile ); run++ ) {
+                long length = walk.tiles.runLength( tile, run );
+                if ( rest < length ) return walk.tiles.runStart( tile, run ) + rest;
+                rest -= length;
+            }
+            return -1;
+        }
+
+        @Override
+        public long checkpoint( long index ) {
+            return index | HILBERT_FLAG;
+        }
+
+        private Walk walk() {
+            Walk walk = this.walk;
+            if ( walk != null ) return walk;
+
+            LocationTiles tiles = shape.locationTiles();
+            int side = 1;
+            while ( side < tiles.tilesX || side < tiles.tilesZ ) side <<= 1;
+
+            int[] order = new int[tiles.outside() + 1];
+            long[] offsets = new long[order.length];
+            int n = 0;
+            long total = 0;
+            for ( long d = 0; d < ( long ) side * side; d++ ) {
+                int[] xz = hilbert( side, d );
+                int tile = tiles.tile( tiles.minTileX + xz[0], tiles.minTileZ + xz[1] );
+                if ( tile < 0 || tiles.count( tile ) == 0 ) continue;
+                order[n] = tile;
+                offsets[n++] = total;
+                total += tiles.count( tile );
+            }
+            //anything the shape put outside its own bounds goes last
+            if ( tiles.count( tiles.outside() ) > 0 ) {
+                order[n] = tiles.outside();
+                offsets[n++] = total;
+            }
+
+            walk = new Walk( tiles, Arrays.copyOf( order, n ), Arrays.copyOf( offsets, n ) );
+            this.walk = walk;
+            return walk;
+        }
+
+        private static final class Walk {
+            private final LocationTiles tiles;
+            //non-empty tiles in visiting order, and how many locations come before each
+            private final int[] order;
+            private final long[] offsets;
+
+            private Walk( LocationTiles tiles, int[] order, long[] offsets ) {
+                this.tiles = tiles;
+                this.order = order;
+                this.offsets = offsets;
+            }
+        }
+    }
+
+    /**
+     * @param side - power of 2
+     * @param d - distance along the curve, 0 to side*side-1
+     * @return {x, z} of that point on a hilbert curve filling a side x side square
+     */
+    public static int[] hilbert( int side, long d ) {
+        int x = 0;
+        int z = 0;
+        long t = d;
+        for ( int s = 1; s < side; s <<= 1 ) {
+            int rx = ( int ) ( 1 & ( t >>> 1 ) );
+            int rz = ( int ) ( 1 & ( t ^ rx ) );
+            if ( rz == 0 ) {
+                if ( rx == 1 ) {
+                    x = s - 1 - x;
+                    z = s - 1 - z;
+                }
+                int swap = x;
+                x = z;
+                z = swap;
+            }
+            x += s * rx;
+            z += s * rz;
+            t >>>= 2;
+        }
+        return new int[]{x, z};
+    }
+}
@@ -4,69 +4,77 @@ import io.github.dailystruggle.rtp.common.RTP;
 import io.github.dailystruggle.rtp.common.configuration.ConfigParser;
 import io.github.dailystruggle.rtp.common.configuration.enums.MessagesKeys;
 import io.github.dailystruggle.rtp.common.configuration.enums.PerformanceKeys;
-import io.github.dailystruggle.rtp.common.configuration.enums.SafetyKeys;
 import io.github.dailystruggle.rtp.common.selection.region.Region;
+import io.github.dailystruggle.rtp.common.selection.region.RegionSettings;
+import io.github.dailystruggle.rtp.common.selection.region.Selection;
 import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes.MemoryShape;
 import io.github.dailystruggle.rtp.common.selection.region.selectors.verticalAdjustors.VerticalAdjustor;
 import io.github.dailystruggle.rtp.common.selection.worldborder.WorldBorder;
-import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPBlock;
+import io.github.dailystruggle.rtp.common.serverSide.NameRegistry;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPChunk;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPLocation;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPWorld;
 
-import java.math.BigInteger;
-import java.util.*;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
 
+/**
+ * checks every location of a memory shape region ahead of time, so selection can skip the bad ones.
+ * instead of working in batches, keeps a window of checks in flight -
+ * each run takes finished checks off a lock-free queue, records them, then tops the window back up.
+ * the window sizes itself: it grows while chunk loads keep pace and shrinks when they slow down or the server lags.
+ */
 public class FillTask extends RTPRunnable {
-    public static final AtomicLong fillIncrement = new AtomicLong( 0L );
-    private static final AtomicLong cps = new AtomicLong( 128 );
-    private BigInteger cps_all = new BigInteger( "0" );
-    private BigInteger cps_divisor = new BigInteger( "0" );
-    private static final BigInteger increment_big = new BigInteger( "1" );
+    private static final long STATUS_PERIOD = TimeUnit.SECONDS.toNanos( 5 );
+    private static final long CHECK_TIMEOUT = TimeUnit.SECONDS.toNanos( 30 );
+    private static final long DECREASE_COOLDOWN = TimeUnit.SECONDS.toNanos( 1 );
+    private static final double START_WINDOW = 4;
+
+    enum Outcome {
+        pass,
+        bad,
+        /**
+         * couldn't tell, e.g. the chunk didn't load. leave it unmarked
+         */
+        skip
+    }
 
     private final Region region;
-    private final long start;
+    private final FillOrder order;
+    private final FillCursor cursor;
+    private final ConcurrentLinkedQueue<Check> completed = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<Long, Check> inFlight = new ConcurrentHashMap<>();
     private final CompletableFuture<Boolean> done = new CompletableFuture<>();
     {
-        RTP.futures.add( done );
+        RTP.track( done );
     }
-    private final AtomicLong completionCounter = new AtomicLong();
-    private final Semaphore completionGuard = new Semaphore( 1 );
-    private final List<CompletableFuture<Boolean>> chunks = new ArrayList<>();
-    private final Semaphore testsGuard = new Semaphore( 1 );
     public AtomicBoolean pause = new AtomicBoolean( false );
 
-    public FillTask( Region region, long start ) {
+    //only touched by whichever thread holds isRunning
+    private long maxWindow;
+    private double window;
+    private long latency = 0;
+    private long minLatency = Long.MAX_VALUE;
+    private long lastDecrease = 0;
+    private long lastStatus = System.nanoTime();
+    private long lastStatusLow;
+    private double cps = 0;
+
+    /**
+     * @param checkpoint - fillIter to resume from, or 0 to start over in the configured order
+     */
+    public FillTask( Region region, long checkpoint ) {
         this.region = region;
-        this.start = start;
-
-        if ( fillIncrement.get() <= 0 ) {
-            long cpu = Runtime.getRuntime().availableProcessors();
-            fillIncrement.set( cpu * 1000 / 32 );
-        } else {
-            //try for 5 seconds between messages
-            fillIncrement.set( cps.get() * 5 );
-        }
-    }
-
-    public FillTask( Region region, long start, BigInteger cps_all, BigInteger divisor ) {
-        this.region = region;
-        this.start = start;
-        this.cps_all = cps_all;
-        this.cps_divisor = divisor;
-
-        if ( fillIncrement.get() <= 0 ) {
-            long cpu = Runtime.getRuntime().availableProcessors();
-            fillIncrement.set( cpu * 10000 / 64 );
-        } else {
-            //try for 5 seconds between messages
-            fillIncrement.set( cps.get() * 5 );
-        }
+        this.order = FillOrder.of( ( MemoryShape<?> ) region.getShape(), checkpoint );
+        long start = FillOrder.index( checkpoint );
+        this.cursor = new FillCursor( start );
+        this.lastStatusLow = start;
+        this.maxWindow = maxWindow();
+        this.window = Math.min( START_WINDOW, maxWindow );
     }
 
     public static void kill() {
@@ -76,286 +84,268 @@ public class FillTask extends RTPRunnable {
 
     @Override
     public void run() {
-        isRunning.set( true );
-        if ( pause.get() || isCancelled() || fillIncrement.get() <= 0 ) return;
+        if ( isCancelled() || done.isDone() ) return;
+        if ( !isRunning.compareAndSet( false, true ) ) return;
+        try {
+            MemoryShape<?> shape = ( MemoryShape<?> ) region.getShape();
+            if ( shape == null ) return;
+            long range = order.size();
+
+            long start = System.nanoTime();
+            long budget = TickBudget.asyncBudget();
+
+            drain( shape, start, budget );
+            expire( start );
+            if ( !pause.get() ) dispatch( shape, range, start, budget );
+
+            long now = System.nanoTime();
+            if ( cursor.low() >= range && inFlight.isEmpty() ) {
+                checkpoint( shape, range, now );
+                done.complete( true );
+                RTP.getInstance().fillTasks.remove( region.name, this );
+            } else if ( now - lastStatus >= STATUS_PERIOD ) {
+                checkpoint( shape, range, now );
+            }
+        } finally {
+            isRunning.set( false );
+        }
+    }
 
-        long timingStart = System.currentTimeMillis();
+    /**
+     * @return checks currently in flight
+     */
+    public int inFlight() {
+        return inFlight.size();
+    }
 
-        MemoryShape<?> shape = ( MemoryShape<?> ) region.getShape();
+    /**
+     * @return how many checks may be in flight right now
+     */
+    public long window() {
+        return Math.max( 1, ( long ) ( window * TickBudget.scale() ) );
+    }
 
-        long range = Double.valueOf( shape.getRange() ).longValue();
-        long pos;
-        long limit = fillIncrement.get();
-        for ( pos = start; pos < range && pos < start + limit; pos++ ) {
-            if ( pause.get() || isCancelled() ) {
-                isRunning.set( false );
-                return;
+    /**
+     * record finished checks, in whatever order they finished
+     */
+    private void drain( MemoryShape<?> shape, long start, long budget ) {
+        boolean saturated = inFlight.size() >= window();
+        int count = 0;
+        Check check;
+        while ( ( check = completed.poll() ) != null ) {
+            //timed out and already counted
+            if ( !inFlight.remove( check.index, check ) ) continue;
+
+            if ( check.outcome == Outcome.bad ) {
+                shape.addBadLocation( check.pos );
+            } else if ( check.outcome == Outcome.pass && check.biome != null && region.settings().biomeRecall ) {
+                shape.addBiomeLocation( check.pos, check.biome );
             }
+            cursor.finish( check.index );
 
-            if ( shape.isKnownBad( pos) ) {
-                continue;
+            if ( check.loaded ) {
+                long diff = check.end - check.start;
+                latency = ( latency == 0 ) ? diff : ( (latency / 8 ) * 7 ) + ( diff / 8 );
             }
 
-            CompletableFuture<Boolean> future = testPos( region, pos );
-
-            long finalPos = pos;
-            future.thenAccept( aBoolean -> {
-                if ( isCancelled() ) return;
-                try {
-                    completionGuard.acquire();
-                    long l = completionCounter.incrementAndGet();
-                    if ( finalPos == range - 1 || l == limit ) {
-                        done.complete( true );
-                    }
-                } catch ( CancellationException e ) {
-                    done.complete( false );
-                } catch ( InterruptedException | IllegalStateException e ) {
-                    RTP.log( Level.WARNING, e.getMessage(), e );
-                    done.complete( false );
-                } finally {
-                    completionGuard.release();
-                }
-            } );
+            count++;
+            if ( ( count & 63 ) == 0 && System.nanoTime() - start > budget ) break;
+        }
+        shape.fillIter.set( order.checkpoint( cursor.low() ) );
+        if ( count > 0 ) tune( start, saturated );
+    }
 
-            chunks.add( future );
+    /**
+     * additive increase while saturated and loads stay quick, back off when loads slow down or the server lags
+     */
+    private void tune( long now, boolean saturated ) {
+        if ( latency > 0 ) {
+            //creep upward so one lucky stretch doesn't set the bar forever
+            minLatency = ( minLatency == Long.MAX_VALUE ) ? latency : Math.min( latency, minLatency + ( minLatency >> 8 ) );
         }
 
-        //WAIT FOR COMPLETION, EXCEPTIONALLY
-        for(CompletableFuture<Boolean> completableFuture : chunks)
-        {
-            if ( isCancelled() ) return;
-            try {
-                completableFuture.get(10, TimeUnit.SECONDS);
-            } catch (InterruptedException | ExecutionException e) {
-                RTP.log(Level.WARNING, "encountered exception in chunk loading - ", e);
-            } catch (TimeoutException e) {
-                RTP.log(Level.WARNING, "chunks took more than 10 seconds to load during fill task, skipping some...");
-                break;
+        if ( TickBudget.congested() ) {
+            if ( now - lastDecrease >= DECREASE_COOLDOWN ) {
+                window = Math.max( 1, window / 2 );
+                lastDecrease = now;
             }
+        } else if ( minLatency != Long.MAX_VALUE && latency > 2 * minLatency ) {
+            window = Math.max( 1, window - 1 );
+        } else if ( saturated ) {
+            window = Math.min( maxWindow, window + 1 );
         }
+    }
 
-
-        long completedChecks = pos - start;
-        long dt = TimeUnit.MILLISECONDS.toSeconds( System.currentTimeMillis() - timingStart );
-        if ( dt <= 0 ) dt = 1;
-        long cps_local = ( long ) ( ((double ) completedChecks ) / ( dt) );
-        cps_all = cps_all.add( new BigInteger( String.valueOf( cps_local)) );
-        cps_divisor = cps_divisor.add( increment_big );
-        cps.set( (cps.get()*7/8 ) + cps_local / 8 );
-
-        long numLoadsRemaining = range - pos;
-        if ( numLoadsRemaining < 0 || numLoadsRemaining > range ) numLoadsRemaining = 0;
-        long estRemaining = numLoadsRemaining / cps_all.divide( cps_divisor ).longValue();
-
-        ConfigParser<MessagesKeys> langParser = ( ConfigParser<MessagesKeys> ) RTP.configs.getParser( MessagesKeys.class );
-        String msg = langParser.getConfigValue( MessagesKeys.fillStatus, "" ).toString();
-        if ( msg != null && !msg.isEmpty() ) {
-            long days = TimeUnit.SECONDS.toDays( estRemaining );
-            long hours = TimeUnit.SECONDS.toHours( estRemaining ) % 24;
-            long minutes = TimeUnit.SECONDS.toMinutes( estRemaining ) % 60;
-            long seconds = estRemaining % 60;
-
-            String replacement = "";
-            if ( days > 0 ) replacement += days + langParser.getConfigValue( MessagesKeys.days, "" ).toString() + " ";
-            if ( hours > 0 )
-                replacement += hours + langParser.getConfigValue( MessagesKeys.hours, "" ).toString() + " ";
-            if ( minutes > 0 )
-                replacement += minutes + langParser.getConfigValue( MessagesKeys.minutes, "" ).toString() + " ";
-            if ( seconds > 0 )
-                replacement += seconds + langParser.getConfigValue( MessagesKeys.seconds, "" ).toString();
-
-            msg = msg.replace( "[chunks]", String.valueOf( pos) );
-            msg = msg.replace( "[totalChunks]", String.valueOf( range) );
-            msg = msg.replace( "[cps]", String.valueOf( cps_local) );
-            msg = msg.replace( "[eta]", replacement );
-            msg = msg.replace( "[region]", region.name );
-
-            RTP.serverAccessor.announce( msg, "rtp.fill" );
+    /**
+     * give up on checks stuck longer than CHECK_TIMEOUT, so one lost chunk load can't hold the cursor
+     */
+    private void expire( long now ) {
+        int expired = 0;
+        Iterator<Check> iterator = inFlight.values().iterator();
+        while ( iterator.hasNext() ) {
+            Check check = iterator.next();
+            if ( now - check.start < CHECK_TIMEOUT ) continue;
+            iterator.remove();
+            if ( check.future != null ) check.future.cancel( false );
+            cursor.finish( check.index );
+            expired++;
+        }
+        if ( expired > 0 ) {
+            RTP.log( Level.WARNING, "[RTP] [" + region.name + "] " + expired + " fill checks took longer than "
+                    + TimeUnit.NANOSECONDS.toSeconds( CHECK_TIMEOUT ) + " seconds, skipping them" );
         }
-
-        shape.fillIter.set( pos );
-        shape.save( region.name, region.getWorld().name() );
-        region.getWorld().save();
-
-        if ( pos < range && !isCancelled() && !pause.get() ) {
-            RTP.getInstance().fillTasks.put( region.name, new FillTask( region, pos, cps_all,cps_divisor) );
-        } else RTP.getInstance().fillTasks.remove( region.name );
-        isRunning.set( false );
     }
 
-    public CompletableFuture<Boolean> testPos( Region region, final long pos ) {
-        Set<String> defaultBiomes;
-
-        ConfigParser<PerformanceKeys> performance = ( ConfigParser<PerformanceKeys> ) RTP.configs.getParser( PerformanceKeys.class );
-        ConfigParser<SafetyKeys> safety = ( ConfigParser<SafetyKeys> ) RTP.configs.getParser( SafetyKeys.class );
-        Object o;
-        o = safety.getConfigValue( SafetyKeys.biomeWhitelist, false );
-        boolean whitelist = ( o instanceof Boolean ) ? ( Boolean ) o : Boolean.parseBoolean( o.toString() );
-
-        o = safety.getConfigValue( SafetyKeys.biomes, new ArrayList<String>() );
-        if(!(o instanceof List<?>)) {
-            new IllegalArgumentException("expected list for biomes in safety.yml, received - " + o.getClass().getSimpleName()).printStackTrace();
-            safety.set(SafetyKeys.biomes, new ArrayList<String>());
-        }
+    /**
+     * start checks until the window is full or the time's up
+     */
+    private void dispatch( MemoryShape<?> shape, long range, long start, long budget ) {
+        RegionSettings settings = region.settings();
+        long limit = window();
+        while ( inFlight.size() < limit && cursor.next() < range && cursor.canAdvance() ) {
+            if ( isCancelled() || System.nanoTime() - start > budget ) return;
+
+            long index = cursor.advance();
+            long pos = order.location( index );
+            if ( pos < 0 || shape.isKnownBad( pos ) ) {
+                cursor.finish( index );
+                continue;
+            }
 
-        List<?> objList = ( o instanceof List ) ? (( List<?> ) o) : new ArrayList<String>();
-        Set<String> biomeSet = objList.stream().map(o2 -> o2.toString().toUpperCase()).collect( Collectors.toSet() );
-        if ( whitelist ) {
-            defaultBiomes = biomeSet;
-        } else {
-            Set<String> biomes = RTP.serverAccessor.getBiomes( region.getWorld() );
-            Set<String> set = new HashSet<>();
-            for ( String s : biomes ) {
-                if ( !biomeSet.contains( s.toUpperCase()) ) {
-                    set.add( s );
-                }
+            Check check = new Check( index, pos, System.nanoTime() );
+            inFlight.put( index, check );
+            CompletableFuture<Outcome> future;
+            try {
+                future = test( check, shape, settings );
+            } catch ( Throwable throwable ) {
+                RTP.log( Level.WARNING, throwable.getMessage(), throwable );
+                future = CompletableFuture.completedFuture( Outcome.skip );
             }
-            defaultBiomes = set;
+            check.future = future;
+            future.whenComplete( ( outcome, throwable ) -> {
+                check.outcome = ( throwable == null && outcome != null ) ? outcome : Outcome.skip;
+                check.end = System.nanoTime();
+                completed.offer( check );
+            } );
         }
+    }
 
-        MemoryShape<?> shape = ( MemoryShape<?> ) region.getShape();
-        if( shape == null ) return CompletableFuture.completedFuture( false );
-
+    /**
+     * same stages as a selection, minus the retries
+     */
+    private CompletableFuture<Outcome> test( Check check, MemoryShape<?> shape, RegionSettings settings ) {
+        RTPWorld world = region.getWorld();
         VerticalAdjustor<?> vert = region.getVert();
-        if( vert == null ) return CompletableFuture.completedFuture( false );
-
-        o = safety.getConfigValue( SafetyKeys.unsafeBlocks, new ArrayList<>() );
-        Set<String> unsafeBlocks = ( o instanceof Collection ) ? ( (Collection<?> ) o )
-                .stream().map( o1 -> o1.toString().toUpperCase() ).collect( Collectors.toSet() )
-                : new HashSet<>();
+        if ( world == null || vert == null ) return CompletableFuture.completedFuture( Outcome.skip );
 
-        int safetyRadius = safety.getNumber( SafetyKeys.safetyRadius, 0 ).intValue();
+        int[] select = shape.locationToXZ( check.pos );
+        int midY = ( vert.maxY() + vert.minY() ) / 2;
 
-        RTPWorld world = region.getWorld();
+        String sampleBiome = world.getChunkBiome( select[0], midY, select[1] );
+        if ( settings.biomeRecall && !NameRegistry.has( settings.defaultBiomeIds, RTP.serverAccessor.biomeId( sampleBiome ) ) ) {
+            return CompletableFuture.completedFuture( Outcome.bad );
+        }
 
-        boolean biomeRecall = Boolean.parseBoolean( performance.getConfigValue( PerformanceKeys.biomeRecall, false ).toString() );
+        WorldBorder border = RTP.serverAccessor.getWorldBorder( world.name() );
+        if ( !border.isInside().apply( new RTPLocation( world, select[0] * 16, midY, select[1] * 16 ) ) ) {
+            return CompletableFuture.completedFuture( Outcome.bad );
+        }
 
-        int[] select = shape.locationToXZ( pos );
+        check.loaded = true;
+        return world.getChunkAt( select[0], select[1] )
+                .thenComposeAsync( chunk -> adjust( check, world, vert, settings, chunk ), region.selectionExecutor );
+    }
 
-        String currBiome = world.getBiome( select[0] * 16 + 7, ( vert.maxY() + vert.minY() ) / 2, select[1] * 16 + 7 );
+    private CompletableFuture<Outcome> adjust( Check check, RTPWorld world, VerticalAdjustor<?> vert, RegionSettings settings, RTPChunk chunk ) {
+        if ( chunk == null || isCancelled() ) return CompletableFuture.completedFuture( Outcome.skip );
 
-        if( !defaultBiomes.contains( currBiome ) ) {
-            if ( biomeRecall ) {
-                shape.addBadLocation( pos );
-                return CompletableFuture.completedFuture( false );
-            }
+        RTPLocation location = vert.adjust( chunk );
+        if ( location == null ) {
+            chunk.unload();
+            return CompletableFuture.completedFuture( settings.biomeRecall ? Outcome.bad : Outcome.skip );
         }
 
-        WorldBorder border = RTP.serverAccessor.getWorldBorder( world.name() );
-        if ( !border.isInside().apply( new RTPLocation( world, select[0] * 16, ( vert.maxY() + vert.minY() ) / 2, select[1] * 16)) ) {
-            shape.addBadLocation( pos );
-            return CompletableFuture.completedFuture( false );
+        String biome = world.getBiome( location.x(), location.y(), location.z() );
+        if ( settings.biomeRecall && !NameRegistry.has( settings.defaultBiomeIds, RTP.serverAccessor.biomeId( biome ) ) ) {
+            chunk.unload();
+            return CompletableFuture.completedFuture( Outcome.bad );
         }
 
-        if ( isCancelled() || pause.get() ) {
-            return CompletableFuture.completedFuture( false );
+        if ( location.y() >= vert.maxY() ) {
+            chunk.unload();
+            return CompletableFuture.completedFuture( Outcome.bad );
         }
 
-        CompletableFuture<RTPChunk> cfChunk = world.getChunkAt( select[0], select[1] );
-
-        CompletableFuture<Boolean> res = new CompletableFuture<>();
-        cfChunk.thenAccept( chunk -> {
-            if ( chunk == null || isCancelled() ) return;
-            RTPLocation location = vert.adjust( chunk );
-            if ( location == null ) {
-                if( biomeRecall ) shape.addBadLocation( pos );
-                res.complete( false );
-                chunk.unload();
-                return;
-            }
+        Map<Long, CompletableFuture<RTPChunk>> chunkFutures = Selection.safetyChunks( world, location, settings.safetyRadius, chunk );
+        return CompletableFuture.allOf( chunkFutures.values().toArray( new CompletableFuture[0] ) ).thenApplyAsync( v -> {
+            Map<Long, RTPChunk> chunks = new HashMap<>( chunkFutures.size() );
+            chunkFutures.forEach( ( key, future ) -> chunks.put( key, future.join() ) );
 
-            String currBiome1 = world.getBiome( location.x(), location.y(), location.z() );
-            if( !defaultBiomes.contains( currBiome1) ) {
-                if( biomeRecall ) {
-                    shape.addBadLocation( pos );
-                    res.complete( false );
-                    chunk.unload();
-                    return;
-                }
-            }
-
-            boolean pass = location.y() < vert.maxY();
-            if( !pass ) {
-                shape.addBadLocation( pos );
-                res.complete( false );
-                chunk.unload();
-                return;
-            }
+            boolean pass = !isCancelled()
+                    && Selection.isSafe( world, location, settings.safetyRadius, chunks, settings.unsafeBlockIds, null )
+                    && Region.checkGlobalRegionVerifiers( location );
+            chunk.unload();
+            if ( !pass ) return isCancelled() ? Outcome.skip : Outcome.bad;
+            check.biome = biome;
+            return Outcome.pass;
+        }, region.selectionExecutor );
+    }
 
-            //todo: waterlogged check
-            RTPBlock block;
-            RTPChunk chunk1;
-            Map<List<Integer>,RTPChunk> chunks = new HashMap<>();
-            chunks.put( Arrays.asList( chunk.x(), chunk.z() ), chunk );
-            chunk.keep( true );
-            for ( int x = location.x() - safetyRadius; x < location.x() + safetyRadius && pass; x++ ) {
-                int xx = x;
-                int dx = Math.abs( xx/16 );
-                int chunkX = chunk.x();
-
-                if( xx < 0 ) {
-                    chunkX-=dx+1;
-                    if( xx%16==0 ) xx+=16*dx;
-                    else xx+=16*( dx+1 );
-                } else if( xx >= 16 ) {
-                    chunkX+=dx;
-                    xx-=16*dx;
-                }
-
-                for ( int z = location.z() - safetyRadius; z < location.z() + safetyRadius && pass; z++ ) {
-                    int zz = z;
-                    int dz = Math.abs( zz/16 );
-                    int chunkZ = chunk.x();
-
-                    if( zz < 0 ) {
-                        chunkZ-=dx+1;
-                        if( zz%16==0 ) zz+=16*dz;
-                        else zz+=16*( dx+1 );
-                    } else if( zz >= 16 ) {
-                        chunkZ+=dz;
-                        zz-=16*dz;
-                    }
-
-                    List<Integer> xz = Arrays.asList( chunkX, chunkZ );
-                    if( chunks.containsKey( xz) ) chunk1 = chunks.get( xz );
-                    else {
-                        try {
-                            chunk1 = region.getWorld().getChunkAt( chunkX, chunkZ ).get();
-                            if( chunk1 == null ) return;
-                            chunks.put( xz,chunk1 );
-                            chunk1.keep( true );
-                        } catch ( InterruptedException | ExecutionException e ) {
-                            return;
-                        }
-                    }
-
-                    for ( int y = location.y() - safetyRadius; y < location.y() + safetyRadius && pass; y++ ) {
-                        block = chunk1.getBlockAt( xx, y, zz );
-                        if ( unsafeBlocks.contains( block.getMaterial()) ) {
-                            pass = false;
-                        }
-                    }
-                }
-            }
-            for( RTPChunk usedChunk : chunks.values() ) usedChunk.keep( false );
+    /**
+     * save progress as the cursor's low mark and report. either order has one index per location, so counts are locations
+     */
+    private void checkpoint( MemoryShape<?> shape, long range, long now ) {
+        long low = Math.min( cursor.low(), range );
+        double seconds = Math.max( now - lastStatus, 1 ) / 1_000_000_000.0;
+        double rate = ( low - lastStatusLow ) / seconds;
+        cps = ( cps <= 0 ) ? rate : ( cps * 3 + rate ) / 4;
+        lastStatus = now;
+        lastStatusLow = low;
+        maxWindow = maxWindow();
+        window = Math.min( window, maxWindow );
+
+        shape.fillIter.set( order.checkpoint( low ) );
+        shape.save( region.name, region.getWorld().name() );
+        region.getWorld().save();
 
-            if ( isCancelled() ) {
-                chunk.unload();
-                res.complete( false );
-                return;
-            }
+        announce( low, range );
+    }
 
-            if ( pass ) pass = Region.checkGlobalRegionVerifiers( location );
+    private void announce( long low, long range ) {
+        ConfigParser<MessagesKeys> langParser = ( ConfigParser<MessagesKeys> ) RTP.configs.getParser( MessagesKeys.class );
+        if ( langParser == null ) return;
+        String msg = langParser.getConfigValue( MessagesKeys.fillStatus, "" ).toString();
+        if ( msg == null || msg.isEmpty() ) return;
+
+        long estRemaining = ( cps > 0 ) ? ( long ) ( ( range - low ) / cps ) : 0;
+        long days = TimeUnit.SECONDS.toDays( estRemaining );
+        long hours = TimeUnit.SECONDS.toHours( estRemaining ) % 24;
+        long minutes = TimeUnit.SECONDS.toMinutes( estRemaining ) % 60;
+        long seconds = estRemaining % 60;
+
+        String replacement = "";
+        if ( days > 0 ) replacement += days + langParser.getConfigValue( MessagesKeys.days, "" ).toString() + " ";
+        if ( hours > 0 )
+            replacement += hours + langParser.getConfigValue( MessagesKeys.hours, "" ).toString() + " ";
+        if ( minutes > 0 )
+            replacement += minutes + langParser.getConfigValue( MessagesKeys.minutes, "" ).toString() + " ";
+        if ( seconds > 0 )
+            replacement += seconds + langParser.getConfigValue( MessagesKeys.seconds, "" ).toString();
+
+        msg = msg.replace( "[chunks]", String.valueOf( low ) );
+        msg = msg.replace( "[totalChunks]", String.valueOf( range ) );
+        msg = msg.replace( "[cps]", String.valueOf( ( long ) cps ) );
+        msg = msg.replace( "[eta]", replacement );
+        msg = msg.replace( "[region]", region.name );
+
+        RTP.serverAccessor.announce( msg, "rtp.fill" );
+    }
 
-            if ( pass ) {
-                if ( biomeRecall ) shape.addBiomeLocation( pos, currBiome1 );
-                res.complete( true );
-            } else {
-                shape.addBadLocation( pos );
-                res.complete( false );
-            }
-            chunk.unload();
-        } );
+    private static long maxWindow() {
+        long res = 0;
+        ConfigParser<PerformanceKeys> perf = ( RTP.configs == null ) ? null : ( ConfigParser<PerformanceKeys> ) RTP.configs.getParser( PerformanceKeys.class );
+        if ( perf != null ) res = perf.getNumber( PerformanceKeys.fillConcurrency, 0 ).longValue();
+        if ( res <= 0 ) res = Runtime.getRuntime().availableProcessors() * 16L;
         return res;
     }
 
@@ -367,12 +357,29 @@ public class FillTask extends RTPRunnable {
             } catch ( CancellationException | CompletionException ignored ) {
 
             }
-            try {
-                chunks.forEach( rtpChunkCompletableFuture -> rtpChunkCompletableFuture.cancel( true) );
-            } catch ( CancellationException | CompletionException ignored ) {
-
+            for ( Check check : inFlight.values() ) {
+                if ( check.future != null ) check.future.cancel( false );
             }
+            inFlight.clear();
+            completed.clear();
         }
         super.setCancelled( cancelled );
     }
+
+    private static final class Check {
+        private final long index;
+        private final long pos;
+        private final long start;
+        private volatile CompletableFuture<Outcome> future;
+        private volatile Outcome outcome = Outcome.skip;
+        private volatile String biome;
+        private volatile boolean loaded = false;
+        private volatile long end;
+
+        private Check( long index, long pos, long start ) {
+            this.index = index;
+            this.pos = pos;
+            this.start = start;
+        }
+    }
 }
@@ -0,0 +1,86 @@
+package io.github.dailystruggle.rtp.common.tasks;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * in-flight futures by key, e.g. chunk loads by chunk key.
+ * concurrent requests for the same key share one future,
+ * each future removes its own entry on completion,
+ * and futures nobody holds anymore are only weakly referenced, so they can't pile up.
+ */
+public final class FutureRegistry<K, T> {
+    private final ConcurrentHashMap<K, Ref<K, T>> inFlight = new ConcurrentHashMap<>();
+    private final ReferenceQueue<CompletableFuture<T>> cleared = new ReferenceQueue<>();
+
+    /**
+     * @param key    what's being loaded
+     * @param loader starts the load, only called if nothing for key is in flight
+     * @return the in-flight future for key, shared with any other caller asking for the same key
+     */
+    public CompletableFuture<T> get( K key, Supplier<CompletableFuture<T>> loader ) {
+        expunge();
+        while ( true ) {
+            Ref<K, T> ref = inFlight.get( key );
+            if ( ref != null ) {
+                CompletableFuture<T> future = ref.get();
+                if ( future != null && !future.isDone() ) return future;
+                inFlight.remove( key, ref );
+                continue;
+            }
+
+            CompletableFuture<T> res = new CompletableFuture<>();
+            Ref<K, T> newRef = new Ref<>( key, res, cleared );
+            if ( inFlight.putIfAbsent( key, newRef ) != null ) continue;
+            res.whenComplete( ( t, throwable ) -> inFlight.remove( key, newRef ) );
+
+            try {
+                loader.get().whenComplete( ( t, throwable ) -> {
+                    if ( throwable != null ) res.completeExceptionally( throwable );
+                    else res.complete( t );
+                } );
+            } catch ( Throwable throwable ) {
+                res.completeExceptionally( throwable );
+            }
+            return res;
+        }
+    }
+
+    public int size() {
+        expunge();
+        return inFlight.size();
+    }
+
+    /**
+     * cancel everything in flight, e.g. on shutdown
+     */
+    public void cancelAll() {
+        List<Ref<K, T>> refs = new ArrayList<>( inFlight.values() );
+        inFlight.clear();
+        for ( Ref<K, T> ref : refs ) {
+            CompletableFuture<T> future = ref.get();
+            if ( future != null ) future.cancel( false );
+        }
+        expunge();
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private void expunge() {
+        Ref<K, T> ref;
+        while ( ( ref = ( Ref<K, T> ) cleared.poll() ) != null ) inFlight.remove( ref.key, ref );
+    }
+
+    private static final class Ref<K, T> extends WeakReference<CompletableFuture<T>> {
+        private final K key;
+
+        private Ref( K key, CompletableFuture<T> future, ReferenceQueue<CompletableFuture<T>> queue ) {
+            super( future, queue );
+            this.key = key;
+        }
+    }
+}
@@ -1,7 +1,19 @@
 package io.github.dailystruggle.rtp.common.tasks;
 
+import java.util.concurrent.TimeUnit;
+
 public interface RTPDelayable extends Runnable {
+    /**
+     * @return delay in gameticks
+     */
     long getDelay();
 
     void setDelay( long delay );
+
+    /**
+     * @return delay in nanoseconds, what RTPTaskPipe actually waits on
+     */
+    default long getDelayNanos() {
+        return getDelay() * TimeUnit.MILLISECONDS.toNanos( 50 );
+    }
 }
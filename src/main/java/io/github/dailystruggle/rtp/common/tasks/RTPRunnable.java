@@ -1,11 +1,13 @@
 package io.github.dailystruggle.rtp.common.tasks;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class RTPRunnable implements Runnable, RTPCancellable, RTPDelayable {
     protected AtomicBoolean cancelled = new AtomicBoolean( false );
     protected AtomicBoolean isRunning = new AtomicBoolean( false );
     private long delay = 0;
+    private long delayNanos = 0;
     private Runnable runnable;
 
     public RTPRunnable() {
@@ -43,6 +45,28 @@ public class RTPRunnable implements Runnable, RTPCancellable, RTPDelayable {
     @Override
     public void setDelay( final long delay ) {
         this.delay = delay;
+        this.delayNanos = 0;
+    }
+
+    @Override
+    public long getDelayNanos() {
+        if ( delayNanos > 0 ) return delayNanos;
+        return RTPDelayable.super.getDelayNanos();
+    }
+
+    /**
+     * delay finer than a gametick
+     */
+    public void setDelay( final long delay, TimeUnit unit ) {
+        this.delayNanos = unit.toNanos( delay );
+        this.delay = ( delayNanos > 0 ) ? Math.max( 1, TimeUnit.NANOSECONDS.toMillis( delayNanos ) / 50 ) : 0;
+    }
+
+    /**
+     * @return which lane of an RTPTaskPipe this goes in
+     */
+    public RTPTaskPipe.Priority priority() {
+        return RTPTaskPipe.Priority.normal;
     }
 
     public boolean isRunning() {
@@ -3,97 +3,314 @@ package io.github.dailystruggle.rtp.common.tasks;
 import io.github.dailystruggle.rtp.common.RTP;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.Semaphore;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 
+/**
+ * task queue drained against a time budget.
+ * any thread can add without locking. one thread at a time executes, others calling execute return right away.
+ * tasks run by priority, urgent first, and delayed tasks wait in a timing wheel instead of being requeued every call.
+ * each task class keeps its own cost estimate, so a cheap task can still fit in a budget that an expensive one doesn't.
+ * clear and stop are handed to whichever thread is executing, so they never wait on a task in progress.
+ */
 public class RTPTaskPipe {
-    private final ConcurrentLinkedQueue<Runnable> runnables = new ConcurrentLinkedQueue<>();
-    private final Semaphore accessGuard = new Semaphore( 1 );
-    protected long avgTime = TimeUnit.MILLISECONDS.toNanos( 50 );
-    //    protected long avgTime = Long.MAX_VALUE;
-    private boolean stop = false;
+    public enum Priority {
+        /**
+         * a player is waiting on this, e.g. teleport steps
+         */
+        urgent,
+        /**
+         * everything else, e.g. cache refills
+         */
+        normal,
+        /**
+         * whenever there's time left
+         */
+        cleanup
+    }
+
+    private static final int SLOT_SHIFT = 20; //~1ms per wheel slot
+    private static final int WHEEL_SIZE = 512;
+
+    private final Lane[] lanes = new Lane[Priority.values().length];
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicReference<Thread> consumer = new AtomicReference<>( null );
+    /**
+     * written by the consumer, read by anyone estimating
+     */
+    private final Map<Class<?>, Long> costs = new ConcurrentHashMap<>();
+    private final AtomicBoolean clearRequested = new AtomicBoolean( false );
+    private final AtomicBoolean cancelRequested = new AtomicBoolean( false );
+    @SuppressWarnings( "unchecked" )
+    private final List<Timed>[] wheel = new List[WHEEL_SIZE];
+    private long wheelCount = 0;
+    private long wheelTick = System.nanoTime() >> SLOT_SHIFT;
+    protected volatile long avgTime = TimeUnit.MILLISECONDS.toNanos( 50 );
+    private volatile boolean stop = false;
+
+    public RTPTaskPipe() {
+        for ( int i = 0; i < lanes.length; i++ ) lanes[i] = new Lane();
+        for ( int i = 0; i < WHEEL_SIZE; i++ ) wheel[i] = new ArrayList<>( 0 );
+    }
 
     public void execute( long availableTime ) {
         if ( stop ) return;
-        if ( runnables.isEmpty() ) return;
-        long dt = 0;
-        long start = System.nanoTime();
+        if ( size.get() == 0 ) return;
+        if ( !consumer.compareAndSet( null, Thread.currentThread() ) ) return;
 
-        List<RTPDelayable> delayedRunnables = new ArrayList<>( runnables.size() );
+        try {
+            long start = System.nanoTime();
+            advanceWheel( start );
 
-        do {
-            try {
-                accessGuard.acquire();
-                if ( stop ) return;
-                Runnable runnable = runnables.poll();
-                if ( runnable == null ) continue;
-                if ( runnable instanceof RTPDelayable ) {
-                    long d = ( (RTPDelayable ) runnable ).getDelay();
-                    if ( d > 0 ) {
-                        delayedRunnables.add( (RTPDelayable ) runnable );
+            boolean ranAny = false;
+            for ( Lane lane : lanes ) {
+                while ( !stop ) {
+                    if ( clearRequested.get() || cancelRequested.get() ) applyRequests();
+                    Runnable runnable = lane.peek();
+                    if ( runnable == null ) break;
+
+                    if ( runnable instanceof RTPCancellable && ( (RTPCancellable ) runnable ).isCancelled() ) {
+                        lane.poll();
+                        size.decrementAndGet();
                         continue;
                     }
-                }
-
-                if ( runnable instanceof RTPCancellable && ( (RTPCancellable ) runnable ).isCancelled() ) continue;
 
-                long localStart = System.nanoTime();
-                try {
-                    runnable.run();
-                } catch ( Throwable throwable ) {
-                    RTP.log( Level.WARNING, throwable.getMessage(), throwable );
-                    continue;
-                }
-                long localStop = System.nanoTime();
-
-                long diff = localStop - localStart;
-                avgTime = ( (avgTime / 8 ) * 7 ) + ( diff / 8 );
+                    if ( runnable instanceof RTPDelayable ) {
+                        long d = ( (RTPDelayable ) runnable ).getDelayNanos();
+                        if ( d > 0 ) {
+                            lane.poll();
+                            ( (RTPDelayable ) runnable ).setDelay( 0 );
+                            schedule( runnable, lane, System.nanoTime() + d );
+                            continue;
+                        }
+                    }
 
-                dt = localStop - start;
-            } catch ( InterruptedException ignored ) {
+                    //always run at least one task, so a small budget can't stall the pipe
+                    long now = System.nanoTime();
+                    if ( ranAny && ( now - start ) + estimate( runnable ) >= availableTime ) break;
 
-            } catch ( Throwable t ) {
-                RTP.log( Level.WARNING, t.getMessage(), t );
-            } finally {
-                accessGuard.release();
+                    lane.poll();
+                    size.decrementAndGet();
+                    ranAny = true;
+                    try {
+                        runnable.run();
+                    } catch ( Throwable throwable ) {
+                        RTP.log( Level.WARNING, throwable.getMessage(), throwable );
+                        continue;
+                    }
+                    record( runnable, System.nanoTime() - now );
+                }
             }
-
-        } while ( !runnables.isEmpty() && ( dt + avgTime ) < availableTime );
-
-        for ( RTPDelayable runnable : delayedRunnables ) {
-            runnable.setDelay( runnable.getDelay() - 1 );
+        } finally {
+            applyRequests();
+            consumer.set( null );
         }
-
-        runnables.addAll( delayedRunnables );
+        applyPendingRequests();
     }
 
     public long size() {
-        return runnables.size();
+        return size.get();
     }
 
     public long avgTime() {
         return avgTime;
     }
 
+    /**
+     * add at normal priority, or the task's own priority if it's an RTPRunnable
+     */
     public void add( Runnable runnable ) {
-        runnables.add( runnable );
+        Priority priority = ( runnable instanceof RTPRunnable ) ? ( (RTPRunnable ) runnable ).priority() : Priority.normal;
+        add( runnable, priority );
+    }
+
+    public void add( Runnable runnable, Priority priority ) {
+        size.incrementAndGet();
+        lanes[priority.ordinal()].offer( runnable );
     }
 
+    /**
+     * drop every queued task, right away if nothing is executing, else as soon as the running task returns
+     */
     public void clear() {
-        runnables.clear();
+        clearRequested.set( true );
+        request();
     }
 
     public void start() {
         stop = false;
     }
 
+    /**
+     * stop executing and cancel queued tasks, right away if nothing is executing, else as soon as the running task returns
+     */
     public void stop() {
-        runnables.forEach( runnable -> {
-            if ( runnable instanceof RTPRunnable ) ( (RTPRunnable ) runnable ).setCancelled( true );
-        } );
         stop = true;
+        cancelRequested.set( true );
+        request();
+    }
+
+    /**
+     * @return estimated run time of this task in nanos, from previous runs of the same class
+     */
+    public long estimate( Runnable runnable ) {
+        Long cost = costs.get( runnable.getClass() );
+        return ( cost == null ) ? avgTime : cost;
+    }
+
+    private void record( Runnable runnable, long diff ) {
+        Long cost = costs.get( runnable.getClass() );
+        costs.put( runnable.getClass(), ( cost == null ) ? diff : ( ( cost / 8 ) * 7 ) + ( diff / 8 ) );
+        avgTime = ( (avgTime / 8 ) * 7 ) + ( diff / 8 );
+    }
+
+    private void schedule( Runnable runnable, Lane lane, long deadline ) {
+        long tick = Math.max( deadline >> SLOT_SHIFT, wheelTick + 1 );
+        wheel[( int ) ( tick & ( WHEEL_SIZE - 1 ) )].add( new Timed( runnable, lane, deadline ) );
+        wheelCount++;
+    }
+
+    /**
+     * move every task whose deadline passed back into its lane
+     */
+    private void advanceWheel( long now ) {
+        long target = now >> SLOT_SHIFT;
+        if ( wheelCount == 0 ) {
+            wheelTick = target;
+            return;
+        }
+
+        long steps = Math.min( target - wheelTick, WHEEL_SIZE );
+        for ( long s = 1; s <= steps; s++ ) {
+            List<Timed> slot = wheel[( int ) ( (wheelTick + s ) & ( WHEEL_SIZE - 1 ) )];
+            if ( slot.isEmpty() ) continue;
+            Iterator<Timed> iterator = slot.iterator();
+            while ( iterator.hasNext() ) {
+                Timed timed = iterator.next();
+                if ( timed.deadline - now > 0 ) continue; //a later rotation
+                iterator.remove();
+                wheelCount--;
+                timed.lane.offer( timed.runnable );
+            }
+        }
+        wheelTick = Math.max( wheelTick, target );
+    }
+
+    private void forEach( Consumer<Runnable> consumer ) {
+        for ( Lane lane : lanes ) lane.forEach( consumer );
+        for ( List<Timed> slot : wheel ) {
+            for ( Timed timed : slot ) consumer.accept( timed.runnable );
+        }
+    }
+
+    private void request() {
+        //called from inside a task, this thread already is the consumer
+        if ( consumer.get() == Thread.currentThread() ) applyRequests();
+        else applyPendingRequests();
+    }
+
+    /**
+     * apply requests if no one else is consuming. if someone is, they apply them before letting go
+     */
+    private void applyPendingRequests() {
+        Thread self = Thread.currentThread();
+        //recheck after letting go, a request may have come in after the consumer's last look
+        while ( ( clearRequested.get() || cancelRequested.get() ) && consumer.compareAndSet( null, self ) ) {
+            try {
+                applyRequests();
+            } finally {
+                consumer.set( null );
+            }
+        }
+    }
+
+    /**
+     * consumer only
+     */
+    private void applyRequests() {
+        if ( cancelRequested.getAndSet( false ) ) {
+            forEach( runnable -> {
+                if ( runnable instanceof RTPRunnable ) ( (RTPRunnable ) runnable ).setCancelled( true );
+            } );
+        }
+        if ( clearRequested.getAndSet( false ) ) {
+            long removed = wheelCount;
+            for ( Lane lane : lanes ) {
+                while ( lane.poll() != null ) removed++;
+            }
+            for ( List<Timed> slot : wheel ) slot.clear();
+            wheelCount = 0;
+            size.addAndGet( -removed );
+        }
+    }
+
+    private static final class Timed {
+        private final Runnable runnable;
+        private final Lane lane;
+        private final long deadline;
+
+        private Timed( Runnable runnable, Lane lane, long deadline ) {
+            this.runnable = runnable;
+            this.lane = lane;
+            this.deadline = deadline;
+        }
+    }
+
+    private static final class Node {
+        private volatile Node next;
+        private Runnable value;
+
+        private Node( Runnable value ) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * multi-producer single-consumer linked queue.
+     * producers swap themselves in as the tail, only the consumer moves the head
+     */
+    private static final class Lane {
+        private final AtomicReference<Node> tail;
+        private Node head;
+
+        private Lane() {
+            Node stub = new Node( null );
+            tail = new AtomicReference<>( stub );
+            head = stub;
+        }
+
+        private void offer( Runnable runnable ) {
+            Node node = new Node( runnable );
+            Node prev = tail.getAndSet( node );
+            prev.next = node;
+        }
+
+        private Runnable peek() {
+            Node next = head.next;
+            return ( next == null ) ? null : next.value;
+        }
+
+        private Runnable poll() {
+            Node next = head.next;
+            if ( next == null ) return null;
+            Runnable res = next.value;
+            next.value = null;
+            head = next;
+            return res;
+        }
+
+        private void forEach( Consumer<Runnable> consumer ) {
+            for ( Node node = head.next; node != null; node = node.next ) {
+                if ( node.value != null ) consumer.accept( node.value );
+            }
+        }
     }
 }
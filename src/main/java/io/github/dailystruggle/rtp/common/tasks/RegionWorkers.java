@@ -0,0 +1,178 @@
+package io.github.dailystruggle.rtp.common.tasks;
+
+import io.github.dailystruggle.rtp.common.RTP;
+import io.github.dailystruggle.rtp.common.selection.region.Region;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * pool of threads that each run region fill loops.
+ * every region gets a turn whenever it has work, instead of one region per async step.
+ * among regions that have work, the one with the emptiest cache relative to its cap goes first
+ *  ( stride scheduling: each turn costs time / depletion, lowest total cost runs next )
+ */
+public final class RegionWorkers {
+    /**
+     * time one region may spend per turn
+     */
+    public static final long SLICE = TimeUnit.MILLISECONDS.toNanos( 10 );
+    /**
+     * minimum time between turns of the same region, one gametick.
+     * delayed tasks in region pipelines count down once per turn
+     */
+    public static final long MIN_INTERVAL = TimeUnit.MILLISECONDS.toNanos( 50 );
+    private static final long MIN_COST = TimeUnit.MILLISECONDS.toNanos( 1 );
+
+    private final Map<Region, Turn> turns = new IdentityHashMap<>();
+    private final List<Thread> threads = new ArrayList<>();
+    /**
+     * bumped on each stop, so workers from before a resize exit even though the pool is running again
+     */
+    private volatile int generation = 0;
+    /**
+     * set by stop, so a late ensure from a tick that was already underway can't bring the pool back until start
+     */
+    private boolean stopped = false;
+    private final Object idle = new Object();
+
+    /**
+     * start or resize the pool, unless stopped
+     *
+     * @param size number of threads, 0 or less for one less than the number of cores
+     */
+    public synchronized void ensure( int size ) {
+        if ( stopped ) return;
+        if ( size <= 0 ) size = Runtime.getRuntime().availableProcessors() - 1;
+        size = Math.max( size, 1 );
+        if ( threads.size() == size ) return;
+
+        halt();
+        int gen = generation;
+        for ( int i = 0; i < size; i++ ) {
+            Thread thread = new Thread( () -> work( gen ), "RTP-region-worker-" + i );
+            thread.setDaemon( true );
+            threads.add( thread );
+            thread.start();
+        }
+    }
+
+    /**
+     * allow ensure to start the pool again after a stop
+     */
+    public synchronized void start() {
+        stopped = false;
+    }
+
+    /**
+     * end every worker, and ignore ensure until start
+     */
+    public synchronized void stop() {
+        stopped = true;
+        halt();
+    }
+
+    public synchronized boolean isStopped() {
+        return stopped;
+    }
+
+    private void halt() {
+        generation++;
+        synchronized ( idle ) {
+            idle.notifyAll();
+        }
+        for ( Thread thread : threads ) thread.interrupt();
+        threads.clear();
+    }
+
+    public synchronized int size() {
+        return threads.size();
+    }
+
+    private void work( int gen ) {
+        while ( gen == generation ) {
+            Turn turn = next();
+            if ( turn == null ) {
+                try {
+                    synchronized ( idle ) {
+                        idle.wait( TimeUnit.NANOSECONDS.toMillis( MIN_INTERVAL ) );
+                    }
+                } catch ( InterruptedException e ) {
+                    return;
+                }
+                continue;
+            }
+
+            long start = System.nanoTime();
+            try {
+                turn.region.execute( ( long ) ( SLICE * TickBudget.scale() ) );
+            } catch ( Throwable t ) {
+                RTP.log( Level.WARNING, t.getMessage(), t );
+            } finally {
+                done( turn, System.nanoTime() - start );
+            }
+        }
+    }
+
+    /**
+     * @return the eligible region with the lowest pass, marked as running, or null if none are eligible
+     */
+    private synchronized Turn next() {
+        List<Region> regions = new ArrayList<>( RTP.selectionAPI.permRegionLookup.values() );
+        regions.addAll( RTP.selectionAPI.tempRegions.values() );
+
+        double minPass = Double.MAX_VALUE;
+        for ( Turn turn : turns.values() ) minPass = Math.min( minPass, turn.pass );
+        if ( minPass == Double.MAX_VALUE ) minPass = 0;
+
+        Map<Region, Turn> current = new IdentityHashMap<>( regions.size() );
+        long now = System.nanoTime();
+        //fewer turns while the server is struggling
+        long interval = ( long ) ( MIN_INTERVAL / TickBudget.scale() );
+        Turn best = null;
+        for ( Region region : regions ) {
+            Turn turn = turns.get( region );
+            if ( turn == null ) turn = new Turn( region, minPass, now - MIN_INTERVAL );
+            current.put( region, turn );
+
+            if ( turn.running || now - turn.lastRun < interval ) continue;
+            double weight = region.depletion();
+            if ( weight <= 0 ) {
+                //a region that had nothing to do shouldn't bank credit for later
+                turn.pass = Math.max( turn.pass, minPass );
+                continue;
+            }
+            turn.weight = weight;
+            if ( best == null || turn.pass < best.pass ) best = turn;
+        }
+        turns.clear();
+        turns.putAll( current );
+
+        if ( best != null ) best.running = true;
+        return best;
+    }
+
+    private synchronized void done( Turn turn, long elapsed ) {
+        turn.pass += Math.max( elapsed, MIN_COST ) / turn.weight;
+        turn.lastRun = System.nanoTime();
+        turn.running = false;
+    }
+
+    private static final class Turn {
+        private final Region region;
+        private double pass;
+        private double weight = 1;
+        private long lastRun;
+        private boolean running = false;
+
+        private Turn( Region region, double pass, long lastRun ) {
+            this.region = region;
+            this.pass = pass;
+            this.lastRun = lastRun;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package io.github.dailystruggle.rtp.common.tasks;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * the plugin's own pool for selection and fill stages that run once their chunks arrive,
+ * e.g. safety scans over chunk snapshots and biome sampling.
+ * keeps that work off the server thread and out of the jvm-wide common pool, with a fixed number of threads.
+ */
+public final class SelectionWorkers implements Executor {
+    private static final long KEEP_ALIVE = 30;
+
+    private final AtomicInteger threadNumber = new AtomicInteger( 0 );
+    private volatile ThreadPoolExecutor pool = null;
+    /**
+     * set by stop, so a late ensure can't bring the pool back until start
+     */
+    private boolean stopped = false;
+
+    /**
+     * start or resize the pool, unless stopped
+     *
+     * @param size number of threads, 0 or less for half the number of cores
+     */
+    public synchronized void ensure( int size ) {
+        if ( stopped ) return;
+        if ( size <= 0 ) size = Runtime.getRuntime().availableProcessors() / 2;
+        size = Math.max( size, 1 );
+
+        ThreadPoolExecutor pool = this.pool;
+        if ( pool == null ) {
+            pool = new ThreadPoolExecutor( size, size, KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread( runnable, "RTP-selection-worker-" + threadNumber.getAndIncrement() );
+                thread.setDaemon( true );
+                return thread;
+            } );
+            //idle threads go away between bursts
+            pool.allowCoreThreadTimeOut( true );
+            this.pool = pool;
+        } else if ( pool.getCorePoolSize() != size ) {
+            //core can't exceed max at any point
+            if ( size > pool.getMaximumPoolSize() ) {
+                pool.setMaximumPoolSize( size );
+                pool.setCorePoolSize( size );
+            } else {
+                pool.setCorePoolSize( size );
+                pool.setMaximumPoolSize( size );
+            }
+        }
+    }
+
+    /**
+     * allow ensure to start the pool again after a stop
+     */
+    public synchronized void start() {
+        stopped = false;
+    }
+
+    /**
+     * shut the pool down once queued stages finish, and ignore ensure until start
+     */
+    public synchronized void stop() {
+        stopped = true;
+        ThreadPoolExecutor pool = this.pool;
+        this.pool = null;
+        if ( pool != null ) pool.shutdown();
+    }
+
+    public synchronized boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * @return number of threads the pool may use, or 0 if it isn't running
+     */
+    public int size() {
+        ThreadPoolExecutor pool = this.pool;
+        return ( pool == null ) ? 0 : pool.getCorePoolSize();
+    }
+
+    @Override
+    public void execute( Runnable command ) {
+        ThreadPoolExecutor pool = this.pool;
+        if ( pool == null ) {
+            //first use before the async timer sized it
+            ensure( 0 );
+            pool = this.pool;
+        }
+
+        //stopped, run it here so whatever waits on it still completes
+        if ( pool == null ) {
+            command.run();
+            return;
+        }
+        try {
+            pool.execute( command );
+        } catch ( RejectedExecutionException e ) {
+            command.run();
+        }
+    }
+}
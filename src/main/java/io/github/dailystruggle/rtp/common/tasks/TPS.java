@@ -2,6 +2,10 @@ package io.github.dailystruggle.rtp.common.tasks;
 
 public class TPS implements Runnable {
     public static final long[] TICKS = new long[600];
+    /**
+     * System.nanoTime() at each tick, same indexing as TICKS
+     */
+    public static final long[] TICK_NANOS = new long[600];
     public static int TICK_COUNT = 0;
 
     public static double getTPS( int ticks ) {
@@ -19,9 +23,33 @@ public class TPS implements Runnable {
         return System.currentTimeMillis() - TICKS[target];
     }
 
+    /**
+     * @return average milliseconds per tick over the last few ticks, 50 on a healthy server
+     */
+    public static double mspt( int ticks ) {
+        int count = TICK_COUNT;
+        ticks = Math.min( ticks, Math.min( count - 1, TICK_NANOS.length - 1 ) );
+        if ( ticks <= 0 ) return 50;
+        long latest = TICK_NANOS[( count - 1 ) % TICK_NANOS.length];
+        long earliest = TICK_NANOS[( count - 1 - ticks ) % TICK_NANOS.length];
+        return ( latest - earliest ) / 1_000_000.0 / ticks;
+    }
+
+    /**
+     * @return nanoseconds since the latest tick started
+     */
+    public static long nanosIntoTick() {
+        int count = TICK_COUNT;
+        if ( count == 0 ) return 0;
+        return System.nanoTime() - TICK_NANOS[( count - 1 ) % TICK_NANOS.length];
+    }
+
     public void run() {
         TICKS[( TICK_COUNT % TICKS.length )] = System.currentTimeMillis();
+        TICK_NANOS[( TICK_COUNT % TICK_NANOS.length )] = System.nanoTime();
 
         TICK_COUNT += 1;
+
+        TickBudget.tick();
     }
 }
@@ -0,0 +1,116 @@
+package io.github.dailystruggle.rtp.common.tasks;
+
+import io.github.dailystruggle.rtp.common.RTP;
+import io.github.dailystruggle.rtp.common.configuration.ConfigParser;
+import io.github.dailystruggle.rtp.common.configuration.Configs;
+import io.github.dailystruggle.rtp.common.configuration.enums.PerformanceKeys;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * how much time RTP may spend per tick, from syncAllottedTime/asyncAllottedTime,
+ * scaled down while the server is struggling.
+ * backs off by half when ticks run long or TPS falls under minTPS, then recovers a little each healthy tick ( AIMD )
+ */
+public final class TickBudget {
+    private static final double MIN_SCALE = 1.0 / 16;
+    private static final double INCREASE = 1.0 / 40; //~2s to recover from the floor to full
+    private static final int DECREASE_COOLDOWN = 10; //ticks, so one spike only halves once
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos( 50 );
+
+    private static volatile double scale = 1.0;
+    private static volatile long syncAllotted = TimeUnit.MILLISECONDS.toNanos( 10 );
+    private static volatile long asyncAllotted = TimeUnit.MILLISECONDS.toNanos( 25 );
+    private static volatile double minTPS = 19.0;
+    private static volatile double targetMSPT = 55.0;
+    private static volatile boolean loaded = false;
+    private static int lastDecrease = Integer.MIN_VALUE / 2;
+    private static double backgroundCredit = 0;
+
+    static {
+        Configs.onReload( TickBudget::reload );
+    }
+
+    /**
+     * re-read allotments and thresholds from performance.yml
+     */
+    public static void reload() {
+        if ( RTP.configs == null ) return;
+        ConfigParser<PerformanceKeys> perf = ( ConfigParser<PerformanceKeys> ) RTP.configs.getParser( PerformanceKeys.class );
+        if ( perf == null ) return;
+        syncAllotted = millisToNanos( perf.getNumber( PerformanceKeys.syncAllottedTime, 10 ).doubleValue() );
+        asyncAllotted = millisToNanos( perf.getNumber( PerformanceKeys.asyncAllottedTime, 25 ).doubleValue() );
+        minTPS = perf.getNumber( PerformanceKeys.minTPS, 19.0 ).doubleValue();
+        targetMSPT = perf.getNumber( PerformanceKeys.targetMSPT, 55.0 ).doubleValue();
+        loaded = true;
+    }
+
+    /**
+     * update from the latest tick times, called once per tick by TPS
+     */
+    public static void tick() {
+        if ( !loaded ) reload();
+
+        int tick = TPS.TICK_COUNT;
+        if ( congested() ) {
+            if ( tick - lastDecrease >= DECREASE_COOLDOWN ) {
+                scale = Math.max( MIN_SCALE, scale / 2 );
+                lastDecrease = tick;
+            }
+        } else if ( scale < 1.0 ) {
+            scale = Math.min( 1.0, scale + INCREASE );
+        }
+    }
+
+    /**
+     * @return true if recent ticks ran over targetMSPT or TPS is under minTPS
+     */
+    public static boolean congested() {
+        if ( TPS.mspt( 5 ) > targetMSPT ) return true;
+        return 1000.0 / TPS.mspt( 20 ) < minTPS;
+    }
+
+    /**
+     * @return current fraction of the allotments RTP may use, 1/16 to 1
+     */
+    public static double scale() {
+        return scale;
+    }
+
+    /**
+     * @return nanoseconds main thread tasks may use right now
+     */
+    public static long syncBudget() {
+        long remaining = Math.max( 0, TICK - TPS.nanosIntoTick() );
+        return ( long ) ( Math.min( syncAllotted, remaining ) * scale );
+    }
+
+    /**
+     * @return nanoseconds async tasks may use this tick
+     */
+    public static long asyncBudget() {
+        return ( long ) ( asyncAllotted * scale );
+    }
+
+    /**
+     * @return milliseconds the main thread is past RTP's share of this tick, negative if there's time left
+     */
+    public static long overTime() {
+        return TimeUnit.NANOSECONDS.toMillis( TPS.nanosIntoTick() - ( long ) ( syncAllotted * scale ) );
+    }
+
+    /**
+     * @return whether a periodic background job, e.g. fill, should run this time.
+     * at full scale always, at half scale every other call, and so on
+     */
+    public static synchronized boolean backgroundTurn() {
+        backgroundCredit = Math.min( 1.0, backgroundCredit + scale );
+        if ( backgroundCredit < 1.0 ) return false;
+        backgroundCredit -= 1.0;
+        return true;
+    }
+
+    private static long millisToNanos( double millis ) {
+        return ( long ) ( Math.max( 0, Math.min( millis, 50 ) ) * 1_000_000 );
+    }
+}
@@ -3,6 +3,7 @@ package io.github.dailystruggle.rtp.common.tasks.teleport;
 import io.github.dailystruggle.rtp.common.selection.region.Region;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPLocation;
 import io.github.dailystruggle.rtp.common.tasks.RTPRunnable;
+import io.github.dailystruggle.rtp.common.tasks.RTPTaskPipe;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -20,6 +21,11 @@ public final class ChunkCleanup extends RTPRunnable {
         this.region = region;
     }
 
+    @Override
+    public RTPTaskPipe.Priority priority() {
+        return RTPTaskPipe.Priority.cleanup;
+    }
+
     @Override
     public void run() {
         preActions.forEach( consumer -> consumer.accept( this) );
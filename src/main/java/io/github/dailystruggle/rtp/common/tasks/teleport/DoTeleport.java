@@ -14,6 +14,7 @@ import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPCommandSen
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPLocation;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPPlayer;
 import io.github.dailystruggle.rtp.common.tasks.RTPRunnable;
+import io.github.dailystruggle.rtp.common.tasks.RTPTaskPipe;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
@@ -39,6 +40,11 @@ public final class DoTeleport extends RTPRunnable {
         this.region = region;
     }
 
+    @Override
+    public RTPTaskPipe.Priority priority() {
+        return RTPTaskPipe.Priority.urgent;
+    }
+
     @Override
     public void run() {
         try {
@@ -11,6 +11,7 @@ import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPCommandSen
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPLocation;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPPlayer;
 import io.github.dailystruggle.rtp.common.tasks.RTPRunnable;
+import io.github.dailystruggle.rtp.common.tasks.RTPTaskPipe;
 import org.bukkit.Bukkit;
 
 import java.util.ArrayList;
@@ -71,6 +72,11 @@ public final class LoadChunks extends RTPRunnable {
         }
     }
 
+    @Override
+    public RTPTaskPipe.Priority priority() {
+        return RTPTaskPipe.Priority.urgent;
+    }
+
     @Override
     public void run() {
         try {
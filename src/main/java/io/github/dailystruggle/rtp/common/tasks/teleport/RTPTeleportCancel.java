@@ -7,6 +7,7 @@ import io.github.dailystruggle.rtp.common.configuration.enums.MessagesKeys;
 import io.github.dailystruggle.rtp.common.playerData.TeleportData;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPPlayer;
 import io.github.dailystruggle.rtp.common.tasks.RTPRunnable;
+import io.github.dailystruggle.rtp.common.tasks.RTPTaskPipe;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -63,6 +64,11 @@ public final class RTPTeleportCancel extends RTPRunnable {
         RTP.serverAccessor.sendMessage( playerId, msg );
     }
 
+    @Override
+    public RTPTaskPipe.Priority priority() {
+        return RTPTaskPipe.Priority.urgent;
+    }
+
     @Override
     public void run() {
         preActions.forEach( rtpTeleportCancelConsumer -> rtpTeleportCancelConsumer.accept( this) );
@@ -10,6 +10,7 @@ import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPCommandSen
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPLocation;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPPlayer;
 import io.github.dailystruggle.rtp.common.tasks.RTPRunnable;
+import io.github.dailystruggle.rtp.common.tasks.RTPTaskPipe;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -41,6 +42,11 @@ public final class SetupTeleport extends RTPRunnable {
         this.biomes = biomes;
     }
 
+    @Override
+    public RTPTaskPipe.Priority priority() {
+        return RTPTaskPipe.Priority.urgent;
+    }
+
     @Override
     public void run() {
         try {
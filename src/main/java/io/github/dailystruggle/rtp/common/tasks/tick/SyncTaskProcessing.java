@@ -2,10 +2,18 @@ package io.github.dailystruggle.rtp.common.tasks.tick;
 
 import io.github.dailystruggle.rtp.common.RTP;
 import io.github.dailystruggle.rtp.common.tasks.RTPRunnable;
+import io.github.dailystruggle.rtp.common.tasks.TickBudget;
 
 public final class SyncTaskProcessing extends RTPRunnable {
     private final long availableTime;
 
+    /**
+     * budget from TickBudget on each run
+     */
+    public SyncTaskProcessing() {
+        this.availableTime = -1;
+    }
+
     public SyncTaskProcessing( long availableTime ) {
         this.availableTime = availableTime;
     }
@@ -14,6 +22,7 @@ public final class SyncTaskProcessing extends RTPRunnable {
     public void run() {
         if ( isCancelled() ) return;
         long start = System.nanoTime();
+        long availableTime = ( this.availableTime < 0 ) ? TickBudget.syncBudget() : this.availableTime;
 
         RTP.getInstance().cancelTasks.execute( Long.MAX_VALUE );
         if ( isCancelled() ) return;
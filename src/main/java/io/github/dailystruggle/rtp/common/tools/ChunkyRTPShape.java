@@ -41,7 +41,7 @@ public class ChunkyRTPShape extends Rectangle {
             xz = locationToXZ( res );
             i++;
             if ( i > 10000 ) {
-                return badLocations.firstEntry().getValue();
+                return badLocations.firstEntry()[1];
             }
         }
         return res;
@@ -0,0 +1,63 @@
+import io.github.dailystruggle.rtp.common.serverSide.BiomeCache;
+import io.github.dailystruggle.rtp.common.serverSide.NameRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class BiomeCacheTest {
+
+    @Test
+    void TestSections() {
+        BiomeCache cache = new BiomeCache( 64 );
+        cache.put( -3, 70, 5, "MUSHROOM_FIELDS" );
+        Assertions.assertEquals( "MUSHROOM_FIELDS", cache.getName( -3, 64, 5 ) );
+        Assertions.assertEquals( NameRegistry.biomes.id( "MUSHROOM_FIELDS" ), cache.get( -3, 79, 5 ) );
+
+        //another height or another chunk misses
+        Assertions.assertNull( cache.getName( -3, 80, 5 ) );
+        Assertions.assertNull( cache.getName( 5, 70, -3 ) );
+
+        cache.put( 0, -60, 0, "DEEP_DARK" );
+        Assertions.assertEquals( "DEEP_DARK", cache.getName( 0, -64, 0 ) );
+    }
+
+    @Test
+    void TestBounded() {
+        BiomeCache cache = new BiomeCache( 100 );
+        for ( int x = 0; x < 1000; x++ ) {
+            for ( int z = 0; z < 100; z++ ) cache.put( x, 64, z, "PLAINS" );
+        }
+        Assertions.assertEquals( 128, cache.capacity() );
+        Assertions.assertTrue( cache.size() <= cache.capacity() );
+
+        //the latest entry always wins its slot
+        cache.put( 12345, 64, -678, "DESERT" );
+        Assertions.assertEquals( "DESERT", cache.getName( 12345, 64, -678 ) );
+    }
+
+    @Test
+    void TestSaveLoad() throws IOException {
+        BiomeCache cache = new BiomeCache( 1024 );
+        cache.put( 1, 64, 2, "PLAINS" );
+        cache.put( -7, 64, 9, "OCEAN" );
+        cache.put( 100, 0, -100, "LUSH_CAVES" );
+
+        File file = File.createTempFile( "rtp", ".biomes" );
+        file.deleteOnExit();
+        cache.save( file, 42 );
+
+        BiomeCache loaded = new BiomeCache( 1024 );
+        loaded.load( file, 42 );
+        Assertions.assertEquals( 3, loaded.size() );
+        Assertions.assertEquals( "PLAINS", loaded.getName( 1, 64, 2 ) );
+        Assertions.assertEquals( "OCEAN", loaded.getName( -7, 64, 9 ) );
+        Assertions.assertEquals( "LUSH_CAVES", loaded.getName( 100, 0, -100 ) );
+
+        //saved for a different world generation
+        BiomeCache other = new BiomeCache( 1024 );
+        other.load( file, 43 );
+        Assertions.assertEquals( 0, other.size() );
+    }
+}
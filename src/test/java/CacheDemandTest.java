@@ -0,0 +1,60 @@
+import io.github.dailystruggle.rtp.common.selection.region.CacheDemand;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+public class CacheDemandTest {
+    private static final long second = TimeUnit.SECONDS.toNanos( 1 );
+
+    @Test
+    void TestForecast() {
+        long now = 0;
+        CacheDemand demand = new CacheDemand( now );
+
+        //nothing to go on yet
+        Assertions.assertEquals( 10, demand.target( now, 10, 64, 8 ) );
+
+        //a request a second, 2 seconds to fill
+        for ( int i = 0; i < 600; i++ ) {
+            demand.request( now );
+            demand.filled( 2 * second );
+            now += second;
+        }
+        long steady = demand.target( now, 10, 64, 8 );
+        Assertions.assertEquals( 1.0, demand.rate(), 0.05 );
+        Assertions.assertTrue( steady >= 2 && steady <= 3, "steady=" + steady );
+
+        //a rush the refills can't keep up with
+        for ( int i = 0; i < 40; i++ ) demand.request( now );
+        now += CacheDemand.window;
+        long burst = demand.target( now, 10, 64, 1 );
+        Assertions.assertTrue( burst >= 30, "burst=" + burst );
+        Assertions.assertEquals( 20, demand.target( now, 10, 20, 1 ) );
+
+        //quiet for a few hours
+        now += TimeUnit.HOURS.toNanos( 3 );
+        Assertions.assertEquals( 1, demand.target( now, 10, 64, 1 ) );
+    }
+
+    @Test
+    void TestPersistence() throws IOException {
+        long now = 0;
+        CacheDemand demand = new CacheDemand( now );
+        for ( int i = 0; i < 25; i++ ) demand.request( now );
+        demand.filled( 4 * second );
+        now += CacheDemand.window;
+        long target = demand.target( now, 10, 64, 1 );
+
+        File file = File.createTempFile( "rtp", ".demand" );
+        file.deleteOnExit();
+        demand.save( file );
+
+        CacheDemand loaded = new CacheDemand( now );
+        loaded.load( file );
+        Assertions.assertEquals( target, loaded.target( now, 10, 64, 1 ) );
+        Assertions.assertEquals( demand.peak(), loaded.peak() );
+    }
+}
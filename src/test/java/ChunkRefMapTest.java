@@ -0,0 +1,60 @@
+import io.github.dailystruggle.rtp.common.serverSide.ChunkRefMap;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class ChunkRefMapTest {
+
+    @Test
+    void TestKeys() {
+        long key = ChunkRefMap.key( -3, 7 );
+        Assertions.assertEquals( -3, ChunkRefMap.x( key ) );
+        Assertions.assertEquals( 7, ChunkRefMap.z( key ) );
+        key = ChunkRefMap.key( Integer.MAX_VALUE, Integer.MIN_VALUE );
+        Assertions.assertEquals( Integer.MAX_VALUE, ChunkRefMap.x( key ) );
+        Assertions.assertEquals( Integer.MIN_VALUE, ChunkRefMap.z( key ) );
+    }
+
+    @Test
+    void TestRefCount() {
+        ChunkRefMap map = new ChunkRefMap();
+        long key = ChunkRefMap.key( 0, 0 );
+        Assertions.assertTrue( map.keep( key ) );
+        Assertions.assertFalse( map.keep( key ) );
+        Assertions.assertEquals( 2, map.count( key ) );
+        Assertions.assertTrue( map.keptSince( key ) > 0 );
+        Assertions.assertFalse( map.forget( key ) );
+        Assertions.assertTrue( map.forget( key ) );
+        Assertions.assertFalse( map.contains( key ) );
+        Assertions.assertFalse( map.forget( key ) );
+        Assertions.assertEquals( 0, map.size() );
+    }
+
+    @Test
+    void TestAgainstHashMap() {
+        Random random = new Random( 0 );
+        ChunkRefMap map = new ChunkRefMap( 8 );
+        Map<Long, Integer> reference = new HashMap<>();
+        for ( int i = 0; i < 50000; i++ ) {
+            long key = ChunkRefMap.key( random.nextInt( 64 ) - 32, random.nextInt( 64 ) - 32 );
+            if ( random.nextBoolean() ) {
+                Assertions.assertEquals( !reference.containsKey( key ), map.keep( key ) );
+                reference.merge( key, 1, Integer::sum );
+            } else {
+                Integer count = reference.get( key );
+                Assertions.assertEquals( count != null && count == 1, map.forget( key ) );
+                if ( count != null ) {
+                    if ( count == 1 ) reference.remove( key );
+                    else reference.put( key, count - 1 );
+                }
+            }
+            Assertions.assertEquals( reference.size(), map.size() );
+        }
+        for ( Map.Entry<Long, Integer> e : reference.entrySet() )
+            Assertions.assertEquals( e.getValue().intValue(), map.count( e.getKey() ) );
+        Assertions.assertEquals( reference.size(), map.keys().length );
+    }
+}
@@ -0,0 +1,48 @@
+import io.github.dailystruggle.rtp.common.tasks.FillCursor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class FillCursorTest {
+
+    @Test
+    void TestOutOfOrder() {
+        FillCursor cursor = new FillCursor( 100 );
+        for ( int i = 0; i < 5; i++ ) cursor.advance();
+        Assertions.assertEquals( 105, cursor.next() );
+
+        cursor.finish( 102 );
+        cursor.finish( 101 );
+        Assertions.assertEquals( 100, cursor.low() );
+
+        cursor.finish( 100 );
+        Assertions.assertEquals( 103, cursor.low() );
+
+        cursor.finish( 104 );
+        cursor.finish( 103 );
+        Assertions.assertEquals( 105, cursor.low() );
+        Assertions.assertEquals( 0, cursor.outstanding() );
+
+        //already finished or never handed out
+        cursor.finish( 50 );
+        cursor.finish( 500 );
+        Assertions.assertEquals( 105, cursor.low() );
+    }
+
+    @Test
+    void TestSpan() {
+        FillCursor cursor = new FillCursor( 0 );
+        while ( cursor.canAdvance() ) cursor.advance();
+        Assertions.assertEquals( FillCursor.SPAN, cursor.outstanding() );
+        Assertions.assertThrows( IllegalStateException.class, cursor::advance );
+
+        for ( long i = 1; i < FillCursor.SPAN; i++ ) cursor.finish( i );
+        Assertions.assertEquals( 0, cursor.low() );
+
+        //the ring wraps, finishing 0 releases everything
+        cursor.finish( 0 );
+        Assertions.assertEquals( FillCursor.SPAN, cursor.low() );
+        for ( int i = 0; i < 10; i++ ) cursor.advance();
+        cursor.finish( FillCursor.SPAN + 1 );
+        Assertions.assertEquals( FillCursor.SPAN, cursor.low() );
+    }
+}
@@ -0,0 +1,77 @@
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes.Circle;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes.MemoryShape;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes.Square;
+import io.github.dailystruggle.rtp.common.tasks.FillOrder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class FillOrderTest {
+
+    @Test
+    void TestHilbertCurve() {
+        for ( int side : new int[]{1, 2, 32, 128} ) {
+            boolean[] seen = new boolean[side * side];
+            int[] prev = null;
+            for ( long d = 0; d < ( long ) side * side; d++ ) {
+                int[] xz = FillOrder.hilbert( side, d );
+                Assertions.assertTrue( xz[0] >= 0 && xz[0] < side && xz[1] >= 0 && xz[1] < side );
+
+                int cell = xz[0] * side + xz[1];
+                Assertions.assertFalse( seen[cell], "visited twice: " + xz[0] + "," + xz[1] );
+                seen[cell] = true;
+
+                //each step moves to a neighboring chunk
+                if ( prev != null ) Assertions.assertEquals( 1, Math.abs( xz[0] - prev[0] ) + Math.abs( xz[1] - prev[1] ) );
+                prev = xz;
+            }
+        }
+    }
+
+    @Test
+    void TestCheckpoint() {
+        long index = 123456789L;
+        Assertions.assertEquals( index, FillOrder.index( index ) );
+        Assertions.assertEquals( index, FillOrder.index( index | FillOrder.HILBERT_FLAG ) );
+    }
+
+    @Test
+    void TestHilbertShapes() {
+        //polar shapes round differently each way, which mustn't cost them any locations
+        assertTileLocal( new Circle() );
+        assertTileLocal( new Square() );
+    }
+
+    /**
+     * every location visited once, each region file's locations together and ascending
+     */
+    private static void assertTileLocal( MemoryShape<?> shape ) {
+        FillOrder order = FillOrder.of( shape, FillOrder.HILBERT_FLAG );
+        long range = ( long ) shape.getRange();
+        Assertions.assertEquals( range, order.size() );
+
+        boolean[] seen = new boolean[( int ) range];
+        Set<Long> visited = new HashSet<>();
+        long tile = Long.MIN_VALUE;
+        long prev = -1;
+        for ( long index = 0; index < range; index++ ) {
+            long location = order.location( index );
+            Assertions.assertTrue( location >= 0 && location < range, "index " + index );
+            Assertions.assertFalse( seen[( int ) location], "visited twice: " + location );
+            seen[( int ) location] = true;
+
+            int[] xz = shape.locationToXZ( location );
+            long current = ( ( long ) ( xz[0] >> 5 ) << 32 ) | ( ( xz[1] >> 5 ) & 0xFFFFFFFFL );
+            if ( current != tile ) {
+                Assertions.assertTrue( visited.add( current ), "came back to a region file at " + xz[0] + "," + xz[1] );
+                tile = current;
+            } else {
+                Assertions.assertTrue( location > prev );
+            }
+            prev = location;
+        }
+        Assertions.assertEquals( -1, order.location( range ) );
+    }
+}
@@ -0,0 +1,62 @@
+import io.github.dailystruggle.rtp.common.tasks.FutureRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FutureRegistryTest {
+
+    @Test
+    void TestShared() {
+        FutureRegistry<Long, String> registry = new FutureRegistry<>();
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<String> load = new CompletableFuture<>();
+
+        CompletableFuture<String> a = registry.get( 1L, () -> {
+            loads.incrementAndGet();
+            return load;
+        } );
+        CompletableFuture<String> b = registry.get( 1L, () -> {
+            loads.incrementAndGet();
+            return new CompletableFuture<>();
+        } );
+        Assertions.assertSame( a, b );
+        Assertions.assertEquals( 1, loads.get() );
+        Assertions.assertEquals( 1, registry.size() );
+
+        load.complete( "chunk" );
+        Assertions.assertEquals( "chunk", a.join() );
+        Assertions.assertEquals( 0, registry.size() );
+
+        CompletableFuture<String> c = registry.get( 1L, () -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture( "again" );
+        } );
+        Assertions.assertEquals( "again", c.join() );
+        Assertions.assertEquals( 2, loads.get() );
+    }
+
+    @Test
+    void TestCancelAll() {
+        FutureRegistry<Long, String> registry = new FutureRegistry<>();
+        CompletableFuture<String> a = registry.get( 1L, CompletableFuture::new );
+        CompletableFuture<String> b = registry.get( 2L, CompletableFuture::new );
+        Assertions.assertEquals( 2, registry.size() );
+
+        registry.cancelAll();
+        Assertions.assertTrue( a.isCancelled() );
+        Assertions.assertTrue( b.isCancelled() );
+        Assertions.assertEquals( 0, registry.size() );
+    }
+
+    @Test
+    void TestFailedLoad() {
+        FutureRegistry<Long, String> registry = new FutureRegistry<>();
+        CompletableFuture<String> a = registry.get( 1L, () -> {
+            throw new IllegalStateException( "no chunk" );
+        } );
+        Assertions.assertTrue( a.isCompletedExceptionally() );
+        Assertions.assertEquals( 0, registry.size() );
+    }
+}
@@ -0,0 +1,112 @@
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.LongIntervalSet;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+public class LongIntervalSetTest {
+
+    @Test
+    void TestMerge() {
+        LongIntervalSet set = new LongIntervalSet();
+        Assertions.assertTrue( set.add( 5 ) );
+        Assertions.assertTrue( set.add( 7 ) );
+        Assertions.assertEquals( 2, set.size() );
+        Assertions.assertTrue( set.add( 6 ) );
+        Assertions.assertEquals( 1, set.size() );
+        Assertions.assertArrayEquals( new long[]{5, 3}, set.floorEntry( 100 ) );
+        Assertions.assertFalse( set.add( 6 ) );
+        Assertions.assertEquals( 3, set.sum() );
+
+        Assertions.assertTrue( set.remove( 6 ) );
+        Assertions.assertEquals( 2, set.size() );
+        Assertions.assertFalse( set.contains( 6 ) );
+        Assertions.assertTrue( set.contains( 7 ) );
+    }
+
+    @Test
+    void TestAgainstBitSet() {
+        Random random = new Random( 0 );
+        LongIntervalSet set = new LongIntervalSet( 1 );
+        BitSet reference = new BitSet();
+        for ( int i = 0; i < 20000; i++ ) {
+            int op = random.nextInt( 10 );
+            int x = random.nextInt( 1000 );
+            if ( op < 6 ) {
+                Assertions.assertEquals( !reference.get( x ), set.add( x ) );
+                reference.set( x );
+            } else if ( op < 8 ) {
+                int len = random.nextInt( 20 ) + 1;
+                long added = len - reference.get( x, x + len ).cardinality();
+                Assertions.assertEquals( added, set.add( x, len ) );
+                reference.set( x, x + len );
+            } else {
+                Assertions.assertEquals( reference.get( x ), set.remove( x ) );
+                reference.clear( x );
+            }
+
+            int q = random.nextInt( 1100 );
+            Assertions.assertEquals( reference.get( q ), set.contains( q ) );
+            Assertions.assertEquals( reference.get( 0, q ).cardinality(), set.rank( q ) );
+            Assertions.assertEquals( reference.cardinality(), set.sum() );
+            if ( reference.cardinality() > 0 ) {
+                int idx = random.nextInt( reference.cardinality() );
+                int expected = reference.nextSetBit( 0 );
+                for ( int j = 0; j < idx; j++ ) expected = reference.nextSetBit( expected + 1 );
+                Assertions.assertEquals( expected, set.select( idx ) );
+            }
+
+            int unsetIdx = random.nextInt( 1200 );
+            int expectedUnset = reference.nextClearBit( 0 );
+            for ( int j = 0; j < unsetIdx; j++ ) expectedUnset = reference.nextClearBit( expectedUnset + 1 );
+            Assertions.assertEquals( expectedUnset, set.selectUnset( unsetIdx ) );
+        }
+    }
+
+    @Test
+    void TestRanges() {
+        Random random = new Random( 1 );
+        LongIntervalSet set = new LongIntervalSet( 1 );
+        BitSet reference = new BitSet();
+        for ( int i = 0; i < 5000; i++ ) {
+            int x = random.nextInt( 1000 );
+            int len = random.nextInt( 40 ) + 1;
+            if ( random.nextBoolean() ) {
+                set.add( x, len );
+                reference.set( x, x + len );
+            } else {
+                Assertions.assertEquals( reference.get( x, x + len ).cardinality(), set.remove( x, len ) );
+                reference.clear( x, x + len );
+            }
+            Assertions.assertEquals( reference.cardinality(), set.sum() );
+
+            //clipped to the range asked for
+            int q = random.nextInt( 1000 );
+            int qLen = random.nextInt( 100 ) + 1;
+            BitSet seen = new BitSet();
+            set.forEach( q, qLen, ( start, length ) -> {
+                Assertions.assertTrue( start >= q && start + length <= q + qLen );
+                seen.set( ( int ) start, ( int ) ( start + length ) );
+            } );
+            BitSet expected = reference.get( q, q + qLen );
+            BitSet actual = seen.get( q, q + qLen );
+            Assertions.assertEquals( expected, actual );
+        }
+
+        //difference against another set
+        LongIntervalSet other = new LongIntervalSet();
+        BitSet otherReference = new BitSet();
+        for ( int i = 0; i < 50; i++ ) {
+            int x = random.nextInt( 1000 );
+            int len = random.nextInt( 40 ) + 1;
+            other.add( x, len );
+            otherReference.set( x, x + len );
+        }
+        BitSet except = new BitSet();
+        set.forEachExcept( other, ( start, length ) -> except.set( ( int ) start, ( int ) ( start + length ) ) );
+        BitSet expected = ( BitSet ) reference.clone();
+        expected.andNot( otherReference );
+        Assertions.assertEquals( expected, except );
+    }
+}
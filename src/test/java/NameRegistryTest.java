@@ -0,0 +1,28 @@
+import io.github.dailystruggle.rtp.common.serverSide.NameRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+public class NameRegistryTest {
+
+    @Test
+    void TestIds() {
+        NameRegistry registry = new NameRegistry();
+        registry.seed( Arrays.asList( "plains", "DESERT" ) );
+        Assertions.assertEquals( 0, registry.id( "PLAINS" ) );
+        Assertions.assertEquals( 1, registry.id( "desert" ) );
+        Assertions.assertEquals( "DESERT", registry.name( 1 ) );
+        Assertions.assertEquals( 2, registry.size() );
+
+        //an unknown biome, e.g. from a world without one at that spot
+        Assertions.assertEquals( -1, registry.id( null ) );
+        Assertions.assertEquals( 2, registry.size() );
+
+        BitSet ids = registry.bits( Arrays.asList( "plains", null ) );
+        Assertions.assertTrue( NameRegistry.has( ids, 0 ) );
+        Assertions.assertFalse( NameRegistry.has( ids, 1 ) );
+        Assertions.assertFalse( NameRegistry.has( ids, -1 ) );
+    }
+}
@@ -0,0 +1,121 @@
+import io.github.dailystruggle.rtp.common.tasks.RTPRunnable;
+import io.github.dailystruggle.rtp.common.tasks.RTPTaskPipe;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class RTPTaskPipeTest {
+
+    @Test
+    void TestPriority() {
+        RTPTaskPipe pipe = new RTPTaskPipe();
+        List<String> order = new ArrayList<>();
+        pipe.add( () -> order.add( "cleanup" ), RTPTaskPipe.Priority.cleanup );
+        pipe.add( () -> order.add( "normal" ) );
+        pipe.add( () -> order.add( "urgent" ), RTPTaskPipe.Priority.urgent );
+        Assertions.assertEquals( 3, pipe.size() );
+
+        pipe.execute( Long.MAX_VALUE );
+        Assertions.assertEquals( 0, pipe.size() );
+        Assertions.assertEquals( "urgent", order.get( 0 ) );
+        Assertions.assertEquals( "normal", order.get( 1 ) );
+        Assertions.assertEquals( "cleanup", order.get( 2 ) );
+    }
+
+    @Test
+    void TestDelay() throws InterruptedException {
+        RTPTaskPipe pipe = new RTPTaskPipe();
+        List<String> order = new ArrayList<>();
+        RTPRunnable delayed = new RTPRunnable( () -> order.add( "delayed" ) );
+        delayed.setDelay( 5, TimeUnit.MILLISECONDS );
+        pipe.add( delayed );
+
+        pipe.execute( Long.MAX_VALUE );
+        Assertions.assertTrue( order.isEmpty() );
+        Assertions.assertEquals( 1, pipe.size() );
+
+        Thread.sleep( 10 );
+        pipe.execute( Long.MAX_VALUE );
+        Assertions.assertEquals( 1, order.size() );
+        Assertions.assertEquals( 0, pipe.size() );
+    }
+
+    @Test
+    void TestBudget() {
+        RTPTaskPipe pipe = new RTPTaskPipe();
+        List<String> order = new ArrayList<>();
+        for ( int i = 0; i < 3; i++ ) {
+            pipe.add( () -> order.add( "task" ) );
+        }
+
+        //at least one task runs, however small the budget
+        pipe.execute( 0 );
+        Assertions.assertEquals( 1, order.size() );
+
+        pipe.execute( Long.MAX_VALUE );
+        Assertions.assertEquals( 3, order.size() );
+    }
+
+    @Test
+    void TestStop() {
+        RTPTaskPipe pipe = new RTPTaskPipe();
+        RTPRunnable runnable = new RTPRunnable( () -> Assertions.fail( "ran after stop" ) );
+        pipe.add( runnable );
+        pipe.stop();
+        Assertions.assertTrue( runnable.isCancelled() );
+        pipe.execute( Long.MAX_VALUE );
+
+        pipe.start();
+        pipe.execute( Long.MAX_VALUE );
+        Assertions.assertEquals( 0, pipe.size() );
+    }
+
+    @Test
+    void TestClearWhileRunning() throws InterruptedException {
+        RTPTaskPipe pipe = new RTPTaskPipe();
+        CountDownLatch running = new CountDownLatch( 1 );
+        CountDownLatch release = new CountDownLatch( 1 );
+        List<String> order = Collections.synchronizedList( new ArrayList<>() );
+        pipe.add( () -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch ( InterruptedException ignored ) {
+
+            }
+        } );
+        pipe.add( () -> order.add( "queued" ) );
+
+        Thread worker = new Thread( () -> pipe.execute( Long.MAX_VALUE ) );
+        worker.start();
+        running.await();
+
+        //the running task waits on this thread, so clear and stop can't wait on it
+        pipe.clear();
+        RTPRunnable cancelled = new RTPRunnable( () -> order.add( "after stop" ) );
+        pipe.add( cancelled );
+        pipe.stop();
+        release.countDown();
+        worker.join( 1000 );
+
+        Assertions.assertFalse( worker.isAlive() );
+        Assertions.assertTrue( order.isEmpty() );
+        Assertions.assertTrue( cancelled.isCancelled() );
+    }
+
+    @Test
+    void TestClearFromTask() {
+        RTPTaskPipe pipe = new RTPTaskPipe();
+        List<String> order = new ArrayList<>();
+        pipe.add( pipe::clear );
+        pipe.add( () -> order.add( "cleared" ) );
+        pipe.execute( Long.MAX_VALUE );
+        Assertions.assertTrue( order.isEmpty() );
+        Assertions.assertEquals( 0, pipe.size() );
+    }
+}
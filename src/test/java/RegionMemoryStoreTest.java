@@ -0,0 +1,125 @@
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.LongIntervalSet;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.RegionMemoryStore;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes.Square;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+public class RegionMemoryStoreTest {
+    private static Map<String, Object> params() {
+        Map<String, Object> params = new HashMap<>();
+        params.put( "world", "world" );
+        params.put( "radius", "256" );
+        return params;
+    }
+
+    private static File dir() throws IOException {
+        File dir = Files.createTempDirectory( "rtp" ).toFile();
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    @Test
+    void TestRoundTrip() throws IOException {
+        File dir = dir();
+        Square shape = new Square();
+        shape.learnedBadLocations.add( 5 );
+        shape.learnedBadLocations.add( 1000, 50 );
+        LongIntervalSet plains = new LongIntervalSet();
+        plains.add( 7 );
+        plains.add( 2000, 3 );
+        shape.biomeLocations.put( "PLAINS", plains );
+        shape.fillIter.set( 42 );
+
+        RegionMemoryStore store = new RegionMemoryStore( dir, "region.yml" );
+        store.writeSnapshot( shape, params() );
+        Assertions.assertTrue( store.exists() );
+
+        RegionMemoryStore reopened = new RegionMemoryStore( dir, "region" );
+        Map<String, String> stored = reopened.readParams();
+        Assertions.assertEquals( "world", stored.get( "world" ) );
+        Assertions.assertEquals( "256", stored.get( "radius" ) );
+
+        Square loaded = new Square();
+        reopened.read( loaded );
+        Assertions.assertTrue( reopened.isSynced() );
+        Assertions.assertEquals( 42, loaded.fillIter.get() );
+        Assertions.assertEquals( 51, loaded.badLocations.sum() );
+        Assertions.assertTrue( loaded.badLocations.contains( 5 ) );
+        Assertions.assertTrue( loaded.badLocations.contains( 1049 ) );
+        Assertions.assertFalse( loaded.badLocations.contains( 1050 ) );
+        Assertions.assertEquals( 4, loaded.biomeLocations.get( "PLAINS" ).sum() );
+        Assertions.assertTrue( loaded.biomeMapped.contains( 2002 ) );
+
+        //read copies the file out, so it can be replaced right after
+        reopened.writeSnapshot( loaded, params() );
+        Assertions.assertTrue( reopened.exists() );
+        Assertions.assertFalse( new File( dir, "region.dat.tmp" ).exists() );
+    }
+
+    @Test
+    void TestJournalReplay() throws IOException {
+        File dir = dir();
+        Square shape = new Square();
+        shape.learnedBadLocations.add( 1 );
+        RegionMemoryStore store = new RegionMemoryStore( dir, "region" );
+        store.writeSnapshot( shape, params() );
+
+        store.logBad( 10 );
+        store.logBiome( "DESERT", 20, true );
+        store.logBiome( "DESERT", 21, true );
+        store.flush( 7 );
+        store.logBiome( "DESERT", 21, false );
+        store.flush( 8 );
+        Assertions.assertTrue( store.journalFile.length() > 0 );
+
+        Square loaded = new Square();
+        new RegionMemoryStore( dir, "region" ).read( loaded );
+        Assertions.assertEquals( 8, loaded.fillIter.get() );
+        Assertions.assertTrue( loaded.badLocations.contains( 1 ) );
+        Assertions.assertTrue( loaded.badLocations.contains( 10 ) );
+        Assertions.assertTrue( loaded.biomeLocations.get( "DESERT" ).contains( 20 ) );
+        Assertions.assertFalse( loaded.biomeLocations.get( "DESERT" ).contains( 21 ) );
+
+        //compacting folds the journal into the snapshot
+        store.writeSnapshot( loaded, params() );
+        Assertions.assertFalse( store.journalFile.exists() );
+        Assertions.assertFalse( store.oldJournalFile.exists() );
+        Square compacted = new Square();
+        new RegionMemoryStore( dir, "region" ).read( compacted );
+        Assertions.assertEquals( 8, compacted.fillIter.get() );
+        Assertions.assertTrue( compacted.badLocations.contains( 10 ) );
+        Assertions.assertTrue( compacted.biomeLocations.get( "DESERT" ).contains( 20 ) );
+    }
+
+    @Test
+    void TestTruncatedJournal() throws IOException {
+        File dir = dir();
+        RegionMemoryStore store = new RegionMemoryStore( dir, "region" );
+        store.writeSnapshot( new Square(), params() );
+
+        store.logBad( 10 );
+        store.flush( 5 );
+        store.logBad( 300 );
+        store.flush( 6 );
+
+        //cut the final record short, as an interrupted write would
+        try ( RandomAccessFile file = new RandomAccessFile( store.journalFile, "rw" ) ) {
+            file.setLength( file.length() - 1 );
+        }
+
+        Square loaded = new Square();
+        RegionMemoryStore reopened = new RegionMemoryStore( dir, "region" );
+        reopened.read( loaded );
+        Assertions.assertTrue( reopened.isSynced() );
+        Assertions.assertTrue( loaded.badLocations.contains( 10 ) );
+        Assertions.assertTrue( loaded.badLocations.contains( 300 ) );
+        Assertions.assertEquals( 5, loaded.fillIter.get() );
+    }
+}
@@ -0,0 +1,49 @@
+import io.github.dailystruggle.rtp.common.tasks.RegionWorkers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class RegionWorkersTest {
+    private static long liveWorkers() throws InterruptedException {
+        //give interrupted workers a moment to exit
+        long deadline = System.currentTimeMillis() + 1000;
+        long count;
+        do {
+            count = Thread.getAllStackTraces().keySet().stream()
+                    .filter( thread -> thread.isAlive() && thread.getName().startsWith( "RTP-region-worker-" ) )
+                    .count();
+            if ( count == 0 ) break;
+            Thread.sleep( 10 );
+        } while ( System.currentTimeMillis() < deadline );
+        return count;
+    }
+
+    @Test
+    void TestEnsureResizeStop() throws InterruptedException {
+        RegionWorkers workers = new RegionWorkers();
+        workers.ensure( 2 );
+        Assertions.assertEquals( 2, workers.size() );
+        workers.ensure( 2 );
+        Assertions.assertEquals( 2, workers.size() );
+
+        workers.ensure( 3 );
+        Assertions.assertEquals( 3, workers.size() );
+
+        workers.stop();
+        Assertions.assertTrue( workers.isStopped() );
+        Assertions.assertEquals( 0, workers.size() );
+        Assertions.assertEquals( 0, liveWorkers() );
+
+        //a tick that was already underway when the plugin stopped
+        workers.ensure( 2 );
+        Assertions.assertEquals( 0, workers.size() );
+        Assertions.assertEquals( 0, liveWorkers() );
+
+        //reload
+        workers.start();
+        workers.ensure( 1 );
+        Assertions.assertEquals( 1, workers.size() );
+
+        workers.stop();
+        Assertions.assertEquals( 0, liveWorkers() );
+    }
+}
@@ -0,0 +1,132 @@
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.LongIntervalSet;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.RegionMemoryStore;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes.Circle;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes.MemoryShape;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes.Square;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ReservedLocationsTest {
+    private static long first( LongIntervalSet set ) {
+        long[] entry = set.firstEntry();
+        Assertions.assertNotNull( entry );
+        return entry[0];
+    }
+
+    /**
+     * a location outside every reserved area used here
+     */
+    private static long outside( Square shape ) {
+        return ( long ) shape.xzToLocation( -150, -150 );
+    }
+
+    /**
+     * the area's locations are exactly those that select into it
+     */
+    private static LongIntervalSet assertInArea( MemoryShape<?> shape, int minX, int minZ, int maxX, int maxZ ) {
+        LongIntervalSet area = shape.locationsInArea( minX, minZ, maxX, maxZ );
+        long range = ( long ) shape.getRange();
+        for ( long location = 0; location < range; location++ ) {
+            int[] xz = shape.locationToXZ( location );
+            boolean inside = xz[0] >= minX && xz[0] <= maxX && xz[1] >= minZ && xz[1] <= maxZ;
+            Assertions.assertEquals( inside, area.contains( location ), "location " + location + " at " + xz[0] + "," + xz[1] );
+        }
+        return area;
+    }
+
+    @Test
+    void TestLocationsInArea() {
+        Square shape = new Square();
+        Assertions.assertTrue( assertInArea( shape, 100, 0, 103, 3 ).sum() > 0 );
+
+        //inside centerRadius, and past the edge, there's nothing to select
+        Assertions.assertEquals( 0, assertInArea( shape, 0, 0, 3, 3 ).sum() );
+        Assertions.assertEquals( 0, shape.locationsInArea( 1000, 1000, 1010, 1010 ).sum() );
+    }
+
+    @Test
+    void TestCircleLocationsInArea() {
+        //a circle's inverse rounds differently from its forward mapping, which mustn't leave any of the area sampleable
+        Circle shape = new Circle();
+        Assertions.assertTrue( assertInArea( shape, 100, 0, 103, 3 ).sum() > 0 );
+        Assertions.assertTrue( assertInArea( shape, -150, -40, -90, 40 ).sum() > 0 );
+        Assertions.assertEquals( 0, assertInArea( shape, -10, -10, 10, 10 ).sum() );
+    }
+
+    @Test
+    void TestReserve() {
+        Square shape = new Square();
+        LongIntervalSet reserved = shape.locationsInArea( 100, 0, 103, 3 );
+        long inside = first( reserved );
+        long learned = outside( shape );
+        Assertions.assertFalse( reserved.contains( learned ) );
+
+        shape.addBadLocation( learned );
+        shape.addBiomeLocation( inside, "PLAINS" );
+        shape.addBiomeLocation( learned + 1, "PLAINS" );
+
+        //reserved locations are bad and dropped from the biome map
+        shape.setReservedLocations( reserved );
+        reserved.forEach( ( start, length ) -> {
+            for ( long location = start; location < start + length; location++ ) {
+                Assertions.assertTrue( shape.isKnownBad( location ) );
+            }
+        } );
+        Assertions.assertFalse( shape.biomeLocations.get( "PLAINS" ).contains( inside ) );
+        Assertions.assertFalse( shape.biomeMapped.contains( inside ) );
+        Assertions.assertTrue( shape.biomeLocations.get( "PLAINS" ).contains( learned + 1 ) );
+
+        //only what selection learned counts as learned
+        Assertions.assertEquals( 1, shape.learnedBadLocations.sum() );
+        Assertions.assertTrue( shape.learnedBadLocations.contains( learned ) );
+
+        //clearing what was learned keeps the reservation
+        shape.clearLocations();
+        Assertions.assertTrue( shape.isKnownBad( inside ) );
+        Assertions.assertFalse( shape.isKnownBad( learned ) );
+        Assertions.assertEquals( reserved.sum(), shape.badLocations.sum() );
+
+        //learned while reserved, which outlasts the reservation
+        shape.addBadLocation( learned );
+        shape.addBadLocation( inside );
+        Assertions.assertTrue( shape.learnedBadLocations.contains( inside ) );
+
+        //the region went away, its chunks are free again other than what was learned
+        long free = reserved.select( reserved.sum() - 1 );
+        shape.setReservedLocations( new LongIntervalSet() );
+        Assertions.assertFalse( shape.isKnownBad( free ) );
+        Assertions.assertTrue( shape.isKnownBad( inside ) );
+        Assertions.assertTrue( shape.isKnownBad( learned ) );
+        Assertions.assertEquals( 2, shape.badLocations.sum() );
+    }
+
+    @Test
+    void TestReservedNotSaved() throws IOException {
+        File dir = Files.createTempDirectory( "rtp" ).toFile();
+        dir.deleteOnExit();
+        Map<String, Object> params = new HashMap<>();
+        params.put( "world", "world" );
+
+        Square shape = new Square();
+        LongIntervalSet reserved = shape.locationsInArea( 100, 0, 103, 3 );
+        long learned = outside( shape );
+        shape.setReservedLocations( reserved );
+        shape.addBadLocation( learned );
+
+        RegionMemoryStore store = new RegionMemoryStore( dir, "region" );
+        store.writeSnapshot( shape, params );
+
+        //protection can change while offline, so only learned locations come back
+        Square loaded = new Square();
+        new RegionMemoryStore( dir, "region" ).read( loaded );
+        Assertions.assertTrue( loaded.isKnownBad( learned ) );
+        Assertions.assertFalse( loaded.isKnownBad( first( reserved ) ) );
+        Assertions.assertEquals( 1, loaded.badLocations.sum() );
+    }
+}
@@ -9,7 +9,12 @@ import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 
 public class SQLiteDatabaseTest {
@@ -90,4 +95,462 @@ public class SQLiteDatabaseTest {
         Assertions.assertEquals( "5",read.get().get( "delay") );
         database.disconnect( connect );
     }
+
+    @Test
+    void TestWriteCoalescing() throws Exception {
+        try {
+            Class.forName( "org.sqlite.JDBC" );
+        } catch ( ClassNotFoundException e ) {
+            RTP.log( Level.WARNING, "ClassNotFoundException", e );
+            return;
+        }
+
+        File file = File.createTempFile( "coalesce", ".db" );
+        file.deleteOnExit();
+        SQLiteDatabaseAccessor database = new SQLiteDatabaseAccessor( "jdbc:sqlite:" + file.getAbsolutePath() );
+        database.writeDelay = Long.MAX_VALUE;
+
+        for ( int i = 0; i < 1000; i++ ) {
+            Map<String, Object> row = new HashMap<>();
+            row.put( "UUID", "player" + ( i % 10 ) );
+            row.put( "delay", i );
+            database.setValue( "teleportData", row );
+        }
+        Assertions.assertEquals( 10, database.pendingWrites() );
+        Assertions.assertEquals( 990, database.coalescedWrites.get() );
+
+        //not due yet
+        database.processQueries( Long.MAX_VALUE );
+        Assertions.assertEquals( 10, database.pendingWrites() );
+
+        database.flushWrites();
+        database.processQueries( Long.MAX_VALUE );
+        Assertions.assertEquals( 0, database.pendingWrites() );
+
+        Optional<Map<String, Object>> read = database.read( database.connect(), "teleportData",
+                new AbstractMap.SimpleEntry<>( "UUID", "player9" ) );
+        Assertions.assertTrue( read.isPresent() );
+        Assertions.assertEquals( "999", read.get().get( "delay" ) );
+        database.close();
+    }
+
+    @Test
+    void TestUnkeyedWrites() throws Exception {
+        try {
+            Class.forName( "org.sqlite.JDBC" );
+        } catch ( ClassNotFoundException e ) {
+            RTP.log( Level.WARNING, "ClassNotFoundException", e );
+            return;
+        }
+        SQLiteDatabaseAccessor database = tempDatabase();
+        database.writeDelay = Long.MAX_VALUE;
+
+        //no UUID column, so every write is its own row rather than one record under a null key
+        for ( int i = 0; i < 5; i++ ) {
+            Map<String, Object> row = new HashMap<>();
+            row.put( "time", i );
+            database.setValue( "eventLog", row );
+        }
+        Assertions.assertEquals( 5, database.pendingWrites() );
+        Assertions.assertEquals( 0, database.coalescedWrites.get() );
+
+        database.flushWrites();
+        database.processQueries( Long.MAX_VALUE );
+        Assertions.assertEquals( 0, database.pendingWrites() );
+
+        Assertions.assertEquals( 5, count( database.connect(), "eventLog" ) );
+        database.close();
+    }
+
+    @Test
+    void TestBatchCommit() throws Exception {
+        try {
+            Class.forName( "org.sqlite.JDBC" );
+        } catch ( ClassNotFoundException e ) {
+            RTP.log( Level.WARNING, "ClassNotFoundException", e );
+            return;
+        }
+        File file = File.createTempFile( "batch", ".db" );
+        file.deleteOnExit();
+        String url = "jdbc:sqlite:" + file.getAbsolutePath();
+        SQLiteDatabaseAccessor database = new SQLiteDatabaseAccessor( url );
+        database.writeDelay = Long.MAX_VALUE;
+
+        for ( int i = 0; i < 100; i++ ) {
+            Map<String, Object> row = new HashMap<>();
+            row.put( "UUID", "player" + i );
+            row.put( "delay", i );
+            database.setValue( "teleportData", row );
+        }
+        for ( int i = 0; i < 10; i++ ) {
+            Map<String, Object> row = new HashMap<>();
+            row.put( "time", i );
+            database.setValue( "eventLog", row );
+        }
+        database.flushWrites();
+        database.processQueries( Long.MAX_VALUE );
+        Assertions.assertEquals( 0, database.pendingWrites() );
+
+        //seen from another connection, so the transaction was committed and not left open
+        try ( Connection other = DriverManager.getConnection( url ) ) {
+            Assertions.assertEquals( 100, count( other, "teleportData" ) );
+            Assertions.assertEquals( 10, count( other, "eventLog" ) );
+        }
+        database.close();
+    }
+
+    @Test
+    void TestBatchRollback() throws Exception {
+        try {
+            Class.forName( "org.sqlite.JDBC" );
+        } catch ( ClassNotFoundException e ) {
+            RTP.log( Level.WARNING, "ClassNotFoundException", e );
+            return;
+        }
+        RTP.serverAccessor = new TestRTPServerAccessor();
+        File file = File.createTempFile( "rollback", ".db" );
+        file.deleteOnExit();
+        String url = "jdbc:sqlite:" + file.getAbsolutePath();
+        SQLiteDatabaseAccessor database = new SQLiteDatabaseAccessor( url );
+        database.writeDelay = Long.MAX_VALUE;
+
+        Map<String, Object> first = new HashMap<>();
+        first.put( "UUID", "player0" );
+        first.put( "delay", 0 );
+        database.setValue( "teleportData", first );
+        database.flushWrites();
+        database.processQueries( Long.MAX_VALUE );
+
+        try ( Connection other = DriverManager.getConnection( url ); Statement statement = other.createStatement() ) {
+            statement.execute( "CREATE TRIGGER reject BEFORE INSERT ON teleportData WHEN NEW.delay = 'bad' " +
+                    "BEGIN SELECT RAISE( ABORT, 'rejected' ); END;" );
+        }
+
+        //the last write in the batch fails, taking the ones before it down too
+        for ( int i = 1; i <= 3; i++ ) {
+            Map<String, Object> row = new HashMap<>();
+            row.put( "UUID", "player" + i );
+            row.put( "delay", ( i == 3 ) ? "bad" : String.valueOf( i ) );
+            database.setValue( "teleportData", row );
+        }
+        database.flushWrites();
+        database.processQueries( Long.MAX_VALUE );
+        Assertions.assertEquals( 3, database.pendingWrites() );
+        try ( Connection other = DriverManager.getConnection( url ) ) {
+            Assertions.assertEquals( 1, count( other, "teleportData" ) );
+        }
+
+        //kept for retry, so the next pass writes each of them
+        try ( Connection other = DriverManager.getConnection( url ); Statement statement = other.createStatement() ) {
+            statement.execute( "DROP TRIGGER reject;" );
+        }
+        database.processQueries( Long.MAX_VALUE );
+        Assertions.assertEquals( 0, database.pendingWrites() );
+        try ( Connection other = DriverManager.getConnection( url ) ) {
+            Assertions.assertEquals( 4, count( other, "teleportData" ) );
+        }
+        database.close();
+    }
+
+    @Test
+    void TestRetryOrder() throws Exception {
+        try {
+            Class.forName( "org.sqlite.JDBC" );
+        } catch ( ClassNotFoundException e ) {
+            RTP.log( Level.WARNING, "ClassNotFoundException", e );
+            return;
+        }
+        RTP.serverAccessor = new TestRTPServerAccessor();
+        File file = File.createTempFile( "retry", ".db" );
+        file.deleteOnExit();
+        String url = "jdbc:sqlite:" + file.getAbsolutePath();
+        SQLiteDatabaseAccessor database = new SQLiteDatabaseAccessor( url );
+        database.writeDelay = Long.MAX_VALUE;
+
+        Map<String, Object> first = new HashMap<>();
+        first.put( "UUID", "player0" );
+        first.put( "delay", "0" );
+        database.setValue( "teleportData", first );
+        database.flushWrites();
+        database.processQueries( Long.MAX_VALUE );
+
+        try ( Connection other = DriverManager.getConnection( url ); Statement statement = other.createStatement() ) {
+            statement.execute( "CREATE TRIGGER reject BEFORE INSERT ON teleportData " +
+                    "BEGIN SELECT RAISE( ABORT, 'rejected' ); END;" );
+        }
+
+        //two writes to the same row queued one behind the other
+        database.stop.set( true );
+        for ( String delay : new String[]{"old", "new"} ) {
+            Map<String, Object> row = new HashMap<>();
+            row.put( "UUID", "player1" );
+            row.put( "delay", delay );
+            database.setValue( "teleportData", row );
+            database.flushWrites();
+            database.processQueries( Long.MAX_VALUE );
+        }
+        database.stop.set( false );
+
+        //no time for more than the older one, which fails
+        database.processQueries( 0 );
+        Assertions.assertEquals( 2, database.pendingWrites() );
+
+        try ( Connection other = DriverManager.getConnection( url ); Statement statement = other.createStatement() ) {
+            statement.execute( "DROP TRIGGER reject;" );
+        }
+        database.processQueries( Long.MAX_VALUE );
+        Assertions.assertEquals( 0, database.pendingWrites() );
+        try ( Connection other = DriverManager.getConnection( url ); Statement statement = other.createStatement();
+              ResultSet resultSet = statement.executeQuery( "SELECT delay FROM teleportData WHERE UUID = 'player1';" ) ) {
+            Assertions.assertTrue( resultSet.next() );
+            Assertions.assertEquals( "new", resultSet.getString( 1 ) );
+        }
+        database.close();
+    }
+
+    @Test
+    void TestPoisonWrite() throws Exception {
+        try {
+            Class.forName( "org.sqlite.JDBC" );
+        } catch ( ClassNotFoundException e ) {
+            RTP.log( Level.WARNING, "ClassNotFoundException", e );
+            return;
+        }
+        RTP.serverAccessor = new TestRTPServerAccessor();
+        File file = File.createTempFile( "poison", ".db" );
+        file.deleteOnExit();
+        String url = "jdbc:sqlite:" + file.getAbsolutePath();
+        SQLiteDatabaseAccessor database = new SQLiteDatabaseAccessor( url );
+        database.writeDelay = Long.MAX_VALUE;
+
+        Map<String, Object> first = new HashMap<>();
+        first.put( "UUID", "player0" );
+        first.put( "delay", "0" );
+        database.setValue( "teleportData", first );
+        database.flushWrites();
+        database.processQueries( Long.MAX_VALUE );
+
+        try ( Connection other = DriverManager.getConnection( url ); Statement statement = other.createStatement() ) {
+            statement.execute( "CREATE TRIGGER reject BEFORE INSERT ON teleportData WHEN NEW.delay = 'bad' " +
+                    "BEGIN SELECT RAISE( ABORT, 'rejected' ); END;" );
+        }
+
+        for ( int i = 1; i <= 3; i++ ) {
+            Map<String, Object> row = new HashMap<>();
+            row.put( "UUID", "player" + i );
+            row.put( "delay", ( i == 2 ) ? "bad" : String.valueOf( i ) );
+            database.setValue( "teleportData", row );
+        }
+        database.flushWrites();
+
+        //the batch, then the bad write alone until it's given up on, then the write behind it
+        for ( int i = 0; i < SQLiteDatabaseAccessor.MAX_ATTEMPTS + 2; i++ ) {
+            database.processQueries( Long.MAX_VALUE );
+        }
+        Assertions.assertEquals( 0, database.pendingWrites() );
+        try ( Connection other = DriverManager.getConnection( url ) ) {
+            Assertions.assertEquals( 3, count( other, "teleportData" ) );
+        }
+        database.close();
+    }
+
+    private static int count( Connection connection, String table ) throws Exception {
+        try ( Statement statement = connection.createStatement();
+              ResultSet resultSet = statement.executeQuery( "SELECT COUNT(*) FROM " + table + ";" ) ) {
+            Assertions.assertTrue( resultSet.next() );
+            return resultSet.getInt( 1 );
+        }
+    }
+
+    private static RTP start() {
+        RTP.serverAccessor = new TestRTPServerAccessor();
+        RTP rtp = new RTP();
+        int i = 0;
+        while ( rtp.startupTasks.size()>0 && i++ < 50 ) {
+            rtp.startupTasks.execute( Long.MAX_VALUE );
+        }
+        return rtp;
+    }
+
+    private static SQLiteDatabaseAccessor tempDatabase() throws Exception {
+        File file = File.createTempFile( "rtp", ".db" );
+        file.deleteOnExit();
+        return new SQLiteDatabaseAccessor( "jdbc:sqlite:" + file.getAbsolutePath() );
+    }
+
+    private static Map<String, Object> teleportRow( UUID playerId, long time ) {
+        String worldId = RTP.serverAccessor.getRTPWorlds().get( 0 ).id().toString();
+        Map<String, Object> row = new HashMap<>();
+        row.put( "UUID", playerId.toString() );
+        row.put( "time", time );
+        row.put( "selectedWorldId", worldId );
+        row.put( "selectedX", 100 );
+        row.put( "selectedY", 64 );
+        row.put( "selectedZ", -100 );
+        row.put( "originalWorldId", worldId );
+        row.put( "originalX", 0 );
+        row.put( "originalY", 64 );
+        row.put( "originalZ", 0 );
+        row.put( "cost", 0.0 );
+        return row;
+    }
+
+    private static TeleportData completed( long time ) {
+        TeleportData data = new TeleportData();
+        data.completed = true;
+        data.time = time;
+        return data;
+    }
+
+    @Test
+    void TestLazyLoad() throws Exception {
+        try {
+            Class.forName( "org.sqlite.JDBC" );
+        } catch ( ClassNotFoundException e ) {
+            RTP.log( Level.WARNING, "ClassNotFoundException", e );
+            return;
+        }
+        RTP rtp = start();
+        SQLiteDatabaseAccessor database = tempDatabase();
+        rtp.databaseAccessor = database;
+
+        UUID playerId = UUID.randomUUID();
+        database.setValue( "teleportData", teleportRow( playerId, 12345L ) );
+        database.flushWrites();
+        database.processQueries( Long.MAX_VALUE );
+
+        //queued, nothing read yet, so cooldown checks have to treat it as recent
+        CompletableFuture<Optional<TeleportData>> load = database.loadTeleportData( playerId, false );
+        Assertions.assertFalse( load.isDone() );
+        Assertions.assertNull( rtp.latestTeleportData.get( playerId ) );
+        Assertions.assertTrue( rtp.teleportDataPending( playerId ) );
+        Assertions.assertSame( load, database.loadTeleportData( playerId, false ) );
+
+        database.processQueries( Long.MAX_VALUE );
+        Assertions.assertTrue( load.isDone() );
+        Assertions.assertFalse( rtp.teleportDataPending( playerId ) );
+        Assertions.assertTrue( load.get().isPresent() );
+        Assertions.assertEquals( 12345L, rtp.latestTeleportData.get( playerId ).time );
+
+        //a login read on this thread finishes before it returns
+        UUID loginId = UUID.randomUUID();
+        database.setValue( "teleportData", teleportRow( loginId, 678L ) );
+        database.flushWrites();
+        database.processQueries( Long.MAX_VALUE );
+        CompletableFuture<Optional<TeleportData>> login = database.loadTeleportData( loginId, true );
+        Assertions.assertTrue( login.isDone() );
+        Assertions.assertFalse( rtp.teleportDataPending( loginId ) );
+        Assertions.assertEquals( 678L, rtp.latestTeleportData.get( loginId ).time );
+
+        //never teleported, done once read and nothing cached
+        UUID newId = UUID.randomUUID();
+        CompletableFuture<Optional<TeleportData>> empty = database.loadTeleportData( newId, false );
+        database.processQueries( Long.MAX_VALUE );
+        Assertions.assertTrue( empty.isDone() );
+        Assertions.assertFalse( empty.get().isPresent() );
+        Assertions.assertFalse( rtp.teleportDataPending( newId ) );
+        database.close();
+    }
+
+    @Test
+    void TestFailedLoginRead() throws Exception {
+        try {
+            Class.forName( "org.sqlite.JDBC" );
+        } catch ( ClassNotFoundException e ) {
+            RTP.log( Level.WARNING, "ClassNotFoundException", e );
+            return;
+        }
+        RTP rtp = start();
+        File file = File.createTempFile( "rtp", ".db" );
+        file.deleteOnExit();
+        AtomicBoolean fail = new AtomicBoolean( true );
+        SQLiteDatabaseAccessor database = new SQLiteDatabaseAccessor( "jdbc:sqlite:" + file.getAbsolutePath() ) {
+            @Override
+            public synchronized Optional<Map<String, Object>> read( Connection connection, String tableName, Map.Entry<String, Object> lookup ) {
+                if ( fail.get() ) throw new IllegalStateException( "unreadable" );
+                return super.read( connection, tableName, lookup );
+            }
+        };
+        rtp.databaseAccessor = database;
+
+        UUID playerId = UUID.randomUUID();
+        database.setValue( "teleportData", teleportRow( playerId, 910L ) );
+        database.flushWrites();
+        database.processQueries( Long.MAX_VALUE );
+
+        //a login read that fails is done, not left pending
+        CompletableFuture<Optional<TeleportData>> login = database.loadTeleportData( playerId, true );
+        Assertions.assertTrue( login.isCompletedExceptionally() );
+        Assertions.assertFalse( rtp.teleportDataPending( playerId ) );
+        Assertions.assertNull( rtp.latestTeleportData.get( playerId ) );
+
+        //and the next load reads again
+        fail.set( false );
+        CompletableFuture<Optional<TeleportData>> retry = database.loadTeleportData( playerId, true );
+        Assertions.assertNotSame( login, retry );
+        Assertions.assertEquals( 910L, retry.get().map( data -> data.time ).orElse( -1L ).longValue() );
+        Assertions.assertEquals( 910L, rtp.latestTeleportData.get( playerId ).time );
+        database.close();
+    }
+
+    @Test
+    void TestEviction() throws Exception {
+        try {
+            Class.forName( "org.sqlite.JDBC" );
+        } catch ( ClassNotFoundException e ) {
+            RTP.log( Level.WARNING, "ClassNotFoundException", e );
+            return;
+        }
+        RTP rtp = start();
+        SQLiteDatabaseAccessor database = tempDatabase();
+        rtp.databaseAccessor = database;
+
+        //finished teleports move to the offline cache, and come back from it on the next load
+        UUID doneId = UUID.randomUUID();
+        TeleportData done = completed( 100L );
+        rtp.latestTeleportData.put( doneId, done );
+        rtp.evictTeleportData( doneId );
+        Assertions.assertNull( rtp.latestTeleportData.get( doneId ) );
+        Assertions.assertSame( done, rtp.offlineTeleportData.get( doneId ) );
+        Assertions.assertSame( done, rtp.getTeleportData( doneId ) );
+        Assertions.assertSame( done, database.loadTeleportData( doneId, false ).get().orElse( null ) );
+        Assertions.assertSame( done, rtp.latestTeleportData.get( doneId ) );
+        Assertions.assertNull( rtp.offlineTeleportData.get( doneId ) );
+
+        //left mid-teleport, the unfinished one is dropped and the last finished one kept
+        UUID leftId = UUID.randomUUID();
+        TeleportData prior = completed( 200L );
+        TeleportData unfinished = new TeleportData();
+        unfinished.time = 300L;
+        rtp.priorTeleportData.put( leftId, prior );
+        rtp.latestTeleportData.put( leftId, unfinished );
+        rtp.processingPlayers.add( leftId );
+        rtp.evictTeleportData( leftId );
+        Assertions.assertNull( rtp.latestTeleportData.get( leftId ) );
+        Assertions.assertNull( rtp.priorTeleportData.get( leftId ) );
+        Assertions.assertFalse( rtp.processingPlayers.contains( leftId ) );
+        Assertions.assertSame( prior, rtp.offlineTeleportData.get( leftId ) );
+
+        //first teleport never finished, nothing left to keep
+        UUID firstId = UUID.randomUUID();
+        rtp.latestTeleportData.put( firstId, new TeleportData() );
+        rtp.processingPlayers.add( firstId );
+        rtp.evictTeleportData( firstId );
+        Assertions.assertNull( rtp.latestTeleportData.get( firstId ) );
+        Assertions.assertNull( rtp.offlineTeleportData.get( firstId ) );
+        Assertions.assertFalse( rtp.processingPlayers.contains( firstId ) );
+
+        //a read still queued when they're evicted doesn't land afterward
+        UUID queuedId = UUID.randomUUID();
+        database.setValue( "teleportData", teleportRow( queuedId, 400L ) );
+        database.flushWrites();
+        database.processQueries( Long.MAX_VALUE );
+        CompletableFuture<Optional<TeleportData>> load = database.loadTeleportData( queuedId, false );
+        rtp.evictTeleportData( queuedId );
+        Assertions.assertTrue( load.isCancelled() );
+        Assertions.assertFalse( rtp.teleportDataPending( queuedId ) );
+        database.processQueries( Long.MAX_VALUE );
+        Assertions.assertNull( rtp.latestTeleportData.get( queuedId ) );
+        database.close();
+    }
 }
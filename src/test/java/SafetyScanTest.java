@@ -0,0 +1,81 @@
+import commonTestImpl.TestRTPServerAccessor;
+import commonTestImpl.substitutions.TestRTPChunk;
+import commonTestImpl.substitutions.TestRTPWorld;
+import io.github.dailystruggle.rtp.common.RTP;
+import io.github.dailystruggle.rtp.common.selection.region.Selection;
+import io.github.dailystruggle.rtp.common.serverSide.NameRegistry;
+import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPBlock;
+import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPChunk;
+import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPLocation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class SafetyScanTest {
+    private static class CountingChunk extends TestRTPChunk {
+        int reads = 0;
+
+        CountingChunk( TestRTPWorld world ) {
+            super( world, 0, 0 );
+        }
+
+        @Override
+        public RTPBlock getBlockAt( int x, int y, int z ) {
+            reads++;
+            return super.getBlockAt( x, y, z );
+        }
+    }
+
+    @Test
+    void TestSectionSkip() {
+        RTP.serverAccessor = new TestRTPServerAccessor();
+        TestRTPWorld world = new TestRTPWorld();
+        CountingChunk chunk = new CountingChunk( world );
+        Map<Long, RTPChunk> chunks = new HashMap<>();
+        chunks.put( Selection.chunkKey( 0, 0 ), chunk );
+
+        BitSet lava = NameRegistry.materials.bits( Collections.singletonList( "LAVA" ) );
+        BitSet stone = NameRegistry.materials.bits( Collections.singletonList( "STONE" ) );
+
+        //straddles the stone section and the air section above it, too little of either to be worth a palette
+        RTPLocation location = new RTPLocation( world, 8, TestRTPChunk.surfaceHeight, 8 );
+        Assertions.assertTrue( Selection.isSafe( world, location, 4, chunks, lava, null ) );
+        Assertions.assertEquals( 8 * 8 * 8, chunk.reads );
+        Assertions.assertFalse( chunk.hasPalette( Math.floorDiv( TestRTPChunk.surfaceHeight, 16 ) ) );
+
+        //covers the whole air section, its palette costs no more than reading it
+        chunk.reads = 0;
+        RTPLocation above = new RTPLocation( world, 8, TestRTPChunk.surfaceHeight + 8, 8 );
+        Assertions.assertTrue( Selection.isSafe( world, above, 8, chunks, lava, null ) );
+        Assertions.assertEquals( 16 * 16 * 16, chunk.reads );
+        Assertions.assertTrue( chunk.hasPalette( Math.floorDiv( TestRTPChunk.surfaceHeight, 16 ) ) );
+
+        //once known, the palette skips the section for any scan
+        chunk.reads = 0;
+        Assertions.assertTrue( Selection.isSafe( world, above, 8, chunks, lava, null ) );
+        Assertions.assertEquals( 0, chunk.reads );
+        Assertions.assertTrue( Selection.isSafe( world, location, 4, chunks, lava, null ) );
+        Assertions.assertEquals( 8 * 8 * 4, chunk.reads );
+
+        chunk.reads = 0;
+        Assertions.assertFalse( Selection.isSafe( world, location, 4, chunks, stone, null ) );
+        Assertions.assertTrue( chunk.reads > 0 );
+        Assertions.assertTrue( chunk.reads <= 8 * 8 * 4 );
+    }
+
+    @Test
+    void TestHeightmap() {
+        TestRTPChunk chunk = new TestRTPChunk();
+        int[] heightmap = chunk.heightmap();
+        Assertions.assertEquals( 256, heightmap.length );
+        for ( int column = 0; column < 256; column++ ) {
+            int y = heightmap[column];
+            Assertions.assertEquals( "STONE", chunk.getBlockAt( column & 15, y, column >> 4 ).getMaterial() );
+            Assertions.assertEquals( "AIR", chunk.getBlockAt( column & 15, y + 1, column >> 4 ).getMaterial() );
+        }
+    }
+}
@@ -0,0 +1,42 @@
+import io.github.dailystruggle.rtp.common.tasks.SelectionWorkers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class SelectionWorkersTest {
+    private static String threadName( SelectionWorkers workers ) throws Exception {
+        return CompletableFuture.supplyAsync( () -> Thread.currentThread().getName(), workers ).get( 5, TimeUnit.SECONDS );
+    }
+
+    @Test
+    void TestEnsureResizeStop() throws Exception {
+        SelectionWorkers workers = new SelectionWorkers();
+        workers.ensure( 2 );
+        Assertions.assertEquals( 2, workers.size() );
+        Assertions.assertTrue( threadName( workers ).startsWith( "RTP-selection-worker-" ) );
+
+        workers.ensure( 4 );
+        Assertions.assertEquals( 4, workers.size() );
+        workers.ensure( 1 );
+        Assertions.assertEquals( 1, workers.size() );
+
+        workers.stop();
+        Assertions.assertTrue( workers.isStopped() );
+        Assertions.assertEquals( 0, workers.size() );
+
+        //a tick that was already underway when the plugin stopped
+        workers.ensure( 2 );
+        Assertions.assertEquals( 0, workers.size() );
+
+        //stages that arrive after a stop still finish, on the calling thread
+        Assertions.assertEquals( Thread.currentThread().getName(), threadName( workers ) );
+
+        //reload
+        workers.start();
+        Assertions.assertTrue( threadName( workers ).startsWith( "RTP-selection-worker-" ) );
+        Assertions.assertTrue( workers.size() > 0 );
+        workers.stop();
+    }
+}
@@ -0,0 +1,38 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import simulator.SimReport;
+import simulator.Simulation;
+
+public class SimulationTest {
+
+    @Test
+    void TestSmallRegion() {
+        Simulation simulation = new Simulation();
+        simulation.radius = 16;
+        simulation.centerRadius = 4;
+        simulation.selections = 10;
+        simulation.cacheCap = 3;
+        simulation.fill = true;
+
+        SimReport report = simulation.run();
+
+        Assertions.assertEquals( 10, report.selections );
+        Assertions.assertTrue( report.successes > 0 );
+        Assertions.assertTrue( report.attempts >= report.successes );
+        Assertions.assertTrue( report.attemptsPerSuccess() >= 1.0 );
+        Assertions.assertTrue( report.selectionTicks > 0 );
+        Assertions.assertTrue( report.chunkLoads > 0 );
+
+        Assertions.assertTrue( report.cacheFilled > 0 );
+        Assertions.assertTrue( report.refillTicks >= 0 );
+
+        Assertions.assertTrue( report.fillTicks >= 0 );
+
+        //{bad intervals, bad locations, biome intervals, bytes}
+        Assertions.assertTrue( report.memory.containsKey( "selections" ) );
+        Assertions.assertTrue( report.memory.containsKey( "fill" ) );
+        long[] filled = report.memory.get( "fill" );
+        Assertions.assertTrue( filled[1] >= filled[0] );
+        Assertions.assertEquals( ( filled[0] + filled[2] ) * 16, filled[3] );
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.util.*;
 import java.util.logging.Level;
 
 public class TestConfig {
@@ -36,4 +37,27 @@ public class TestConfig {
 
         Assertions.assertEquals( parser.getNumber( ConfigKeys.cancelDistance,0.0 ).longValue(),5 );
     }
+
+    @Test
+    void TestCarryOver() {
+        Map<String, Object> old = new HashMap<>();
+        old.put( "version", "1.0" );
+        old.put( "syncAllottedTime", 50 );
+        old.put( "asyncAllottedTime", 30 );
+        old.put( "maxAttempts", 20 );
+        old.put( "removedKey", true );
+        Set<String> keys = new HashSet<>( Arrays.asList( "version", "syncAllottedTime", "asyncAllottedTime", "maxAttempts", "targetMSPT" ) );
+        Map<String, Object> changed = new HashMap<>();
+        changed.put( "syncAllottedTime", 50 );
+        changed.put( "asyncAllottedTime", 50 );
+
+        Map<String, Object> carried = ConfigParser.carryOver( old, keys, changed );
+        //left at the old default, takes the new one
+        Assertions.assertFalse( carried.containsKey( "syncAllottedTime" ) );
+        //set by the server, kept
+        Assertions.assertEquals( 30, carried.get( "asyncAllottedTime" ) );
+        Assertions.assertEquals( 20, carried.get( "maxAttempts" ) );
+        Assertions.assertFalse( carried.containsKey( "version" ) );
+        Assertions.assertFalse( carried.containsKey( "removedKey" ) );
+    }
 }
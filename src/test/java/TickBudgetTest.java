@@ -0,0 +1,82 @@
+import io.github.dailystruggle.rtp.common.tasks.TPS;
+import io.github.dailystruggle.rtp.common.tasks.TickBudget;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TickBudgetTest {
+    private static final double increase = 1.0 / 40;
+    private static long clock = 0;
+
+    /**
+     * a tick that took this long since the one before it
+     */
+    private void tick( double millis ) {
+        clock += ( long ) ( millis * 1_000_000 );
+        TPS.TICKS[TPS.TICK_COUNT % TPS.TICKS.length] = clock / 1_000_000;
+        TPS.TICK_NANOS[TPS.TICK_COUNT % TPS.TICK_NANOS.length] = clock;
+        TPS.TICK_COUNT++;
+        TickBudget.tick();
+    }
+
+    private void ticks( int count, double millis ) {
+        for ( int i = 0; i < count; i++ ) tick( millis );
+    }
+
+    @BeforeEach
+    void healthy() {
+        //enough history to judge TPS by, and enough healthy ticks to climb back from the floor
+        ticks( 100, 50 );
+        Assertions.assertEquals( 1.0, TickBudget.scale() );
+    }
+
+    @Test
+    void TestBackOff() {
+        //one slow tick that keeps the last 5 just under targetMSPT, 55
+        tick( 74 );
+        Assertions.assertFalse( TickBudget.congested() );
+        Assertions.assertEquals( 1.0, TickBudget.scale() );
+        ticks( 20, 50 );
+
+        //and one that puts them just over
+        tick( 76 );
+        Assertions.assertTrue( TickBudget.congested() );
+        Assertions.assertEquals( 0.5, TickBudget.scale() );
+
+        //still over while that tick is among the last 5, but a single spike only halves once
+        ticks( 4, 50 );
+        Assertions.assertTrue( TickBudget.congested() );
+        Assertions.assertEquals( 0.5, TickBudget.scale() );
+
+        //sustained, it keeps halving down to the floor
+        ticks( 100, 80 );
+        Assertions.assertEquals( 1.0 / 16, TickBudget.scale() );
+    }
+
+    @Test
+    void TestIncrease() {
+        tick( 76 );
+        ticks( 4, 50 );
+        Assertions.assertEquals( 0.5, TickBudget.scale() );
+
+        //additive once the spike is out of the window
+        tick( 50 );
+        Assertions.assertFalse( TickBudget.congested() );
+        Assertions.assertEquals( 0.5 + increase, TickBudget.scale(), 1e-9 );
+        tick( 50 );
+        Assertions.assertEquals( 0.5 + 2 * increase, TickBudget.scale(), 1e-9 );
+
+        //capped at full
+        ticks( 40, 50 );
+        Assertions.assertEquals( 1.0, TickBudget.scale() );
+    }
+
+    @Test
+    void TestBudgets() {
+        //at full scale, the async allotment is the default 25ms
+        Assertions.assertEquals( 25_000_000L, TickBudget.asyncBudget() );
+
+        tick( 76 );
+        Assertions.assertEquals( 12_500_000L, TickBudget.asyncBudget() );
+    }
+}
@@ -0,0 +1,61 @@
+import io.github.dailystruggle.rtp.common.selection.region.VerifierChain;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class VerifierChainTest {
+
+    @Test
+    void TestReorder() {
+        VerifierChain chain = new VerifierChain();
+        AtomicInteger expensiveCalls = new AtomicInteger();
+        //registered first, slow and never rejects
+        chain.add( location -> {
+            expensiveCalls.incrementAndGet();
+            long end = System.nanoTime() + 20000;
+            while ( System.nanoTime() < end ) {
+                //spin
+            }
+            return true;
+        }, 1, true );
+        //cheap and rejects most of the time
+        AtomicInteger i = new AtomicInteger();
+        chain.add( location -> i.incrementAndGet() % 10 == 0, 1, true );
+
+        for ( int j = 0; j < 4096; j++ ) chain.test( null );
+        Assertions.assertNotEquals( 0, chain.verifiers()[0].rejectionRate() );
+        Assertions.assertTrue( chain.verifiers()[0].cost() < chain.verifiers()[1].cost() );
+
+        //once reordered, the slow check only sees what the cheap one lets through
+        expensiveCalls.set( 0 );
+        for ( int j = 0; j < 1000; j++ ) chain.test( null );
+        Assertions.assertTrue( expensiveCalls.get() <= 200, "expensive calls: " + expensiveCalls.get() );
+    }
+
+    @Test
+    void TestThreadSafeRunsConcurrently() throws Exception {
+        VerifierChain chain = new VerifierChain();
+        int threads = 4;
+        CyclicBarrier barrier = new CyclicBarrier( threads );
+        //only passes if every thread is inside the check at once
+        chain.add( location -> {
+            try {
+                barrier.await( 5, TimeUnit.SECONDS );
+                return true;
+            } catch ( Exception e ) {
+                return false;
+            }
+        }, 1, true );
+
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try {
+            Future<?>[] futures = new Future[threads];
+            for ( int t = 0; t < threads; t++ ) futures[t] = executor.submit( () -> chain.test( null ) );
+            for ( Future<?> future : futures ) Assertions.assertEquals( true, future.get( 10, TimeUnit.SECONDS ) );
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -7,6 +7,10 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.simpleyaml.configuration.file.YamlFile;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.AbstractMap;
 import java.util.HashMap;
 import java.util.Map;
@@ -62,4 +66,130 @@ public class YamlDatabaseTest {
         Assertions.assertEquals( 5,read.get().get( "teleportDelay") );
         database.disconnect( connect );
     }
+
+    private static File yml( File directory, String name, String content, long lastModified ) throws IOException {
+        File file = new File( directory, name );
+        Files.write( file.toPath(), content.getBytes( StandardCharsets.UTF_8 ) );
+        Assertions.assertTrue( file.setLastModified( lastModified ) );
+        return file;
+    }
+
+    private static YamlFile reread( File file ) throws IOException {
+        YamlFile yamlFile = new YamlFile( file );
+        yamlFile.loadWithComments();
+        return yamlFile;
+    }
+
+    private static Map<DatabaseAccessor.TableObj, DatabaseAccessor.TableObj> pair( String key, Object value ) {
+        Map<DatabaseAccessor.TableObj, DatabaseAccessor.TableObj> res = new HashMap<>();
+        res.put( new DatabaseAccessor.TableObj( key ), new DatabaseAccessor.TableObj( value ) );
+        return res;
+    }
+
+    @Test
+    void TestDirtyTracking() throws IOException {
+        RTP.serverAccessor = new TestRTPServerAccessor();
+        File directory = Files.createTempDirectory( "yaml" ).toFile();
+        long old = System.currentTimeMillis() - 60_000;
+        File changed = yml( directory, "changed.yml", "x: 1\n", old );
+        File untouched = yml( directory, "untouched.yml", "x: 1\n", old );
+
+        YamlFileDatabase database = new YamlFileDatabase( directory );
+        database.saveDelay = 0;
+        Map<String, YamlFile> connect = database.connect();
+        database.write( connect, "changed.yml", pair( "x", 2 ) );
+        database.disconnect( connect );
+
+        Assertions.assertNotEquals( old, changed.lastModified() );
+        Assertions.assertEquals( 2, reread( changed ).getInt( "x" ) );
+        Assertions.assertEquals( old, untouched.lastModified() );
+
+        //nothing set since, so nothing written
+        Assertions.assertTrue( changed.setLastModified( old ) );
+        connect = database.connect();
+        database.disconnect( connect );
+        database.flushWrites();
+        database.processQueries( Long.MAX_VALUE );
+        Assertions.assertEquals( old, changed.lastModified() );
+        Assertions.assertEquals( old, untouched.lastModified() );
+        database.close();
+    }
+
+    @Test
+    void TestAtomicSave() throws IOException {
+        RTP.serverAccessor = new TestRTPServerAccessor();
+        File directory = Files.createTempDirectory( "yaml" ).toFile();
+        long old = System.currentTimeMillis() - 60_000;
+        File target = yml( directory, "data.yml", "x: 1\n", old );
+        //left over from a save that was cut short
+        File tmp = yml( directory, "data.yml.tmp", "x: [", old );
+
+        YamlFileDatabase database = new YamlFileDatabase( directory );
+        Map<String, YamlFile> connect = database.connect();
+        Assertions.assertFalse( connect.containsKey( "data.yml.tmp" ) );
+        Assertions.assertEquals( 1, connect.get( "data.yml" ).getInt( "x" ) );
+
+        database.write( connect, "data.yml", pair( "x", 3 ) );
+        database.save( "data.yml" );
+
+        //written beside the file and moved over it, nothing left behind
+        Assertions.assertFalse( tmp.exists() );
+        Assertions.assertEquals( 3, reread( target ).getInt( "x" ) );
+        File[] files = directory.listFiles();
+        Assertions.assertNotNull( files );
+        Assertions.assertEquals( 1, files.length );
+        database.close();
+    }
+
+    @Test
+    void TestExternalEdit() throws IOException, InterruptedException {
+        RTP.serverAccessor = new TestRTPServerAccessor();
+        File directory = Files.createTempDirectory( "yaml" ).toFile();
+        long old = System.currentTimeMillis() - 60_000;
+        File file = yml( directory, "edited.yml", "a: 1\nb: 1\n", old );
+
+        YamlFileDatabase database = new YamlFileDatabase( directory );
+        Map<String, YamlFile> connect = database.connect();
+        Assertions.assertEquals( 1, connect.get( "edited.yml" ).getInt( "b" ) );
+
+        //an edit by hand shows up on a later connect, without a restart
+        yml( directory, "edited.yml", "a: 1\nb: 2\nc: 3\n", old + 10_000 );
+        int seen = 0;
+        for ( int i = 0; i < 50 && seen != 2; i++ ) {
+            connect = database.connect();
+            seen = connect.get( "edited.yml" ).getInt( "b" );
+            if ( seen != 2 ) Thread.sleep( 100 );
+        }
+        Assertions.assertEquals( 2, seen );
+        Assertions.assertEquals( 3, connect.get( "edited.yml" ).getInt( "c" ) );
+
+        //an edit landing while our own change waits to be saved keeps both, when the save finds it
+        database.write( connect, "edited.yml", pair( "a", 5 ) );
+        yml( directory, "edited.yml", "a: 1\nb: 4\n", old + 20_000 );
+        database.save( "edited.yml" );
+
+        YamlFile saved = reread( file );
+        Assertions.assertEquals( 5, saved.getInt( "a" ) );
+        Assertions.assertEquals( 4, saved.getInt( "b" ) );
+        Assertions.assertFalse( saved.contains( "c" ) );
+
+        //and when the watcher finds it first
+        connect = database.connect();
+        database.write( connect, "edited.yml", pair( "a", 6 ) );
+        yml( directory, "edited.yml", "a: 1\nb: 5\n", old + 30_000 );
+        seen = 0;
+        for ( int i = 0; i < 50 && seen != 5; i++ ) {
+            connect = database.connect();
+            seen = connect.get( "edited.yml" ).getInt( "b" );
+            if ( seen != 5 ) Thread.sleep( 100 );
+        }
+        Assertions.assertEquals( 5, seen );
+        Assertions.assertEquals( 6, connect.get( "edited.yml" ).getInt( "a" ) );
+        database.save( "edited.yml" );
+
+        saved = reread( file );
+        Assertions.assertEquals( 6, saved.getInt( "a" ) );
+        Assertions.assertEquals( 5, saved.getInt( "b" ) );
+        database.close();
+    }
 }
@@ -1,5 +1,61 @@
 package commonTestImpl.substitutions;
 
-public class TestRTPBlock {
+import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPBlock;
+import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPLocation;
+import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPWorld;
 
+public class TestRTPBlock implements RTPBlock {
+    private final RTPWorld world;
+    private final int x;
+    private final int y;
+    private final int z;
+    private final String material;
+
+    public TestRTPBlock( RTPWorld world, int x, int y, int z, String material ) {
+        this.world = world;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.material = material;
+    }
+
+    @Override
+    public RTPLocation getLocation() {
+        return new RTPLocation( world, x, y, z );
+    }
+
+    @Override
+    public boolean isAir() {
+        return material.equals( "AIR" );
+    }
+
+    @Override
+    public int x() {
+        return x;
+    }
+
+    @Override
+    public int y() {
+        return y;
+    }
+
+    @Override
+    public int z() {
+        return z;
+    }
+
+    @Override
+    public RTPWorld world() {
+        return world;
+    }
+
+    @Override
+    public int skyLight() {
+        return isAir() ? 15 : 0;
+    }
+
+    @Override
+    public String getMaterial() {
+        return material;
+    }
 }
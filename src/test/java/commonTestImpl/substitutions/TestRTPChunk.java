@@ -5,31 +5,101 @@ import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPChunk;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPLocation;
 import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPWorld;
 
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * flat stand-in chunk, stone up to surfaceHeight and air above it
+ */
 public class TestRTPChunk implements RTPChunk {
+    public static int surfaceHeight = 64;
+
+    private final RTPWorld world;
+    private final int x;
+    private final int z;
+
+    private volatile int[] heightmap = null;
+    private final Map<Integer, BitSet> palettes = new ConcurrentHashMap<>();
+
+    public TestRTPChunk() {
+        this( new TestRTPWorld(), 0, 0 );
+    }
+
+    public TestRTPChunk( RTPWorld world, int x, int z ) {
+        this.world = world;
+        this.x = x;
+        this.z = z;
+    }
 
     @Override
     public int x() {
-        return 0;
+        return x;
     }
 
     @Override
     public int z() {
-        return 0;
+        return z;
     }
 
     @Override
     public RTPBlock getBlockAt( int x, int y, int z ) {
-        return null;
+        String material = ( y < surfaceHeight ) ? "STONE" : "AIR";
+        return new TestRTPBlock( world, this.x * 16 + x, y, this.z * 16 + z, material );
+    }
+
+    /**
+     * @return y of the first air block in column x,z
+     */
+    protected int height( int x, int z ) {
+        return surfaceHeight;
+    }
+
+    @Override
+    public int[] heightmap() {
+        int[] res = heightmap;
+        if ( res == null ) {
+            res = new int[256];
+            for ( int z = 0; z < 16; z++ ) {
+                for ( int x = 0; x < 16; x++ ) {
+                    res[x + z * 16] = height( x, z ) - 1;
+                }
+            }
+            heightmap = res;
+        }
+        return res;
+    }
+
+    @Override
+    public BitSet palette( int section ) {
+        int minY = section * 16;
+        if ( minY < world.getMinHeight() || minY >= world.getMaxHeight() ) return null;
+        return palettes.computeIfAbsent( section, s -> {
+            BitSet res = new BitSet();
+            for ( int y = minY; y < minY + 16; y++ ) {
+                for ( int z = 0; z < 16; z++ ) {
+                    for ( int x = 0; x < 16; x++ ) {
+                        res.set( getBlockAt( x, y, z ).getMaterialId() );
+                    }
+                }
+            }
+            return res;
+        } );
+    }
+
+    @Override
+    public boolean hasPalette( int section ) {
+        return palettes.containsKey( section );
     }
 
     @Override
     public RTPBlock getBlockAt( RTPLocation location ) {
-        return null;
+        return getBlockAt( location.x() & 15, location.y(), location.z() & 15 );
     }
 
     @Override
     public RTPWorld getWorld() {
-        return null;
+        return world;
     }
 
     @Override
@@ -24,7 +24,7 @@ public class TestRTPWorld implements RTPWorld {
 
     @Override
     public CompletableFuture<RTPChunk> getChunkAt( int chunkX, int chunkZ ) {
-        return null;
+        return CompletableFuture.completedFuture( new TestRTPChunk( this, chunkX, chunkZ ) );
     }
 
     @Override
@@ -44,7 +44,7 @@ public class TestRTPWorld implements RTPWorld {
 
     @Override
     public String getBiome( int x, int y, int z ) {
-        return null;
+        return "PLAINS";
     }
 
     @Override
@@ -69,12 +69,12 @@ public class TestRTPWorld implements RTPWorld {
 
     @Override
     public int getMaxHeight() {
-        return 0;
+        return 320;
     }
 
     @Override
     public int getMinHeight() {
-        return 0;
+        return -64;
     }
 
     public static Set<String> getBiomes() {
@@ -0,0 +1,98 @@
+package simulator;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * rolling hills from layered value noise.
+ * water and lava come in square patches, each patch picked independently,
+ * so waterFraction is the expected share of surface under water, and lavaFraction the share of the rest under lava
+ */
+public class NoiseTerrain implements Terrain {
+    public long seed = 0;
+    public int baseHeight = 70;
+    public int amplitude = 40;
+    public int octaves = 4;
+    /**
+     * blocks per noise cell, for the largest octave
+     */
+    public double scale = 256;
+    public double waterFraction = 0.2;
+    public int waterPatch = 48;
+    public double lavaFraction = 0.02;
+    public int lavaPatch = 16;
+    public List<String> biomes = Arrays.asList( "PLAINS", "FOREST", "DESERT", "TAIGA" );
+    /**
+     * blocks per biome cell
+     */
+    public int biomeSize = 512;
+
+    @Override
+    public int height( int x, int z ) {
+        double sum = 0;
+        double weight = 1;
+        double total = 0;
+        double frequency = 1 / scale;
+        for ( int i = 0; i < octaves; i++ ) {
+            sum += weight * noise( x * frequency, z * frequency, seed + i );
+            total += weight;
+            weight /= 2;
+            frequency *= 2;
+        }
+        return ( int ) ( baseHeight + amplitude * ( ( sum / total ) * 2 - 1 ) );
+    }
+
+    @Override
+    public String surface( int x, int z ) {
+        if ( cell( x, z, waterPatch, seed + 101 ) < waterFraction ) return "WATER";
+        if ( cell( x, z, lavaPatch, seed + 102 ) < lavaFraction ) return "LAVA";
+        return "GRASS_BLOCK";
+    }
+
+    @Override
+    public String biome( int x, int z ) {
+        int i = ( int ) ( cell( x, z, biomeSize, seed + 103 ) * biomes.size() );
+        return biomes.get( Math.min( i, biomes.size() - 1 ) );
+    }
+
+    @Override
+    public Set<String> biomes() {
+        return new HashSet<>( biomes );
+    }
+
+    /**
+     * @return uniform 0-1, constant across each size x size patch
+     */
+    private static double cell( int x, int z, int size, long seed ) {
+        return hash( Math.floorDiv( x, size ), Math.floorDiv( z, size ), seed );
+    }
+
+    /**
+     * @return smoothly interpolated lattice noise, 0-1
+     */
+    private static double noise( double x, double z, long seed ) {
+        int x0 = ( int ) Math.floor( x );
+        int z0 = ( int ) Math.floor( z );
+        double fx = smooth( x - x0 );
+        double fz = smooth( z - z0 );
+        double a = hash( x0, z0, seed ) + ( hash( x0 + 1, z0, seed ) - hash( x0, z0, seed ) ) * fx;
+        double b = hash( x0, z0 + 1, seed ) + ( hash( x0 + 1, z0 + 1, seed ) - hash( x0, z0 + 1, seed ) ) * fx;
+        return a + ( b - a ) * fz;
+    }
+
+    private static double smooth( double t ) {
+        return t * t * ( 3 - 2 * t );
+    }
+
+    private static double hash( int x, int z, long seed ) {
+        long h = seed * 0x9E3779B97F4A7C15L + x * 0xC2B2AE3D27D4EB4FL + z * 0x165667B19E3779F9L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return ( h >>> 11 ) * 0x1.0p-53;
+    }
+}
@@ -0,0 +1,34 @@
+package simulator;
+
+import commonTestImpl.substitutions.TestRTPBlock;
+import commonTestImpl.substitutions.TestRTPChunk;
+import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPBlock;
+
+/**
+ * chunk cut from a Terrain - stone, then the surface block, then air
+ */
+public class SimChunk extends TestRTPChunk {
+    private final SimWorld world;
+
+    public SimChunk( SimWorld world, int x, int z ) {
+        super( world, x, z );
+        this.world = world;
+    }
+
+    @Override
+    protected int height( int x, int z ) {
+        return world.terrain.height( x() * 16 + x, z() * 16 + z );
+    }
+
+    @Override
+    public RTPBlock getBlockAt( int x, int y, int z ) {
+        int bx = x() * 16 + x;
+        int bz = z() * 16 + z;
+        int height = world.terrain.height( bx, bz );
+        String material;
+        if ( y >= height ) material = "AIR";
+        else if ( y == height - 1 ) material = world.terrain.surface( bx, bz );
+        else material = "STONE";
+        return new TestRTPBlock( world, bx, y, bz, material );
+    }
+}
@@ -0,0 +1,62 @@
+package simulator;
+
+import java.util.PriorityQueue;
+
+/**
+ * gameticks for the simulator, advanced by hand.
+ * anything scheduled runs on the thread calling tick, once its tick comes up
+ */
+public class SimClock {
+    private final PriorityQueue<Scheduled> queue = new PriorityQueue<>();
+    private long now = 0;
+    private long sequence = 0;
+
+    public synchronized long now() {
+        return now;
+    }
+
+    public synchronized void schedule( long ticks, Runnable runnable ) {
+        queue.add( new Scheduled( now + Math.max( ticks, 0 ), sequence++, runnable ) );
+    }
+
+    /**
+     * advance one tick and run whatever is due
+     */
+    public void tick() {
+        long tick;
+        synchronized ( this ) {
+            tick = ++now;
+        }
+        while ( true ) {
+            Scheduled next;
+            synchronized ( this ) {
+                next = queue.peek();
+                if ( next == null || next.tick > tick ) return;
+                queue.poll();
+            }
+            next.runnable.run();
+        }
+    }
+
+    public synchronized int pending() {
+        return queue.size();
+    }
+
+    private static final class Scheduled implements Comparable<Scheduled> {
+        private final long tick;
+        private final long sequence;
+        private final Runnable runnable;
+
+        private Scheduled( long tick, long sequence, Runnable runnable ) {
+            this.tick = tick;
+            this.sequence = sequence;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public int compareTo( Scheduled o ) {
+            if ( tick != o.tick ) return Long.compare( tick, o.tick );
+            return Long.compare( sequence, o.sequence );
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package simulator;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * what a Simulation run measured. ticks are SimClock ticks
+ */
+public class SimReport {
+    public long selections = 0;
+    public long successes = 0;
+    public long attempts = 0;
+    public long selectionTicks = 0;
+    public final Map<String, Long> failures = new TreeMap<>();
+
+    public long refillTicks = -1;
+    public long cacheFilled = 0;
+
+    public long fillTicks = -1;
+    public boolean fillFinished = false;
+
+    public long chunkLoads = 0;
+    public final Map<String, long[]> memory = new TreeMap<>();
+
+    /**
+     * @return selection attempts per location found
+     */
+    public double attemptsPerSuccess() {
+        return ( successes > 0 ) ? ( double ) attempts / successes : Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder res = new StringBuilder();
+        res.append( "selections: " ).append( successes ).append( "/" ).append( selections ).append( " found" )
+                .append( ", " ).append( String.format( "%.2f", attemptsPerSuccess() ) ).append( " attempts per location" )
+                .append( ", " ).append( ( selections > 0 ) ? selectionTicks / selections : 0 ).append( " ticks each\n" );
+        failures.forEach( ( cause, count ) -> res.append( "  fail cause=" ).append( cause ).append( " count=" ).append( count ).append( "\n" ) );
+        res.append( "cache refill: " ).append( cacheFilled ).append( " locations in " ).append( refillTicks ).append( " ticks\n" );
+        if ( fillTicks >= 0 ) {
+            res.append( "fill: " ).append( fillFinished ? "finished" : "unfinished" ).append( " after " ).append( fillTicks ).append( " ticks\n" );
+        }
+        res.append( "chunk loads: " ).append( chunkLoads ).append( "\n" );
+        memory.forEach( ( stage, m ) -> res.append( "memory after " ).append( stage )
+                .append( ": bad intervals=" ).append( m[0] )
+                .append( " bad locations=" ).append( m[1] )
+                .append( " biome intervals=" ).append( m[2] )
+                .append( " ~" ).append( m[3] ).append( " bytes\n" ) );
+        return res.toString();
+    }
+}
@@ -0,0 +1,48 @@
+package simulator;
+
+import commonTestImpl.TestRTPServerAccessor;
+import io.github.dailystruggle.rtp.common.selection.worldborder.WorldBorder;
+import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPWorld;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * test accessor with every world being the one SimWorld, and no worldborder
+ */
+public class SimServerAccessor extends TestRTPServerAccessor {
+    private final SimWorld world;
+
+    public SimServerAccessor( SimWorld world ) {
+        this.world = world;
+    }
+
+    @Override
+    public RTPWorld getRTPWorld( String name ) {
+        return world;
+    }
+
+    @Override
+    public @Nullable RTPWorld getRTPWorld( UUID id ) {
+        return world;
+    }
+
+    @Override
+    public @NotNull List<RTPWorld> getRTPWorlds() {
+        return Collections.singletonList( world );
+    }
+
+    @Override
+    public Set<String> getBiomes( RTPWorld rtpWorld ) {
+        return world.terrain.biomes();
+    }
+
+    @Override
+    public @Nullable WorldBorder getWorldBorder( String worldName ) {
+        return new WorldBorder( () -> null, location -> true );
+    }
+}
@@ -0,0 +1,35 @@
+package simulator;
+
+import commonTestImpl.substitutions.TestRTPWorld;
+import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPChunk;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * stand-in world over a Terrain. chunk loads finish loadTicks later on the SimClock
+ */
+public class SimWorld extends TestRTPWorld {
+    public final Terrain terrain;
+    public final SimClock clock;
+    public long loadTicks = 2;
+    public final AtomicLong chunkLoads = new AtomicLong();
+
+    public SimWorld( Terrain terrain, SimClock clock ) {
+        this.terrain = terrain;
+        this.clock = clock;
+    }
+
+    @Override
+    public CompletableFuture<RTPChunk> getChunkAt( int chunkX, int chunkZ ) {
+        chunkLoads.incrementAndGet();
+        CompletableFuture<RTPChunk> res = new CompletableFuture<>();
+        clock.schedule( loadTicks, () -> res.complete( new SimChunk( this, chunkX, chunkZ ) ) );
+        return res;
+    }
+
+    @Override
+    public String getBiome( int x, int y, int z ) {
+        return terrain.biome( x, z );
+    }
+}
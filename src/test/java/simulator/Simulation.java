@@ -0,0 +1,182 @@
+package simulator;
+
+import io.github.dailystruggle.rtp.common.RTP;
+import io.github.dailystruggle.rtp.common.configuration.ConfigParser;
+import io.github.dailystruggle.rtp.common.configuration.enums.LoggingKeys;
+import io.github.dailystruggle.rtp.common.configuration.enums.PerformanceKeys;
+import io.github.dailystruggle.rtp.common.configuration.enums.RegionKeys;
+import io.github.dailystruggle.rtp.common.configuration.enums.SafetyKeys;
+import io.github.dailystruggle.rtp.common.selection.region.Region;
+import io.github.dailystruggle.rtp.common.selection.region.Selection;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.LongIntervalSet;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.memory.shapes.MemoryShape;
+import io.github.dailystruggle.rtp.common.selection.region.selectors.shapes.Shape;
+import io.github.dailystruggle.rtp.common.serverSide.MaterialSets;
+import io.github.dailystruggle.rtp.common.serverSide.substitutions.RTPLocation;
+import io.github.dailystruggle.rtp.common.tasks.FillTask;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * runs the default region's selection, cache refill and fill against a synthetic world, without a server.
+ * chunk loads take loadTicks on a SimClock, and selection stages run on executor, inline by default, so a run is repeatable for a given seed.
+ * task pipeline delays still use real time, so a cache refill can stall on them for a few milliseconds.
+ *
+ * usage: set the public fields, then run()
+ */
+public class Simulation {
+    public Terrain terrain = new NoiseTerrain();
+    public long loadTicks = 2;
+    public String mode = "ACCUMULATE";
+    public long maxAttempts = 20;
+    public boolean biomeRecall = true;
+    public int safetyRadius = 1;
+    public long cacheCap = 10;
+    public int selections = 100;
+    public boolean fill = false;
+    public int radius = 64;
+    public int centerRadius = 16;
+    /**
+     * give up on any one stage after this many ticks
+     */
+    public long maxTicks = 20 * 60 * 10;
+    /**
+     * where selection and fill stages run once their chunks arrive
+     */
+    public Executor executor = Runnable::run;
+
+    public SimReport run() {
+        SimReport report = new SimReport();
+        SimClock clock = new SimClock();
+        SimWorld world = new SimWorld( terrain, clock );
+        world.loadTicks = loadTicks;
+
+        RTP.serverAccessor = new SimServerAccessor( world );
+        RTP rtp = new RTP();
+        for ( int i = 0; rtp.startupTasks.size() > 0 && i <= 50; i++ ) {
+            rtp.startupTasks.execute( Long.MAX_VALUE );
+        }
+
+        Region region = configure();
+        Executor regionExecutor = region.selectionExecutor;
+        region.selectionExecutor = executor;
+        try {
+            MemoryShape<?> shape = ( MemoryShape<?> ) region.getShape();
+
+            //selections
+            for ( int i = 0; i < selections; i++ ) {
+                Selection selection = new Selection( region, null, executor );
+                CompletableFuture<Map.Entry<RTPLocation, Long>> future = selection.start();
+                long start = clock.now();
+                while ( !future.isDone() && clock.now() - start < maxTicks ) clock.tick();
+                report.selectionTicks += clock.now() - start;
+
+                Map.Entry<RTPLocation, Long> pair = future.getNow( null );
+                report.selections++;
+                if ( pair != null ) {
+                    report.attempts += pair.getValue();
+                    if ( pair.getKey() != null ) report.successes++;
+                }
+                selection.failures().forEach( ( cause, count ) -> report.failures.merge( cause, count, Long::sum ) );
+            }
+            snapshot( report, "selections", shape );
+
+            //cache refill from empty
+            region.locationQueue.clear();
+            long start = clock.now();
+            while ( region.locationQueue.size() < cacheCap && clock.now() - start < maxTicks ) {
+                region.execute( Long.MAX_VALUE );
+                clock.tick();
+            }
+            report.refillTicks = clock.now() - start;
+            report.cacheFilled = region.locationQueue.size();
+
+            if ( fill ) {
+                FillTask fillTask = new FillTask( region, 0L );
+                RTP.getInstance().fillTasks.put( region.name, fillTask );
+                start = clock.now();
+                while ( RTP.getInstance().fillTasks.get( region.name ) == fillTask && clock.now() - start < maxTicks ) {
+                    fillTask.run();
+                    clock.tick();
+                }
+                report.fillTicks = clock.now() - start;
+                report.fillFinished = RTP.getInstance().fillTasks.get( region.name ) != fillTask;
+                fillTask.setCancelled( true );
+                RTP.getInstance().fillTasks.remove( region.name );
+                snapshot( report, "fill", shape );
+            }
+        } finally {
+            region.selectionExecutor = regionExecutor;
+        }
+
+        report.chunkLoads = world.chunkLoads.get();
+        return report;
+    }
+
+    private Region configure() {
+        ConfigParser<PerformanceKeys> performance = ( ConfigParser<PerformanceKeys> ) RTP.configs.getParser( PerformanceKeys.class );
+        performance.set( PerformanceKeys.maxAttempts, maxAttempts );
+        performance.set( PerformanceKeys.biomeRecall, biomeRecall );
+
+        ConfigParser<SafetyKeys> safety = ( ConfigParser<SafetyKeys> ) RTP.configs.getParser( SafetyKeys.class );
+        safety.set( SafetyKeys.safetyRadius, safetyRadius );
+        MaterialSets.reload();
+
+        //failure causes are only counted while this is on
+        ConfigParser<LoggingKeys> logging = ( ConfigParser<LoggingKeys> ) RTP.configs.getParser( LoggingKeys.class );
+        logging.set( LoggingKeys.selection_failure, true );
+
+        Region region = RTP.selectionAPI.getRegion( "default" );
+        region.set( RegionKeys.cacheCap, cacheCap );
+
+        Shape<?> shape = region.getShape();
+        Map<String, Object> shapeData = new HashMap<>();
+        shapeData.put( "mode", mode );
+        shapeData.put( "radius", radius );
+        shapeData.put( "centerRadius", centerRadius );
+        shape.setData( shapeData );
+        if ( shape instanceof MemoryShape ) {
+            ( (MemoryShape<?> ) shape ).clearLocations();
+            ( (MemoryShape<?> ) shape ).fillIter.set( 0 );
+        }
+
+        region.reloadSettings();
+        return region;
+    }
+
+    private static void snapshot( SimReport report, String stage, MemoryShape<?> shape ) {
+        long biomeIntervals = 0;
+        for ( LongIntervalSet set : shape.biomeLocations.values() ) biomeIntervals += set.size();
+        long intervals = shape.badLocations.size() + biomeIntervals;
+        //two longs per interval
+        report.memory.put( stage, new long[]{shape.badLocations.size(), shape.badLocations.sum(), biomeIntervals, intervals * 16} );
+    }
+
+    public static void main( String[] args ) {
+        Simulation simulation = new Simulation();
+        for ( String arg : args ) {
+            String[] kv = arg.split( "=", 2 );
+            if ( kv.length != 2 ) continue;
+            switch ( kv[0] ) {
+                case "mode": simulation.mode = kv[1].toUpperCase(); break;
+                case "maxAttempts": simulation.maxAttempts = Long.parseLong( kv[1] ); break;
+                case "biomeRecall": simulation.biomeRecall = Boolean.parseBoolean( kv[1] ); break;
+                case "safetyRadius": simulation.safetyRadius = Integer.parseInt( kv[1] ); break;
+                case "cacheCap": simulation.cacheCap = Long.parseLong( kv[1] ); break;
+                case "selections": simulation.selections = Integer.parseInt( kv[1] ); break;
+                case "loadTicks": simulation.loadTicks = Long.parseLong( kv[1] ); break;
+                case "radius": simulation.radius = Integer.parseInt( kv[1] ); break;
+                case "centerRadius": simulation.centerRadius = Integer.parseInt( kv[1] ); break;
+                case "fill": simulation.fill = Boolean.parseBoolean( kv[1] ); break;
+                case "water": ( (NoiseTerrain ) simulation.terrain ).waterFraction = Double.parseDouble( kv[1] ); break;
+                case "lava": ( (NoiseTerrain ) simulation.terrain ).lavaFraction = Double.parseDouble( kv[1] ); break;
+                case "seed": ( (NoiseTerrain ) simulation.terrain ).seed = Long.parseLong( kv[1] ); break;
+                default: System.out.println( "unknown option - " + kv[0] );
+            }
+        }
+        System.out.print( simulation.run() );
+    }
+}
@@ -0,0 +1,22 @@
+package simulator;
+
+import java.util.Set;
+
+/**
+ * synthetic world for the simulator
+ */
+public interface Terrain {
+    /**
+     * @return y of the first air block above ground
+     */
+    int height( int x, int z );
+
+    /**
+     * @return material of the top block, at height - 1
+     */
+    String surface( int x, int z );
+
+    String biome( int x, int z );
+
+    Set<String> biomes();
+}